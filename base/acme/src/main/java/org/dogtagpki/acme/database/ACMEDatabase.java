@@ -91,6 +91,24 @@ public abstract class ACMEDatabase {
     public abstract ACMEOrder getOrderByCertificate(String certID) throws Exception;
 
     public abstract void addOrder(ACMEOrder order) throws Exception;
+
+    /**
+     * This method adds a new order together with its new authorizations.
+     * Databases that support transactions should store all records in
+     * a single transaction.
+     *
+     * @param order The new order.
+     * @param authorizations The new authorizations referenced by the order.
+     * @throws Exception
+     */
+    public void addOrder(ACMEOrder order, Collection<ACMEAuthorization> authorizations) throws Exception {
+
+        for (ACMEAuthorization authorization : authorizations) {
+            addAuthorization(authorization);
+        }
+
+        addOrder(order);
+    }
     public abstract void updateOrder(ACMEOrder order) throws Exception;
 
     public void removeExpiredOrders(Date currentTime) throws Exception {
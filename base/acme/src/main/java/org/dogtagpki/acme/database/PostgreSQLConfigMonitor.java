@@ -45,13 +45,12 @@ public class PostgreSQLConfigMonitor implements Runnable {
         running = true;
 
         while (running) {
-            try {
-                database.connect();
+            try (PostgreSQLConnection connection = database.connect()) {
 
                 logger.info("Updating ACME configuration");
                 // update the config in memory only
 
-                String value = database.getConfig("enabled");
+                String value = database.getConfig(connection, "enabled");
                 database.enabled = value == null ? null : Boolean.valueOf(value);
                 logger.info("- enabled: " + database.enabled);
 
@@ -0,0 +1,118 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class represents a connection borrowed from
+ * PostgreSQLConnectionPool. Closing it returns the
+ * connection to the pool. Each borrowed connection is
+ * returned once, so closing it again has no effect.
+ */
+public class PostgreSQLConnection implements AutoCloseable {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PostgreSQLConnection.class);
+
+    PostgreSQLConnectionPool pool;
+    Connection connection;
+
+    // time when the connection was last returned to the pool
+    long lastUsed;
+
+    boolean transaction;
+
+    AtomicBoolean closed = new AtomicBoolean();
+
+    public PostgreSQLConnection(PostgreSQLConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Prepares a statement. Statements that are executed repeatedly
+     * on the same connection are cached by the JDBC driver (see
+     * prepareThreshold parameter).
+     */
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        checkClosed();
+        return connection.prepareStatement(sql);
+    }
+
+    /**
+     * Starts a transaction. The transaction has to be completed with
+     * commit() or rollback() before the connection is closed, otherwise
+     * it will be rolled back.
+     */
+    public void begin() throws SQLException {
+        checkClosed();
+        connection.setAutoCommit(false);
+        transaction = true;
+    }
+
+    public void commit() throws SQLException {
+        connection.commit();
+        connection.setAutoCommit(true);
+        transaction = false;
+    }
+
+    public void rollback() throws SQLException {
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        } finally {
+            transaction = false;
+        }
+    }
+
+    void checkClosed() throws SQLException {
+        if (closed.get()) {
+            // the connection might have been borrowed by another thread
+            throw new SQLException("Connection has been returned to the pool");
+        }
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    @Override
+    public void close() {
+
+        if (!closed.compareAndSet(false, true)) {
+            logger.debug("PostgreSQLConnection: Connection already closed");
+            return;
+        }
+
+        if (transaction) {
+            logger.warn("PostgreSQLConnection: Rolling back incomplete transaction");
+            try {
+                rollback();
+            } catch (SQLException e) {
+                logger.warn("PostgreSQLConnection: Unable to roll back transaction: " + e.getMessage(), e);
+                closeConnection();
+            }
+        }
+
+        pool.release(this);
+    }
+
+    void closeConnection() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("PostgreSQLConnection: Unable to close connection: " + e.getMessage(), e);
+        }
+    }
+}
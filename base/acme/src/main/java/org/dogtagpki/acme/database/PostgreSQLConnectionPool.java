@@ -0,0 +1,193 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class maintains a bounded pool of PostgreSQL connections.
+ *
+ * Idle connections are reused in LIFO order so that the most recently
+ * used connections stay warm. A connection is only validated when it
+ * is borrowed after being idle longer than the validation interval.
+ */
+public class PostgreSQLConnectionPool {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PostgreSQLConnectionPool.class);
+
+    public final static int DEFAULT_MAX_SIZE = 10;
+    public final static int DEFAULT_TIMEOUT = 30; // seconds
+    public final static int DEFAULT_VALIDATION_INTERVAL = 30; // seconds
+
+    // timeout for validating a connection
+    public final static int VALIDATION_TIMEOUT = 5; // seconds
+
+    String url;
+    Properties info;
+
+    int maxSize = DEFAULT_MAX_SIZE;
+    int timeout = DEFAULT_TIMEOUT;
+    int validationInterval = DEFAULT_VALIDATION_INTERVAL;
+
+    Semaphore permits;
+    Deque<PostgreSQLConnection> idleConnections = new ConcurrentLinkedDeque<>();
+
+    volatile boolean closed;
+
+    public PostgreSQLConnectionPool(String url, Properties info) {
+        this.url = url;
+        this.info = info;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getValidationInterval() {
+        return validationInterval;
+    }
+
+    public void setValidationInterval(int validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    public void init() {
+        permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Returns the number of connections currently borrowed.
+     */
+    public int getActiveConnections() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    /**
+     * Borrows a connection from the pool, or creates a new one if there
+     * is no idle connection. If all connections are in use, this method
+     * waits until one is returned.
+     */
+    public PostgreSQLConnection getConnection() throws SQLException, InterruptedException {
+
+        if (closed) {
+            throw new SQLException("Connection pool has been closed");
+        }
+
+        if (!permits.tryAcquire(timeout, TimeUnit.SECONDS)) {
+            throw new SQLException("Unable to get database connection within " + timeout + " seconds");
+        }
+
+        try {
+            PostgreSQLConnection connection;
+            while ((connection = idleConnections.pollFirst()) != null) {
+
+                if (validate(connection)) {
+                    // return a new wrapper so that closing
+                    // the previous one again has no effect
+                    return new PostgreSQLConnection(this, connection.getConnection());
+                }
+
+                logger.info("PostgreSQLConnectionPool: Discarding invalid connection");
+                connection.closeConnection();
+            }
+
+            logger.info("PostgreSQLConnectionPool: Connecting to " + url);
+            return new PostgreSQLConnection(this, connect());
+
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a new database connection.
+     */
+    protected Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, info);
+    }
+
+    /**
+     * Validates a connection if it has been idle longer than
+     * the validation interval.
+     */
+    boolean validate(PostgreSQLConnection connection) {
+
+        try {
+            long idleTime = System.currentTimeMillis() - connection.lastUsed;
+
+            if (idleTime < validationInterval * 1000L) {
+                return !connection.getConnection().isClosed();
+            }
+
+            return connection.getConnection().isValid(VALIDATION_TIMEOUT);
+
+        } catch (SQLException e) {
+            logger.warn("PostgreSQLConnectionPool: Unable to validate connection: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns a connection to the pool.
+     */
+    void release(PostgreSQLConnection connection) {
+
+        try {
+            if (closed || connection.getConnection().isClosed()) {
+                connection.closeConnection();
+                return;
+            }
+
+            connection.lastUsed = System.currentTimeMillis();
+            idleConnections.offerFirst(connection);
+
+        } catch (SQLException e) {
+            logger.warn("PostgreSQLConnectionPool: Unable to release connection: " + e.getMessage());
+            connection.closeConnection();
+
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes the idle connections. Borrowed connections will be
+     * closed when they are returned.
+     */
+    public void close() {
+
+        closed = true;
+
+        PostgreSQLConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            connection.closeConnection();
+        }
+    }
+}
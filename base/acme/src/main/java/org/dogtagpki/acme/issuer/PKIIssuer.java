@@ -24,6 +24,7 @@ import org.mozilla.jss.netscape.security.x509.RevocationReason;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 import org.mozilla.jss.netscape.security.x509.X500Name;
 
+import com.netscape.certsrv.base.UnauthorizedException;
 import com.netscape.certsrv.ca.CACertClient;
 import com.netscape.certsrv.ca.CAClient;
 import com.netscape.certsrv.ca.AuthorityID;
@@ -40,19 +41,61 @@ import com.netscape.certsrv.profile.ProfileAttribute;
 import com.netscape.certsrv.profile.ProfileInput;
 import com.netscape.certsrv.request.RequestId;
 import com.netscape.certsrv.request.RequestStatus;
+import com.netscape.certsrv.util.JSONSerializer;
 
 /**
+ * This class issues certificates with a PKI CA.
+ *
+ * The connection to the CA is shared by all requests so that the
+ * TLS connections and the login session can be reused. The number of
+ * pooled connections and the time to wait for one are bounded. The session is
+ * logged out and renewed if it has been idle longer than the session
+ * timeout. If the CA no longer accepts the session, only the rejected
+ * call is repeated with a new session. The enrollment template is cached
+ * for the duration of the template timeout.
+ *
  * @author Endi S. Dewata
  */
 public class PKIIssuer extends ACMEIssuer {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PKIIssuer.class);
 
+    public final static int DEFAULT_SESSION_TIMEOUT = 15 * 60; // seconds
+    public final static int DEFAULT_TEMPLATE_TIMEOUT = 5 * 60; // seconds
+    public final static int DEFAULT_MAX_CONNECTIONS = 20;
+    public final static int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 30; // seconds
+
     private ClientConfig clientConfig = new ClientConfig();
     private String profile;
     private AuthorityID authorityID;
     private X500Name authorityDN;
 
+    private int sessionTimeout = DEFAULT_SESSION_TIMEOUT;
+    private int templateTimeout = DEFAULT_TEMPLATE_TIMEOUT;
+
+    // the following fields are guarded by this object
+
+    private PKIClient pkiClient;
+    private CAClient caClient;
+    private CACertClient certClient;
+
+    private boolean loggedIn;
+    private long lastUsed;
+
+    // incremented on each login to identify the current session
+    private long session;
+
+    // enrollment template in JSON so that each request gets its own copy
+    private String templateJSON;
+    private long templateTime;
+
+    /**
+     * A single call to the CA.
+     */
+    interface CAOperation<T> {
+        T execute(CACertClient certClient) throws Exception;
+    }
+
     public String getProfile() {
         return profile;
     }
@@ -124,95 +167,242 @@ public class PKIIssuer extends ACMEIssuer {
             authorityDN = new X500Name(adn);
             logger.info("- authority-dn: " + adn);
         }
+
+        String sessionTimeout = config.getParameter("sessionTimeout");
+        if (sessionTimeout != null) {
+            this.sessionTimeout = Integer.parseInt(sessionTimeout);
+        }
+        logger.info("- session timeout: " + this.sessionTimeout);
+
+        String templateTimeout = config.getParameter("templateTimeout");
+        if (templateTimeout != null) {
+            this.templateTimeout = Integer.parseInt(templateTimeout);
+        }
+        logger.info("- template timeout: " + this.templateTimeout);
+
+        // all connections go to the same CA
+        String maxConnections = config.getParameter("maxConnections");
+        int connections = maxConnections == null ? DEFAULT_MAX_CONNECTIONS : Integer.parseInt(maxConnections);
+        logger.info("- max connections: " + connections);
+        clientConfig.setMaxConnections(connections);
+        clientConfig.setMaxConnectionsPerRoute(connections);
+
+        String connectionRequestTimeout = config.getParameter("connectionRequestTimeout");
+        int timeout = connectionRequestTimeout == null
+                ? DEFAULT_CONNECTION_REQUEST_TIMEOUT
+                : Integer.parseInt(connectionRequestTimeout);
+        logger.info("- connection request timeout: " + timeout);
+        clientConfig.setConnectionRequestTimeout(timeout);
     }
 
-    @Override
-    public String issueCertificate(PKCS10 pkcs10) throws Exception {
+    /**
+     * Returns the client for the shared CA connection.
+     *
+     * @param login whether the connection needs a login session
+     */
+    synchronized CACertClient getCertClient(boolean login) throws Exception {
+
+        if (pkiClient == null) {
+            logger.info("PKIIssuer: Connecting to " + clientConfig.getServerURL());
+            pkiClient = new PKIClient(clientConfig);
+            caClient = new CAClient(pkiClient);
+            certClient = new CACertClient(caClient);
+        }
 
-        logger.info("Issuing certificate");
+        long currentTime = System.currentTimeMillis();
 
-        try (PKIClient pkiClient = new PKIClient(clientConfig)) {
-
-            CAClient caClient = new CAClient(pkiClient);
-
-            // Here the agent credentials are stored in the ClientConfig and will
-            // be sent to the CA automatically if any of the methods being called
-            // requires REST authentication. However, the methods being called
-            // depend on the cert profile being used.
-            //
-            // If the profile has an authenticator, the request can be completed
-            // with the following methods:
-            // - CACertClient.getEnrollmentTemplate()
-            // - CACertClient.enrollRequest()
-            //
-            // The above methods do not require REST authentication, but the
-            // profile still requires authentication, so the credentials must be
-            // provided either through the request itself (i.e. using profile
-            // authentication) or by calling CAClient.login() (i.e. using REST
-            // authentication).
-            //
-            // If the profile does not have an authenticator, the request must
-            // be reviewed and approved with the following additional methods:
-            // - CACertClient.reviewRequest()
-            // - CACertClient.approveRequest()
-            //
-            // The above methods do require REST authentication so in this case
-            // it's not actually necessary to call CAClient.login(). However, to
-            // support both types of profiles the CAClient.login() needs to be
-            // called explicitly.
+        if (loggedIn && currentTime - lastUsed >= sessionTimeout * 1000L) {
+            logger.info("PKIIssuer: Session has been idle for too long");
+            logout();
+        }
+
+        if (login && !loggedIn) {
+            logger.info("PKIIssuer: Logging in to CA");
             caClient.login();
+            loggedIn = true;
+            session++;
+        }
 
-            CACertClient certClient = new CACertClient(caClient);
-            CertEnrollmentRequest certEnrollmentRequest = certClient.getEnrollmentTemplate(profile);
+        lastUsed = currentTime;
 
-            for (ProfileInput input : certEnrollmentRequest.getInputs()) {
+        return certClient;
+    }
 
-                ProfileAttribute typeAttr = input.getAttribute("cert_request_type");
-                if (typeAttr != null) {
-                    typeAttr.setValue("pkcs10");
-                }
+    /**
+     * Logs out from the CA. Must be called while holding this object.
+     */
+    void logout() {
 
-                ProfileAttribute csrAttr = input.getAttribute("cert_request");
-                if (csrAttr != null) {
-                    csrAttr.setValue(Utils.base64encodeSingleLine(pkcs10.toByteArray()));
-                }
-            }
+        logger.info("PKIIssuer: Logging out from CA");
+
+        try {
+            caClient.logout();
+        } catch (Exception e) {
+            logger.warn("PKIIssuer: Unable to log out from CA: " + e.getMessage(), e);
+        }
+
+        loggedIn = false;
+    }
 
-            logger.info("Request:\n" + certEnrollmentRequest);
+    /**
+     * Discards the session rejected by the CA unless another thread
+     * has already replaced it with a new session.
+     */
+    synchronized void resetSession(long rejectedSession) {
 
-            CertRequestInfos infos = certClient.enrollRequest(
-			    certEnrollmentRequest, authorityID, authorityDN);
+        if (!loggedIn || session != rejectedSession) {
+            logger.info("PKIIssuer: Session has already been renewed");
+            return;
+        }
 
-            logger.info("Responses:");
-            CertRequestInfo info = infos.getEntries().iterator().next();
+        // the session is no longer valid on the CA, so there is nothing to log out
+        loggedIn = false;
+    }
 
-            RequestId requestId = info.getRequestID();
+    /**
+     * Executes a call to the CA with a login session. If the CA rejects
+     * the session (e.g. it has expired on the CA), the call is executed
+     * once more with a new session. The operation should only contain a
+     * single call so that the calls that have already been accepted by
+     * the CA (e.g. an enrollment) are not repeated.
+     */
+    <T> T executeWithLogin(CAOperation<T> operation) throws Exception {
+
+        CACertClient client;
+        long currentSession;
+
+        synchronized (this) {
+            client = getCertClient(true);
+            currentSession = session;
+        }
 
-            logger.info("- Request ID: " + requestId.toHexString());
-            logger.info("  Type: " + info.getRequestType());
-            logger.info("  Request Status: " + info.getRequestStatus());
-            logger.info("  Operation Result: " + info.getOperationResult());
+        try {
+            return operation.execute(client);
 
-            String error = info.getErrorMessage();
-            if (error != null) {
-                throw new Exception("Unable to generate certificate: " + error);
-            }
+        } catch (UnauthorizedException e) {
+            logger.info("PKIIssuer: Session rejected by CA: " + e.getMessage());
+            resetSession(currentSession);
+            return operation.execute(getCertClient(true));
+        }
+    }
+
+    synchronized CertEnrollmentRequest getEnrollmentTemplate(CACertClient certClient) throws Exception {
+
+        long currentTime = System.currentTimeMillis();
+
+        if (templateJSON == null || currentTime - templateTime >= templateTimeout * 1000L) {
+            logger.info("PKIIssuer: Retrieving enrollment template for " + profile);
+            templateJSON = certClient.getEnrollmentTemplate(profile).toJSON();
+            templateTime = currentTime;
+        }
+
+        return JSONSerializer.fromJSON(templateJSON, CertEnrollmentRequest.class);
+    }
+
+    @Override
+    public synchronized void close() throws Exception {
 
-            CertId id = null;
-            if (info.getRequestStatus() == RequestStatus.COMPLETE) {
-                id = info.getCertId();
-            } else {
-                CertReviewResponse reviewInfo = certClient.reviewRequest(requestId);
-                certClient.approveRequest(requestId, reviewInfo);
+        if (pkiClient == null) return;
 
-                info = certClient.getRequest(requestId);
-                id = info.getCertId();
+        if (loggedIn) {
+            logout();
+        }
+
+        pkiClient.close();
+
+        pkiClient = null;
+        caClient = null;
+        certClient = null;
+        loggedIn = false;
+    }
+
+    @Override
+    public String issueCertificate(PKCS10 pkcs10) throws Exception {
+
+        logger.info("Issuing certificate");
+
+        // Here the agent credentials are stored in the ClientConfig and will
+        // be sent to the CA automatically if any of the methods being called
+        // requires REST authentication. However, the methods being called
+        // depend on the cert profile being used.
+        //
+        // If the profile has an authenticator, the request can be completed
+        // with the following methods:
+        // - CACertClient.getEnrollmentTemplate()
+        // - CACertClient.enrollRequest()
+        //
+        // The above methods do not require REST authentication, but the
+        // profile still requires authentication, so the credentials must be
+        // provided either through the request itself (i.e. using profile
+        // authentication) or by calling CAClient.login() (i.e. using REST
+        // authentication).
+        //
+        // If the profile does not have an authenticator, the request must
+        // be reviewed and approved with the following additional methods:
+        // - CACertClient.reviewRequest()
+        // - CACertClient.approveRequest()
+        //
+        // The above methods do require REST authentication so in this case
+        // it's not actually necessary to call CAClient.login(). However, to
+        // support both types of profiles the CAClient.login() needs to be
+        // called explicitly.
+        //
+        // Each call is retried separately if the session is rejected so that
+        // the enrollment request is not submitted twice.
+
+        CertEnrollmentRequest certEnrollmentRequest = executeWithLogin(this::getEnrollmentTemplate);
+
+        for (ProfileInput input : certEnrollmentRequest.getInputs()) {
+
+            ProfileAttribute typeAttr = input.getAttribute("cert_request_type");
+            if (typeAttr != null) {
+                typeAttr.setValue("pkcs10");
             }
 
-            logger.info("Serial number: " + id.toHexString());
-            BigInteger serialNumber = id.toBigInteger();
-            return Base64.encodeBase64URLSafeString(serialNumber.toByteArray());
+            ProfileAttribute csrAttr = input.getAttribute("cert_request");
+            if (csrAttr != null) {
+                csrAttr.setValue(Utils.base64encodeSingleLine(pkcs10.toByteArray()));
+            }
+        }
+
+        logger.info("Request:\n" + certEnrollmentRequest);
+
+        CertRequestInfos infos = executeWithLogin(client -> client.enrollRequest(
+                certEnrollmentRequest, authorityID, authorityDN));
+
+        logger.info("Responses:");
+        CertRequestInfo info = infos.getEntries().iterator().next();
+
+        RequestId requestId = info.getRequestID();
+
+        logger.info("- Request ID: " + requestId.toHexString());
+        logger.info("  Type: " + info.getRequestType());
+        logger.info("  Request Status: " + info.getRequestStatus());
+        logger.info("  Operation Result: " + info.getOperationResult());
+
+        String error = info.getErrorMessage();
+        if (error != null) {
+            throw new Exception("Unable to generate certificate: " + error);
         }
+
+        CertId id = null;
+        if (info.getRequestStatus() == RequestStatus.COMPLETE) {
+            id = info.getCertId();
+        } else {
+            CertReviewResponse reviewInfo = executeWithLogin(client -> client.reviewRequest(requestId));
+
+            executeWithLogin(client -> {
+                client.approveRequest(requestId, reviewInfo);
+                return null;
+            });
+
+            info = executeWithLogin(client -> client.getRequest(requestId));
+            id = info.getCertId();
+        }
+
+        logger.info("Serial number: " + id.toHexString());
+        BigInteger serialNumber = id.toBigInteger();
+        return Base64.encodeBase64URLSafeString(serialNumber.toByteArray());
     }
 
     @Override
@@ -221,37 +411,33 @@ public class PKIIssuer extends ACMEIssuer {
         CertId id = new CertId(new BigInteger(1, Base64.decodeBase64(certID)));
         logger.info("Serial number: " + id.toHexString());
 
-        try (PKIClient pkiClient = new PKIClient(clientConfig)) {
+        CACertClient certClient = getCertClient(false);
+        CertData certData = certClient.getCert(id);
 
-            CAClient caClient = new CAClient(pkiClient);
-            CACertClient certClient = new CACertClient(caClient);
-            CertData certData = certClient.getCert(id);
+        String pkcs7Chain = certData.getPkcs7CertChain();
+        logger.info("Cert chain:\n" + pkcs7Chain);
 
-            String pkcs7Chain = certData.getPkcs7CertChain();
-            logger.info("Cert chain:\n" + pkcs7Chain);
+        PKCS7 pkcs7 = new PKCS7(Utils.base64decode(pkcs7Chain));
+        X509Certificate[] certs = pkcs7.getCertificates();
 
-            PKCS7 pkcs7 = new PKCS7(Utils.base64decode(pkcs7Chain));
-            X509Certificate[] certs = pkcs7.getCertificates();
-
-            if (certs == null || certs.length == 0) {
-                throw new Error("PKCS #7 data contains no certificates");
-            }
+        if (certs == null || certs.length == 0) {
+            throw new Error("PKCS #7 data contains no certificates");
+        }
 
-            // sort certs from leaf to root
-            certs = Cert.sortCertificateChain(certs, true);
+        // sort certs from leaf to root
+        certs = Cert.sortCertificateChain(certs, true);
 
-            StringWriter sw = new StringWriter();
+        StringWriter sw = new StringWriter();
 
-            try (PrintWriter out = new PrintWriter(sw, true)) {
-                for (X509Certificate cert : certs) {
-                    out.println(Cert.HEADER);
-                    out.print(Utils.base64encode(cert.getEncoded(), true));
-                    out.println(Cert.FOOTER);
-                }
+        try (PrintWriter out = new PrintWriter(sw, true)) {
+            for (X509Certificate cert : certs) {
+                out.println(Cert.HEADER);
+                out.print(Utils.base64encode(cert.getEncoded(), true));
+                out.println(Cert.FOOTER);
             }
-
-            return sw.toString();
         }
+
+        return sw.toString();
     }
 
     @Override
@@ -280,45 +466,41 @@ public class PKIIssuer extends ACMEIssuer {
 
         logger.info("Reviewing certificate");
 
-        try (PKIClient pkiClient = new PKIClient(clientConfig)) {
-
-            CAClient caClient = new CAClient(pkiClient);
-            CACertClient certClient = new CACertClient(caClient);
-            CertData certData = certClient.reviewCert(certID);
-
-            // Compare cert in request to cert retrieved from PKI.
-            // This prevents DOS attacks against certificates from this issuer,
-            // where the presented certificate was from a different issuer or
-            // has been modified (we don't validate it cryptographically).
-            //
-            String certFromIssuerPEM = certData.getEncoded();
-            if (null == certFromIssuerPEM) {
-                throw new Exception(
-                    "Unable to revoke certificate: failed to retrieve cert from PKI");
-            }
-            byte[] certFromIssuerDER = Cert.parseCertificate(certFromIssuerPEM);
-            if (!Arrays.equals(certBytes, certFromIssuerDER)) {
-                throw new Exception(
-                    "Unable to revoke certificate: cert in request was not issued by this PKI");
-                // TODO better exception (400?)
-            }
+        CACertClient certClient = getCertClient(false);
+        CertData certData = certClient.reviewCert(certID);
+
+        // Compare cert in request to cert retrieved from PKI.
+        // This prevents DOS attacks against certificates from this issuer,
+        // where the presented certificate was from a different issuer or
+        // has been modified (we don't validate it cryptographically).
+        //
+        String certFromIssuerPEM = certData.getEncoded();
+        if (null == certFromIssuerPEM) {
+            throw new Exception(
+                "Unable to revoke certificate: failed to retrieve cert from PKI");
+        }
+        byte[] certFromIssuerDER = Cert.parseCertificate(certFromIssuerPEM);
+        if (!Arrays.equals(certBytes, certFromIssuerDER)) {
+            throw new Exception(
+                "Unable to revoke certificate: cert in request was not issued by this PKI");
+            // TODO better exception (400?)
+        }
 
-            CertRevokeRequest request = new CertRevokeRequest();
-            request.setReason(RevocationReason.valueOf(reason).getLabel());
-            request.setNonce(certData.getNonce());
+        CertRevokeRequest request = new CertRevokeRequest();
+        request.setReason(RevocationReason.valueOf(reason).getLabel());
+        request.setNonce(certData.getNonce());
 
-            logger.info("Revoking certificate");
-            CertRequestInfo certRequestInfo = certClient.revokeCert(certID, request);
+        logger.info("Revoking certificate");
+        CertRequestInfo certRequestInfo = certClient.revokeCert(certID, request);
 
-            RequestStatus status = certRequestInfo.getRequestStatus();
-            if (status != RequestStatus.COMPLETE) {
-                throw new Exception("Unable to revoke certificate: " + status);
-            }
+        RequestStatus status = certRequestInfo.getRequestStatus();
+        if (status != RequestStatus.COMPLETE) {
+            throw new Exception("Unable to revoke certificate: " + status);
+        }
 
-            if (certRequestInfo.getOperationResult().equals(CertRequestInfo.RES_ERROR)) {
-                String error = certRequestInfo.getErrorMessage();
-                throw new Exception("Unable to revoke certificate: " + error);
-            }
+        if (certRequestInfo.getOperationResult().equals(CertRequestInfo.RES_ERROR)) {
+            String error = certRequestInfo.getErrorMessage();
+            throw new Exception("Unable to revoke certificate: " + error);
         }
     }
 }
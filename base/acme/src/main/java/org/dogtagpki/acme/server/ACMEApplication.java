@@ -30,6 +30,7 @@ public class ACMEApplication extends Application {
         classes.add(ACMELogoutService.class);
         classes.add(ACMEEnableService.class);
         classes.add(ACMEDisableService.class);
+        classes.add(ACMEStatsService.class);
 
         classes.add(ACMEDirectoryService.class);
         classes.add(ACMENewNonceService.class);
@@ -0,0 +1,125 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.netscape.certsrv.util.JSONSerializer;
+
+/**
+ * This class contains the parameters for validating challenges.
+ */
+@JsonInclude(Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown=true)
+public class ACMEChallengeConfig implements JSONSerializer {
+
+    // number of threads validating challenges
+    private Integer threads = 4;
+
+    // max number of challenges waiting for or in validation
+    private Integer queueSize = 1000;
+
+    // max number of validation attempts per challenge
+    private Integer maxAttempts = 5;
+
+    // delay before the first retry, doubled after each retry
+    private Integer retryDelay = 5; // seconds
+
+    // max delay between retries
+    private Integer maxRetryDelay = 60; // seconds
+
+    public ACMEChallengeConfig() {}
+
+    public Integer getThreads() {
+        return threads;
+    }
+
+    public void setThreads(Integer threads) {
+        this.threads = threads;
+    }
+
+    public Integer getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(Integer queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public Integer getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(Integer maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Integer getRetryDelay() {
+        return retryDelay;
+    }
+
+    public void setRetryDelay(Integer retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public Integer getMaxRetryDelay() {
+        return maxRetryDelay;
+    }
+
+    public void setMaxRetryDelay(Integer maxRetryDelay) {
+        this.maxRetryDelay = maxRetryDelay;
+    }
+
+    public void setProperty(String key, String value) throws Exception {
+
+        if (key.equals("threads")) {
+            threads = Integer.valueOf(value);
+
+        } else if (key.equals("queueSize")) {
+            queueSize = Integer.valueOf(value);
+
+        } else if (key.equals("maxAttempts")) {
+            maxAttempts = Integer.valueOf(value);
+
+        } else if (key.equals("retryDelay")) {
+            retryDelay = Integer.valueOf(value);
+
+        } else if (key.equals("maxRetryDelay")) {
+            maxRetryDelay = Integer.valueOf(value);
+        }
+    }
+
+    public static ACMEChallengeConfig fromProperties(Properties props) throws Exception {
+
+        ACMEChallengeConfig config = new ACMEChallengeConfig();
+
+        for (Entry<Object, Object> entry : props.entrySet()) {
+            String key = entry.getKey().toString();
+            String value = entry.getValue().toString();
+            config.setProperty(key, value);
+        }
+
+        return config;
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return toJSON();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void main(String[] args) {
+        ACMEChallengeConfig config = new ACMEChallengeConfig();
+        System.out.println(config);
+    }
+}
@@ -0,0 +1,343 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+import org.dogtagpki.acme.ACMEError;
+import org.dogtagpki.acme.ValidationResult;
+
+/**
+ * This class validates challenges with a fixed number of threads.
+ *
+ * Failed attempts are not retried by sleeping in the worker thread.
+ * Instead the next attempt is scheduled after a delay which is doubled
+ * after each retry up to the max retry delay, so a waiting challenge
+ * does not occupy a thread.
+ *
+ * Only one challenge per authorization is processed at a time. The
+ * number of challenges waiting for or in validation is limited by the
+ * queue size. A challenge submitted while the queue is full is rejected
+ * with a rateLimited error so the client can try again later.
+ */
+public class ACMEChallengeExecutor {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ACMEChallengeExecutor.class);
+
+    ACMEChallengeConfig config;
+
+    ScheduledThreadPoolExecutor executorService;
+
+    // challenges in progress by authorization ID
+    Map<String, ACMEChallengeProcessor> processors = new ConcurrentHashMap<>();
+
+    AtomicLong submittedChallenges = new AtomicLong();
+    AtomicLong rejectedChallenges = new AtomicLong();
+    AtomicLong startedChallenges = new AtomicLong();
+    AtomicLong completedChallenges = new AtomicLong();
+    AtomicLong validationAttempts = new AtomicLong();
+
+    // time from submission to the first attempt
+    AtomicLong totalQueueTime = new AtomicLong(); // milliseconds
+
+    // time from submission to finalization
+    AtomicLong totalLatency = new AtomicLong(); // milliseconds
+    AtomicLong maxLatency = new AtomicLong(); // milliseconds
+
+    public ACMEChallengeConfig getConfig() {
+        return config;
+    }
+
+    public void setConfig(ACMEChallengeConfig config) {
+        this.config = config;
+    }
+
+    public void init() throws Exception {
+
+        logger.info("Initializing ACME challenge executor");
+
+        int threads = config.getThreads();
+        logger.info("- threads: " + threads);
+        logger.info("- queue size: " + config.getQueueSize());
+        logger.info("- max attempts: " + config.getMaxAttempts());
+        logger.info("- retry delay: " + config.getRetryDelay());
+        logger.info("- max retry delay: " + config.getMaxRetryDelay());
+
+        executorService = new ScheduledThreadPoolExecutor(threads);
+        executorService.setRemoveOnCancelPolicy(true);
+        executorService.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Returns the number of challenges waiting for or in validation.
+     */
+    public int getPendingChallenges() {
+        return processors.size();
+    }
+
+    /**
+     * Returns the number of attempts waiting for a thread.
+     */
+    public int getQueuedAttempts() {
+        return executorService.getQueue().size();
+    }
+
+    public int getActiveThreads() {
+        return executorService.getActiveCount();
+    }
+
+    public long getSubmittedChallenges() {
+        return submittedChallenges.get();
+    }
+
+    public long getRejectedChallenges() {
+        return rejectedChallenges.get();
+    }
+
+    public long getCompletedChallenges() {
+        return completedChallenges.get();
+    }
+
+    public long getValidationAttempts() {
+        return validationAttempts.get();
+    }
+
+    /**
+     * Returns the average time from submission to the first attempt.
+     */
+    public long getAverageQueueTime() {
+        long started = startedChallenges.get();
+        return started == 0 ? 0 : totalQueueTime.get() / started;
+    }
+
+    /**
+     * Returns the average time from submission to finalization.
+     */
+    public long getAverageLatency() {
+        long completed = completedChallenges.get();
+        return completed == 0 ? 0 : totalLatency.get() / completed;
+    }
+
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    /**
+     * Returns the queue and latency statistics.
+     */
+    public Map<String, Object> getStats() {
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendingChallenges", getPendingChallenges());
+        stats.put("queuedAttempts", getQueuedAttempts());
+        stats.put("activeThreads", getActiveThreads());
+        stats.put("submittedChallenges", getSubmittedChallenges());
+        stats.put("rejectedChallenges", getRejectedChallenges());
+        stats.put("completedChallenges", getCompletedChallenges());
+        stats.put("validationAttempts", getValidationAttempts());
+        stats.put("averageQueueTime", getAverageQueueTime());
+        stats.put("averageLatency", getAverageLatency());
+        stats.put("maxLatency", getMaxLatency());
+
+        return stats;
+    }
+
+    /**
+     * Creates a rateLimited error for a challenge that cannot be
+     * queued. The Retry-After header tells the client when to
+     * submit the challenge again.
+     */
+    static WebApplicationException createRateLimitedException(String detail, long retryAfter) {
+
+        // RFC 8555 Section 6.6: Rate Limits
+        //
+        // When the server refuses a request because the request would exceed a
+        // rate limit, the server MAY return a Retry-After header field.
+
+        ResponseBuilder builder = Response.status(429); // Too Many Requests
+        builder.type("application/problem+json");
+        builder.header("Retry-After", retryAfter);
+
+        ACMEError error = new ACMEError();
+        error.setType("urn:ietf:params:acme:error:rateLimited");
+        error.setDetail(detail);
+        builder.entity(error);
+
+        return new WebApplicationException(builder.build());
+    }
+
+    /**
+     * Submits a challenge for validation.
+     *
+     * @return false if another challenge of the same authorization is in progress
+     * @throws WebApplicationException if the queue is full
+     */
+    public boolean submit(ACMEChallengeProcessor processor) {
+
+        String authzID = processor.getAuthorization().getID();
+        String challengeID = processor.getChallenge().getID();
+
+        if (processors.putIfAbsent(authzID, processor) != null) {
+            logger.info("ACMEChallengeExecutor: Authorization " + authzID + " is already being validated");
+            return false;
+        }
+
+        submittedChallenges.incrementAndGet();
+
+        if (processors.size() > config.getQueueSize()) {
+            processors.remove(authzID, processor);
+            rejectedChallenges.incrementAndGet();
+            logger.warn("ACMEChallengeExecutor: Unable to process challenge " + challengeID
+                    + ": Too many pending challenges");
+            throw createRateLimitedException(
+                    "Too many pending challenges, please try again later",
+                    config.getRetryDelay());
+        }
+
+        logger.info("ACMEChallengeExecutor: Submitting challenge " + challengeID
+                + " (" + processors.size() + " pending)");
+
+        processor.submissionTime = System.currentTimeMillis();
+        schedule(processor, 0);
+
+        return true;
+    }
+
+    /**
+     * Moves the next attempt for the authorization forward if it is
+     * waiting for a retry.
+     *
+     * @return false if the authorization is not being validated
+     */
+    public boolean retry(String authzID) {
+
+        ACMEChallengeProcessor processor = processors.get(authzID);
+        if (processor == null) return false;
+
+        synchronized (processor) {
+
+            // the attempt is running or about to run
+            if (processor.future == null || !processor.future.cancel(false)) {
+                return true;
+            }
+
+            logger.info("ACMEChallengeExecutor: Retrying challenge " + processor.getChallenge().getID());
+            schedule(processor, 0);
+        }
+
+        return true;
+    }
+
+    void schedule(ACMEChallengeProcessor processor, long delay) {
+        synchronized (processor) {
+            processor.future = executorService.schedule(
+                    () -> process(processor),
+                    delay,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void process(ACMEChallengeProcessor processor) {
+
+        synchronized (processor) {
+            processor.future = null;
+        }
+
+        if (processor.getAttempts() == 0) {
+            startedChallenges.incrementAndGet();
+            totalQueueTime.addAndGet(System.currentTimeMillis() - processor.submissionTime);
+        }
+
+        validationAttempts.incrementAndGet();
+        ValidationResult r = processor.validateChallenge();
+
+        int attempts = processor.getAttempts();
+        String authzID = processor.getAuthorization().getID();
+        String challengeID = processor.getChallenge().getID();
+
+        if (!r.isOK() && executorService.isShutdown()) {
+
+            // the attempt might have been cut short by the shutdown, so the
+            // challenge is left in processing and validated again when the
+            // client retries it
+            processors.remove(authzID, processor);
+
+            logger.info("ACMEChallengeExecutor: Challenge " + challengeID
+                    + " interrupted by shutdown after " + attempts + " attempt(s)");
+            return;
+        }
+
+        if (!r.isOK() && attempts < config.getMaxAttempts()) {
+
+            // double the delay after each retry
+            long delay = (long) config.getRetryDelay() << Math.min(attempts - 1, 30);
+            delay = Math.min(delay, config.getMaxRetryDelay()) * 1000;
+
+            logger.info("ACMEChallengeExecutor: Retrying challenge "
+                    + challengeID + " in " + delay + " ms");
+
+            schedule(processor, delay);
+            return;
+        }
+
+        try {
+            processor.finalizeAuthorization(r);
+
+        } catch (Exception e) {
+            logger.error("Unable to process challenge " + challengeID + ": " + e.getMessage(), e);
+
+        } finally {
+            processors.remove(authzID, processor);
+
+            long latency = System.currentTimeMillis() - processor.submissionTime;
+            completedChallenges.incrementAndGet();
+            totalLatency.addAndGet(latency);
+            maxLatency.accumulateAndGet(latency, Math::max);
+
+            logger.info("ACMEChallengeExecutor: Challenge " + challengeID + " processed after "
+                    + attempts + " attempt(s) in " + latency + " ms");
+        }
+    }
+
+    /**
+     * Cancels the scheduled retries and waits for the running attempts
+     * to complete. The challenges that are not completed are left in
+     * processing.
+     */
+    public void shutdown() throws Exception {
+
+        logger.info("Shutting down ACME challenge executor");
+        logger.info("- submitted challenges: " + getSubmittedChallenges());
+        logger.info("- rejected challenges: " + getRejectedChallenges());
+        logger.info("- completed challenges: " + getCompletedChallenges());
+        logger.info("- validation attempts: " + getValidationAttempts());
+        logger.info("- average queue time: " + getAverageQueueTime() + " ms");
+        logger.info("- average latency: " + getAverageLatency() + " ms");
+        logger.info("- max latency: " + getMaxLatency() + " ms");
+
+        executorService.shutdown();
+
+        try {
+            if (!executorService.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("ACMEChallengeExecutor: Unable to complete running attempts");
+                executorService.shutdownNow();
+            }
+
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
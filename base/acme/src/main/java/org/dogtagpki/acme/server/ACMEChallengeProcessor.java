@@ -8,6 +8,7 @@ package org.dogtagpki.acme.server;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.concurrent.ScheduledFuture;
 
 import org.dogtagpki.acme.ACMEAccount;
 import org.dogtagpki.acme.ACMEAuthorization;
@@ -18,9 +19,13 @@ import org.dogtagpki.acme.ValidationResult;
 import org.dogtagpki.acme.validator.ACMEValidator;
 
 /**
+ * This class validates a challenge and updates the authorization
+ * and the pending orders with the result. The attempts are scheduled
+ * by ACMEChallengeExecutor.
+ *
  * @author Endi S. Dewata
  */
-public class ACMEChallengeProcessor implements Runnable {
+public class ACMEChallengeProcessor {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ACMEChallengeProcessor.class);
 
@@ -29,6 +34,11 @@ public class ACMEChallengeProcessor implements Runnable {
     ACMEChallenge challenge;
     ACMEValidator validator;
 
+    // the following fields are managed by ACMEChallengeExecutor
+    int attempts;
+    long submissionTime;
+    ScheduledFuture<?> future;
+
     public ACMEChallengeProcessor(
             ACMEAccount account,
             ACMEAuthorization authorization,
@@ -41,38 +51,38 @@ public class ACMEChallengeProcessor implements Runnable {
         this.validator = validator;
     }
 
-    @Override
-    public void run() {
+    public ACMEAuthorization getAuthorization() {
+        return authorization;
+    }
+
+    public ACMEChallenge getChallenge() {
+        return challenge;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Makes one attempt to validate the challenge.
+     */
+    public ValidationResult validateChallenge() {
+
+        attempts++;
+        logger.info("Validating challenge " + challenge.getID() + " (attempt " + attempts + ")");
+
         try {
-            processChallenge();
+            return validator.validateChallenge(authorization, challenge);
+
         } catch (Exception e) {
-            logger.error("Unable to process challenge " + challenge.getID() + ": " + e.getMessage(), e);
+            ACMEError error = new ACMEError();
+            error.setType("urn:ietf:params:acme:error:serverInternal");
+            error.setDetail("Internal server error: " + e);
+            return ValidationResult.fail(error);
         }
     }
 
-    public void processChallenge() throws Exception {
-
-        String challengeID = challenge.getID();
-        logger.info("Processing challenge " + challengeID);
-
-        // TODO make retry parameters configurable
-        int maxAttempts = 5;
-        int delaySeconds = 5;
-        int attempts = 0;
-        ValidationResult r = null;
-
-        while (attempts++ < maxAttempts) {
-            try {
-                r = validator.validateChallenge(authorization, challenge);
-            } catch (Exception e) {
-                ACMEError error = new ACMEError();
-                error.setType("urn:ietf:params:acme:error:serverInternal");
-                error.setDetail("Internal server error: " + e);
-                r = ValidationResult.fail(error);
-            }
-            if (r.isOK()) break;
-            Thread.sleep(delaySeconds * 1000);
-        }
+    public void finalizeAuthorization(ValidationResult r) throws Exception {
 
         if (r.isOK()) {
             finalizeValidAuthorization();
@@ -92,11 +92,26 @@ public class ACMEChallengeService {
                     challenge,
                     validator);
 
-            // TODO: use thread pool
-            new Thread(processor).start();
+            boolean submitted;
+
+            try {
+                submitted = engine.getChallengeExecutor().submit(processor);
+
+            } catch (Exception e) {
+                challenge.setStatus("pending");
+                engine.updateAuthorization(account, authorization);
+                throw e;
+            }
+
+            if (!submitted) {
+                // another challenge of the authorization is being validated,
+                // so the client has to wait for the authorization
+                logger.info("Authorization " + authzID + " is already being validated");
+                challenge.setStatus("pending");
+                engine.updateAuthorization(account, authorization);
+            }
 
         } else if (challengeStatus.equals("processing")) {
-            // TODO: retry the challenge
 
             // RFC 8555 Section 8.2: Retrying Challenges
             //
@@ -107,6 +122,40 @@ public class ACMEChallengeService {
             // request immediately on receiving such a POST request.  In order to
             // avoid denial-of-service attacks via client-initiated retries, servers
             // SHOULD rate-limit such requests.
+            //
+            // The retry only moves the next scheduled attempt forward, so the
+            // number of attempts is still limited by challenges.maxAttempts.
+
+            ACMEChallengeExecutor challengeExecutor = engine.getChallengeExecutor();
+            String authzStatus = authorization.getStatus();
+
+            if (!authzStatus.equals("pending")) {
+                // the authorization has been finalized, nothing to retry
+                logger.info("Authorization " + authzID + " is already " + authzStatus);
+
+            } else if (!challengeExecutor.retry(authzID)) {
+
+                // the challenge was not validated by this server (e.g. it was
+                // interrupted by a restart), so validate it again
+
+                String type = challenge.getType();
+                ACMEValidator validator = engine.getValidator(type);
+                if (validator == null) {
+                    // TODO: generate proper exception
+                    throw new Exception("Unsupported challenge type: " + type);
+                }
+
+                ACMEChallengeProcessor processor = new ACMEChallengeProcessor(
+                        account,
+                        authorization,
+                        challenge,
+                        validator);
+
+                if (!challengeExecutor.submit(processor)) {
+                    // the challenge was resubmitted by a concurrent retry
+                    logger.info("Challenge " + challengeID + " is already being validated");
+                }
+            }
 
 	} else if (challengeStatus.equals("valid")) {
 		logger.info("Challenge is already valid");
@@ -98,11 +98,16 @@ public class ACMEEngine {
 
     private ACMEScheduler scheduler;
 
+    private ACMEChallengeExecutor challengeExecutor;
+
     private RealmCommon realm;
 
     private boolean noncesPersistent;
     private Map<String, ACMENonce> nonces = new ConcurrentHashMap<>();
 
+    // null unless stateless nonces are enabled
+    private ACMEStatelessNonceManager statelessNonceManager;
+
     public static ACMEEngine getInstance() {
         return INSTANCE;
     }
@@ -162,6 +167,10 @@ public class ACMEEngine {
         validators.put(name, validator);
     }
 
+    public ACMEChallengeExecutor getChallengeExecutor() {
+        return challengeExecutor;
+    }
+
     public ACMEIssuerConfig getIssuerConfig() {
         return issuerConfig;
     }
@@ -233,6 +242,7 @@ public class ACMEEngine {
         logger.info("- enabled: " + config.isEnabled());
         logger.info("- base URL: " + config.getBaseURL());
         logger.info("- nonces persistent: " + config.getNoncesPersistent());
+        logger.info("- nonces stateless: " + config.getNoncesStateless());
 
         ACMEPolicyConfig policyConfig = config.getPolicyConfig();
         logger.info("- wildcard: " + policyConfig.getEnableWildcards());
@@ -256,6 +266,21 @@ public class ACMEEngine {
         random = SecureRandom.getInstance("pkcs11prng", "Mozilla-JSS");
     }
 
+    public void initStatelessNonces() throws Exception {
+
+        Boolean noncesStateless = config.getNoncesStateless();
+        if (noncesStateless == null || !noncesStateless) return;
+
+        Integer noncesWindow = config.getNoncesWindow();
+        int windowSize = noncesWindow != null ? noncesWindow : ACMEStatelessNonceManager.DEFAULT_WINDOW;
+
+        // generate nonce keys with JSS
+        SecureRandom random = SecureRandom.getInstance("pkcs11prng", "Mozilla-JSS");
+
+        statelessNonceManager = new ACMEStatelessNonceManager(random, windowSize);
+        logger.info("Stateless nonces enabled with window size " + statelessNonceManager.getWindowSize());
+    }
+
     public void initMetadata(String filename) throws Exception {
 
         File metadataConfigFile = new File(filename);
@@ -333,6 +358,13 @@ public class ACMEEngine {
         }
     }
 
+    public void initChallengeExecutor() throws Exception {
+
+        challengeExecutor = new ACMEChallengeExecutor();
+        challengeExecutor.setConfig(config.getChallengeConfig());
+        challengeExecutor.init();
+    }
+
     public void initIssuer(String filename) throws Exception {
 
         File issuerConfigFile = new File(filename);
@@ -482,9 +514,11 @@ public class ACMEEngine {
         this.noncesPersistent =  noncePersistent != null ? noncePersistent : false;
 
         initRandomGenerator();
+        initStatelessNonces();
         initMetadata(acmeConfDir + File.separator + "metadata.conf");
         initDatabase(acmeConfDir + File.separator + "database.conf");
         initValidators(acmeConfDir + File.separator + "validators.conf");
+        initChallengeExecutor();
         initIssuer(acmeConfDir + File.separator + "issuer.conf");
         initScheduler(acmeConfDir + File.separator + "scheduler.conf");
         initMonitors(acmeConfDir + File.separator + "configsources.conf");
@@ -509,6 +543,13 @@ public class ACMEEngine {
         validators.clear();
     }
 
+    public void shutdownChallengeExecutor() throws Exception {
+        if (challengeExecutor == null) return;
+
+        challengeExecutor.shutdown();
+        challengeExecutor = null;
+    }
+
     public void shutdownIssuer() throws Exception {
         if (issuer == null) return;
 
@@ -545,6 +586,7 @@ public class ACMEEngine {
         shutdownMonitors();
         shutdownScheduler();
         shutdownIssuer();
+        shutdownChallengeExecutor();
         shutdownValidators();
         shutdownDatabase();
 
@@ -562,6 +604,18 @@ public class ACMEEngine {
         Date currentTime = new Date();
         ACMENonce nonce = new ACMENonce();
 
+        Date expirationTime = policy.getNonceExpirationTime(currentTime);
+
+        if (statelessNonceManager != null) {
+            nonce.setID(statelessNonceManager.createNonce(expirationTime.getTime()));
+            nonce.setCreationTime(currentTime);
+            nonce.setExpirationTime(expirationTime);
+
+            logger.info("Created nonce: " + nonce);
+
+            return nonce;
+        }
+
         // generate 128-bit nonce with JSS
         // TODO: make it configurable
 
@@ -572,8 +626,6 @@ public class ACMEEngine {
 
         nonce.setID(nonceID);
         nonce.setCreationTime(currentTime);
-
-        Date expirationTime = policy.getNonceExpirationTime(currentTime);
         nonce.setExpirationTime(expirationTime);
 
         if (noncesPersistent) {
@@ -589,6 +641,12 @@ public class ACMEEngine {
 
     public void validateNonce(String value) throws Exception {
 
+        if (statelessNonceManager != null) {
+            statelessNonceManager.validateNonce(value);
+            logger.info("Valid nonce: " + value);
+            return;
+        }
+
         ACMENonce nonce;
 
         if (noncesPersistent) {
@@ -615,8 +673,12 @@ public class ACMEEngine {
 
     public void removeExpiredRecords(Date currentTime) throws Exception {
 
-        if (noncesPersistent) {
+        if (statelessNonceManager != null) {
+            // stateless nonces are not stored
+
+        } else if (noncesPersistent) {
             database.removeExpiredNonces(currentTime);
+
         } else {
             nonces.values().removeIf(n -> !currentTime.before(n.getExpirationTime()));
         }
@@ -815,6 +877,19 @@ public class ACMEEngine {
         database.addOrder(order);
     }
 
+    public void addOrder(
+            ACMEAccount account,
+            ACMEOrder order,
+            Collection<ACMEAuthorization> authorizations) throws Exception {
+
+        for (ACMEAuthorization authorization : authorizations) {
+            authorization.setAccountID(account.getID());
+        }
+
+        order.setAccountID(account.getID());
+        database.addOrder(order, authorizations);
+    }
+
     enum CheckOrderResult { ORDER_ACCOUNT_MISMATCH , ORDER_EXPIRED , ORDER_ACCESS_OK, ORDER_NULL}
 
     public CheckOrderResult checkOrder(ACMEAccount account, ACMEOrder order) {
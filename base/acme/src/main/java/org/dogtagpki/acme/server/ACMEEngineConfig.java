@@ -25,10 +25,15 @@ public class ACMEEngineConfig implements JSONSerializer {
     private Boolean enabled = true;
     private URL baseURL;
     private Boolean noncesPersistent;
+    private Boolean noncesStateless;
+    private Integer noncesWindow;
 
     @JsonProperty("policy")
     private ACMEPolicyConfig policyConfig = new ACMEPolicyConfig();
 
+    @JsonProperty("challenges")
+    private ACMEChallengeConfig challengeConfig = new ACMEChallengeConfig();
+
     public Boolean isEnabled() {
         return enabled;
     }
@@ -53,6 +58,22 @@ public class ACMEEngineConfig implements JSONSerializer {
         this.noncesPersistent = noncesPersistent;
     }
 
+    public Boolean getNoncesStateless() {
+        return noncesStateless;
+    }
+
+    public void setNoncesStateless(Boolean noncesStateless) {
+        this.noncesStateless = noncesStateless;
+    }
+
+    public Integer getNoncesWindow() {
+        return noncesWindow;
+    }
+
+    public void setNoncesWindow(Integer noncesWindow) {
+        this.noncesWindow = noncesWindow;
+    }
+
     public ACMEPolicyConfig getPolicyConfig() {
         return policyConfig;
     }
@@ -61,6 +82,14 @@ public class ACMEEngineConfig implements JSONSerializer {
         this.policyConfig = wildcard;
     }
 
+    public ACMEChallengeConfig getChallengeConfig() {
+        return challengeConfig;
+    }
+
+    public void setChallengeConfig(ACMEChallengeConfig challengeConfig) {
+        this.challengeConfig = challengeConfig;
+    }
+
     public static ACMEEngineConfig fromProperties(Properties props) throws Exception {
 
         ACMEEngineConfig config = new ACMEEngineConfig();
@@ -79,12 +108,25 @@ public class ACMEEngineConfig implements JSONSerializer {
             } else if (key.equals("nonces.persistent")) {
                 config.setNoncePersistent(Boolean.valueOf(value));
 
+            } else if (key.equals("nonces.stateless")) {
+                config.setNoncesStateless(Boolean.valueOf(value));
+
+            } else if (key.equals("nonces.window")) {
+                config.setNoncesWindow(Integer.valueOf(value));
+
             } else if (key.startsWith("policy.")) {
 
                 String policyKey = key.substring(7);
 
                 ACMEPolicyConfig policyConfig = config.getPolicyConfig();
                 policyConfig.setProperty(policyKey, value);
+
+            } else if (key.startsWith("challenges.")) {
+
+                String challengeKey = key.substring(11);
+
+                ACMEChallengeConfig challengeConfig = config.getChallengeConfig();
+                challengeConfig.setProperty(challengeKey, value);
             }
         }
 
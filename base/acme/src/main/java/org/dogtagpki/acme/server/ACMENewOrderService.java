@@ -71,6 +71,7 @@ public class ACMENewOrderService extends ACMEService {
 
         ACMEOrder request = ACMEOrder.fromJSON(payload);
         ArrayList<String> authzIDs = new ArrayList<>();
+        Collection<ACMEAuthorization> authorizations = new ArrayList<>();
 
         // generate 128-bit token for authorization challenges
         // TODO: make it configurable
@@ -143,7 +144,8 @@ public class ACMENewOrderService extends ACMEService {
             Date expirationTime = engine.getPolicy().getPendingAuthorizationExpirationTime(currentTime);
             authorization.setExpirationTime(expirationTime);
 
-            engine.addAuthorization(account, authorization);
+            // store authorizations together with the order
+            authorizations.add(authorization);
 
             authzIDs.add(authzID);
         }
@@ -172,7 +174,7 @@ public class ACMENewOrderService extends ACMEService {
         Date expirationTime = engine.getPolicy().getPendingOrderExpirationTime(currentTime);
         order.setExpirationTime(expirationTime);
 
-        engine.addOrder(account, order);
+        engine.addOrder(account, order, authorizations);
 
         ArrayList<URI> authzURLs = new ArrayList<>();
         for (String authzID : authzIDs) {
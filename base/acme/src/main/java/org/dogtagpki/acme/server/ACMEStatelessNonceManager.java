@@ -0,0 +1,273 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+import org.apache.commons.codec.binary.Base64;
+import org.dogtagpki.acme.ACMEError;
+
+/**
+ * This class creates and validates ACME nonces without storing them.
+ *
+ * A nonce contains the key generation, the expiration time, and a
+ * counter, authenticated with HMAC-SHA256:
+ *
+ * <pre>
+ * generation (1 byte) | expiration (8 bytes) | counter (8 bytes) | HMAC (16 bytes)
+ * </pre>
+ *
+ * The HMAC key is generated randomly when the server starts and is
+ * rotated periodically. The previous key is kept until the nonces
+ * created with it have expired.
+ *
+ * Replay is prevented with a sliding window bitmap indexed by the
+ * counter. The bitmap only exists in the server that created the
+ * nonce, so a nonce is only accepted by that server, and nonces
+ * created before a restart are rejected. Nonces older than the window
+ * are also rejected, so the window should cover the number of nonces
+ * created during the nonce retention period.
+ *
+ * Since the key and the bitmap are not shared, stateless nonces are
+ * only supported with a single ACME server. Invalid nonces are
+ * rejected with a badNonce error so ACME clients can retry with a
+ * new nonce.
+ */
+public class ACMEStatelessNonceManager {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ACMEStatelessNonceManager.class);
+
+    public final static int DEFAULT_WINDOW = 1 << 20; // nonces
+
+    public final static long KEY_ROTATION_INTERVAL = 60 * 60 * 1000; // milliseconds
+
+    public final static String HMAC_ALGORITHM = "HmacSHA256";
+    public final static int KEY_LENGTH = 32; // bytes
+    public final static int HMAC_LENGTH = 16; // bytes
+
+    public final static int DATA_LENGTH = 1 + 8 + 8;
+    public final static int NONCE_LENGTH = DATA_LENGTH + HMAC_LENGTH;
+
+    static class NonceKey {
+
+        int generation;
+        SecretKeySpec key;
+        long creationTime;
+
+        // latest expiration time of the nonces created with this key
+        long lastExpirationTime;
+
+        NonceKey(int generation, byte[] key, long creationTime) {
+            this.generation = generation;
+            this.key = new SecretKeySpec(key, HMAC_ALGORITHM);
+            this.creationTime = creationTime;
+        }
+    }
+
+    SecureRandom random;
+
+    NonceKey currentKey;
+    NonceKey previousKey;
+
+    int windowSize;
+    long[] window;
+    long nextCounter;
+
+    public ACMEStatelessNonceManager(SecureRandom random, int windowSize) {
+
+        this.random = random;
+
+        // round up to a whole number of words
+        this.windowSize = (windowSize + 63) & ~63;
+        this.window = new long[this.windowSize / 64];
+
+        currentKey = createKey(0, System.currentTimeMillis());
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    NonceKey createKey(int generation, long currentTime) {
+        byte[] bytes = new byte[KEY_LENGTH];
+        random.nextBytes(bytes);
+        return new NonceKey(generation, bytes, currentTime);
+    }
+
+    /**
+     * Replaces the current key once it has reached the rotation
+     * interval, unless the previous key is still needed to validate
+     * nonces that have not expired.
+     */
+    void rotateKey(long currentTime) {
+
+        if (currentTime - currentKey.creationTime < KEY_ROTATION_INTERVAL) {
+            return;
+        }
+
+        if (previousKey != null && currentTime < previousKey.lastExpirationTime) {
+            return;
+        }
+
+        logger.info("ACMEStatelessNonceManager: Rotating nonce key");
+
+        previousKey = currentKey;
+        currentKey = createKey(currentKey.generation + 1, currentTime);
+    }
+
+    NonceKey getKey(int generation) {
+
+        if ((currentKey.generation & 0xff) == generation) {
+            return currentKey;
+        }
+
+        if (previousKey != null && (previousKey.generation & 0xff) == generation) {
+            return previousKey;
+        }
+
+        return null;
+    }
+
+    byte[] sign(NonceKey key, byte[] data) throws Exception {
+        Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+        mac.init(key.key);
+        mac.update(data, 0, DATA_LENGTH);
+        return Arrays.copyOf(mac.doFinal(), HMAC_LENGTH);
+    }
+
+    /**
+     * Creates an exception that returns a badNonce error to the client.
+     */
+    static WebApplicationException createBadNonceException(String detail) {
+
+        ResponseBuilder builder = Response.status(Response.Status.BAD_REQUEST);
+        builder.type("application/problem+json");
+
+        ACMEError error = new ACMEError();
+        error.setType("urn:ietf:params:acme:error:badNonce");
+        error.setDetail(detail);
+        builder.entity(error);
+
+        return new WebApplicationException(builder.build());
+    }
+
+    /**
+     * Creates a new nonce.
+     *
+     * @param expirationTime nonce expiration time in milliseconds
+     * @return encoded nonce
+     */
+    public String createNonce(long expirationTime) throws Exception {
+
+        NonceKey key;
+        long counter;
+
+        synchronized (this) {
+
+            rotateKey(System.currentTimeMillis());
+
+            key = currentKey;
+            key.lastExpirationTime = Math.max(key.lastExpirationTime, expirationTime);
+
+            counter = nextCounter++;
+
+            // the slot is reused from a nonce that has left the window
+            int index = (int) (counter % windowSize);
+            window[index >>> 6] &= ~(1L << index);
+        }
+
+        byte[] nonce = new byte[NONCE_LENGTH];
+        nonce[0] = (byte) key.generation;
+        putLong(nonce, 1, expirationTime);
+        putLong(nonce, 9, counter);
+
+        byte[] hmac = sign(key, nonce);
+        System.arraycopy(hmac, 0, nonce, DATA_LENGTH, HMAC_LENGTH);
+
+        return Base64.encodeBase64URLSafeString(nonce);
+    }
+
+    /**
+     * Validates a nonce and marks it as used.
+     *
+     * @param value encoded nonce
+     * @throws WebApplicationException if the nonce is invalid, expired, or has been used
+     */
+    public void validateNonce(String value) throws Exception {
+
+        byte[] nonce = value == null ? null : Base64.decodeBase64(value);
+
+        if (nonce == null || nonce.length != NONCE_LENGTH) {
+            throw createBadNonceException("Invalid nonce: " + value);
+        }
+
+        NonceKey key;
+        synchronized (this) {
+            key = getKey(nonce[0] & 0xff);
+        }
+
+        if (key == null) {
+            throw createBadNonceException("Invalid nonce: " + value);
+        }
+
+        byte[] hmac = sign(key, nonce);
+
+        if (!MessageDigest.isEqual(hmac, Arrays.copyOfRange(nonce, DATA_LENGTH, NONCE_LENGTH))) {
+            throw createBadNonceException("Invalid nonce: " + value);
+        }
+
+        long expirationTime = getLong(nonce, 1);
+
+        if (expirationTime <= System.currentTimeMillis()) {
+            throw createBadNonceException("Expired nonce: " + value);
+        }
+
+        long counter = getLong(nonce, 9);
+
+        synchronized (this) {
+
+            if (counter < 0 || counter >= nextCounter) {
+                throw createBadNonceException("Invalid nonce: " + value);
+            }
+
+            if (counter < nextCounter - windowSize) {
+                throw createBadNonceException("Expired nonce: " + value);
+            }
+
+            int index = (int) (counter % windowSize);
+            long mask = 1L << index;
+
+            if ((window[index >>> 6] & mask) != 0) {
+                throw createBadNonceException("Used nonce: " + value);
+            }
+
+            window[index >>> 6] |= mask;
+        }
+    }
+
+    static void putLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,45 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+/**
+ * This service returns the statistics of the ACME responder
+ * for monitoring.
+ */
+@Path("stats")
+public class ACMEStatsService {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ACMEStatsService.class);
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response handleGET() throws Exception {
+
+        logger.info("Getting ACME statistics");
+
+        ACMEEngine engine = ACMEEngine.getInstance();
+        Map<String, Object> stats = new LinkedHashMap<>();
+
+        ACMEChallengeExecutor challengeExecutor = engine.getChallengeExecutor();
+        if (challengeExecutor != null) {
+            stats.put("challenges", challengeExecutor.getStats());
+        }
+
+        ResponseBuilder builder = Response.ok();
+        builder.entity(stats);
+        return builder.build();
+    }
+}
@@ -27,10 +27,38 @@ public class DNS01Validator extends ACMEValidator {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(DNS01Validator.class);
 
+    public final static int DEFAULT_TIMEOUT = 1000; // milliseconds
+    public final static int DEFAULT_RETRIES = 4;
+
+    Hashtable<String, String> env = new Hashtable<>();
+
     public DNS01Validator() {
         super("DNS-01", "dns-01");
     }
 
+    @Override
+    public void init() throws Exception {
+
+        logger.info("Initializing DNS-01 validator");
+
+        // TODO: remove dependency on Sun's library
+
+        env.put("java.naming.factory.initial", "com.sun.jndi.dns.DnsContextFactory");
+
+        // bound the time spent on each lookup (the timeout is doubled
+        // after each retry)
+
+        String timeout = config == null ? null : config.getParameter("timeout");
+        if (timeout == null) timeout = Integer.toString(DEFAULT_TIMEOUT);
+        logger.info("- timeout: " + timeout);
+        env.put("com.sun.jndi.dns.timeout.initial", timeout);
+
+        String retries = config == null ? null : config.getParameter("retries");
+        if (retries == null) retries = Integer.toString(DEFAULT_RETRIES);
+        logger.info("- retries: " + retries);
+        env.put("com.sun.jndi.dns.timeout.retries", retries);
+    }
+
     public String generateKeyAuthorization(String accountID, ACMEChallenge challenge) throws Exception {
 
         // DNS-01 key authorization
@@ -101,16 +129,19 @@ public class DNS01Validator extends ACMEValidator {
 
         logger.info("Retrieving TXT record: " + recordName);
 
-        // TODO: remove dependency on Sun's library
+        // DirContext is not thread-safe, so each lookup uses its own context
+        DirContext dirContext = new InitialDirContext(env);
 
-        Hashtable<String, String> env = new Hashtable<>();
-        env.put("java.naming.factory.initial", "com.sun.jndi.dns.DnsContextFactory");
+        String response;
+        try {
+            Attributes attrs = dirContext.getAttributes(recordName, new String[] { "TXT" });
 
-        DirContext dirContext = new InitialDirContext(env);
-        Attributes attrs = dirContext.getAttributes(recordName, new String[] { "TXT" });
+            Attribute attr = attrs.get("TXT");
+            response = (String) attr.get();
 
-        Attribute attr = attrs.get("TXT");
-        String response = (String) attr.get();
+        } finally {
+            dirContext.close();
+        }
         logger.info("Response: " + response);
 
         return response;
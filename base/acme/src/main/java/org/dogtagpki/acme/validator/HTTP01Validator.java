@@ -7,13 +7,16 @@ package org.dogtagpki.acme.validator;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.dogtagpki.acme.ACMEAuthorization;
 import org.dogtagpki.acme.ACMEChallenge;
@@ -22,16 +25,83 @@ import org.dogtagpki.acme.ACMEIdentifier;
 import org.dogtagpki.acme.ValidationResult;
 
 /**
+ * This class validates HTTP-01 challenges.
+ *
+ * The validations share a pooled HTTP client such that connections
+ * to the same host can be reused across validations. The number of
+ * connections and the time spent on each validation are bounded by
+ * the validator parameters.
+ *
  * @author Endi S. Dewata
  */
 public class HTTP01Validator extends ACMEValidator {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(HTTP01Validator.class);
 
+    public final static int DEFAULT_MAX_CONNECTIONS = 100;
+    public final static int DEFAULT_MAX_CONNECTIONS_PER_HOST = 2;
+    public final static int DEFAULT_CONNECT_TIMEOUT = 10; // seconds
+    public final static int DEFAULT_SOCKET_TIMEOUT = 10; // seconds
+    public final static int DEFAULT_IDLE_TIMEOUT = 30; // seconds
+
+    CloseableHttpClient httpClient;
+
     public HTTP01Validator() {
         super("HTTP-01", "http-01");
     }
 
+    int getIntParameter(String name, int defaultValue) {
+
+        String value = config == null ? null : config.getParameter(name);
+        int result = value == null ? defaultValue : Integer.parseInt(value);
+
+        logger.info("- " + name + ": " + result);
+        return result;
+    }
+
+    @Override
+    public void init() throws Exception {
+
+        logger.info("Initializing HTTP-01 validator");
+
+        int maxConnections = getIntParameter("maxConnections", DEFAULT_MAX_CONNECTIONS);
+        int maxConnectionsPerHost = getIntParameter("maxConnectionsPerHost", DEFAULT_MAX_CONNECTIONS_PER_HOST);
+        int connectTimeout = getIntParameter("connectTimeout", DEFAULT_CONNECT_TIMEOUT);
+        int socketTimeout = getIntParameter("socketTimeout", DEFAULT_SOCKET_TIMEOUT);
+        int idleTimeout = getIntParameter("idleTimeout", DEFAULT_IDLE_TIMEOUT);
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout * 1000)
+                .setSocketTimeout(socketTimeout * 1000)
+                // wait for a pooled connection no longer than for a new one
+                .setConnectionRequestTimeout(connectTimeout * 1000)
+                .build();
+
+        // The validations are done on behalf of different accounts,
+        // so no cookies or credentials are kept between them.
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .disableCookieManagement()
+                .disableAuthCaching()
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeout, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @Override
+    public void close() throws Exception {
+
+        if (httpClient == null) return;
+
+        httpClient.close();
+        httpClient = null;
+    }
+
     @Override
     public ValidationResult validateChallenge(
             ACMEAuthorization authorization,
@@ -110,18 +180,15 @@ public class HTTP01Validator extends ACMEValidator {
 
         logger.info("Retrieving " + validationURL);
 
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         HttpGet httpGet = new HttpGet(validationURL);
-        CloseableHttpResponse httpResponse = httpClient.execute(httpGet);
 
         String response;
-        try {
+        try (CloseableHttpResponse httpResponse = httpClient.execute(httpGet)) {
+
+            // consuming the entity releases the connection back to the pool
             HttpEntity entity = httpResponse.getEntity();
             response = IOUtils.toString(entity.getContent(), "UTF-8").trim();
             EntityUtils.consume(entity);
-
-        } finally {
-            httpResponse.close();
         }
 
         logger.info("Response: " + response);
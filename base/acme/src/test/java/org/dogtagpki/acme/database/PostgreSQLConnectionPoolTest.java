@@ -0,0 +1,207 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+public class PostgreSQLConnectionPoolTest {
+
+    /**
+     * State of a fake JDBC connection.
+     */
+    static class ConnectionState {
+        boolean closed;
+        boolean valid = true;
+        boolean autoCommit = true;
+        int rollbacks;
+    }
+
+    /**
+     * Connection pool that creates fake JDBC connections.
+     */
+    static class TestConnectionPool extends PostgreSQLConnectionPool {
+
+        List<ConnectionState> states = new ArrayList<>();
+
+        TestConnectionPool(int maxSize) {
+            super("jdbc:postgresql://localhost/acme", new Properties());
+            setMaxSize(maxSize);
+            setTimeout(0);
+            init();
+        }
+
+        @Override
+        protected Connection connect() {
+
+            ConnectionState state = new ConnectionState();
+            states.add(state);
+
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                        case "isClosed":
+                            return state.closed;
+                        case "isValid":
+                            return !state.closed && state.valid;
+                        case "close":
+                            state.closed = true;
+                            return null;
+                        case "setAutoCommit":
+                            state.autoCommit = (Boolean) args[0];
+                            return null;
+                        case "rollback":
+                            state.rollbacks++;
+                            return null;
+                        case "commit":
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void testAcquireAndRelease() throws Exception {
+
+        TestConnectionPool pool = new TestConnectionPool(2);
+
+        PostgreSQLConnection connection1 = pool.getConnection();
+        assertEquals(1, pool.getActiveConnections());
+        assertEquals(0, pool.getIdleConnections());
+
+        connection1.close();
+        assertTrue(connection1.isClosed());
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(1, pool.getIdleConnections());
+
+        // the idle connection is reused
+        PostgreSQLConnection connection2 = pool.getConnection();
+        assertSame(connection1.getConnection(), connection2.getConnection());
+        assertEquals(1, pool.states.size());
+
+        // a new connection is created if there is no idle connection
+        PostgreSQLConnection connection3 = pool.getConnection();
+        assertNotSame(connection2.getConnection(), connection3.getConnection());
+        assertEquals(2, pool.states.size());
+
+        // all connections are in use
+        assertThrows(SQLException.class, () -> pool.getConnection());
+
+        connection2.close();
+        connection3.close();
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(2, pool.getIdleConnections());
+
+        pool.close();
+        assertEquals(0, pool.getIdleConnections());
+        assertTrue(pool.states.get(0).closed);
+        assertTrue(pool.states.get(1).closed);
+        assertThrows(SQLException.class, () -> pool.getConnection());
+    }
+
+    @Test
+    public void testDoubleClose() throws Exception {
+
+        TestConnectionPool pool = new TestConnectionPool(2);
+
+        PostgreSQLConnection connection1 = pool.getConnection();
+        connection1.close();
+        connection1.close();
+
+        // the connection is returned only once
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(1, pool.getIdleConnections());
+
+        PostgreSQLConnection connection2 = pool.getConnection();
+        assertSame(connection1.getConnection(), connection2.getConnection());
+
+        // closing the previous wrapper does not return
+        // the connection that is now used by another borrower
+        connection1.close();
+        assertEquals(1, pool.getActiveConnections());
+        assertEquals(0, pool.getIdleConnections());
+
+        assertThrows(SQLException.class, () -> connection1.prepareStatement("SELECT 1"));
+        assertThrows(SQLException.class, () -> connection1.begin());
+
+        PostgreSQLConnection connection3 = pool.getConnection();
+        assertNotSame(connection2.getConnection(), connection3.getConnection());
+
+        // the pool does not exceed the maximum size
+        assertThrows(SQLException.class, () -> pool.getConnection());
+
+        connection2.close();
+        connection3.close();
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(2, pool.getIdleConnections());
+    }
+
+    @Test
+    public void testBrokenConnection() throws Exception {
+
+        TestConnectionPool pool = new TestConnectionPool(2);
+
+        // a connection closed while borrowed is not returned to the pool
+        PostgreSQLConnection connection1 = pool.getConnection();
+        pool.states.get(0).closed = true;
+        connection1.close();
+
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(0, pool.getIdleConnections());
+
+        // an idle connection that is no longer valid is discarded
+        PostgreSQLConnection connection2 = pool.getConnection();
+        connection2.close();
+        assertEquals(1, pool.getIdleConnections());
+
+        pool.setValidationInterval(0);
+        pool.states.get(1).valid = false;
+
+        PostgreSQLConnection connection3 = pool.getConnection();
+        assertNotSame(connection2.getConnection(), connection3.getConnection());
+        assertTrue(pool.states.get(1).closed);
+        assertEquals(3, pool.states.size());
+        assertEquals(1, pool.getActiveConnections());
+        assertEquals(0, pool.getIdleConnections());
+    }
+
+    @Test
+    public void testIncompleteTransaction() throws Exception {
+
+        TestConnectionPool pool = new TestConnectionPool(1);
+
+        PostgreSQLConnection connection = pool.getConnection();
+        connection.begin();
+        assertFalse(pool.states.get(0).autoCommit);
+
+        // the transaction is rolled back before the connection is reused
+        connection.close();
+        assertEquals(1, pool.states.get(0).rollbacks);
+        assertTrue(pool.states.get(0).autoCommit);
+        assertEquals(1, pool.getIdleConnections());
+    }
+}
@@ -0,0 +1,275 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import org.dogtagpki.acme.ACMEAuthorization;
+import org.dogtagpki.acme.ACMEChallenge;
+import org.dogtagpki.acme.ACMEError;
+import org.dogtagpki.acme.ValidationResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class ACMEChallengeExecutorTest {
+
+    static final int RETRY_DELAY = 60; // seconds
+
+    ACMEChallengeExecutor executor;
+
+    /**
+     * Challenge processor that returns the results provided by the test
+     * and records the final result instead of updating the database.
+     */
+    static class TestProcessor extends ACMEChallengeProcessor {
+
+        BlockingQueue<ValidationResult> results = new LinkedBlockingQueue<>();
+        BlockingQueue<ValidationResult> finalResults = new LinkedBlockingQueue<>();
+        CountDownLatch started = new CountDownLatch(1);
+
+        TestProcessor(String authzID, String challengeID) {
+            super(null, createAuthorization(authzID), createChallenge(challengeID), null);
+        }
+
+        @Override
+        public ValidationResult validateChallenge() {
+            attempts++;
+            started.countDown();
+            try {
+                return results.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return fail();
+            }
+        }
+
+        @Override
+        public void finalizeAuthorization(ValidationResult r) {
+            finalResults.add(r);
+        }
+
+        ValidationResult getFinalResult() throws Exception {
+            return finalResults.poll(5, TimeUnit.SECONDS);
+        }
+    }
+
+    static ACMEAuthorization createAuthorization(String authzID) {
+        ACMEAuthorization authorization = new ACMEAuthorization();
+        authorization.setID(authzID);
+        return authorization;
+    }
+
+    static ACMEChallenge createChallenge(String challengeID) {
+        ACMEChallenge challenge = new ACMEChallenge();
+        challenge.setID(challengeID);
+        return challenge;
+    }
+
+    static ValidationResult fail() {
+        ACMEError error = new ACMEError();
+        error.setType("urn:ietf:params:acme:error:connection");
+        return ValidationResult.fail(error);
+    }
+
+    ACMEChallengeExecutor createExecutor(int queueSize, int maxAttempts) throws Exception {
+
+        ACMEChallengeConfig config = new ACMEChallengeConfig();
+        config.setThreads(1);
+        config.setQueueSize(queueSize);
+        config.setMaxAttempts(maxAttempts);
+        config.setRetryDelay(RETRY_DELAY);
+        config.setMaxRetryDelay(RETRY_DELAY);
+
+        executor = new ACMEChallengeExecutor();
+        executor.setConfig(config);
+        executor.init();
+
+        return executor;
+    }
+
+    /**
+     * Waits until the attempt after the specified attempt is scheduled.
+     */
+    void waitForRetry(ACMEChallengeProcessor processor, int attempts) throws Exception {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < timeout) {
+            synchronized (processor) {
+                if (processor.getAttempts() == attempts && processor.future != null) return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Challenge " + processor.getChallenge().getID() + " was not rescheduled");
+    }
+
+    /**
+     * Waits until the specified number of challenges is completed.
+     */
+    void waitForCompletion(long completedChallenges) throws Exception {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < timeout) {
+            if (executor.getCompletedChallenges() == completedChallenges) return;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Challenges were not completed");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSubmit() throws Exception {
+
+        createExecutor(10, 3);
+
+        TestProcessor processor = new TestProcessor("authz1", "chall1");
+        processor.results.add(ValidationResult.ok());
+
+        assertTrue(executor.submit(processor));
+
+        assertTrue(processor.getFinalResult().isOK());
+        assertEquals(1, processor.getAttempts());
+        waitForCompletion(1);
+
+        Map<String, Object> stats = executor.getStats();
+        assertEquals(1L, stats.get("submittedChallenges"));
+        assertEquals(1L, stats.get("completedChallenges"));
+        assertEquals(1L, stats.get("validationAttempts"));
+        assertEquals(0L, stats.get("rejectedChallenges"));
+
+        // the authorization can be validated again once it is completed
+        assertEquals(0, executor.getPendingChallenges());
+    }
+
+    @Test
+    public void testSameAuthorization() throws Exception {
+
+        createExecutor(10, 3);
+
+        TestProcessor processor1 = new TestProcessor("authz1", "chall1");
+        assertTrue(executor.submit(processor1));
+        assertTrue(processor1.started.await(5, TimeUnit.SECONDS));
+
+        // only one challenge per authorization is processed at a time
+        TestProcessor processor2 = new TestProcessor("authz1", "chall2");
+        assertFalse(executor.submit(processor2));
+        assertEquals(1, executor.getPendingChallenges());
+
+        processor1.results.add(ValidationResult.ok());
+        assertTrue(processor1.getFinalResult().isOK());
+        assertEquals(0, processor2.getAttempts());
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+
+        createExecutor(2, 3);
+
+        TestProcessor processor1 = new TestProcessor("authz1", "chall1");
+        TestProcessor processor2 = new TestProcessor("authz2", "chall2");
+        TestProcessor processor3 = new TestProcessor("authz3", "chall3");
+
+        assertTrue(executor.submit(processor1));
+        assertTrue(processor1.started.await(5, TimeUnit.SECONDS));
+
+        // the second challenge waits for the thread
+        assertTrue(executor.submit(processor2));
+        assertEquals(2, executor.getPendingChallenges());
+        assertEquals(1, executor.getQueuedAttempts());
+
+        // the third challenge exceeds the queue size
+        WebApplicationException e = assertThrows(
+                WebApplicationException.class,
+                () -> executor.submit(processor3));
+
+        Response response = e.getResponse();
+        assertEquals(429, response.getStatus());
+        assertEquals(String.valueOf(RETRY_DELAY), response.getHeaderString("Retry-After"));
+
+        ACMEError error = (ACMEError) response.getEntity();
+        assertEquals("urn:ietf:params:acme:error:rateLimited", error.getType());
+
+        assertEquals(2, executor.getPendingChallenges());
+        assertEquals(1, executor.getRejectedChallenges());
+
+        // the rejected challenge can be submitted once the queue drains
+        processor1.results.add(ValidationResult.ok());
+        processor2.results.add(ValidationResult.ok());
+        assertTrue(processor1.getFinalResult().isOK());
+        assertTrue(processor2.getFinalResult().isOK());
+
+        processor3.results.add(ValidationResult.ok());
+        assertTrue(executor.submit(processor3));
+        assertTrue(processor3.getFinalResult().isOK());
+        waitForCompletion(3);
+
+        assertEquals(4, executor.getSubmittedChallenges());
+        assertEquals(3, executor.getCompletedChallenges());
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+
+        createExecutor(10, 3);
+
+        TestProcessor processor = new TestProcessor("authz1", "chall1");
+        processor.results.add(fail());
+
+        assertTrue(executor.submit(processor));
+
+        // the failed attempt is scheduled after the retry delay
+        waitForRetry(processor, 1);
+        assertTrue(processor.finalResults.isEmpty());
+
+        // the client retry moves the next attempt forward
+        processor.results.add(ValidationResult.ok());
+        assertTrue(executor.retry("authz1"));
+
+        assertTrue(processor.getFinalResult().isOK());
+        assertEquals(2, processor.getAttempts());
+        assertEquals(2, executor.getValidationAttempts());
+        waitForCompletion(1);
+
+        // the authorization is no longer being validated
+        assertFalse(executor.retry("authz1"));
+    }
+
+    @Test
+    public void testMaxAttempts() throws Exception {
+
+        createExecutor(10, 2);
+
+        TestProcessor processor = new TestProcessor("authz1", "chall1");
+        processor.results.add(fail());
+
+        assertTrue(executor.submit(processor));
+        waitForRetry(processor, 1);
+
+        // the last attempt finalizes the authorization as invalid
+        processor.results.add(fail());
+        assertTrue(executor.retry("authz1"));
+
+        assertFalse(processor.getFinalResult().isOK());
+        assertEquals(2, processor.getAttempts());
+        waitForCompletion(1);
+        assertEquals(0, executor.getPendingChallenges());
+    }
+}
@@ -0,0 +1,222 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.acme.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.security.SecureRandom;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.codec.binary.Base64;
+import org.dogtagpki.acme.ACMEError;
+import org.junit.jupiter.api.Test;
+
+public class ACMEStatelessNonceManagerTest {
+
+    static final long NONCE_EXPIRATION = 30 * 60 * 1000; // milliseconds
+
+    SecureRandom random = new SecureRandom();
+
+    long getExpirationTime() {
+        return System.currentTimeMillis() + NONCE_EXPIRATION;
+    }
+
+    void assertBadNonce(ACMEStatelessNonceManager manager, String nonce) {
+
+        WebApplicationException e = assertThrows(
+                WebApplicationException.class,
+                () -> manager.validateNonce(nonce));
+
+        Response response = e.getResponse();
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+
+        ACMEError error = (ACMEError) response.getEntity();
+        assertEquals("urn:ietf:params:acme:error:badNonce", error.getType());
+    }
+
+    @Test
+    public void testValidNonce() throws Exception {
+
+        ACMEStatelessNonceManager manager = new ACMEStatelessNonceManager(random, 1024);
+
+        String nonce1 = manager.createNonce(getExpirationTime());
+        String nonce2 = manager.createNonce(getExpirationTime());
+
+        // nonces can be used in any order
+        manager.validateNonce(nonce2);
+        manager.validateNonce(nonce1);
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+
+        ACMEStatelessNonceManager manager = new ACMEStatelessNonceManager(random, 1024);
+
+        String nonce = manager.createNonce(getExpirationTime());
+        manager.validateNonce(nonce);
+
+        assertBadNonce(manager, nonce);
+    }
+
+    @Test
+    public void testExpiredNonce() throws Exception {
+
+        ACMEStatelessNonceManager manager = new ACMEStatelessNonceManager(random, 1024);
+
+        String nonce = manager.createNonce(System.currentTimeMillis() - 1);
+
+        assertBadNonce(manager, nonce);
+    }
+
+    @Test
+    public void testWindowEdge() throws Exception {
+
+        ACMEStatelessNonceManager manager = new ACMEStatelessNonceManager(random, 64);
+        assertEquals(64, manager.getWindowSize());
+
+        String[] nonces = new String[65];
+        for (int i = 0; i < nonces.length; i++) {
+            nonces[i] = manager.createNonce(getExpirationTime());
+        }
+
+        // the first nonce has left the window
+        assertBadNonce(manager, nonces[0]);
+
+        // the second nonce is the oldest one in the window
+        manager.validateNonce(nonces[1]);
+        assertBadNonce(manager, nonces[1]);
+
+        // the last nonce reuses the slot of the first nonce
+        manager.validateNonce(nonces[64]);
+        assertBadNonce(manager, nonces[64]);
+        assertBadNonce(manager, nonces[0]);
+    }
+
+    @Test
+    public void testWindowSlotReuse() throws Exception {
+
+        ACMEStatelessNonceManager manager = new ACMEStatelessNonceManager(random, 64);
+
+        String nonce = manager.createNonce(getExpirationTime());
+        manager.validateNonce(nonce);
+
+        // the slot of the used nonce is cleared for a new nonce
+        for (int i = 0; i < 63; i++) {
+            manager.createNonce(getExpirationTime());
+        }
+
+        manager.validateNonce(manager.createNonce(getExpirationTime()));
+    }
+
+    @Test
+    public void testKeyRotation() throws Exception {
+
+        ACMEStatelessNonceManager manager = new ACMEStatelessNonceManager(random, 1024);
+
+        long interval = ACMEStatelessNonceManager.KEY_ROTATION_INTERVAL;
+        long currentTime = System.currentTimeMillis();
+        ACMEStatelessNonceManager.NonceKey key1 = manager.currentKey;
+
+        // nonce that expires after three rotation intervals
+        String nonce1 = manager.createNonce(currentTime + 3 * interval);
+
+        // the key is not rotated before the rotation interval
+        manager.rotateKey(currentTime + interval / 2);
+        assertSame(key1, manager.currentKey);
+
+        manager.rotateKey(currentTime + interval);
+
+        ACMEStatelessNonceManager.NonceKey key2 = manager.currentKey;
+        assertEquals(key1.generation + 1, key2.generation);
+        assertSame(key1, manager.previousKey);
+
+        // nonces created with the previous key are still valid
+        String nonce2 = manager.createNonce(getExpirationTime());
+        manager.validateNonce(nonce1);
+        manager.validateNonce(nonce2);
+
+        String nonce3 = manager.createNonce(getExpirationTime());
+        String nonce4 = manager.createNonce(getExpirationTime());
+
+        // the key is not rotated while the previous key has unexpired nonces
+        manager.rotateKey(currentTime + 2 * interval);
+        assertSame(key2, manager.currentKey);
+        assertSame(key1, manager.previousKey);
+
+        // the previous key is removed once its nonces have expired
+        manager.rotateKey(currentTime + 3 * interval);
+        ACMEStatelessNonceManager.NonceKey key3 = manager.currentKey;
+        assertEquals(key2.generation + 1, key3.generation);
+        assertSame(key2, manager.previousKey);
+
+        manager.validateNonce(nonce3);
+
+        manager.rotateKey(currentTime + 4 * interval);
+        assertSame(key3, manager.previousKey);
+
+        // nonces created with a removed key are rejected
+        assertBadNonce(manager, nonce4);
+    }
+
+    @Test
+    public void testGenerationWrap() throws Exception {
+
+        ACMEStatelessNonceManager manager = new ACMEStatelessNonceManager(random, 1024);
+
+        long currentTime = System.currentTimeMillis();
+        manager.currentKey = manager.createKey(255, currentTime);
+
+        String nonce1 = manager.createNonce(getExpirationTime());
+
+        currentTime += ACMEStatelessNonceManager.KEY_ROTATION_INTERVAL;
+        manager.rotateKey(currentTime);
+        assertEquals(256, manager.currentKey.generation);
+
+        // the generation is encoded in a single byte
+        String nonce2 = manager.createNonce(getExpirationTime());
+        assertEquals(0, Base64.decodeBase64(nonce2)[0]);
+
+        manager.validateNonce(nonce1);
+        manager.validateNonce(nonce2);
+    }
+
+    @Test
+    public void testTamperedNonce() throws Exception {
+
+        ACMEStatelessNonceManager manager = new ACMEStatelessNonceManager(random, 1024);
+
+        String nonce = manager.createNonce(getExpirationTime());
+        byte[] bytes = Base64.decodeBase64(nonce);
+
+        // change the generation, the expiration time, the counter, and the HMAC
+        for (int offset : new int[] { 0, 1, 9, ACMEStatelessNonceManager.DATA_LENGTH }) {
+            byte[] tampered = bytes.clone();
+            tampered[offset] ^= 1;
+            assertBadNonce(manager, Base64.encodeBase64URLSafeString(tampered));
+        }
+
+        // nonce signed with another key
+        ACMEStatelessNonceManager otherManager = new ACMEStatelessNonceManager(random, 1024);
+        assertBadNonce(manager, otherManager.createNonce(getExpirationTime()));
+
+        // the original nonce is still valid
+        manager.validateNonce(nonce);
+    }
+
+    @Test
+    public void testMalformedNonce() throws Exception {
+
+        ACMEStatelessNonceManager manager = new ACMEStatelessNonceManager(random, 1024);
+
+        assertBadNonce(manager, null);
+        assertBadNonce(manager, "");
+        assertBadNonce(manager, Base64.encodeBase64URLSafeString(new byte[10]));
+    }
+}
@@ -51,6 +51,8 @@ public final class CASigningUnit extends SigningUnit {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CASigningUnit.class);
 
+    private SignaturePool signaturePool;
+
     public CASigningUnit() {
     }
 
@@ -131,6 +133,15 @@ public final class CASigningUnit extends SigningUnit {
             mDefSigningAlgorithm = checkSigningAlgorithmFromName(mDefSigningAlgname);
             logger.debug("CASigningUnit: signing algorithm: " + mDefSigningAlgorithm);
 
+            int signaturePoolSize = config.getSignaturePoolSize();
+            logger.debug("CASigningUnit: signature pool size: " + signaturePoolSize);
+
+            if (signaturePoolSize > 0) {
+                signaturePool = new SignaturePool(mToken, mPrivk, signaturePoolSize);
+            } else {
+                signaturePool = null;
+            }
+
             mInited = true;
 
         } catch (java.security.cert.CertificateException e) {
@@ -151,6 +162,45 @@ public final class CASigningUnit extends SigningUnit {
         }
     }
 
+    /**
+     * Returns the pool of signature contexts used by sign(),
+     * or null if the pool is disabled.
+     */
+    public SignaturePool getSignaturePool() {
+        return signaturePool;
+    }
+
+    /**
+     * Returns a signature context initialized with the signing key
+     * for signing data incrementally.
+     *
+     * @param algname is expected to be one of JCA's algorithm names.
+     */
+    public Signature getSigner(String algname) throws Exception {
+
+        if (!mInited) {
+            throw new EBaseException("CASigningUnit not initialized");
+        }
+
+        SignatureAlgorithm signAlg = mDefSigningAlgorithm;
+
+        if (algname != null) {
+            signAlg = checkSigningAlgorithmFromName(algname);
+        }
+
+        logger.info("CASigningUnit: Getting algorithm context for " + algname + " " + signAlg);
+        Signature signer = mToken.getSignatureContext(signAlg);
+
+        signer.initSign(mPrivk);
+
+        boolean testSignatureFailure = mConfig.getTestSignatureFailure();
+        if (testSignatureFailure) {
+            throw new SignatureException("SignatureException forced for testing");
+        }
+
+        return signer;
+    }
+
     /**
      * @param algname is expected to be one of JCA's algorithm names.
      */
@@ -169,7 +219,18 @@ public final class CASigningUnit extends SigningUnit {
             signAlg = checkSigningAlgorithmFromName(algname);
         }
 
-        // XXX use a pool of signers based on alg ?
+        SignaturePool pool = signaturePool;
+        if (pool != null) {
+
+            boolean testSignatureFailure = mConfig.getTestSignatureFailure();
+            if (testSignatureFailure) {
+                throw new SignatureException("SignatureException forced for testing");
+            }
+
+            logger.info("CASigningUnit: Signing with " + algname + " " + signAlg);
+            return pool.sign(data, signAlg);
+        }
+
         // XXX Map algor. name to id. hack: use hardcoded define for now.
         logger.info("CASigningUnit: Getting algorithm context for " + algname + " " + signAlg);
         Signature signer = mToken.getSignatureContext(signAlg);
@@ -0,0 +1,254 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+import com.netscape.cmscore.dbs.CRLCacheDelta;
+import com.netscape.cmscore.dbs.RevokedCertsMapper;
+
+/**
+ * This class implements an append-only journal of CRL cache changes
+ * stored in a local file.
+ *
+ * Each change to the revoked, unrevoked, or expired certificates is
+ * appended as a small record instead of rewriting the CRL cache in the
+ * CRL issuing point record. The journal is replayed on top of the CRL
+ * cache loaded from the CRL issuing point record at startup, and it is
+ * truncated once the CRL cache has been saved into the record.
+ *
+ * Record layout: [length][table][CRLCacheDelta][CRC32]. A partially
+ * written record at the end of the file is discarded during replay.
+ */
+public class CRLCacheJournal implements AutoCloseable {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CRLCacheJournal.class);
+
+    public static final byte REVOKED_CERTS = 1;
+    public static final byte UNREVOKED_CERTS = 2;
+    public static final byte EXPIRED_CERTS = 3;
+
+    static final int MAGIC = 0x43524c4a; // CRLJ
+    static final int HEADER_SIZE = 4;
+
+    // max size of a single record
+    static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private Path file;
+    private FileChannel channel;
+    private boolean sync;
+    private int entries;
+
+    public CRLCacheJournal(Path file, boolean sync) throws IOException {
+
+        this.file = file;
+        this.sync = sync;
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        channel = FileChannel.open(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        if (channel.size() < HEADER_SIZE) {
+            writeHeader();
+        }
+
+        channel.position(channel.size());
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of records appended or replayed since
+     * the journal was last truncated.
+     */
+    public synchronized int getEntries() {
+        return entries;
+    }
+
+    void writeHeader() throws IOException {
+
+        channel.truncate(0);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.flip();
+
+        channel.write(buffer, 0);
+        channel.position(HEADER_SIZE);
+
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Appends a change to the journal.
+     *
+     * @param table REVOKED_CERTS, UNREVOKED_CERTS, or EXPIRED_CERTS
+     * @param delta changes to the table
+     */
+    public synchronized void append(byte table, CRLCacheDelta delta) throws IOException {
+
+        if (delta.isEmpty()) {
+            return;
+        }
+
+        byte[] data = RevokedCertsMapper.encode(delta, false);
+
+        CRC32 crc = new CRC32();
+        crc.update(table);
+        crc.update(data);
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 1 + data.length + 4);
+        buffer.putInt(data.length);
+        buffer.put(table);
+        buffer.put(data);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        if (sync) {
+            channel.force(false);
+        }
+
+        entries++;
+    }
+
+    /**
+     * Applies the journal records to the given tables in the order
+     * they were appended.
+     *
+     * @return number of records replayed
+     */
+    public synchronized int replay(
+            Map<BigInteger, RevokedCertificate> revokedCerts,
+            Map<BigInteger, RevokedCertificate> unrevokedCerts,
+            Map<BigInteger, RevokedCertificate> expiredCerts) throws IOException {
+
+        long size = channel.size();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            logger.warn("CRLCacheJournal: Invalid journal file: " + file);
+            writeHeader();
+            entries = 0;
+            return 0;
+        }
+
+        long position = HEADER_SIZE;
+        int count = 0;
+
+        while (position < size) {
+
+            ByteBuffer prefix = ByteBuffer.allocate(5);
+            if (channel.read(prefix, position) < 5) {
+                break;
+            }
+            prefix.flip();
+
+            int length = prefix.getInt();
+            byte table = prefix.get();
+
+            if (length < 0 || length > MAX_RECORD_SIZE || position + 5 + length + 4 > size) {
+                break;
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(length + 4);
+            channel.read(record, position + 5);
+            record.flip();
+
+            byte[] data = new byte[length];
+            record.get(data);
+
+            CRC32 crc = new CRC32();
+            crc.update(table);
+            crc.update(data);
+
+            if (record.getInt() != (int) crc.getValue()) {
+                break;
+            }
+
+            Map<BigInteger, RevokedCertificate> certs;
+            switch (table) {
+            case REVOKED_CERTS:
+                certs = revokedCerts;
+                break;
+            case UNREVOKED_CERTS:
+                certs = unrevokedCerts;
+                break;
+            case EXPIRED_CERTS:
+                certs = expiredCerts;
+                break;
+            default:
+                throw new IOException("Invalid CRL cache journal table: " + table);
+            }
+
+            RevokedCertsMapper.decode(data, certs);
+
+            position += 5 + length + 4;
+            count++;
+        }
+
+        if (position < size) {
+            logger.warn("CRLCacheJournal: Discarding incomplete record at " + position + " in " + file);
+            channel.truncate(position);
+        }
+
+        channel.position(position);
+        entries = count;
+
+        return count;
+    }
+
+    /**
+     * Removes all records from the journal.
+     */
+    public synchronized void truncate() throws IOException {
+        writeHeader();
+        entries = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+}
@@ -19,15 +19,20 @@ package com.netscape.ca;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TimeZone;
 import java.util.Vector;
+import java.util.stream.Collectors;
 
 import org.dogtagpki.server.ca.CAConfig;
 import org.dogtagpki.server.ca.CAEngine;
@@ -64,6 +69,7 @@ import com.netscape.certsrv.logging.event.FullCRLPublishingEvent;
 import com.netscape.certsrv.request.IRequestVirtualList;
 import com.netscape.certsrv.request.RequestId;
 import com.netscape.cmscore.apps.CMS;
+import com.netscape.cmscore.dbs.CRLCacheDelta;
 import com.netscape.cmscore.dbs.CRLIssuingPointRecord;
 import com.netscape.cmscore.dbs.CRLRepository;
 import com.netscape.cmscore.dbs.CertRecord;
@@ -161,7 +167,7 @@ public class CRLIssuingPoint implements Runnable {
     /**
      * CRL cache
      */
-    private Hashtable<BigInteger, RevokedCertificate> mCRLCerts = new Hashtable<>();
+    private Map<BigInteger, RevokedCertificate> mCRLCerts = new Hashtable<>();
     private Hashtable<BigInteger, RevokedCertificate> mRevokedCerts = new Hashtable<>();
     private Hashtable<BigInteger, RevokedCertificate> mUnrevokedCerts = new Hashtable<>();
     private Hashtable<BigInteger, RevokedCertificate> mExpiredCerts = new Hashtable<>();
@@ -348,6 +354,31 @@ public class CRLIssuingPoint implements Runnable {
 
     private boolean mSaveMemory = false;
 
+    /**
+     * CRL cache implementation: hashtable or compact
+     */
+    private String mRevocationIndex = "hashtable";
+    private String mRevocationIndexFile;
+
+    /**
+     * Generate full CRL with StreamingCRLBuilder
+     */
+    private boolean mStreamFullCRL = false;
+    private String mSpoolDir;
+
+    /**
+     * Journal of CRL cache changes
+     */
+    private CRLCacheJournal mJournal;
+    private int mJournalMaxEntries;
+
+    /**
+     * Serial number ranges processed concurrently when rebuilding CRL cache
+     */
+    private int mRevokedCertsPartitions = 1;
+    private int mRevokedCertsThreads;
+    private volatile CertStatusUpdateTask.RangeTimer[] mPartitionTimers = new CertStatusUpdateTask.RangeTimer[0];
+
     /**
      * One time config flag that we have an updated schedule and we want it
      * followed immediately after startup.
@@ -886,6 +917,47 @@ public class CRLIssuingPoint implements Runnable {
 
         mSaveMemory = config.getSaveMemory();
 
+        mRevocationIndex = config.getRevocationIndex();
+        mRevocationIndexFile = config.getRevocationIndexFile();
+        logger.debug("CRLIssuingPoint: revocation index: " + mRevocationIndex);
+
+        if (!"hashtable".equals(mRevocationIndex) && !"compact".equals(mRevocationIndex)) {
+            throw new EBaseException(
+                    CMS.getUserMessage("CMS_BASE_INVALID_PROPERTY_1",
+                            "revocationIndex", "String", "hashtable or compact"));
+        }
+        mCRLCerts = createCRLCache(null);
+
+        mStreamFullCRL = config.getStreamFullCRL();
+        mSpoolDir = config.getSpoolDir();
+        logger.debug("CRLIssuingPoint: stream full CRL: " + mStreamFullCRL);
+
+        mRevokedCertsPartitions = config.getRevokedCertsPartitions();
+        mRevokedCertsThreads = config.getRevokedCertsThreads();
+        logger.debug("CRLIssuingPoint: revoked certs partitions: " + mRevokedCertsPartitions);
+
+        if (mRevokedCertsPartitions < 1 || mRevokedCertsThreads < 1) {
+            throw new EBaseException(
+                    CMS.getUserMessage("CMS_BASE_INVALID_PROPERTY_1",
+                            "revokedCertsPartitions", "int", "positive number"));
+        }
+
+        if (config.getCacheJournal()) {
+            String journalFile = config.getCacheJournalFile();
+            Path journalPath = journalFile == null
+                    ? Paths.get(CMS.getInstanceDir(), "ca", "crl", mId + ".journal")
+                    : Paths.get(journalFile);
+            logger.debug("CRLIssuingPoint: CRL cache journal: " + journalPath);
+
+            mJournalMaxEntries = config.getCacheJournalMaxEntries();
+
+            try {
+                mJournal = new CRLCacheJournal(journalPath, config.getCacheJournalSync());
+            } catch (IOException e) {
+                throw new EBaseException("Unable to open CRL cache journal " + journalPath + ": " + e.getMessage(), e);
+            }
+        }
+
         mCMSCRLExtensions = new CMSCRLExtensions(this, config);
 
         mExtendedNextUpdate = (
@@ -913,6 +985,40 @@ public class CRLIssuingPoint implements Runnable {
         logger.debug("CRLIssuingPoint: forbid future thisUpdate: " + mForbidCustomFutureThisUpdateValue);
     }
 
+    /**
+     * Creates CRL cache according to the revocationIndex parameter.
+     *
+     * @param crlCerts initial CRL cache content, or null
+     * @return CRL cache
+     */
+    protected Map<BigInteger, RevokedCertificate> createCRLCache(
+            Map<BigInteger, RevokedCertificate> crlCerts) {
+
+        if (!"compact".equals(mRevocationIndex)) {
+            if (crlCerts == null) {
+                return new Hashtable<>();
+            }
+            if (crlCerts instanceof Hashtable) {
+                return crlCerts;
+            }
+            return new Hashtable<>(crlCerts);
+        }
+
+        Path file = mRevocationIndexFile == null ? null : Paths.get(mRevocationIndexFile);
+        CompactRevocationIndex index = new CompactRevocationIndex(file);
+
+        if (crlCerts != null) {
+            // merge the whole CRL at once instead of in overlay-sized steps
+            index.setCompactionThreshold(Integer.MAX_VALUE);
+            index.putAll(crlCerts);
+            index.compact();
+            index.setCompactionThreshold(CompactRevocationIndex.DEFAULT_COMPACTION_THRESHOLD);
+            logger.debug("CRLIssuingPoint: - packed CRL cache size: " + index.getPackedSize());
+        }
+
+        return index;
+    }
+
     /**
      * Reads CRL issuing point, if missing, it creates one.
      * Initializes CRL cache and republishes CRL if requested
@@ -1016,6 +1122,7 @@ public class CRLIssuingPoint implements Runnable {
                         if (mEnableCRLCache) {
                             logger.info("CRLIssuingPoint: Loading CRL cache");
 
+                            boolean replayed = true;
                             if (mCRLCacheIsCleared && mUpdatingCRL == CRL_UPDATE_DONE) {
                                 mRevokedCerts = crlRecord.getRevokedCerts();
                                 if (mRevokedCerts == null) {
@@ -1039,10 +1146,17 @@ public class CRLIssuingPoint implements Runnable {
                                     mNextUpdate = x509crl.getNextUpdate();
                                 }
 
-                                mCRLCerts = x509crl.getListOfRevokedCertificates();
+                                mCRLCerts = createCRLCache(x509crl.getListOfRevokedCertificates());
                                 logger.debug("CRLIssuingPoint: - CRL certs: " + mCRLCerts.size());
+
+                                replayed = replayCRLCacheJournal();
                             }
-                            if (mFirstUnsaved != null && !mFirstUnsaved.equals(CRLIssuingPointRecord.CLEAN_CACHE)) {
+                            if (!replayed) {
+                                // journaled changes are not in the request
+                                // recovery range, rebuild the CRL cache instead
+                                clearCRLCache();
+                                updateCRLCacheRepository();
+                            } else if (mFirstUnsaved != null && !mFirstUnsaved.equals(CRLIssuingPointRecord.CLEAN_CACHE)) {
                                 recoverCRLCache();
                             } else {
                                 mCRLCacheIsCleared = false;
@@ -1448,6 +1562,14 @@ public class CRLIssuingPoint implements Runnable {
         mEnable = false;
 
         setAutoUpdates();
+
+        if (mJournal != null) {
+            try {
+                mJournal.close();
+            } catch (IOException e) {
+                logger.warn("CRLIssuingPoint: Unable to close CRL cache journal: " + e.getMessage(), e);
+            }
+        }
     }
 
     /**
@@ -1591,13 +1713,23 @@ public class CRLIssuingPoint implements Runnable {
      *
      * @param start first requested CRL entry
      * @param end next after last requested CRL entry
-     * @return set of all the revoked certificates or null if there are none.
+     * @return set of the requested revoked certificates or null if there are none.
      */
     public Set<RevokedCertificate> getRevokedCertificates(int start, int end) {
-        if (mCRLCacheIsCleared || mCRLCerts == null || mCRLCerts.isEmpty()) {
+
+        Map<BigInteger, RevokedCertificate> crlCerts = mCRLCerts;
+
+        if (mCRLCacheIsCleared || crlCerts == null || crlCerts.isEmpty()) {
             return null;
         }
-        return new LinkedHashSet<>(mCRLCerts.values());
+
+        // only copy the requested page instead of the whole CRL cache
+        synchronized (crlCerts) {
+            return crlCerts.values().stream()
+                    .skip(Math.max(start, 0))
+                    .limit(Math.max(end - start, 0))
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+        }
     }
 
     /**
@@ -2174,12 +2306,30 @@ public class CRLIssuingPoint implements Runnable {
 
         logger.info("CRLIssuingPoint: Processing revoked certs");
 
-        CertRecordProcessor cp = new CertRecordProcessor(mCRLCerts, this, mAllowExtensions);
-
         String filter = getFilter();
         logger.info("CRLIssuingPoint: - filter: " + filter);
 
         CAEngine engine = CAEngine.getInstance();
+
+        if (mRevokedCertsPartitions > 1) {
+            // CertRecordProcessor is not thread-safe, use one per range
+            List<CertRecordProcessor> processors = new ArrayList<>();
+            for (int i = 0; i < mRevokedCertsPartitions; i++) {
+                processors.add(new CertRecordProcessor(mCRLCerts, this, mAllowExtensions));
+            }
+
+            CertStatusUpdateTask.RangeTimer[] timers = new CertStatusUpdateTask.RangeTimer[mRevokedCertsPartitions];
+            for (int i = 0; i < timers.length; i++) {
+                timers[i] = new CertStatusUpdateTask.RangeTimer();
+            }
+
+            mPartitionTimers = timers;
+            engine.certStatusUpdateTask.processRevokedCerts(
+                    processors, filter, mRevokedCertsThreads, mPageSize, timers);
+            return;
+        }
+
+        CertRecordProcessor cp = new CertRecordProcessor(mCRLCerts, this, mAllowExtensions);
         engine.certStatusUpdateTask.processRevokedCerts(cp, filter, mPageSize);
     }
 
@@ -2287,7 +2437,10 @@ public class CRLIssuingPoint implements Runnable {
             }
 
             try {
-                mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
+                synchronized (repositoryMonitor) {
+                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
+                    mCacheDeltas = 0;
+                }
                 mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
                 mCRLCacheIsCleared = false;
             } catch (EBaseException e) {
@@ -2402,6 +2555,10 @@ public class CRLIssuingPoint implements Runnable {
     private static final int UNREVOKED_CERT = 2;
     private Object cacheMonitor = new Object();
 
+    // number of CRL cache deltas appended since the last full cache update,
+    // guarded by repositoryMonitor
+    private int mCacheDeltas = 0;
+
     /**
      * update CRL cache with new revoked-unrevoked certificate info
      */
@@ -2423,10 +2580,15 @@ public class CRLIssuingPoint implements Runnable {
             if (requestId != null && mFirstUnsaved != null &&
                     mFirstUnsaved.equals(CRLIssuingPointRecord.CLEAN_CACHE)) {
                 mFirstUnsaved = requestId;
-                try {
-                    mCRLRepository.updateFirstUnsaved(mId, mFirstUnsaved);
-                } catch (EBaseException e) {
-                    logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
+                // journaled changes are restored from the journal on startup,
+                // so the request only needs to be stored for cache recovery
+                // if the change will not be journaled
+                if (!isCRLCacheJournaled()) {
+                    try {
+                        mCRLRepository.updateFirstUnsaved(mId, mFirstUnsaved);
+                    } catch (EBaseException e) {
+                        logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
+                    }
                 }
             }
             if (certType == REVOKED_CERT) {
@@ -2505,8 +2667,9 @@ public class CRLIssuingPoint implements Runnable {
 
             if (mCacheUpdateInterval == 0) {
                 try {
-                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
-                    mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+                    if (storeRevokedCert(serialNumber)) {
+                        mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+                    }
                 } catch (EBaseException e) {
                     logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_REVOKED_CERT", mId, e.toString()), e);
                 }
@@ -2539,8 +2702,9 @@ public class CRLIssuingPoint implements Runnable {
 
             if (mCacheUpdateInterval == 0) {
                 try {
-                    mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
-                    mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+                    if (storeRevokedCert(serialNumber)) {
+                        mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+                    }
                 } catch (EBaseException e) {
                     logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_UNREVOKED_CERT", mId, e.toString()), e);
                 }
@@ -2575,7 +2739,7 @@ public class CRLIssuingPoint implements Runnable {
 
             if (mCacheUpdateInterval == 0) {
                 try {
-                    mCRLRepository.updateExpiredCerts(mId, mExpiredCerts);
+                    storeExpiredCert(serialNumber);
                 } catch (EBaseException e) {
                     logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_EXPIRED_CERT", mId, e.toString()), e);
                 }
@@ -2585,19 +2749,227 @@ public class CRLIssuingPoint implements Runnable {
         logger.debug("CRLIssuingPoint: - expired certs: " + mExpiredCerts.size());
     }
 
+    /**
+     * Stores the current state of a revoked or unrevoked certificate.
+     * If CRL cache journal is enabled the change is appended to the journal,
+     * or if that fails the whole CRL cache is stored into CRL issuing point
+     * record. Otherwise it is stored into CRL issuing point record, either
+     * appended if supported, or by rewriting the revoked and unrevoked
+     * certificates.
+     *
+     * @param serialNumber serial number of the certificate
+     * @return true if the CRL issuing point record and the journal are up to date
+     * @exception EBaseException failed to store the change
+     */
+    private boolean storeRevokedCert(BigInteger serialNumber) throws EBaseException {
+
+        if (mJournal != null) {
+            boolean journaled = false;
+
+            synchronized (mJournal) {
+                CRLCacheDelta revokedCerts;
+                CRLCacheDelta unrevokedCerts;
+
+                synchronized (cacheMonitor) {
+                    revokedCerts = new CRLCacheDelta();
+                    revokedCerts.updateCert(serialNumber, mRevokedCerts);
+
+                    unrevokedCerts = new CRLCacheDelta();
+                    unrevokedCerts.updateCert(serialNumber, mUnrevokedCerts);
+                }
+
+                try {
+                    mJournal.append(CRLCacheJournal.REVOKED_CERTS, revokedCerts);
+                    mJournal.append(CRLCacheJournal.UNREVOKED_CERTS, unrevokedCerts);
+                    journaled = true;
+
+                } catch (IOException e) {
+                    logger.warn("CRLIssuingPoint: Unable to update CRL cache journal: " + e.getMessage(), e);
+                }
+            }
+
+            // the change will be replayed from the journal on startup
+            if (journaled) {
+                compactCRLCacheJournal();
+                return true;
+            }
+
+            storeCRLCache();
+            return true;
+        }
+
+        // serialize the appends with the full cache updates so that the
+        // number of deltas stays accurate and no delta is overwritten
+        synchronized (repositoryMonitor) {
+
+            if (!mCRLRepository.isAppendSupported() || mCacheDeltas >= CRLRepository.MAX_CACHE_DELTAS) {
+                mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
+                mCacheDeltas = 0;
+                return true;
+            }
+
+            CRLCacheDelta revokedCerts;
+            CRLCacheDelta unrevokedCerts;
+
+            synchronized (cacheMonitor) {
+                revokedCerts = new CRLCacheDelta();
+                revokedCerts.updateCert(serialNumber, mRevokedCerts);
+
+                unrevokedCerts = new CRLCacheDelta();
+                unrevokedCerts.updateCert(serialNumber, mUnrevokedCerts);
+            }
+
+            mCRLRepository.appendRevokedCerts(mId, revokedCerts, unrevokedCerts);
+            mCacheDeltas++;
+            return true;
+        }
+    }
+
+    /**
+     * Stores the current state of an expired certificate.
+     *
+     * @param serialNumber serial number of the certificate
+     * @exception EBaseException failed to store the change
+     */
+    private void storeExpiredCert(BigInteger serialNumber) throws EBaseException {
+
+        if (mJournal != null) {
+            boolean journaled = false;
+
+            synchronized (mJournal) {
+                CRLCacheDelta expiredCerts;
+
+                synchronized (cacheMonitor) {
+                    expiredCerts = new CRLCacheDelta();
+                    expiredCerts.updateCert(serialNumber, mExpiredCerts);
+                }
+
+                try {
+                    mJournal.append(CRLCacheJournal.EXPIRED_CERTS, expiredCerts);
+                    journaled = true;
+
+                } catch (IOException e) {
+                    logger.warn("CRLIssuingPoint: Unable to update CRL cache journal: " + e.getMessage(), e);
+                }
+            }
+
+            if (journaled) {
+                compactCRLCacheJournal();
+                return;
+            }
+
+            storeCRLCache();
+            return;
+        }
+
+        synchronized (repositoryMonitor) {
+
+            if (!mCRLRepository.isAppendSupported() || mCacheDeltas >= CRLRepository.MAX_CACHE_DELTAS) {
+                mCRLRepository.updateExpiredCerts(mId, mExpiredCerts);
+                return;
+            }
+
+            CRLCacheDelta expiredCerts = new CRLCacheDelta();
+            expiredCerts.updateCert(serialNumber, mExpiredCerts);
+
+            mCRLRepository.appendExpiredCerts(mId, expiredCerts);
+            mCacheDeltas++;
+        }
+    }
+
+    /**
+     * Applies CRL cache journal to the CRL cache loaded from
+     * CRL issuing point record.
+     *
+     * @return false if the journal could not be replayed
+     */
+    private boolean replayCRLCacheJournal() {
+
+        if (mJournal == null) {
+            return true;
+        }
+
+        try {
+            int count = mJournal.replay(mRevokedCerts, mUnrevokedCerts, mExpiredCerts);
+            logger.info("CRLIssuingPoint: Replayed " + count + " CRL cache journal records");
+            return true;
+
+        } catch (IOException e) {
+            logger.warn("CRLIssuingPoint: Unable to replay CRL cache journal: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Saves CRL cache into CRL issuing point record if the journal
+     * has reached the max number of records.
+     */
+    private void compactCRLCacheJournal() {
+
+        if (mJournal.getEntries() < mJournalMaxEntries) {
+            return;
+        }
+
+        logger.info("CRLIssuingPoint: Compacting CRL cache journal");
+        updateCRLCacheRepository();
+    }
+
+    /**
+     * Stores the whole CRL cache into CRL issuing point record and
+     * truncates the journal. This is used when a change cannot be
+     * appended to the journal.
+     *
+     * @exception EBaseException failed to store the CRL cache
+     */
+    private void storeCRLCache() throws EBaseException {
+
+        // the journal lock must not be held here since the repository
+        // lock is always acquired first
+        if (!updateCRLCacheRepository()) {
+            throw new EBaseException("Unable to store CRL cache into CRL issuing point record");
+        }
+    }
+
+    /**
+     * Returns true if CRL cache changes are appended to the journal
+     * as soon as they are made.
+     */
+    private boolean isCRLCacheJournaled() {
+        return mJournal != null && mCacheUpdateInterval == 0;
+    }
+
     private Object repositoryMonitor = new Object();
 
     /**
      * Updates CRL cache into local directory.
+     *
+     * @return true if the CRL cache was stored and the journal was truncated
      */
-    public void updateCRLCacheRepository() {
+    public boolean updateCRLCacheRepository() {
         synchronized (repositoryMonitor) {
-            try {
-                mCRLRepository.updateCRLCache(mId, Long.valueOf(mCRLSize),
-                        mRevokedCerts, mUnrevokedCerts, mExpiredCerts);
-                mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
-            } catch (EBaseException e) {
-                logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
+            // prevent journal updates until the journal is truncated
+            Object journalMonitor = mJournal == null ? repositoryMonitor : mJournal;
+            synchronized (journalMonitor) {
+                try {
+                    mCRLRepository.updateCRLCache(mId, Long.valueOf(mCRLSize),
+                            mRevokedCerts, mUnrevokedCerts, mExpiredCerts);
+                    mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+                    mCacheDeltas = 0;
+
+                    if (mJournal != null) {
+                        mJournal.truncate();
+                    }
+
+                    return true;
+
+                } catch (EBaseException e) {
+                    logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_CRL_CACHE", e.toString()), e);
+                    return false;
+
+                } catch (IOException e) {
+                    logger.warn("CRLIssuingPoint: Unable to truncate CRL cache journal: " + e.getMessage(), e);
+                    return false;
+                }
             }
         }
     }
@@ -2694,8 +3066,13 @@ public class CRLIssuingPoint implements Runnable {
             boolean includeExpiredCerts) {
         Date revocationDate = null;
 
-        if (mCRLCerts.containsKey(serialNumber)) {
-            revocationDate = mCRLCerts.get(serialNumber).getRevocationDate();
+        if (mCRLCerts instanceof CompactRevocationIndex index) {
+            revocationDate = index.getRevocationDate(serialNumber);
+        } else {
+            RevokedCertificate revokedCert = mCRLCerts.get(serialNumber);
+            if (revokedCert != null) {
+                revocationDate = revokedCert.getRevocationDate();
+            }
         }
 
         if (checkDeltaCache && isDeltaCRLEnabled()) {
@@ -2714,16 +3091,27 @@ public class CRLIssuingPoint implements Runnable {
     }
 
     /**
-     * Returns split times from CRL generation.
+     * Returns split times from CRL generation followed by processing
+     * times of serial number ranges if the CRL cache was rebuilt with
+     * multiple ranges. The time of a range that is still being processed
+     * is the time elapsed so far.
+     *
+     * This method is not synchronized so that the progress can be
+     * monitored during CRL generation.
      *
      * @return split times from CRL generation in milliseconds
      */
-    public synchronized Vector<Long> getSplitTimes() {
+    public Vector<Long> getSplitTimes() {
         Vector<Long> splits = new Vector<>();
 
         for (int i = 0; i < mSplits.length; i++) {
             splits.addElement(Long.valueOf(mSplits[i]));
         }
+
+        CertStatusUpdateTask.RangeTimer[] partitionTimers = mPartitionTimers;
+        for (int i = 0; i < partitionTimers.length; i++) {
+            splits.addElement(Long.valueOf(partitionTimers[i].getTime()));
+        }
         return splits;
     }
 
@@ -3218,15 +3606,38 @@ public class CRLIssuingPoint implements Runnable {
             }
 
             logger.info("CRLIssuingPoint: Generating full CRL with " + mCRLCerts.size() + " cert(s)");
-            X509CRLImpl crl = new X509CRLImpl(ca.getCRLX500Name(),
-                    AlgorithmId.get(signingAlgorithm),
-                    thisUpdate, nextUpdate, mCRLCerts, ext);
+            byte[] newCRL;
+
+            // The compact index is always encoded by iterating its packed
+            // entries so that the CRL entries are never copied into a
+            // Hashtable of RevokedCertificate objects.
+            if (mStreamFullCRL || mCRLCerts instanceof CompactRevocationIndex) {
+                Path spoolDir = mSpoolDir == null ? null : Paths.get(mSpoolDir);
+
+                try (StreamingCRLBuilder crl = new StreamingCRLBuilder(ca.getCRLX500Name(),
+                        AlgorithmId.get(signingAlgorithm),
+                        thisUpdate, nextUpdate, ext, spoolDir)) {
+
+                    crl.addRevokedCerts(mCRLCerts);
 
-            logger.info("CRLIssuingPoint: Signing full CRL with " + signingAlgorithm);
-            newX509CRL = engine.sign(ca, crl, signingAlgorithm);
+                    logger.info("CRLIssuingPoint: Signing full CRL with " + signingAlgorithm);
+                    newCRL = engine.sign(ca, crl, signingAlgorithm);
+                }
+
+                // publishers only need the encoded CRL and its header
+                newX509CRL = new X509CRLImpl(newCRL, false);
+
+            } else {
+                X509CRLImpl crl = new X509CRLImpl(ca.getCRLX500Name(),
+                        AlgorithmId.get(signingAlgorithm),
+                        thisUpdate, nextUpdate, (Hashtable<BigInteger, RevokedCertificate>) mCRLCerts, ext);
+
+                logger.info("CRLIssuingPoint: Signing full CRL with " + signingAlgorithm);
+                newX509CRL = engine.sign(ca, crl, signingAlgorithm);
 
-            logger.info("CRLIssuingPoint: Encoding full CRL");
-            byte[] newCRL = newX509CRL.getEncoded();
+                logger.info("CRLIssuingPoint: Encoding full CRL");
+                newCRL = newX509CRL.getEncoded();
+            }
 
             mSplits[7] += System.currentTimeMillis();
 
@@ -313,6 +313,116 @@ public class CRLIssuingPointConfig extends ConfigStore {
         putBoolean("autoUpdateInterval.effectiveAtStart",updated);
     }
 
+    /**
+     * Returns the CRL cache implementation: hashtable (default) or compact.
+     */
+    public String getRevocationIndex() throws EBaseException {
+        return getString("revocationIndex", "hashtable");
+    }
+
+    public void setRevocationIndex(String revocationIndex) {
+        putString("revocationIndex", revocationIndex);
+    }
+
+    /**
+     * Returns the file to store the compact CRL cache outside of the heap.
+     * If not specified the compact CRL cache is stored in the heap.
+     */
+    public String getRevocationIndexFile() throws EBaseException {
+        return getString("revocationIndex.file", null);
+    }
+
+    public void setRevocationIndexFile(String revocationIndexFile) {
+        putString("revocationIndex.file", revocationIndexFile);
+    }
+
+    /**
+     * Returns true if the full CRL should be generated with StreamingCRLBuilder.
+     */
+    public boolean getStreamFullCRL() throws EBaseException {
+        return getBoolean("streamFullCRL", false);
+    }
+
+    public void setStreamFullCRL(boolean streamFullCRL) {
+        putBoolean("streamFullCRL", streamFullCRL);
+    }
+
+    /**
+     * Returns the directory for CRL spool files.
+     * If not specified the default temporary directory is used.
+     */
+    public String getSpoolDir() throws EBaseException {
+        return getString("spoolDir", null);
+    }
+
+    public void setSpoolDir(String spoolDir) {
+        putString("spoolDir", spoolDir);
+    }
+
+    /**
+     * Returns the number of serial number ranges processed concurrently
+     * when the CRL cache is rebuilt from the certificate records.
+     */
+    public int getRevokedCertsPartitions() throws EBaseException {
+        return getInteger("revokedCertsPartitions", 1);
+    }
+
+    public void setRevokedCertsPartitions(int revokedCertsPartitions) {
+        putInteger("revokedCertsPartitions", revokedCertsPartitions);
+    }
+
+    public int getRevokedCertsThreads() throws EBaseException {
+        return getInteger("revokedCertsThreads", 4);
+    }
+
+    public void setRevokedCertsThreads(int revokedCertsThreads) {
+        putInteger("revokedCertsThreads", revokedCertsThreads);
+    }
+
+    /**
+     * Returns true if CRL cache changes should be appended to CRLCacheJournal
+     * instead of being stored in the CRL issuing point record.
+     */
+    public boolean getCacheJournal() throws EBaseException {
+        return getBoolean("cacheJournal", false);
+    }
+
+    public void setCacheJournal(boolean cacheJournal) {
+        putBoolean("cacheJournal", cacheJournal);
+    }
+
+    /**
+     * Returns the path of the CRL cache journal file.
+     * If not specified the journal is stored in the instance directory.
+     */
+    public String getCacheJournalFile() throws EBaseException {
+        return getString("cacheJournal.file", null);
+    }
+
+    public void setCacheJournalFile(String cacheJournalFile) {
+        putString("cacheJournal.file", cacheJournalFile);
+    }
+
+    public boolean getCacheJournalSync() throws EBaseException {
+        return getBoolean("cacheJournal.sync", true);
+    }
+
+    public void setCacheJournalSync(boolean cacheJournalSync) {
+        putBoolean("cacheJournal.sync", cacheJournalSync);
+    }
+
+    /**
+     * Returns the number of journal records after which the CRL cache
+     * is saved into the CRL issuing point record and the journal is truncated.
+     */
+    public int getCacheJournalMaxEntries() throws EBaseException {
+        return getInteger("cacheJournal.maxEntries", 10000);
+    }
+
+    public void setCacheJournalMaxEntries(int cacheJournalMaxEntries) {
+        putInteger("cacheJournal.maxEntries", cacheJournalMaxEntries);
+    }
+
     /**
      * Returns ca.crl.<name>.extension.* parameters.
      */
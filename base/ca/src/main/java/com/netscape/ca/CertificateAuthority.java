@@ -33,10 +33,18 @@ import java.security.SignatureException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateParsingException;
 import java.security.interfaces.RSAKey;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.dogtagpki.server.ca.CAConfig;
 import org.dogtagpki.server.ca.CAEngine;
@@ -87,12 +95,12 @@ import com.netscape.cmscore.dbs.CertRecord;
 import com.netscape.cmscore.dbs.CertificateRepository;
 import com.netscape.cmscore.util.StatsSubsystem;
 import com.netscape.cmsutil.crypto.CryptoUtil;
-import com.netscape.cmsutil.ocsp.BasicOCSPResponse;
 import com.netscape.cmsutil.ocsp.CertID;
 import com.netscape.cmsutil.ocsp.CertStatus;
 import com.netscape.cmsutil.ocsp.GoodInfo;
 import com.netscape.cmsutil.ocsp.KeyHashID;
 import com.netscape.cmsutil.ocsp.NameID;
+import com.netscape.cmsutil.ocsp.OCSPCodec;
 import com.netscape.cmsutil.ocsp.OCSPResponse;
 import com.netscape.cmsutil.ocsp.OCSPResponseStatus;
 import com.netscape.cmsutil.ocsp.Request;
@@ -158,6 +166,14 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
 
     public static final OBJECT_IDENTIFIER OCSP_NONCE = new OBJECT_IDENTIFIER("1.3.6.1.5.5.7.48.1.2");
 
+    // cert record attributes needed to generate OCSP responses
+    static final String[] OCSP_CERT_RECORD_ATTRS = {
+            CertRecord.ATTR_ID,
+            CertRecord.ATTR_CERT_STATUS,
+            CertRecord.ATTR_REVOKED_ON,
+            "objectclass"
+    };
+
     public static final int FASTSIGNING_DISABLED = 0;
     public static final int FASTSIGNING_ENABLED = 1;
 
@@ -198,11 +214,14 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
 
     protected String[] mCASigningAlgorithms = null;
 
-    protected long mNumOCSPRequest = 0;
-    protected long mTotalTime = 0;
-    protected long mTotalData = 0;
-    protected long mSignTime = 0;
-    protected long mLookupTime = 0;
+    protected LongAdder mNumOCSPRequest = new LongAdder();
+    protected LongAdder mTotalTime = new LongAdder();
+    protected LongAdder mTotalData = new LongAdder();
+    protected LongAdder mSignTime = new LongAdder();
+    protected LongAdder mLookupTime = new LongAdder();
+
+    // reuses the encoding of the OCSP signing cert chain
+    protected OCSPCodec mOCSPCodec = new OCSPCodec();
 
     /* cache responder ID for performance */
     private ResponderID mResponderIDByName = null;
@@ -560,6 +579,20 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
         return signedcrl;
     }
 
+    /**
+     * Signs a CRL generated by StreamingCRLBuilder with the CRL signing key.
+     *
+     * @return DER-encoded signed CRL
+     */
+    public byte[] sign(StreamingCRLBuilder crl, String algname) throws Exception {
+
+        if (algname == null) {
+            algname = mSigningUnit.getDefaultAlgorithm();
+        }
+
+        return crl.sign(mCRLSigningUnit.getSigner(algname));
+    }
+
     public X509CertImpl sign(X509CertInfo certInfo, String algname) throws Exception {
 
         X509CertImpl signedcert = null;
@@ -764,7 +797,7 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
      * @return number of processed OCSP requests in memory
      */
     public long getNumOCSPRequest() {
-        return mNumOCSPRequest;
+        return mNumOCSPRequest.sum();
     }
 
     /**
@@ -774,7 +807,7 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
      * @return processed times for OCSP requests
      */
     public long getOCSPRequestTotalTime() {
-        return mTotalTime;
+        return mTotalTime.sum();
     }
 
     /**
@@ -784,7 +817,7 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
      * @return processed times for OCSP requests
      */
     public long getOCSPTotalData() {
-        return mTotalData;
+        return mTotalData.sum();
     }
 
     /**
@@ -794,12 +827,12 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
      * @return processed times for OCSP requests
      */
     public long getOCSPTotalSignTime() {
-        return mSignTime;
+        return mSignTime.sum();
     }
 
     @Override
     public long getOCSPTotalLookupTime() {
-        return mLookupTime;
+        return mLookupTime.sum();
     }
 
     public ResponderID getResponderIDByName() {
@@ -838,7 +871,8 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
 
         logger.debug("CertificateAuthority: validating OCSP request");
 
-        mNumOCSPRequest++;
+        mNumOCSPRequest.increment();
+        engine.getMetricsRegistry().increment("ocsp_requests");
         StatsSubsystem statsSub = (StatsSubsystem) engine.getSubsystem(StatsSubsystem.ID);
         long startTime = new Date().getTime();
 
@@ -855,14 +889,15 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
 
             long lookupStartTime = new Date().getTime();
 
+            List<Request> requests = new ArrayList<>();
             for (int i = 0; i < tbsReq.getRequestCount(); i++) {
-                Request req = tbsReq.getRequestAt(i);
-                SingleResponse sr = processRequest(req);
-                singleResponses.addElement(sr);
+                requests.add(tbsReq.getRequestAt(i));
             }
 
+            singleResponses.addAll(processRequests(requests));
+
             long lookupEndTime = new Date().getTime();
-            mLookupTime += lookupEndTime - lookupStartTime;
+            mLookupTime.add(lookupEndTime - lookupStartTime);
 
             if (statsSub != null) {
                 statsSub.endTiming("lookup");
@@ -913,10 +948,10 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
 
             long signStartTime = new Date().getTime();
 
-            BasicOCSPResponse basicRes = sign(rd);
+            byte[] basicRes = sign(rd);
 
             long signEndTime = new Date().getTime();
-            mSignTime += signEndTime - signStartTime;
+            mSignTime.add(signEndTime - signStartTime);
 
             if (statsSub != null) {
                 statsSub.endTiming("signing");
@@ -925,11 +960,11 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
             OCSPResponse response = new OCSPResponse(
                     OCSPResponseStatus.SUCCESSFUL,
                     new ResponseBytes(ResponseBytes.OCSP_BASIC,
-                            new OCTET_STRING(ASN1Util.encode(basicRes))));
+                            new OCTET_STRING(basicRes)));
 
             //logger.info("done OCSP request");
             long endTime = new Date().getTime();
-            mTotalTime += endTime - startTime;
+            mTotalTime.add(endTime - startTime);
 
             return response;
 
@@ -939,44 +974,33 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
         }
     }
 
-    private BasicOCSPResponse sign(ResponseData rd) throws EBaseException {
+    /**
+     * Signs the response data and returns the encoded BasicOCSPResponse.
+     */
+    private byte[] sign(ResponseData rd) throws EBaseException {
 
         CAEngine engine = CAEngine.getInstance();
         ensureReady();
 
         String algname = mOCSPSigningUnit.getDefaultAlgorithm();
 
-        try (DerOutputStream out = new DerOutputStream()) {
-            DerOutputStream tmp = new DerOutputStream();
+        try (DerOutputStream alg = new DerOutputStream()) {
 
+            // encode the response data once for both signing and output
             byte rd_data[] = ASN1Util.encode(rd);
             if (rd_data != null) {
-                mTotalData += rd_data.length;
+                mTotalData.add(rd_data.length);
             }
-            rd.encode(tmp);
-            AlgorithmId.get(algname).encode(tmp);
+
+            AlgorithmId.get(algname).encode(alg);
             logger.debug("adding signature");
             byte[] signature = mOCSPSigningUnit.sign(rd_data, algname);
 
-            tmp.putBitString(signature);
             // optional, put the certificate chains in also
-
-            DerOutputStream tmpChain = new DerOutputStream();
-            DerOutputStream tmp1 = new DerOutputStream();
             java.security.cert.X509Certificate chains[] = mOCSPSigningUnit.getCertChain().getChain();
+            byte[] certs = mOCSPCodec.getEncodedCertChain(chains);
 
-            for (int i = 0; i < chains.length; i++) {
-                tmpChain.putDerValue(new DerValue(chains[i].getEncoded()));
-            }
-            tmp1.write(DerValue.tag_Sequence, tmpChain);
-            tmp.write(DerValue.createTag(DerValue.TAG_CONTEXT, true, (byte) 0),
-                    tmp1);
-
-            out.write(DerValue.tag_Sequence, tmp);
-
-            BasicOCSPResponse response = new BasicOCSPResponse(out.toByteArray());
-
-            return response;
+            return OCSPCodec.encodeBasicOCSPResponse(rd_data, alg.toByteArray(), signature, certs);
 
         } catch (NoSuchAlgorithmException e) {
             logger.error(CMS.getLogMessage("OPERATION_ERROR", e.toString()), e);
@@ -993,55 +1017,114 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
         }
     }
 
+    /**
+     * Returns the OCSP certificate status based on the certificate record.
+     */
+    CertStatus createCertStatus(CertRecord rec) {
+
+        String status = rec.getStatus();
+
+        if (status == null) {
+            return new UnknownInfo();
+
+        } else if (status.equals(CertRecord.STATUS_VALID)) {
+            return new GoodInfo();
+
+        } else if (status.equals(CertRecord.STATUS_INVALID)) {  // not yet valid
+            return new UnknownInfo();
+
+        } else if (status.equals(CertRecord.STATUS_REVOKED)) {
+            return new RevokedInfo(new GeneralizedTime(rec.getRevokedOn()));
+
+        } else if (status.equals(CertRecord.STATUS_EXPIRED)) {
+            return new UnknownInfo();
+
+        } else if (status.equals(CertRecord.STATUS_REVOKED_EXPIRED)) {
+            return new RevokedInfo(new GeneralizedTime(rec.getRevokedOn()));
+
+        } else {
+            return new UnknownInfo();
+        }
+    }
+
     public SingleResponse getCertStatusFromDB(Request request) {
 
         CertID certID = request.getCertID();
-        INTEGER serialNumber = certID.getSerialNumber();
-        CertStatus certStatus = null;
+        BigInteger serialNumber = new BigInteger(certID.getSerialNumber().toString());
 
-        try {
-            CertRecord rec = certRepository.readCertificateRecord(serialNumber);
-            String status = rec.getStatus();
+        CertStatus certStatus = getCertStatusFromDB(List.of(serialNumber)).get(serialNumber);
 
-            if (status == null) {
-                certStatus = new UnknownInfo();
+        GeneralizedTime thisUpdate = new GeneralizedTime(new Date());
+        // We are not using a CRL cache for generating OCSP
+        // responses, so there is no reasonable value for nextUpdate.
+        return new SingleResponse(certID, certStatus, thisUpdate, null);
+    }
 
-            } else if (status.equals(CertRecord.STATUS_VALID)) {
-                certStatus = new GoodInfo();
+    /**
+     * Returns the OCSP status of certificates based on the certificate
+     * records. A single record is read directly. Multiple records are
+     * read with a search per batch of serial numbers.
+     *
+     * @param serialNumbers serial numbers
+     * @return certificate status by serial number
+     */
+    public Map<BigInteger, CertStatus> getCertStatusFromDB(Collection<BigInteger> serialNumbers) {
 
-            } else if (status.equals(CertRecord.STATUS_INVALID)) {  // not yet valid
-                certStatus = new UnknownInfo();
+        Map<BigInteger, CertStatus> statuses = new HashMap<>();
 
-            } else if (status.equals(CertRecord.STATUS_REVOKED)) {
-                certStatus = new RevokedInfo(new GeneralizedTime(rec.getRevokedOn()));
+        if (serialNumbers.size() == 1) {
+            BigInteger serialNumber = serialNumbers.iterator().next();
+            CertStatus certStatus;
 
-            } else if (status.equals(CertRecord.STATUS_EXPIRED)) {
-                certStatus = new UnknownInfo();
+            try {
+                CertRecord rec = certRepository.readCertificateRecord(serialNumber);
+                certStatus = createCertStatus(rec);
 
-            } else if (status.equals(CertRecord.STATUS_REVOKED_EXPIRED)) {
-                certStatus = new RevokedInfo(new GeneralizedTime(rec.getRevokedOn()));
+            } catch (DBRecordNotFoundException e) {
+                logger.info("CertificateAuthority: Cert record {} not found", serialNumber);
+                certStatus = new UnknownInfo(); // not issued by this CA
 
-            } else {
+            } catch (Exception e) {
+                // internal error
+                logger.error("CertificateAuthority: Unable to retrieve cert record: " + e.getMessage(), e);
                 certStatus = new UnknownInfo();
             }
 
-        } catch (DBRecordNotFoundException e) {
-            logger.info("CertificateAuthority: Cert record {} not found", serialNumber);
-            certStatus = new UnknownInfo(); // not issued by this CA
+            statuses.put(serialNumber, certStatus);
+            return statuses;
+        }
+
+        Map<BigInteger, CertRecord> records;
+
+        try {
+            records = certRepository.readCertificateRecords(serialNumbers, OCSP_CERT_RECORD_ATTRS);
 
         } catch (Exception e) {
             // internal error
-            logger.error("CertificateAuthority: Unable to retrieve cert record: " + e.getMessage(), e);
-            certStatus = new UnknownInfo();
+            logger.error("CertificateAuthority: Unable to retrieve cert records: " + e.getMessage(), e);
+            records = Collections.emptyMap();
         }
 
-        GeneralizedTime thisUpdate = new GeneralizedTime(new Date());
-        // We are not using a CRL cache for generating OCSP
-        // responses, so there is no reasonable value for nextUpdate.
-        return new SingleResponse(certID, certStatus, thisUpdate, null);
+        for (BigInteger serialNumber : serialNumbers) {
+            CertRecord rec = records.get(serialNumber);
+
+            if (rec == null) {
+                logger.info("CertificateAuthority: Cert record {} not found", serialNumber);
+                statuses.put(serialNumber, new UnknownInfo()); // not issued by this CA
+                continue;
+            }
+
+            statuses.put(serialNumber, createCertStatus(rec));
+        }
+
+        return statuses;
     }
 
-    public SingleResponse getCertStatusFromCRL(Request request) throws EBaseException {
+    /**
+     * Returns the CRL issuing point whose CRL cache is used to
+     * generate OCSP responses, or null if the CRL cache is not used.
+     */
+    CRLIssuingPoint getOCSPCRLIssuingPoint() throws EBaseException {
 
         boolean ocspUseCache = mConfig.getOCSPUseCache();
 
@@ -1057,48 +1140,91 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
             return null;
         }
 
+        return crlIssuingPoint;
+    }
+
+    GeneralizedTime getOCSPNextUpdate(CRLIssuingPoint crlIssuingPoint) {
+
+        /* set nextUpdate to the nextUpdate time of the CRL */
+        Date crlNextUpdate = crlIssuingPoint.getNextUpdate();
+        if (crlNextUpdate == null) {
+            return null;
+        }
+
+        return new GeneralizedTime(crlNextUpdate);
+    }
+
+    public SingleResponse getCertStatusFromCRL(Request request) throws EBaseException {
+
+        CRLIssuingPoint crlIssuingPoint = getOCSPCRLIssuingPoint();
+
         // only do this if cache is enabled
+        if (crlIssuingPoint == null) {
+            return null;
+        }
 
         CertID certID = request.getCertID();
-        INTEGER serialNumber = certID.getSerialNumber();
-        CertStatus certStatus = null;
+        BigInteger sno = new BigInteger(certID.getSerialNumber().toString());
+
+        CertStatus certStatus = getCertStatusFromCRL(crlIssuingPoint, List.of(sno)).get(sno);
+
+        GeneralizedTime thisUpdate = new GeneralizedTime(new Date());
+        GeneralizedTime nextUpdate = getOCSPNextUpdate(crlIssuingPoint);
+
+        return new SingleResponse(certID, certStatus, thisUpdate, nextUpdate);
+    }
+
+    Map<BigInteger, CertStatus> getCertStatusFromCRL(
+            CRLIssuingPoint crlIssuingPoint,
+            Collection<BigInteger> serialNumbers) throws EBaseException {
 
-        BigInteger sno = new BigInteger(serialNumber.toString());
         boolean checkDeltaCache = mConfig.getOSPUseCacheCheckDeltaCache();
         boolean includeExpiredCerts = mConfig.getOCSPUseCacheIncludeExpiredCerts();
 
-        Date revokedOn = crlIssuingPoint.getRevocationDateFromCache(
-                sno, checkDeltaCache, includeExpiredCerts);
+        Map<BigInteger, CertStatus> statuses = new HashMap<>();
 
-        if (revokedOn == null) {
-            certStatus = new GoodInfo();
-        } else {
-            certStatus = new RevokedInfo(new GeneralizedTime(revokedOn));
-        }
+        for (BigInteger serialNumber : serialNumbers) {
 
-        GeneralizedTime thisUpdate = new GeneralizedTime(new Date());
+            Date revokedOn = crlIssuingPoint.getRevocationDateFromCache(
+                    serialNumber, checkDeltaCache, includeExpiredCerts);
 
-        /* set nextUpdate to the nextUpdate time of the CRL */
-        GeneralizedTime nextUpdate = null;
-        Date crlNextUpdate = crlIssuingPoint.getNextUpdate();
-        if (crlNextUpdate != null) {
-            nextUpdate = new GeneralizedTime(crlNextUpdate);
+            if (revokedOn == null) {
+                statuses.put(serialNumber, new GoodInfo());
+            } else {
+                statuses.put(serialNumber, new RevokedInfo(new GeneralizedTime(revokedOn)));
+            }
         }
 
-        return new SingleResponse(certID, certStatus, thisUpdate, nextUpdate);
+        return statuses;
     }
 
-    public SingleResponse processRequest(Request req) throws EBaseException {
+    /**
+     * Returns the OCSP status of certificates issued by this CA based
+     * on the CRL cache if it is used for OCSP, or the certificate
+     * records otherwise.
+     *
+     * @param serialNumbers serial numbers
+     * @return certificate status by serial number
+     */
+    public Map<BigInteger, CertStatus> getCertStatus(Collection<BigInteger> serialNumbers) throws EBaseException {
+
+        CRLIssuingPoint crlIssuingPoint = getOCSPCRLIssuingPoint();
 
-        String name = "CertificateAuthority: processRequest: ";
+        if (crlIssuingPoint != null) {
+            return getCertStatusFromCRL(crlIssuingPoint, serialNumbers);
+        }
+
+        return getCertStatusFromDB(serialNumbers);
+    }
+
+    /**
+     * Returns true if the CertID identifies this CA as the issuer.
+     */
+    boolean isIssuer(CertID cid) {
 
         X509CertImpl caCert = mSigningUnit.getCertImpl();
         X509Key key = (X509Key) caCert.getPublicKey();
 
-        CertID cid = req.getCertID();
-        INTEGER serialNo = cid.getSerialNumber();
-        logger.debug( name + "for cert 0x" + serialNo.toString(16));
-
         byte[] nameHash = null;
         byte[] keyHash = null;
         String digestName = cid.getDigestName();
@@ -1111,23 +1237,78 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
                 logger.warn("CertificateAuthority: OCSP request hash algorithm " + digestName + " not recognised: " + e.getMessage(), e);
             }
         }
-        if (!Arrays.equals(cid.getIssuerNameHash().toByteArray(), nameHash) ||
-                !Arrays.equals(cid.getIssuerKeyHash().toByteArray(), keyHash)) {
-            // issuer of cert is not this CA (or we couldn't work
-            // out whether it is or not due to unknown hash alg);
+
+        return Arrays.equals(cid.getIssuerNameHash().toByteArray(), nameHash) &&
+                Arrays.equals(cid.getIssuerKeyHash().toByteArray(), keyHash);
+    }
+
+    public SingleResponse processRequest(Request req) throws EBaseException {
+        return processRequests(List.of(req)).get(0);
+    }
+
+    /**
+     * Returns the OCSP responses for multiple requests. The status of
+     * all certificates issued by this CA is retrieved at once, so the
+     * certificate records are not read one by one.
+     *
+     * @param requests OCSP requests
+     * @return OCSP responses in the same order as the requests
+     */
+    public List<SingleResponse> processRequests(List<Request> requests) throws EBaseException {
+
+        String name = "CertificateAuthority: processRequests: ";
+
+        boolean[] issued = new boolean[requests.size()];
+        Set<BigInteger> serialNumbers = new LinkedHashSet<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            CertID cid = requests.get(i).getCertID();
+            INTEGER serialNo = cid.getSerialNumber();
+            logger.debug(name + "for cert 0x" + serialNo.toString(16));
+
+            // if the issuer of cert is not this CA (or we couldn't work
+            // out whether it is or not due to unknown hash alg)
             // do not return status information for this cert
+            issued[i] = isIssuer(cid);
 
-            GeneralizedTime thisUpdate = new GeneralizedTime(new Date());
-            return new SingleResponse(cid, new UnknownInfo(), thisUpdate, null);
+            if (issued[i]) {
+                serialNumbers.add(new BigInteger(serialNo.toString()));
+            }
         }
 
-        SingleResponse response = getCertStatusFromCRL(req);
+        Map<BigInteger, CertStatus> statuses = Collections.emptyMap();
+        GeneralizedTime nextUpdate = null;
 
-        if (response != null) {
-            return response;
+        if (!serialNumbers.isEmpty()) {
+            CRLIssuingPoint crlIssuingPoint = getOCSPCRLIssuingPoint();
+
+            if (crlIssuingPoint != null) {
+                statuses = getCertStatusFromCRL(crlIssuingPoint, serialNumbers);
+                nextUpdate = getOCSPNextUpdate(crlIssuingPoint);
+
+            } else {
+                // We are not using a CRL cache for generating OCSP
+                // responses, so there is no reasonable value for nextUpdate.
+                statuses = getCertStatusFromDB(serialNumbers);
+            }
+        }
+
+        GeneralizedTime thisUpdate = new GeneralizedTime(new Date());
+        List<SingleResponse> responses = new ArrayList<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            CertID cid = requests.get(i).getCertID();
+
+            if (!issued[i]) {
+                responses.add(new SingleResponse(cid, new UnknownInfo(), thisUpdate, null));
+                continue;
+            }
+
+            BigInteger serialNumber = new BigInteger(cid.getSerialNumber().toString());
+            responses.add(new SingleResponse(cid, statuses.get(serialNumber), thisUpdate, nextUpdate));
         }
 
-        return getCertStatusFromDB(req);
+        return responses;
     }
 
     /**
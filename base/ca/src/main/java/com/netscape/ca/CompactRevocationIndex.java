@@ -0,0 +1,738 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.Extension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+/**
+ * This class provides a compact CRL cache for CRLIssuingPoint.
+ *
+ * Revoked certificates are packed into a single buffer of fixed-size
+ * entries sorted by serial number:
+ *
+ * <pre>
+ * serial number (big-endian, zero-padded) | revocation date (8 bytes) | reason (1 byte)
+ * </pre>
+ *
+ * so the cache does not keep a BigInteger, Date, RevokedCertImpl and
+ * CRLExtensions object per entry. The buffer is either a heap buffer
+ * or a memory-mapped file outside of the Java heap. Lookups are done
+ * with binary search and RevokedCertificate objects are only created
+ * on demand.
+ *
+ * Recent changes are kept in a small overlay and merged into the packed
+ * entries once the overlay grows beyond a fraction of the index. Entries
+ * that cannot be represented in packed form (e.g. with extensions other
+ * than CRL reason) are kept as objects.
+ *
+ * Iteration returns the entries in ascending serial number order from
+ * a snapshot of the index, so the index can be changed while a CRL is
+ * being generated. The packed buffer is never modified after it has been
+ * created, so the snapshot does not copy the packed entries. A mapped
+ * buffer that has been replaced by a compaction is unmapped as soon as
+ * no iterator is reading it.
+ *
+ * All methods are synchronized similar to Hashtable.
+ */
+public class CompactRevocationIndex extends AbstractMap<BigInteger, RevokedCertificate> {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CompactRevocationIndex.class);
+
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 4096;
+
+    private static final int DATE_SIZE = 8;
+    private static final int REASON_SIZE = 1;
+
+    // reason byte for entries without extensions
+    private static final byte NO_EXTENSIONS = (byte) 0xff;
+
+    // reason byte for entries with empty extensions
+    private static final byte EMPTY_EXTENSIONS = (byte) 0xfe;
+
+    private Path file;
+    private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+    private ByteBuffer entries = ByteBuffer.allocate(0);
+    private int count;
+    private int serialSize;
+    private int entrySize = DATE_SIZE + REASON_SIZE;
+
+    private BitSet removed = new BitSet();
+    private int removedCount;
+
+    // packable entries not merged yet
+    private Map<BigInteger, RevokedCertificate> pending = new HashMap<>();
+
+    // entries that cannot be packed
+    private Map<BigInteger, RevokedCertificate> extended = new HashMap<>();
+
+    // number of iterators reading each packed buffer
+    private Map<ByteBuffer, Integer> readers = new IdentityHashMap<>();
+
+    // replaced packed buffers that are still read by iterators
+    private Set<ByteBuffer> replaced = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Creates an index stored in a heap buffer.
+     */
+    public CompactRevocationIndex() {
+    }
+
+    /**
+     * Creates an index stored in a memory-mapped file.
+     *
+     * @param file file to store the packed entries, or null to use heap buffer
+     */
+    public CompactRevocationIndex(Path file) {
+        this.file = file;
+    }
+
+    public synchronized int getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public synchronized void setCompactionThreshold(int compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Returns the size of the packed entries in bytes.
+     */
+    public synchronized long getPackedSize() {
+        return (long) count * entrySize;
+    }
+
+    /**
+     * Returns true if the entry can be stored in packed form.
+     */
+    static boolean isPackable(BigInteger serialNumber, RevokedCertificate revokedCert) {
+
+        if (serialNumber.signum() < 0 || revokedCert.getRevocationDate() == null) {
+            return false;
+        }
+
+        CRLExtensions exts = revokedCert.getExtensions();
+        if (exts == null || exts.isEmpty()) {
+            return true;
+        }
+
+        if (exts.size() > 1) {
+            return false;
+        }
+
+        Extension ext = exts.elementAt(0);
+        return ext instanceof CRLReasonExtension reasonExt
+                && !reasonExt.isCritical()
+                && reasonExt.getReason() != null;
+    }
+
+    static byte encodeReason(RevokedCertificate revokedCert) {
+
+        CRLExtensions exts = revokedCert.getExtensions();
+        if (exts == null) {
+            return NO_EXTENSIONS;
+        }
+
+        if (exts.isEmpty()) {
+            return EMPTY_EXTENSIONS;
+        }
+
+        CRLReasonExtension ext = (CRLReasonExtension) exts.elementAt(0);
+        return (byte) ext.getReason().getCode();
+    }
+
+    static CRLExtensions decodeReason(byte reason) {
+
+        if (reason == NO_EXTENSIONS) {
+            return null;
+        }
+
+        CRLExtensions exts = new CRLExtensions();
+        if (reason == EMPTY_EXTENSIONS) {
+            return exts;
+        }
+
+        CRLReasonExtension ext = new CRLReasonExtension(RevocationReason.valueOf(reason));
+        try {
+            exts.set(CRLReasonExtension.NAME, ext);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create CRL reason extension: " + e.getMessage(), e);
+        }
+
+        return exts;
+    }
+
+    /**
+     * Returns the serial number magnitude without sign byte.
+     */
+    static byte[] getMagnitude(BigInteger serialNumber) {
+        byte[] bytes = serialNumber.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            return Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return bytes;
+    }
+
+    /**
+     * Compares the serial number of a packed entry with a serial number
+     * magnitude that is not longer than the packed serial number size.
+     */
+    private int compare(int index, byte[] magnitude) {
+
+        int offset = index * entrySize;
+        int padding = serialSize - magnitude.length;
+
+        for (int i = 0; i < serialSize; i++) {
+            int a = entries.get(offset + i) & 0xff;
+            int b = i < padding ? 0 : magnitude[i - padding] & 0xff;
+            if (a != b) {
+                return a - b;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns the position of the packed entry, or -1 if not found.
+     * Removed entries are still found.
+     */
+    private int find(BigInteger serialNumber) {
+
+        if (count == 0 || serialNumber.signum() < 0) {
+            return -1;
+        }
+
+        byte[] magnitude = getMagnitude(serialNumber);
+        if (magnitude.length > serialSize) {
+            return -1;
+        }
+
+        int low = 0;
+        int high = count - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(mid, magnitude);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    private int findLive(BigInteger serialNumber) {
+        int index = find(serialNumber);
+        if (index < 0 || removed.get(index)) {
+            return -1;
+        }
+        return index;
+    }
+
+    private static BigInteger getSerialNumber(ByteBuffer entries, int offset, int serialSize) {
+        byte[] bytes = new byte[serialSize];
+        entries.get(offset, bytes);
+        return new BigInteger(1, bytes);
+    }
+
+    private static RevokedCertificate getEntry(ByteBuffer entries, int offset, int serialSize) {
+        byte reason = entries.get(offset + serialSize + DATE_SIZE);
+        return new RevokedCertImpl(
+                getSerialNumber(entries, offset, serialSize),
+                new Date(entries.getLong(offset + serialSize)),
+                decodeReason(reason));
+    }
+
+    private long getRevocationTime(int index) {
+        return entries.getLong(index * entrySize + serialSize);
+    }
+
+    private RevokedCertificate getEntry(int index) {
+        return getEntry(entries, index * entrySize, serialSize);
+    }
+
+    /**
+     * Returns the revocation date of a certificate without creating
+     * a RevokedCertificate object, or null if the certificate is not
+     * in the index.
+     *
+     * @param serialNumber certificate serial number
+     * @return revocation date or null
+     */
+    public synchronized Date getRevocationDate(BigInteger serialNumber) {
+
+        RevokedCertificate revokedCert = pending.get(serialNumber);
+        if (revokedCert == null) {
+            revokedCert = extended.get(serialNumber);
+        }
+        if (revokedCert != null) {
+            return revokedCert.getRevocationDate();
+        }
+
+        int index = findLive(serialNumber);
+        if (index < 0) {
+            return null;
+        }
+
+        return new Date(getRevocationTime(index));
+    }
+
+    @Override
+    public synchronized int size() {
+        return count - removedCount + pending.size() + extended.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+
+        if (!(key instanceof BigInteger serialNumber)) {
+            return false;
+        }
+
+        return pending.containsKey(serialNumber)
+                || extended.containsKey(serialNumber)
+                || findLive(serialNumber) >= 0;
+    }
+
+    @Override
+    public synchronized RevokedCertificate get(Object key) {
+
+        if (!(key instanceof BigInteger serialNumber)) {
+            return null;
+        }
+
+        RevokedCertificate revokedCert = pending.get(serialNumber);
+        if (revokedCert != null) {
+            return revokedCert;
+        }
+
+        revokedCert = extended.get(serialNumber);
+        if (revokedCert != null) {
+            return revokedCert;
+        }
+
+        int index = findLive(serialNumber);
+        if (index < 0) {
+            return null;
+        }
+
+        return getEntry(index);
+    }
+
+    @Override
+    public synchronized RevokedCertificate put(BigInteger serialNumber, RevokedCertificate revokedCert) {
+
+        if (serialNumber == null || revokedCert == null) {
+            throw new NullPointerException();
+        }
+
+        RevokedCertificate previous = removeEntry(serialNumber);
+
+        if (isPackable(serialNumber, revokedCert)) {
+            pending.put(serialNumber, revokedCert);
+        } else {
+            extended.put(serialNumber, revokedCert);
+        }
+
+        if (pending.size() >= Math.max(compactionThreshold, (count - removedCount) >> 3)) {
+            compact();
+        }
+
+        return previous;
+    }
+
+    @Override
+    public synchronized RevokedCertificate remove(Object key) {
+
+        if (!(key instanceof BigInteger serialNumber)) {
+            return null;
+        }
+
+        RevokedCertificate previous = removeEntry(serialNumber);
+
+        if (removedCount >= Math.max(compactionThreshold, count >> 3)) {
+            compact();
+        }
+
+        return previous;
+    }
+
+    private RevokedCertificate removeEntry(BigInteger serialNumber) {
+
+        RevokedCertificate previous = pending.remove(serialNumber);
+        if (previous != null) {
+            return previous;
+        }
+
+        previous = extended.remove(serialNumber);
+        if (previous != null) {
+            return previous;
+        }
+
+        int index = findLive(serialNumber);
+        if (index < 0) {
+            return null;
+        }
+
+        previous = getEntry(index);
+        removed.set(index);
+        removedCount++;
+
+        return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+        replaceEntries(ByteBuffer.allocate(0));
+        count = 0;
+        serialSize = 0;
+        entrySize = DATE_SIZE + REASON_SIZE;
+        removed.clear();
+        removedCount = 0;
+        pending.clear();
+        extended.clear();
+    }
+
+    private ByteBuffer allocate(long size) throws IOException {
+
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Revocation index too large: " + size + " bytes");
+        }
+
+        if (file == null || size == 0) {
+            return ByteBuffer.allocate((int) size);
+        }
+
+        Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tmpFile,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Replaces the packed buffer. The previous buffer is unmapped
+     * unless it is still read by an iterator.
+     */
+    private void replaceEntries(ByteBuffer target) {
+
+        ByteBuffer previous = entries;
+        entries = target;
+
+        if (readers.containsKey(previous)) {
+            // unmap when the last iterator is done
+            replaced.add(previous);
+        } else {
+            unmap(previous);
+        }
+    }
+
+    private synchronized void acquire(ByteBuffer buffer) {
+        readers.merge(buffer, 1, Integer::sum);
+    }
+
+    private synchronized void release(ByteBuffer buffer) {
+
+        readers.merge(buffer, -1, (a, b) -> a + b == 0 ? null : a + b);
+
+        if (!readers.containsKey(buffer) && replaced.remove(buffer)) {
+            unmap(buffer);
+        }
+    }
+
+    /**
+     * Returns the number of replaced packed buffers that are still
+     * read by iterators.
+     */
+    synchronized int getReplacedBuffers() {
+        return replaced.size();
+    }
+
+    /**
+     * Releases a memory-mapped buffer without waiting for garbage
+     * collection, so the replaced index file does not keep using
+     * memory and disk space.
+     */
+    static void unmap(ByteBuffer buffer) {
+
+        if (!(buffer instanceof MappedByteBuffer)) {
+            return;
+        }
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(field.get(null), buffer);
+
+        } catch (Exception e) {
+            // the mapping will be released by garbage collection
+            logger.warn("CompactRevocationIndex: Unable to unmap revocation index: " + e.getMessage());
+        }
+    }
+
+    private void commit() throws IOException {
+
+        if (file == null || count == 0) {
+            return;
+        }
+
+        // the mapping stays valid after the file is replaced
+        Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Merges pending changes into the packed entries.
+     */
+    public synchronized void compact() {
+
+        if (pending.isEmpty() && removedCount == 0) {
+            return;
+        }
+
+        BigInteger[] keys = pending.keySet().toArray(new BigInteger[0]);
+        Arrays.sort(keys);
+
+        byte[][] magnitudes = new byte[keys.length][];
+        int newSerialSize = serialSize;
+
+        for (int j = 0; j < keys.length; j++) {
+            magnitudes[j] = getMagnitude(keys[j]);
+            newSerialSize = Math.max(newSerialSize, magnitudes[j].length);
+        }
+
+        int newCount = count - removedCount + keys.length;
+        int newEntrySize = newSerialSize + DATE_SIZE + REASON_SIZE;
+
+        logger.debug("CompactRevocationIndex: Compacting " + newCount + " entries");
+
+        ByteBuffer target;
+        try {
+            target = allocate((long) newCount * newEntrySize);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to allocate revocation index: " + e.getMessage(), e);
+        }
+
+        int i = 0;
+        int j = 0;
+        int position = 0;
+
+        while (i < count || j < keys.length) {
+
+            if (i < count && removed.get(i)) {
+                i++;
+                continue;
+            }
+
+            boolean takeBase;
+            if (i >= count) {
+                takeBase = false;
+            } else if (j >= keys.length) {
+                takeBase = true;
+            } else {
+                // pending keys never duplicate live packed entries
+                takeBase = magnitudes[j].length > serialSize || compare(i, magnitudes[j]) < 0;
+            }
+
+            int offset = position * newEntrySize;
+
+            if (takeBase) {
+                int source = i * entrySize;
+                for (int k = 0; k < newSerialSize - serialSize; k++) {
+                    target.put(offset + k, (byte) 0);
+                }
+                for (int k = 0; k < entrySize; k++) {
+                    target.put(offset + newSerialSize - serialSize + k, entries.get(source + k));
+                }
+                i++;
+
+            } else {
+                byte[] magnitude = magnitudes[j];
+                RevokedCertificate revokedCert = pending.get(keys[j]);
+                int padding = newSerialSize - magnitude.length;
+                for (int k = 0; k < padding; k++) {
+                    target.put(offset + k, (byte) 0);
+                }
+                target.put(offset + padding, magnitude);
+                target.putLong(offset + newSerialSize, revokedCert.getRevocationDate().getTime());
+                target.put(offset + newSerialSize + DATE_SIZE, encodeReason(revokedCert));
+                j++;
+            }
+
+            position++;
+        }
+
+        replaceEntries(target);
+        count = newCount;
+        serialSize = newSerialSize;
+        entrySize = newEntrySize;
+        removed = new BitSet();
+        removedCount = 0;
+        pending.clear();
+
+        try {
+            commit();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to store revocation index: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<BigInteger, RevokedCertificate>> entrySet() {
+        return new AbstractSet<>() {
+
+            @Override
+            public Iterator<Map.Entry<BigInteger, RevokedCertificate>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return CompactRevocationIndex.this.size();
+            }
+        };
+    }
+
+    /**
+     * Iterates over a snapshot of the packed and extended entries
+     * in serial number order.
+     */
+    class EntryIterator implements Iterator<Map.Entry<BigInteger, RevokedCertificate>> {
+
+        ByteBuffer entries;
+        int count;
+        int serialSize;
+        int entrySize;
+        int index;
+
+        List<Map.Entry<BigInteger, RevokedCertificate>> extendedEntries;
+        int extendedIndex;
+
+        boolean released;
+
+        EntryIterator() {
+            synchronized (CompactRevocationIndex.this) {
+
+                // merge pending changes and removals so that
+                // all packed entries in the snapshot are live
+                compact();
+
+                entries = CompactRevocationIndex.this.entries;
+                count = CompactRevocationIndex.this.count;
+                serialSize = CompactRevocationIndex.this.serialSize;
+                entrySize = CompactRevocationIndex.this.entrySize;
+
+                extendedEntries = new ArrayList<>(extended.size());
+                for (Map.Entry<BigInteger, RevokedCertificate> entry : extended.entrySet()) {
+                    extendedEntries.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+                }
+                extendedEntries.sort(Map.Entry.comparingByKey());
+
+                acquire(entries);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            if (index < count || extendedIndex < extendedEntries.size()) {
+                return true;
+            }
+
+            if (!released) {
+                released = true;
+                release(entries);
+            }
+
+            return false;
+        }
+
+        @Override
+        public Map.Entry<BigInteger, RevokedCertificate> next() {
+
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            boolean takeBase;
+            if (index >= count) {
+                takeBase = false;
+            } else if (extendedIndex >= extendedEntries.size()) {
+                takeBase = true;
+            } else {
+                BigInteger serialNumber = getSerialNumber(entries, index * entrySize, serialSize);
+                takeBase = serialNumber.compareTo(extendedEntries.get(extendedIndex).getKey()) < 0;
+            }
+
+            if (takeBase) {
+                RevokedCertificate revokedCert = getEntry(entries, index++ * entrySize, serialSize);
+                return new AbstractMap.SimpleImmutableEntry<>(revokedCert.getSerialNumber(), revokedCert);
+            }
+
+            return extendedEntries.get(extendedIndex++);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.jss.crypto.CryptoToken;
+import org.mozilla.jss.crypto.PrivateKey;
+import org.mozilla.jss.crypto.Signature;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+
+import com.netscape.cmscore.util.MetricsRegistry;
+
+/**
+ * This class maintains a pool of signature contexts initialized with
+ * the signing key for each signature algorithm.
+ *
+ * A signature context returns to the initialized state after sign(),
+ * so it can be reused for the next signature without creating a new
+ * context on the token and calling initSign() again. The number of
+ * contexts in use for each algorithm is limited by the pool size,
+ * which also limits the number of concurrent sessions on the token.
+ * A context that failed to sign is discarded.
+ *
+ * The time spent waiting for a context and the time spent signing
+ * are recorded in the metrics registry, if configured.
+ */
+public class SignaturePool {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SignaturePool.class);
+
+    private CryptoToken token;
+    private PrivateKey privateKey;
+    private int size;
+
+    private Map<SignatureAlgorithm, Contexts> contexts = new ConcurrentHashMap<>();
+
+    private AtomicLong signatures = new AtomicLong();
+    private AtomicLong failures = new AtomicLong();
+    private AtomicLong created = new AtomicLong();
+    private AtomicLong waitTime = new AtomicLong();
+    private AtomicLong signTime = new AtomicLong();
+
+    private String name;
+    private MetricsRegistry metricsRegistry;
+
+    public SignaturePool(CryptoToken token, PrivateKey privateKey, int size) {
+        this.token = token;
+        this.privateKey = privateKey;
+        this.size = size;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry, String name) {
+
+        this.metricsRegistry = metricsRegistry;
+        this.name = name;
+
+        if (metricsRegistry != null) {
+            metricsRegistry.registerGauge(getMetricName("signatures"), this::getSignatures);
+            metricsRegistry.registerGauge(getMetricName("failures"), this::getFailures);
+            metricsRegistry.registerGauge(getMetricName("contexts"), this::getContextsCreated);
+        }
+    }
+
+    String getMetricName(String metric) {
+        return "signature_pool_" + name + "_" + metric;
+    }
+
+    /**
+     * Creates a signature context initialized with the signing key.
+     */
+    protected Context createContext(SignatureAlgorithm signAlg) throws Exception {
+
+        Signature signer = token.getSignatureContext(signAlg);
+        signer.initSign(privateKey);
+
+        return data -> {
+            signer.update(data);
+            return signer.sign();
+        };
+    }
+
+    /**
+     * Signs the data with a signature context from the pool.
+     */
+    public byte[] sign(byte[] data, SignatureAlgorithm signAlg) throws Exception {
+
+        Contexts pool = contexts.computeIfAbsent(signAlg, k -> new Contexts());
+
+        long startTime = System.nanoTime();
+        pool.permits.acquire();
+        long acquireTime = System.nanoTime();
+
+        long waitNanos = acquireTime - startTime;
+        waitTime.addAndGet(waitNanos);
+
+        MetricsRegistry metricsRegistry = this.metricsRegistry;
+        if (metricsRegistry != null) {
+            metricsRegistry.record(getMetricName("wait"), waitNanos);
+        }
+
+        try {
+            Context context = pool.idle.poll();
+            if (context == null) {
+                logger.debug("SignaturePool: Creating signature context for " + signAlg);
+                context = createContext(signAlg);
+                created.incrementAndGet();
+            }
+
+            byte[] signature;
+            try {
+                signature = context.sign(data);
+
+            } catch (Exception e) {
+                // the context might be in an unknown state, do not reuse
+                failures.incrementAndGet();
+                throw e;
+            }
+
+            long signNanos = System.nanoTime() - acquireTime;
+            signTime.addAndGet(signNanos);
+
+            if (metricsRegistry != null) {
+                metricsRegistry.record(getMetricName("sign"), signNanos);
+            }
+
+            signatures.incrementAndGet();
+
+            pool.idle.offer(context);
+            return signature;
+
+        } finally {
+            pool.permits.release();
+        }
+    }
+
+    /**
+     * Returns the number of signatures created with the pool.
+     */
+    public long getSignatures() {
+        return signatures.get();
+    }
+
+    /**
+     * Returns the number of failed signatures.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Returns the number of signature contexts created by the pool.
+     */
+    public long getContextsCreated() {
+        return created.get();
+    }
+
+    /**
+     * Returns the total time spent waiting for a signature context
+     * in nanoseconds.
+     */
+    public long getWaitTime() {
+        return waitTime.get();
+    }
+
+    /**
+     * Returns the total time spent creating signatures (including
+     * creating new signature contexts) in nanoseconds.
+     */
+    public long getSignTime() {
+        return signTime.get();
+    }
+
+    /**
+     * Removes all idle signature contexts.
+     */
+    public void clear() {
+        for (Contexts pool : contexts.values()) {
+            pool.idle.clear();
+        }
+    }
+
+    /**
+     * A signature context that can sign data repeatedly.
+     */
+    protected interface Context {
+        byte[] sign(byte[] data) throws Exception;
+    }
+
+    class Contexts {
+        Semaphore permits = new Semaphore(size, true);
+        ConcurrentLinkedQueue<Context> idle = new ConcurrentLinkedQueue<>();
+    }
+}
@@ -0,0 +1,323 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+
+import org.mozilla.jss.crypto.Signature;
+import org.mozilla.jss.netscape.security.util.BigInt;
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.util.DerValue;
+import org.mozilla.jss.netscape.security.x509.AlgorithmId;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+import org.mozilla.jss.netscape.security.x509.X500Name;
+
+/**
+ * This class generates a signed CRL without creating an X509CRLImpl
+ * with all revoked certificates.
+ *
+ * The revoked certificates are DER-encoded one at a time in serial
+ * number order into a spool file. Once the size of the list is known
+ * the TBSCertList is streamed from the spool file into the signature
+ * context, and the signed CRL is assembled into a single byte array
+ * of the exact size.
+ *
+ * The encoding is identical to X509CRLImpl.encodeInfo().
+ */
+public class StreamingCRLBuilder implements AutoCloseable {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(StreamingCRLBuilder.class);
+
+    // dates from 2050 on are encoded as GeneralizedTime (RFC 5280)
+    private static final long YR_2050 = 2524636800000L;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private X500Name issuer;
+    private AlgorithmId algorithmId;
+    private Date thisUpdate;
+    private Date nextUpdate;
+    private CRLExtensions extensions;
+
+    private Path spoolFile;
+    private long entriesSize;
+    private int entriesCount;
+    private boolean entryExtensions;
+
+    public StreamingCRLBuilder(
+            X500Name issuer,
+            AlgorithmId algorithmId,
+            Date thisUpdate,
+            Date nextUpdate,
+            CRLExtensions extensions,
+            Path spoolDir) throws IOException {
+
+        this.issuer = issuer;
+        this.algorithmId = algorithmId;
+        this.thisUpdate = thisUpdate;
+        this.nextUpdate = nextUpdate;
+        this.extensions = extensions;
+
+        if (spoolDir == null) {
+            spoolFile = Files.createTempFile("crl", ".spool");
+        } else {
+            spoolFile = Files.createTempFile(spoolDir, "crl", ".spool");
+        }
+    }
+
+    public int getEntriesCount() {
+        return entriesCount;
+    }
+
+    /**
+     * Encodes the revoked certificates into the spool file in serial
+     * number order. CompactRevocationIndex already iterates in this order,
+     * other maps are sorted by key first.
+     */
+    public void addRevokedCerts(Map<BigInteger, RevokedCertificate> revokedCerts) throws Exception {
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(spoolFile), BUFFER_SIZE)) {
+
+            if (revokedCerts instanceof CompactRevocationIndex) {
+                for (RevokedCertificate revokedCert : revokedCerts.values()) {
+                    addRevokedCert(out, revokedCert);
+                }
+
+            } else {
+                BigInteger[] serialNumbers = revokedCerts.keySet().toArray(new BigInteger[0]);
+                Arrays.sort(serialNumbers);
+
+                for (BigInteger serialNumber : serialNumbers) {
+                    RevokedCertificate revokedCert = revokedCerts.get(serialNumber);
+                    if (revokedCert == null) {
+                        continue;
+                    }
+                    addRevokedCert(out, revokedCert);
+                }
+            }
+        }
+
+        logger.debug("StreamingCRLBuilder: Encoded " + entriesCount + " entries (" + entriesSize + " bytes)");
+    }
+
+    void addRevokedCert(OutputStream out, RevokedCertificate revokedCert) throws Exception {
+
+        RevokedCertImpl entry;
+        if (revokedCert instanceof RevokedCertImpl impl) {
+            entry = impl;
+        } else {
+            entry = new RevokedCertImpl(
+                    revokedCert.getSerialNumber(),
+                    revokedCert.getRevocationDate(),
+                    revokedCert.getExtensions());
+        }
+
+        if (entry.hasExtensions()) {
+            entryExtensions = true;
+        }
+
+        try (DerOutputStream tmp = new DerOutputStream()) {
+            entry.encode(tmp);
+            byte[] bytes = tmp.toByteArray();
+            out.write(bytes);
+            entriesSize += bytes.length;
+        }
+
+        entriesCount++;
+    }
+
+    /**
+     * Returns DER tag and length bytes.
+     */
+    static byte[] encodeHeader(byte tag, long length) {
+
+        if (length < 0x80) {
+            return new byte[] { tag, (byte) length };
+        }
+
+        int size = 0;
+        for (long l = length; l != 0; l >>>= 8) {
+            size++;
+        }
+
+        byte[] header = new byte[size + 2];
+        header[0] = tag;
+        header[1] = (byte) (0x80 | size);
+
+        for (int i = size + 1; i > 1; i--) {
+            header[i] = (byte) length;
+            length >>>= 8;
+        }
+
+        return header;
+    }
+
+    void encodeTime(DerOutputStream out, Date date) throws IOException {
+        if (date.getTime() < YR_2050) {
+            out.putUTCTime(date);
+        } else {
+            out.putGeneralizedTime(date);
+        }
+    }
+
+    /**
+     * Returns the TBSCertList fields that precede the revoked certificates.
+     */
+    byte[] encodeInfoPrefix() throws Exception {
+
+        try (DerOutputStream out = new DerOutputStream()) {
+
+            // v2 CRL if CRL or entry extensions are present
+            if (extensions != null || entryExtensions) {
+                out.putInteger(new BigInt(1));
+            }
+
+            algorithmId.encode(out);
+            issuer.encode(out);
+            encodeTime(out, thisUpdate);
+
+            if (nextUpdate != null) {
+                encodeTime(out, nextUpdate);
+            }
+
+            if (entriesCount > 0) {
+                out.write(encodeHeader(DerValue.tag_Sequence, entriesSize));
+            }
+
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Returns the TBSCertList fields that follow the revoked certificates.
+     */
+    byte[] encodeInfoSuffix() throws Exception {
+
+        if (extensions == null) {
+            return new byte[0];
+        }
+
+        try (DerOutputStream out = new DerOutputStream()) {
+            extensions.encode(out, true);
+            return out.toByteArray();
+        }
+    }
+
+    long copyEntries(Signature signer, byte[] target, int offset) throws Exception {
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(spoolFile), BUFFER_SIZE)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                if (signer != null) {
+                    signer.update(buffer, 0, n);
+                }
+                if (target != null) {
+                    System.arraycopy(buffer, 0, target, offset + (int) total, n);
+                }
+                total += n;
+            }
+        }
+
+        if (total != entriesSize) {
+            throw new IOException("Invalid CRL spool file size: " + total);
+        }
+
+        return total;
+    }
+
+    /**
+     * Signs the CRL and returns the DER-encoded signed CRL.
+     *
+     * @param signer initialized signature context
+     * @return DER-encoded signed CRL
+     */
+    public byte[] sign(Signature signer) throws Exception {
+
+        byte[] prefix = encodeInfoPrefix();
+        byte[] suffix = encodeInfoSuffix();
+
+        long infoSize = prefix.length + entriesSize + suffix.length;
+        byte[] infoHeader = encodeHeader(DerValue.tag_Sequence, infoSize);
+
+        // stream TBSCertList into signature context
+        signer.update(infoHeader);
+        signer.update(prefix);
+        copyEntries(signer, null, 0);
+        signer.update(suffix);
+
+        byte[] signature = signer.sign();
+
+        byte[] trailer;
+        try (DerOutputStream out = new DerOutputStream()) {
+            algorithmId.encode(out);
+            out.putBitString(signature);
+            trailer = out.toByteArray();
+        }
+
+        long crlSize = infoHeader.length + infoSize + trailer.length;
+        byte[] crlHeader = encodeHeader(DerValue.tag_Sequence, crlSize);
+
+        long totalSize = crlHeader.length + crlSize;
+        if (totalSize > Integer.MAX_VALUE) {
+            throw new IOException("CRL too large: " + totalSize + " bytes");
+        }
+
+        logger.debug("StreamingCRLBuilder: CRL size: " + totalSize);
+
+        byte[] crl = new byte[(int) totalSize];
+        int offset = 0;
+
+        System.arraycopy(crlHeader, 0, crl, offset, crlHeader.length);
+        offset += crlHeader.length;
+
+        System.arraycopy(infoHeader, 0, crl, offset, infoHeader.length);
+        offset += infoHeader.length;
+
+        System.arraycopy(prefix, 0, crl, offset, prefix.length);
+        offset += prefix.length;
+
+        offset += (int) copyEntries(null, crl, offset);
+
+        System.arraycopy(suffix, 0, crl, offset, suffix.length);
+        offset += suffix.length;
+
+        System.arraycopy(trailer, 0, crl, offset, trailer.length);
+
+        return crl;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(spoolFile);
+    }
+}
@@ -25,16 +25,31 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.CRLException;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.text.ParseException;
 import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.Vector;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -71,6 +86,9 @@ public class FileBasedPublisher
     private static final String PROP_LEV = "zipLevel";
     private static final String PROP_MAX_AGE = "maxAge";
     private static final String PROP_MAX_FULL_CRLS = "maxFullCRLs";
+    private static final String PROP_SINGLE_PASS = "singlePass";
+    private static final String PROP_GZIP = "gzipCRLs";
+    private static final String PROP_HTTP_METADATA = "httpMetadata";
     private ConfigStore mConfig;
     private String mDir = null;
     private String mCrlIssuingPointId;
@@ -83,6 +101,9 @@ public class FileBasedPublisher
     protected int mZipLevel = 9;
     protected int maxAge = 0;
     protected int maxFullCRLs = 0;
+    protected boolean mSinglePass = false;
+    protected boolean mGzipCRL = false;
+    protected boolean mHttpMetadata = false;
 
     public void setIssuingPointId(String crlIssuingPointId) {
         mCrlIssuingPointId = crlIssuingPointId;
@@ -125,6 +146,14 @@ public class FileBasedPublisher
                     + ";integer;Number of days after which files should expire and be purged. Default is 0, which means to never expire.",
                 PROP_MAX_FULL_CRLS
                     + ";integer;Maximum number of full CRLs to be kept.  Once new files are published, the oldest files will be purged.  Default is 0 (no limit)",
+                PROP_SINGLE_PASS
+                    + ";boolean;Encode the CRL once and write all files from the same encoding, each into a temporary file which is synced and atomically renamed.",
+                PROP_GZIP
+                    + ";boolean;Generate gzip-compressed binary CRLs (*.der.gz). It requires '" + PROP_SINGLE_PASS
+                    + "' to be enabled.",
+                PROP_HTTP_METADATA
+                    + ";boolean;Generate an *.etag file for each CRL file and set its modification time to the CRL's 'thisUpdate' field. It requires '"
+                    + PROP_SINGLE_PASS + "' to be enabled.",
                 IExtendedPluginInfo.HELP_TOKEN +
                         ";configuration-ldappublish-publisher-filepublisher",
                 IExtendedPluginInfo.HELP_TEXT
@@ -181,6 +210,9 @@ public class FileBasedPublisher
             v.addElement(PROP_LEV + "=" + mZipLevel);
             v.addElement(PROP_MAX_FULL_CRLS +"=" + maxFullCRLs);
             v.addElement(PROP_MAX_AGE + "=" + maxAge);
+            v.addElement(PROP_SINGLE_PASS + "=" + mConfig.getBoolean(PROP_SINGLE_PASS, false));
+            v.addElement(PROP_GZIP + "=" + mConfig.getBoolean(PROP_GZIP, false));
+            v.addElement(PROP_HTTP_METADATA + "=" + mConfig.getBoolean(PROP_HTTP_METADATA, false));
         } catch (Exception e) {
         }
         return v;
@@ -203,6 +235,9 @@ public class FileBasedPublisher
         v.addElement(PROP_LEV + "=9");
         v.addElement(PROP_MAX_FULL_CRLS + "=0");
         v.addElement(PROP_MAX_AGE + "=0");
+        v.addElement(PROP_SINGLE_PASS + "=false");
+        v.addElement(PROP_GZIP + "=false");
+        v.addElement(PROP_HTTP_METADATA + "=false");
         return v;
     }
 
@@ -226,6 +261,9 @@ public class FileBasedPublisher
             mZipLevel = mConfig.getInteger(PROP_LEV, 9);
             maxFullCRLs = mConfig.getInteger(PROP_MAX_FULL_CRLS, 0);
             maxAge = mConfig.getInteger(PROP_MAX_AGE, 0);
+            mSinglePass = mConfig.getBoolean(PROP_SINGLE_PASS, false);
+            mGzipCRL = mConfig.getBoolean(PROP_GZIP, false);
+            mHttpMetadata = mConfig.getBoolean(PROP_HTTP_METADATA, false);
         } catch (EBaseException e) {
         }
         if (dir == null) {
@@ -367,6 +405,14 @@ public class FileBasedPublisher
             } else if (object instanceof X509CRL) {
                 X509CRL crl = (X509CRL) object;
                 String[] namePrefix = getCrlNamePrefix(crl, mTimeStamp.equals("GMT"));
+
+                if (mSinglePass) {
+                    publishCRL(crl, namePrefix);
+                    purgeExpiredFiles();
+                    purgeExcessFiles();
+                    return;
+                }
+
                 String baseName = mDir + File.separator + namePrefix[0];
                 String tempFile = baseName + ".temp";
                 ZipOutputStream zos = null;
@@ -456,14 +502,193 @@ public class FileBasedPublisher
     }
 
     /**
-     * Gets all the CRLS (full and delta) in the directory
+     * Publishes a CRL in a single pass. The CRL is encoded once and
+     * all enabled files are generated from the same buffer. Each file
+     * is written into a temporary file, synced to disk, then atomically
+     * renamed, so a reader never sees a partially written CRL. The links
+     * are updated after all files have been written.
+     */
+    void publishCRL(X509CRL crl, String[] namePrefix) throws CRLException, IOException {
+        publishCRL(crl.getEncoded(), crl.getThisUpdate().getTime(), namePrefix);
+    }
+
+    void publishCRL(byte[] encodedArray, long lastModified, String[] namePrefix) throws IOException {
+
+        String baseName = mDir + File.separator + namePrefix[0];
+
+        // The files are written sequentially by the publishing thread
+        // instead of in a shared thread pool where a slow disk would
+        // block unrelated tasks.
+
+        Map<String, Callable<byte[]>> files = new LinkedHashMap<>();
+
+        if (mDerAttr) {
+            files.put(baseName + ".der", () -> encodedArray);
+        }
+
+        if (mB64Attr) {
+            files.put(baseName + ".b64", () -> Utils.base64encode(encodedArray, true).getBytes());
+        }
+
+        if (mDerAttr && mZipCRL) {
+            files.put(baseName + ".zip", () -> zip(baseName + ".der", encodedArray));
+        }
+
+        if (mDerAttr && mGzipCRL) {
+            files.put(baseName + ".der.gz", () -> gzip(encodedArray));
+        }
+
+        IOException exception = null;
+
+        // write all files even if one of them has failed
+        for (Map.Entry<String, Callable<byte[]>> file : files.entrySet()) {
+            try {
+                writeFile(file.getKey(), file.getValue().call(), lastModified);
+
+            } catch (Exception e) {
+                logger.warn("FileBasedPublisher: Unable to write " + file.getKey() + ": " + e.getMessage(), e);
+                if (exception == null) {
+                    exception = e instanceof IOException ioe ? ioe : new IOException(e.getMessage(), e);
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+
+        syncDirectory();
+
+        if (mDerAttr && mLatestCRL) {
+            String linkExt = ".";
+            if (mLinkExt != null && mLinkExt.length() > 0) {
+                linkExt += mLinkExt;
+            } else {
+                linkExt += "der";
+            }
+            String linkName = mDir + File.separator + namePrefix[1] + linkExt;
+            updateLink(linkName, baseName + ".der");
+            if (mZipCRL) {
+                updateLink(mDir + File.separator + namePrefix[1] + ".zip", baseName + ".zip");
+            }
+            if (mGzipCRL) {
+                updateLink(linkName + ".gz", baseName + ".der.gz");
+            }
+        }
+    }
+
+    /**
+     * Writes a file atomically, and its ETag file if HTTP metadata
+     * is enabled.
+     */
+    void writeFile(String fileName, byte[] content, long lastModified) throws IOException {
+
+        logger.debug("FileBasedPublisher: Writing " + fileName);
+        writeAtomically(Paths.get(fileName), content, lastModified);
+
+        if (mHttpMetadata) {
+            String etag = "\"" + getETag(content) + "\"\n";
+            writeAtomically(Paths.get(fileName + ".etag"), etag.getBytes(), lastModified);
+        }
+    }
+
+    void writeAtomically(Path path, byte[] content, long lastModified) throws IOException {
+
+        Path tempPath = path.resolveSibling(path.getFileName() + ".temp");
+
+        try {
+            try (FileChannel channel = FileChannel.open(
+                    tempPath,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+
+                channel.force(true);
+            }
+
+            if (mHttpMetadata) {
+                // web servers use the modification time for Last-Modified
+                Files.setLastModifiedTime(tempPath, FileTime.fromMillis(lastModified));
+            }
+
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+    }
+
+    String getETag(byte[] content) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("Unable to generate ETag: " + e.getMessage(), e);
+        }
+    }
+
+    byte[] zip(String entryName, byte[] content) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(output)) {
+            zos.setLevel(mZipLevel);
+            zos.putNextEntry(new ZipEntry(entryName));
+            zos.write(content, 0, content.length);
+            zos.closeEntry();
+        }
+        return output.toByteArray();
+    }
+
+    byte[] gzip(byte[] content) throws IOException {
+        int level = mZipLevel;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzos = new GZIPOutputStream(output) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzos.write(content);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Syncs the directory so the renamed files survive a crash.
+     */
+    void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(Paths.get(mDir), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on all platforms
+            logger.debug("FileBasedPublisher: Unable to sync " + mDir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces a link atomically, so the link always exists and points
+     * to a complete file.
+     */
+    void updateLink(String linkName, String fileName) throws IOException {
+        Path newLink = Paths.get(linkName + ".new");
+        Files.deleteIfExists(newLink);
+        Files.createSymbolicLink(newLink, Paths.get(fileName));
+        Files.move(newLink, Paths.get(linkName), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Gets all the CRLS (full and delta) and their ETag files in the directory
      * These match <prefix>-<yyyyMMDD>-<HHmmss>.* and <prefix>-<yyyyMMDD>-<HHmmss>-delta.*
      *
      * @param dir
      * @return array of files
      */
     public File[] getCRLFiles(File dir) {
-        String pattern = getGeneralCrlPrefix() + "-\\d{8}-\\d{6}(-delta)?.(der|b64|zip)";
+        String pattern = getGeneralCrlPrefix() + "-\\d{8}-\\d{6}(-delta)?.(der|b64|zip|der.gz)(.etag)?";
         FileFilter filter = new RegexFileFilter(pattern);
         return dir.listFiles(filter);
     }
@@ -483,7 +708,7 @@ public class FileBasedPublisher
 
     long getCreationTime(File file) throws ParseException {
         // parse and get the creation time from the file name
-        String pattern = getGeneralCrlPrefix() + "-(\\d{8}-\\d{6})(-delta)?.(der|b64|zip)";
+        String pattern = getGeneralCrlPrefix() + "-(\\d{8}-\\d{6})(-delta)?.(der|b64|zip|der.gz)(.etag)?";
         Pattern p = Pattern.compile(pattern);
         Matcher m = p.matcher(file.getName());
 
@@ -584,14 +809,26 @@ public class FileBasedPublisher
             fileName = name + ".zip";
             File f = new File(fileName);
             f.delete();
+
+            new File(fileName + ".etag").delete();
+
+            fileName = name + ".der.gz";
+            f = new File(fileName);
+            f.delete();
+
+            new File(fileName + ".etag").delete();
         }
         fileName = name + ".der";
         File f = new File(fileName);
         f.delete();
 
+        new File(fileName + ".etag").delete();
+
         fileName = name + ".b64";
         f = new File(fileName);
         f.delete();
+
+        new File(fileName + ".etag").delete();
     }
 
     /**
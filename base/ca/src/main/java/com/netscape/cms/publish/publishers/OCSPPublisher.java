@@ -26,15 +26,21 @@ import java.net.Socket;
 import java.net.URLEncoder;
 import java.security.cert.CRLException;
 import java.security.cert.X509CRL;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 import org.dogtagpki.server.ca.CAEngine;
 import org.dogtagpki.server.ca.CAEngineConfig;
 import org.dogtagpki.util.cert.CertUtil;
 import org.mozilla.jss.netscape.security.util.Utils;
+import org.mozilla.jss.netscape.security.x509.PKIXExtensions;
 import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
 import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
 
@@ -66,6 +72,19 @@ public class OCSPPublisher
     private static final String PROP_PATH = "path";
     private static final String PROP_NICK = "nickName";
     private static final String PROP_CLIENT_AUTH_ENABLE = "enableClientAuth";
+    private static final String PROP_MODE = "mode";
+    private static final String PROP_DELTA_ONLY = "deltaOnly";
+    private static final String PROP_TIMEOUT = "timeout";
+
+    public static final String MODE_FORM = "form";
+    public static final String MODE_BINARY = "binary";
+
+    public static final String CONTENT_TYPE_PKIX_CRL = "application/pkix-crl";
+
+    // AddCRLServlet response status codes
+    public static final int STATUS_SUCCESS = 0;
+    public static final int STATUS_FAILURE = 1;
+    public static final int STATUS_DELTA_BASE_NOT_FOUND = 2;
 
     private ConfigStore mConfig;
     private String mHost = null;
@@ -73,6 +92,26 @@ public class OCSPPublisher
     private String mPath = null;
     private String mNickname = null;
     private boolean mClientAuthEnabled = true;
+    private String mMode = MODE_FORM;
+    private boolean mDeltaOnly;
+    private int mTimeout;
+
+    // idle keep-alive connections in binary mode
+    private ConcurrentLinkedDeque<OCSPPublisherConnection> mConnections = new ConcurrentLinkedDeque<>();
+
+    // delta-only mode state by CRL issuer and issuing distribution point
+    private Map<String, CRLState> mCRLStates = new ConcurrentHashMap<>();
+
+    /**
+     * Delta-only mode state of a CRL issuing point.
+     */
+    static class CRLState {
+
+        // last full CRL received
+        volatile X509CRL lastFullCRL;
+
+        volatile boolean fullCRLPublished;
+    }
 
     /**
      * Returns the implementation name.
@@ -98,6 +137,11 @@ public class OCSPPublisher
                 PROP_PATH + ";string;URI of CMS's OCSP Secure agent service",
                 PROP_NICK + ";string;Nickname of cert used for client authentication",
                 PROP_CLIENT_AUTH_ENABLE + ";boolean;Client Authentication enabled",
+                PROP_MODE + ";choice(form,binary);Publishing mode: form posts the base64 CRL"
+                        + " in a new connection, binary posts the DER CRL in a persistent connection",
+                PROP_DELTA_ONLY + ";boolean;Publish delta CRLs only in binary mode. Full CRLs"
+                        + " are published when the OCSP responder does not have the base CRL",
+                PROP_TIMEOUT + ";integer;Read timeout in milliseconds in binary mode",
                 IExtendedPluginInfo.HELP_TOKEN +
                         ";configuration-ldappublish-publisher-ocsppublisher",
                 IExtendedPluginInfo.HELP_TEXT +
@@ -144,6 +188,9 @@ public class OCSPPublisher
         } catch (EBaseException e) {
         }
         v.addElement(PROP_CLIENT_AUTH_ENABLE + "=" + clientAuthEnabled);
+        v.addElement(PROP_MODE + "=" + mMode);
+        v.addElement(PROP_DELTA_ONLY + "=" + mDeltaOnly);
+        v.addElement(PROP_TIMEOUT + "=" + mTimeout);
         return v;
     }
 
@@ -172,6 +219,9 @@ public class OCSPPublisher
         v.addElement(PROP_PATH + "=/ocsp/agent/ocsp/addCRL");
         v.addElement(PROP_CLIENT_AUTH_ENABLE + "=true");
         v.addElement(PROP_NICK + "=" + nickname);
+        v.addElement(PROP_MODE + "=" + MODE_FORM);
+        v.addElement(PROP_DELTA_ONLY + "=false");
+        v.addElement(PROP_TIMEOUT + "=30000");
         return v;
     }
 
@@ -186,6 +236,18 @@ public class OCSPPublisher
         mPath = mConfig.getString(PROP_PATH, "");
         mNickname = mConfig.getString(PROP_NICK, "");
         mClientAuthEnabled = mConfig.getBoolean(PROP_CLIENT_AUTH_ENABLE, true);
+        mMode = mConfig.getString(PROP_MODE, MODE_FORM);
+        mDeltaOnly = mConfig.getBoolean(PROP_DELTA_ONLY, false);
+        mTimeout = mConfig.getInteger(PROP_TIMEOUT, 30000);
+
+        if (!MODE_FORM.equals(mMode) && !MODE_BINARY.equals(mMode)) {
+            throw new EBaseException("Invalid OCSP publishing mode: " + mMode);
+        }
+
+        if (mDeltaOnly && !MODE_BINARY.equals(mMode)) {
+            logger.warn("OCSPPublisher: " + PROP_DELTA_ONLY + " requires binary mode, ignored");
+            mDeltaOnly = false;
+        }
     }
 
     @Override
@@ -231,14 +293,25 @@ public class OCSPPublisher
      *            java.security.cert.X509CRL)
      */
     @Override
-    public synchronized void publish(LDAPConnection conn, String dn, Object object)
+    public void publish(LDAPConnection conn, String dn, Object object)
             throws DBException {
-        try {
-            if (!(object instanceof X509CRL)) {
-                return;
-            }
 
-            X509CRL crl = (X509CRL) object;
+        if (!(object instanceof X509CRL)) {
+            return;
+        }
+
+        if (MODE_BINARY.equals(mMode)) {
+            publishBinary((X509CRL) object);
+        } else {
+            publishForm((X509CRL) object);
+        }
+    }
+
+    /**
+     * Publishes the CRL in base64 form encoding in a new connection.
+     */
+    protected synchronized void publishForm(X509CRL crl) throws DBException {
+        try {
 
             // talk to agent port of CMS
 
@@ -252,16 +325,7 @@ public class OCSPPublisher
             String url = "https://" + host + ":" + port + path;
             logger.info("OCSPPublisher: Publishing CRL to " + url);
 
-            if (object instanceof X509CRLImpl crlImpl) {
-                logger.info("OCSPPublisher: Revoked certs:");
-                Set<RevokedCertificate> certs = crlImpl.getRevokedCertificates();
-                if (certs != null) {
-                    for (RevokedCertificate cert : certs) {
-                        CertId certID = new CertId(cert.getSerialNumber());
-                        logger.info("OCSPPublisher: - " + certID.toHexString());
-                    }
-                }
-            }
+            logRevokedCerts(crl);
 
             String pemCRL = CertUtil.CRL_HEADER + "\n" +
                     Utils.base64encode(crl.getEncoded(), true) +
@@ -369,6 +433,222 @@ public class OCSPPublisher
         }
     }
 
+    void logRevokedCerts(X509CRL crl) {
+
+        if (!(crl instanceof X509CRLImpl crlImpl)) {
+            return;
+        }
+
+        logger.info("OCSPPublisher: Revoked certs:");
+        Set<RevokedCertificate> certs = crlImpl.getRevokedCertificates();
+        if (certs != null) {
+            for (RevokedCertificate cert : certs) {
+                CertId certID = new CertId(cert.getSerialNumber());
+                logger.info("OCSPPublisher: - " + certID.toHexString());
+            }
+        }
+    }
+
+    /**
+     * Returns the key of the delta-only mode state of the CRL. The full
+     * and delta CRLs of an issuing point have the same issuer and the
+     * same issuing distribution point extension.
+     */
+    static String getCRLStateKey(X509CRL crl) {
+
+        StringBuilder sb = new StringBuilder(crl.getIssuerX500Principal().getName());
+
+        byte[] idp = crl.getExtensionValue(PKIXExtensions.IssuingDistributionPoint_Id.toString());
+        if (idp != null) {
+            sb.append('#').append(Utils.HexEncode(idp));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Publishes the CRL in DER encoding in a persistent connection.
+     *
+     * In delta-only mode, full CRLs are kept but not published,
+     * except the first one of each issuing point. If the OCSP
+     * responder rejects a delta CRL because it does not have its base
+     * CRL, the last full CRL of the same issuing point is published
+     * and the delta CRL is sent again.
+     */
+    protected void publishBinary(X509CRL crl) throws DBException {
+
+        boolean isDeltaCRL = crl instanceof X509CRLImpl crlImpl && crlImpl.isDeltaCRL();
+        logger.info("OCSPPublisher: Publishing " + (isDeltaCRL ? "delta CRL" : "CRL") + " to " + mHost + mPath);
+
+        logRevokedCerts(crl);
+
+        CRLState state = mDeltaOnly
+                ? mCRLStates.computeIfAbsent(getCRLStateKey(crl), k -> new CRLState())
+                : null;
+
+        if (mDeltaOnly && !isDeltaCRL) {
+            state.lastFullCRL = crl;
+
+            if (state.fullCRLPublished) {
+                logger.info("OCSPPublisher: Publishing delta CRLs only, CRL will be published on demand");
+                return;
+            }
+        }
+
+        int status = sendCRL(crl);
+
+        if (mDeltaOnly && !isDeltaCRL && status == STATUS_SUCCESS) {
+            state.fullCRLPublished = true;
+        }
+
+        X509CRL baseCRL = state == null ? null : state.lastFullCRL;
+
+        if (mDeltaOnly && isDeltaCRL && status == STATUS_DELTA_BASE_NOT_FOUND && baseCRL != null) {
+            logger.info("OCSPPublisher: OCSP responder does not have the base CRL, publishing CRL");
+
+            if (sendCRL(baseCRL) == STATUS_SUCCESS) {
+                state.fullCRLPublished = true;
+                sendCRL(crl);
+            }
+        }
+    }
+
+    /**
+     * Sends the CRL to the first available OCSP responder and
+     * returns the AddCRLServlet status code. A failure to send the
+     * CRL to all responders is reported as DBException.
+     */
+    int sendCRL(X509CRL crl) throws DBException {
+
+        byte[] content;
+        try {
+            content = crl.getEncoded();
+        } catch (CRLException e) {
+            throw new DBException("Unable to encode CRL: " + e.getMessage(), e);
+        }
+
+        String path = mPath + (mPath.indexOf('?') < 0 ? "?" : "&") + "noui=true";
+
+        try {
+            OCSPPublisherConnection connection = mConnections.pollFirst();
+
+            if (connection != null) {
+                try {
+                    return post(connection, path, content);
+
+                } catch (IOException e) {
+                    // the server might have closed the idle connection
+                    logger.info("OCSPPublisher: Unable to reuse connection: " + e.getMessage());
+                }
+            }
+
+            return post(connect(), path, content);
+
+        } catch (IOException e) {
+            logger.warn(CMS.getLogMessage("PUBLISH_OCSP_PUBLISHER_ERROR", e.toString()));
+            throw new DBException("Unable to publish CRL: " + e.getMessage(), e);
+        }
+    }
+
+    int post(OCSPPublisherConnection connection, String path, byte[] content) throws IOException {
+
+        long startTime = System.currentTimeMillis();
+        String response = connection.post(path, CONTENT_TYPE_PKIX_CRL, content);
+        logger.debug("OCSPPublisher: CRL sent to " + connection.getHost() + ":" + connection.getPort()
+                + " in " + (System.currentTimeMillis() - startTime) + " ms");
+
+        if (connection.isOpen()) {
+            mConnections.offerFirst(connection);
+        }
+
+        return parseStatus(response);
+    }
+
+    int parseStatus(String response) {
+
+        int status = STATUS_FAILURE;
+        String error = "";
+
+        for (String line : response.split("\n")) {
+            line = line.trim();
+            if (line.startsWith("status=")) {
+                try {
+                    status = Integer.parseInt(line.substring(7));
+                } catch (NumberFormatException e) {
+                    status = STATUS_FAILURE;
+                }
+            } else if (line.startsWith("error=")) {
+                error = line.substring(6);
+            }
+        }
+
+        if (status == STATUS_SUCCESS) {
+            logger.debug("OCSPPublisher: successful");
+        } else {
+            logger.warn("OCSPPublisher: Unable to publish CRL: " + error);
+        }
+
+        return status;
+    }
+
+    /**
+     * Opens a connection to the first reachable OCSP responder.
+     * The host parameter can contain a space-separated list of
+     * host:port for failover.
+     */
+    OCSPPublisherConnection connect() throws IOException {
+
+        List<String[]> targets = new ArrayList<>();
+
+        if (mHost != null && mHost.indexOf(' ') != -1) {
+            StringTokenizer st = new StringTokenizer(mHost, " ");
+            while (st.hasMoreTokens()) {
+                String[] hp = st.nextToken().split(":");
+                targets.add(new String[] { hp[0], hp.length > 1 ? hp[1] : mPort });
+            }
+        } else {
+            targets.add(new String[] { mHost, mPort });
+        }
+
+        CAEngine engine = CAEngine.getInstance();
+        IOException exception = null;
+
+        for (String[] target : targets) {
+            String host = target[0];
+            int port = Integer.parseInt(target[1]);
+
+            try {
+                logger.info("OCSPPublisher: Connecting to " + host + ":" + port);
+
+                JssSSLSocketFactory factory = mClientAuthEnabled
+                        ? new JssSSLSocketFactory(mNickname)
+                        : new JssSSLSocketFactory();
+                factory.addSocketListener(engine.getClientSocketListener());
+
+                Socket socket = factory.makeSocket(host, port);
+                socket.setSoTimeout(mTimeout);
+                socket.setKeepAlive(true);
+
+                return new OCSPPublisherConnection(host, port, socket);
+
+            } catch (IOException e) {
+                logger.warn("OCSPPublisher: Unable to connect to " + host + ":" + port + ": " + e.getMessage());
+                exception = e;
+            }
+        }
+
+        throw exception;
+    }
+
+    @Override
+    public void shutdown() {
+
+        OCSPPublisherConnection connection;
+        while ((connection = mConnections.pollFirst()) != null) {
+            connection.close();
+        }
+    }
+
     /**
      * Unpublishs a object to the ldap directory.
      *
@@ -0,0 +1,205 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.publish.publishers;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class maintains a persistent HTTP/1.1 connection to
+ * an OCSP responder. The connection is kept open after each
+ * request unless the server closes it.
+ */
+public class OCSPPublisherConnection {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OCSPPublisherConnection.class);
+
+    private String host;
+    private int port;
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+    private boolean open = true;
+
+    public OCSPPublisherConnection(String host, int port, Socket socket) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = socket.getOutputStream();
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public boolean isOpen() {
+        return open && !socket.isClosed();
+    }
+
+    /**
+     * Sends a POST request and returns the response content.
+     *
+     * @param path request path including the query string
+     * @param contentType content type of the request body
+     * @param content request body
+     * @return response content
+     */
+    public String post(String path, String contentType, byte[] content) throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("POST ").append(path).append(" HTTP/1.1\r\n");
+        sb.append("Host: ").append(host).append(':').append(port).append("\r\n");
+        sb.append("Connection: keep-alive\r\n");
+        sb.append("Content-Type: ").append(contentType).append("\r\n");
+        sb.append("Content-Length: ").append(content.length).append("\r\n");
+        sb.append("\r\n");
+
+        try {
+            out.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+            out.write(content);
+            out.flush();
+
+            String statusLine = readLine();
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+                throw new IOException("Invalid HTTP response: " + statusLine);
+            }
+
+            int statusCode = Integer.parseInt(parts[1]);
+
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while (!(line = readLine()).isEmpty()) {
+                int i = line.indexOf(':');
+                if (i > 0) {
+                    headers.put(line.substring(0, i).trim().toLowerCase(), line.substring(i + 1).trim());
+                }
+            }
+
+            byte[] body = readBody(headers);
+
+            if ("close".equalsIgnoreCase(headers.get("connection"))) {
+                close();
+            }
+
+            String response = new String(body, StandardCharsets.UTF_8);
+
+            if (statusCode != 200) {
+                throw new IOException("Unable to publish to " + host + ":" + port + ": HTTP " + statusCode);
+            }
+
+            return response;
+
+        } catch (IOException | RuntimeException e) {
+            // the connection might be in an unknown state
+            close();
+            throw e;
+        }
+    }
+
+    byte[] readBody(Map<String, String> headers) throws IOException {
+
+        String transferEncoding = headers.get("transfer-encoding");
+        if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+            while (true) {
+                String line = readLine();
+                int i = line.indexOf(';');
+                int size = Integer.parseInt((i < 0 ? line : line.substring(0, i)).trim(), 16);
+
+                if (size == 0) {
+                    // skip trailers
+                    while (!readLine().isEmpty()) {
+                    }
+                    return body.toByteArray();
+                }
+
+                body.write(readBytes(size));
+                readLine();
+            }
+        }
+
+        String contentLength = headers.get("content-length");
+        if (contentLength != null) {
+            return readBytes(Integer.parseInt(contentLength));
+        }
+
+        // no length, the server will close the connection
+        byte[] body = in.readAllBytes();
+        close();
+        return body;
+    }
+
+    byte[] readBytes(int size) throws IOException {
+        byte[] bytes = in.readNBytes(size);
+        if (bytes.length < size) {
+            throw new EOFException("Unexpected end of HTTP response");
+        }
+        return bytes;
+    }
+
+    String readLine() throws IOException {
+
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        while (true) {
+            int c = in.read();
+            if (c < 0) {
+                throw new EOFException("Unexpected end of HTTP response");
+            }
+            if (c == '\n') {
+                break;
+            }
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    public void close() {
+
+        if (!open) {
+            return;
+        }
+
+        open = false;
+
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.warn("OCSPPublisherConnection: Unable to close connection: " + e.getMessage(), e);
+        }
+    }
+}
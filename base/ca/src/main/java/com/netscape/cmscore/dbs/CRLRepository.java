@@ -43,8 +43,13 @@ public class CRLRepository extends Repository {
 
     public static final String PROP_INCREMENT = "crldbInc";
 
+    // max number of CRL cache deltas appended before the whole cache is rewritten
+    public static final int MAX_CACHE_DELTAS = 1000;
+
     private final String mLdapCRLIssuingPointName = "cn";
 
+    private boolean appendSupported;
+
     /**
      * Constructs a CRL repository.
      */
@@ -95,6 +100,9 @@ public class CRLRepository extends Repository {
         mIncrementNo = dbConfig.getBigInteger(DatabaseConfig.REQUEST_INCREMENT, null);
         logger.debug("CRLRepository: - increment serial: " + mIncrementNo);
 
+        appendSupported = RevokedCertsMapper.FORMAT_BINARY.equals(dbConfig.getCRLCacheFormat());
+        logger.info("CRLRepository: - append CRL cache updates: " + appendSupported);
+
         /*
         DBRegistry reg = dbService.getRegistry();
         String crlRecordOC[] = new String[1];
@@ -419,6 +427,63 @@ public class CRLRepository extends Repository {
         modifyCRLIssuingPointRecord(id, mods);
     }
 
+    /**
+     * Returns true if CRL cache updates can be appended to the
+     * CRL issuing point record as CRLCacheDelta.
+     */
+    public boolean isAppendSupported() {
+        return appendSupported;
+    }
+
+    /**
+     * Appends recently revoked certificates changes to CRL issuing point record
+     * without rewriting the existing revoked certificates info.
+     *
+     * @param id issuing point record id
+     * @param revokedCerts changes to the list of revoked certificates
+     * @param unrevokedCerts changes to the list of released from hold certificates
+     * @exception EBaseException failed to update issuing point record
+     */
+    public void appendRevokedCerts(
+            String id,
+            CRLCacheDelta revokedCerts,
+            CRLCacheDelta unrevokedCerts)
+            throws EBaseException {
+
+        logger.info("CRLRepository: Appending revoked certificates");
+
+        ModificationSet mods = new ModificationSet();
+        if (!revokedCerts.isEmpty()) {
+            mods.add(CRLIssuingPointRecord.ATTR_REVOKED_CERTS, Modification.MOD_ADD, revokedCerts);
+        }
+        if (!unrevokedCerts.isEmpty()) {
+            mods.add(CRLIssuingPointRecord.ATTR_UNREVOKED_CERTS, Modification.MOD_ADD, unrevokedCerts);
+        }
+        mods.add(CRLIssuingPointRecord.ATTR_FIRST_UNSAVED, Modification.MOD_REPLACE, CRLIssuingPointRecord.CLEAN_CACHE);
+
+        modifyCRLIssuingPointRecord(id, mods);
+    }
+
+    /**
+     * Appends recently expired certificates changes to CRL issuing point record
+     * without rewriting the existing expired certificates info.
+     *
+     * @param id issuing point record id
+     * @param expiredCerts changes to the list of expired certificates
+     * @exception EBaseException failed to update issuing point record
+     */
+    public void appendExpiredCerts(String id, CRLCacheDelta expiredCerts)
+            throws EBaseException {
+
+        if (expiredCerts.isEmpty()) {
+            return;
+        }
+
+        ModificationSet mods = new ModificationSet();
+        mods.add(CRLIssuingPointRecord.ATTR_EXPIRED_CERTS, Modification.MOD_ADD, expiredCerts);
+        modifyCRLIssuingPointRecord(id, mods);
+    }
+
     /**
      * Updates CRL issuing point record with recently expired certificates info.
      *
@@ -0,0 +1,266 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.base.MetaInfo;
+import com.netscape.cmscore.util.MetricsRegistry;
+
+/**
+ * This class keeps recently read certificate records so they can be
+ * returned without reading the database again.
+ *
+ * Records are removed when they are modified by this server, and when
+ * a persistent search reports that they have been modified by another
+ * server (see CertRecordCacheInvalidationTask). While the persistent
+ * search is not connected the cache is suspended, since changes made
+ * by other servers would be missed. Records also expire after a
+ * configurable period.
+ *
+ * The cache stores and returns copies of the records, so callers that
+ * modify a record before writing it to the database (e.g. to set the
+ * published flag) do not change the cached record.
+ */
+public class CertRecordCache {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CertRecordCache.class);
+
+    static class Entry {
+
+        CertRecord record;
+        long expiration;
+
+        Entry(CertRecord record, long expiration) {
+            this.record = record;
+            this.expiration = expiration;
+        }
+    }
+
+    private int maxEntries;
+    private long maxAge;
+
+    private Map<BigInteger, Entry> entries = new ConcurrentHashMap<>();
+
+    // incremented when records are invalidated so that records read
+    // before the invalidation are not stored
+    private AtomicLong generation = new AtomicLong();
+
+    private volatile boolean suspended;
+
+    private MetricsRegistry metricsRegistry;
+
+    /**
+     * @param maxEntries maximum number of cached records
+     * @param maxAge maximum age of a cached record (in milliseconds)
+     */
+    public CertRecordCache(int maxEntries, long maxAge) {
+        this.maxEntries = maxEntries;
+        this.maxAge = maxAge;
+    }
+
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+
+        this.metricsRegistry = metricsRegistry;
+
+        if (metricsRegistry != null) {
+            metricsRegistry.registerGauge("cert_record_cache_size", this::getSize);
+        }
+    }
+
+    /**
+     * Returns the cached record, or null if the record is not cached,
+     * has expired, or the cache is suspended.
+     */
+    public CertRecord get(BigInteger serialNumber) {
+
+        Entry entry = suspended ? null : entries.get(serialNumber);
+
+        if (entry == null || entry.expiration <= System.currentTimeMillis()) {
+            if (entry != null) {
+                entries.remove(serialNumber, entry);
+            }
+            if (metricsRegistry != null) {
+                metricsRegistry.increment("cert_record_cache_misses");
+            }
+            return null;
+        }
+
+        if (metricsRegistry != null) {
+            metricsRegistry.increment("cert_record_cache_hits");
+        }
+
+        return copy(entry.record);
+    }
+
+    /**
+     * Copies the mutable attributes of a certificate record. The
+     * certificate itself is shared.
+     */
+    static CertRecord copy(CertRecord record) {
+
+        try {
+            CertRecord copy = new CertRecord();
+
+            for (Enumeration<String> e = record.getElements(); e.hasMoreElements(); ) {
+                String name = e.nextElement();
+                Object value = record.get(name);
+
+                if (value instanceof Date date) {
+                    value = new Date(date.getTime());
+
+                } else if (value instanceof MetaInfo metaInfo) {
+                    MetaInfo metaInfoCopy = new MetaInfo();
+                    for (Enumeration<String> names = metaInfo.getElements(); names.hasMoreElements(); ) {
+                        String metaName = names.nextElement();
+                        metaInfoCopy.set(metaName, metaInfo.get(metaName));
+                    }
+                    value = metaInfoCopy;
+
+                } else if (value instanceof RevocationInfo revocationInfo) {
+                    Date revocationDate = revocationInfo.getRevocationDate();
+                    value = new RevocationInfo(
+                            revocationDate == null ? null : new Date(revocationDate.getTime()),
+                            revocationInfo.getCRLEntryExtensions());
+                }
+
+                copy.set(name, value);
+            }
+
+            return copy;
+
+        } catch (EBaseException e) {
+            // all names are returned by the record itself
+            throw new RuntimeException("Unable to copy cert record: " + e.getMessage(), e);
+        }
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Stores a record read while the cache was at the given generation.
+     * The record is ignored if the cache has been invalidated in the
+     * meantime.
+     */
+    public void put(CertRecord record, long generation) {
+
+        if (suspended || generation != this.generation.get()) {
+            return;
+        }
+
+        BigInteger serialNumber = record.getSerialNumber();
+
+        if (entries.size() >= maxEntries && !entries.containsKey(serialNumber)) {
+            evict();
+        }
+
+        Entry entry = new Entry(copy(record), System.currentTimeMillis() + maxAge);
+        entries.put(serialNumber, entry);
+
+        // invalidated while the entry was being stored
+        if (generation != this.generation.get()) {
+            entries.remove(serialNumber, entry);
+        }
+    }
+
+    /**
+     * Removes expired records, or an arbitrary record if none
+     * has expired.
+     */
+    void evict() {
+
+        long now = System.currentTimeMillis();
+        boolean removed = entries.values().removeIf(entry -> entry.expiration <= now);
+
+        if (removed) {
+            return;
+        }
+
+        Iterator<BigInteger> i = entries.keySet().iterator();
+        if (i.hasNext()) {
+            i.next();
+            i.remove();
+        }
+    }
+
+    /**
+     * Removes a record that has been modified or deleted.
+     */
+    public void invalidate(BigInteger serialNumber) {
+        generation.incrementAndGet();
+        entries.remove(serialNumber);
+    }
+
+    /**
+     * Removes all records.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Suspends the cache while changes made by other servers cannot
+     * be tracked.
+     */
+    public void suspend() {
+        if (!suspended) {
+            logger.info("CertRecordCache: Suspending cache");
+        }
+        suspended = true;
+        invalidateAll();
+    }
+
+    /**
+     * Resumes the cache once changes made by other servers are
+     * tracked again.
+     */
+    public void resume() {
+        if (suspended) {
+            logger.info("CertRecordCache: Resuming cache");
+        }
+        invalidateAll();
+        suspended = false;
+    }
+
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    public long getSize() {
+        return entries.size();
+    }
+
+    public void shutdown() {
+
+        if (metricsRegistry != null) {
+            metricsRegistry.removeGauge("cert_record_cache_size");
+        }
+
+        invalidateAll();
+    }
+}
@@ -0,0 +1,180 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import java.math.BigInteger;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.dogtagpki.server.ca.CAEngine;
+
+import com.netscape.certsrv.base.EBaseException;
+
+import netscape.ldap.LDAPDN;
+import netscape.ldap.LDAPEntry;
+import netscape.ldap.LDAPSearchResults;
+
+/**
+ * This task removes certificate records from the CertRecordCache
+ * when they are modified or deleted in the database, including changes
+ * made by other clones, using a persistent search.
+ *
+ * The cache is suspended while the persistent search is not connected.
+ */
+public class CertRecordCacheInvalidationTask implements Runnable {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CertRecordCacheInvalidationTask.class);
+
+    CertificateRepository repository;
+    CertRecordCache cache;
+
+    DBSSession session;
+    LDAPSearchResults results;
+
+    ScheduledExecutorService executorService;
+
+    public CertRecordCacheInvalidationTask(CertificateRepository repository, CertRecordCache cache) {
+        this.repository = repository;
+        this.cache = cache;
+
+        executorService = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "CertRecordCacheInvalidationTask");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+
+        // changes cannot be tracked until the search is started
+        cache.suspend();
+
+        // schedule task to run immediately
+        executorService.schedule(this, 0, TimeUnit.MINUTES);
+    }
+
+    public void connect() throws EBaseException {
+
+        if (session != null) return;
+
+        CAEngine engine = CAEngine.getInstance();
+        DBSubsystem dbSubsystem = engine.getDBSubsystem();
+
+        try {
+            session = dbSubsystem.createSession();
+            results = repository.searchForChangedCertificateRecords(session);
+
+        } catch (EBaseException e) {
+            close(); // avoid leaks
+            throw e;
+        }
+
+        // records might have changed while disconnected
+        cache.resume();
+    }
+
+    /**
+     * Removes the changed certificate record from the cache.
+     *
+     * @param entry LDAPEntry of the changed record
+     */
+    public void invalidate(LDAPEntry entry) {
+
+        if (entry == null) {
+            logger.warn("CertRecordCacheInvalidationTask: Missing LDAP entry");
+            return;
+        }
+
+        String dn = entry.getDN();
+        logger.debug("CertRecordCacheInvalidationTask: Invalidating " + dn);
+
+        try {
+            // the DN is cn=<serial number>,<base DN>
+            String[] rdns = LDAPDN.explodeDN(dn, true);
+            cache.invalidate(new BigInteger(rdns[0]));
+
+        } catch (Exception e) {
+            logger.warn("CertRecordCacheInvalidationTask: Unable to parse " + dn + ": " + e.getMessage());
+            cache.invalidateAll();
+        }
+    }
+
+    public void close() {
+
+        if (session == null) return;
+
+        // make sure the search is abandoned
+        if (results != null) {
+            try {
+                session.abandon(results);
+            } catch (Exception e) {
+                logger.warn("CertRecordCacheInvalidationTask: Unable to abandon search: " + e.getMessage(), e);
+            }
+        }
+
+        try {
+            session.close();
+        } catch (Exception e) {
+            logger.warn("CertRecordCacheInvalidationTask: Unable to close session: " + e.getMessage(), e);
+        }
+
+        session = null;
+        results = null;
+    }
+
+    @Override
+    public void run() {
+        try {
+            // make sure it's connected
+            connect();
+
+            // results.hasMoreElements() will block until next result becomes available
+            // or return false if the search is abandoned or the connection is closed
+
+            while (results.hasMoreElements()) {
+                invalidate(results.next());
+            }
+
+            if (executorService.isShutdown()) {
+                logger.debug("CertRecordCacheInvalidationTask: Task has been shutdown");
+                return;
+            }
+
+            logger.info("CertRecordCacheInvalidationTask: Persistent search ended, retrying in 1 minute");
+
+        } catch (Exception e) {
+
+            if (executorService.isShutdown()) {
+                return;
+            }
+
+            logger.warn("CertRecordCacheInvalidationTask: " + e.getMessage() + ", retrying in 1 minute", e);
+        }
+
+        cache.suspend();
+        close();
+
+        executorService.schedule(this, 1, TimeUnit.MINUTES);
+    }
+
+    public void stop() {
+        executorService.shutdown();
+        close();
+    }
+}
@@ -17,9 +17,15 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.dbs;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -192,6 +198,153 @@ public class CertStatusUpdateTask implements Runnable {
         logger.info("CertStatusUpdateTask: Done processing revoked certs");
     }
 
+    /**
+     * Processing time of a serial number range.
+     */
+    public static class RangeTimer {
+
+        private volatile long startTime;
+        private volatile long endTime;
+
+        public void start() {
+            endTime = 0;
+            startTime = System.currentTimeMillis();
+        }
+
+        public void stop() {
+            endTime = System.currentTimeMillis();
+        }
+
+        public boolean isRunning() {
+            return startTime != 0 && endTime == 0;
+        }
+
+        /**
+         * Returns the processing time in milliseconds, the time elapsed
+         * so far if the range is still being processed, or 0 if the
+         * range has not been started.
+         */
+        public long getTime() {
+            long start = startTime;
+            if (start == 0) {
+                return 0;
+            }
+            long end = endTime;
+            return (end == 0 ? System.currentTimeMillis() : end) - start;
+        }
+    }
+
+    /**
+     * Processes revoked certificates in serial number ranges concurrently.
+     * The range between the lowest and the highest revoked serial number
+     * is split into one range per processor. Each range is searched with
+     * a separate database connection.
+     *
+     * This code and updateCertStatus() are mutually exclusive.
+     *
+     * @param processors certificate record processor for each range
+     * @param filter search filter
+     * @param threads max number of concurrent searches
+     * @param pageSize number of records per page
+     * @param timers processing timer for each range
+     */
+    public synchronized void processRevokedCerts(
+            List<CertRecordProcessor> processors,
+            String filter,
+            int threads,
+            int pageSize,
+            RangeTimer[] timers) throws EBaseException {
+
+        logger.info("CertStatusUpdateTask: Processing revoked certs in " + processors.size() + " ranges");
+
+        BigInteger lowest = repository.findSerialNumberBound(filter, false);
+        if (lowest == null) {
+            logger.info("CertStatusUpdateTask: No revoked certs");
+            return;
+        }
+
+        BigInteger highest = repository.findSerialNumberBound(filter, true);
+        logger.info("CertStatusUpdateTask: - serial numbers: 0x" + lowest.toString(16) + " - 0x" + highest.toString(16));
+
+        int ranges = processors.size();
+        BigInteger rangeSize = highest.subtract(lowest)
+                .divide(BigInteger.valueOf(ranges))
+                .add(BigInteger.ONE);
+
+        String[] attrs = new String[] {
+                CertRecord.ATTR_ID, CertRecord.ATTR_REVO_INFO, "objectclass"
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(threads, ranges)),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        return new Thread(r, "CertStatusUpdateTask-revokedCerts");
+                    }
+                });
+
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+
+            for (int i = 0; i < ranges; i++) {
+
+                BigInteger begin = lowest.add(rangeSize.multiply(BigInteger.valueOf(i)));
+                if (begin.compareTo(highest) > 0) {
+                    break;
+                }
+
+                BigInteger end = begin.add(rangeSize).subtract(BigInteger.ONE).min(highest);
+
+                String rangeFilter = "(&" + filter
+                        + "(" + CertRecord.ATTR_ID + ">=" + begin + ")"
+                        + "(" + CertRecord.ATTR_ID + "<=" + end + "))";
+
+                int index = i;
+                CertRecordProcessor processor = processors.get(i);
+
+                futures.add(executor.submit(() -> {
+
+                    RangeTimer timer = timers[index];
+                    timer.start();
+
+                    long count;
+                    try {
+                        count = repository.processPagedCertRecords(rangeFilter, attrs, processor, pageSize);
+                    } finally {
+                        timer.stop();
+                    }
+
+                    logger.info("CertStatusUpdateTask: Processed " + count + " revoked certs in range " + index
+                            + " (" + timer.getTime() + " ms)");
+
+                    return count;
+                }));
+            }
+
+            long total = 0;
+            for (Future<Long> future : futures) {
+                total += future.get();
+            }
+
+            logger.info("CertStatusUpdateTask: Done processing " + total + " revoked certs");
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EBaseException("Processing revoked certs interrupted", e);
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof EBaseException ex) {
+                throw ex;
+            }
+            throw new EBaseException("Unable to process revoked certs: " + cause.getMessage(), cause);
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Override
     public void run() {
         try {
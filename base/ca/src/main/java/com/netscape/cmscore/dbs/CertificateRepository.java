@@ -21,11 +21,15 @@ import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import org.mozilla.jss.netscape.security.x509.CertificateValidity;
@@ -48,6 +52,7 @@ import com.netscape.cmscore.apps.DatabaseConfig;
 import com.netscape.cmscore.apps.EngineConfig;
 
 import netscape.ldap.LDAPSearchResults;
+import netscape.ldap.controls.LDAPPersistSearchControl;
 
 /**
  * A classrepresents a certificate repository.
@@ -65,6 +70,9 @@ public class CertificateRepository extends Repository {
     public static final int ALL_VALID_CERTS = 1;
     public static final int ALL_UNREVOKED_CERTS = 2;
 
+    // max number of serial numbers in a single search filter
+    public static final int MAX_SERIAL_NUMBERS_PER_SEARCH = 100;
+
     public static final String PROP_INCREMENT = "certdbInc";
     public static final String PROP_TRANS_MAXRECORDS = "transitMaxRecords";
     public static final String PROP_TRANS_PAGESIZE = "transitRecordPageSize";
@@ -97,6 +105,8 @@ public class CertificateRepository extends Repository {
     private DatabaseConfig mDBConfig = null;
     private boolean mForceModeChange = false;
 
+    private CertRecordCache certRecordCache;
+
     /**
      * Constructs a certificate repository.
      */
@@ -762,6 +772,24 @@ public class CertificateRepository extends Repository {
         return new CertRecord(cert.getSerialNumber(), cert, meta);
     }
 
+    public CertRecordCache getCertRecordCache() {
+        return certRecordCache;
+    }
+
+    /**
+     * Sets the cache used by readCertificateRecord(). The cache is
+     * updated when certificate records are modified or deleted.
+     */
+    public void setCertRecordCache(CertRecordCache certRecordCache) {
+        this.certRecordCache = certRecordCache;
+    }
+
+    void invalidateCertRecord(BigInteger serialNo) {
+        if (certRecordCache != null) {
+            certRecordCache.invalidate(serialNo);
+        }
+    }
+
     /**
      * Adds a certificate record to the repository. Each certificate
      * record contains four parts: certificate, meta-attributes,
@@ -869,6 +897,9 @@ public class CertificateRepository extends Repository {
         try (DBSSession s = dbSubsystem.createSession()) {
             String name = "cn=" + serialNo + "," + mBaseDN;
             s.delete(name);
+
+        } finally {
+            invalidateCertRecord(serialNo);
         }
     }
 
@@ -883,14 +914,110 @@ public class CertificateRepository extends Repository {
             throws EBaseException {
         CertRecord rec = null;
 
+        long generation = 0;
+        if (certRecordCache != null) {
+            rec = certRecordCache.get(serialNo);
+            if (rec != null) {
+                return rec;
+            }
+            generation = certRecordCache.getGeneration();
+        }
+
         try (DBSSession s = dbSubsystem.createSession()) {
             String name = "cn=" + serialNo + "," + mBaseDN;
 
             rec = (CertRecord) s.read(name);
         }
+
+        if (certRecordCache != null && rec != null) {
+            certRecordCache.put(rec, generation);
+        }
+
         return rec;
     }
 
+    /**
+     * Reads multiple certificate records with a search filter
+     * that matches the serial numbers, so the records are read
+     * with one search per batch instead of one read per record.
+     * Serial numbers without a record are not included
+     * in the result.
+     *
+     * @param serialNumbers serial numbers
+     * @param attrs selected attributes, or null for all attributes
+     * @return certificate records by serial number
+     * @exception EBaseException failed to search
+     */
+    public Map<BigInteger, CertRecord> readCertificateRecords(
+            Collection<BigInteger> serialNumbers,
+            String[] attrs) throws EBaseException {
+
+        Map<BigInteger, CertRecord> records = new HashMap<>();
+        List<BigInteger> batch = new ArrayList<>();
+
+        for (BigInteger serialNumber : serialNumbers) {
+
+            if (serialNumber.signum() <= 0) {
+                continue;
+            }
+
+            // cached records contain all attributes
+            CertRecord record = certRecordCache == null ? null : certRecordCache.get(serialNumber);
+            if (record != null) {
+                records.put(serialNumber, record);
+                continue;
+            }
+
+            batch.add(serialNumber);
+
+            if (batch.size() >= MAX_SERIAL_NUMBERS_PER_SEARCH) {
+                readCertificateRecords(batch, attrs, records);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            readCertificateRecords(batch, attrs, records);
+        }
+
+        return records;
+    }
+
+    private void readCertificateRecords(
+            List<BigInteger> serialNumbers,
+            String[] attrs,
+            Map<BigInteger, CertRecord> records) throws EBaseException {
+
+        StringBuilder filter = new StringBuilder("(|");
+        for (BigInteger serialNumber : serialNumbers) {
+            filter.append("(" + CertRecord.ATTR_ID + "=" + serialNumber + ")");
+        }
+        filter.append(")");
+
+        logger.debug("CertificateRepository: Reading " + serialNumbers.size() + " cert records");
+
+        long generation = certRecordCache == null ? 0 : certRecordCache.getGeneration();
+
+        try (DBSSession s = dbSubsystem.createSession()) {
+            DBSearchResults results = s.search(mBaseDN, filter.toString(), attrs);
+
+            while (results.hasMoreElements()) {
+                CertRecord record = (CertRecord) results.nextElement();
+                if (record == null) {
+                    // entry could not be converted into a cert record
+                    continue;
+                }
+
+                records.put(record.getSerialNumber(), record);
+
+                // only complete records are cached
+                if (certRecordCache != null && attrs == null) {
+                    certRecordCache.put(record, generation);
+                }
+            }
+        }
+    }
+
     public boolean checkCertificateRecord(BigInteger serialNo)
         throws EBaseException {
         CertRecord rec = null;
@@ -945,6 +1072,9 @@ public class CertificateRepository extends Repository {
             mods.add(CertRecord.ATTR_MODIFY_TIME, Modification.MOD_REPLACE,
                     new Date());
             s.modify(name, mods);
+
+        } finally {
+            invalidateCertRecord(serialNo);
         }
     }
 
@@ -1339,6 +1469,75 @@ public class CertificateRepository extends Repository {
         }
     }
 
+    /**
+     * Processes certificate records that satisfy the filter.
+     * Unlike findPagedCertRecords() the database session is kept
+     * until all pages have been processed, so concurrent callers
+     * use separate database connections.
+     *
+     * @param filter search filter
+     * @param attrs selected attribute
+     * @param processor certificate record processor
+     * @param pageSize number of records per page
+     * @return number of processed records
+     * @exception EBaseException failed to search
+     */
+    public long processPagedCertRecords(
+            String filter,
+            String[] attrs,
+            ElementProcessor processor,
+            int pageSize) throws EBaseException {
+
+        logger.debug("CertificateRepository.processPagedCertRecords()");
+
+        long count = 0;
+
+        try (DBSSession session = dbSubsystem.createSession()) {
+            DBPagedSearch<CertRecord> page = session.<CertRecord>createPagedSearch(
+                    CertRecord.class,
+                    mBaseDN,
+                    filter,
+                    attrs,
+                    (String) null);
+
+            List<CertRecord> certRecords;
+            while (!(certRecords = page.getPage(pageSize)).isEmpty()) {
+                for (CertRecord certRecord : certRecords) {
+                    processor.process(certRecord);
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Finds the lowest or the highest serial number of certificate
+     * records that satisfy the filter.
+     *
+     * @param filter search filter
+     * @param highest true to find the highest serial number
+     * @return serial number, or null if there is no matching record
+     * @exception EBaseException failed to search
+     */
+    public BigInteger findSerialNumberBound(String filter, boolean highest)
+            throws EBaseException {
+
+        try (DBSSession session = dbSubsystem.createSession()) {
+            DBPagedSearch<CertRecord> page = session.<CertRecord>createPagedSearch(
+                    CertRecord.class,
+                    mBaseDN,
+                    filter,
+                    new String[] { CertRecord.ATTR_ID, "objectclass" },
+                    highest ? "-serialno" : "serialno");
+
+            // only the first record of the sorted results is needed
+            List<CertRecord> certRecords = page.getPage(1);
+            return certRecords.isEmpty() ? null : certRecords.get(0).getSerialNumber();
+        }
+    }
+
     /**
      * Finds certificate records. Here is a list of filter
      * attribute can be used:
@@ -1568,6 +1767,12 @@ public class CertificateRepository extends Repository {
             mods.add(CertRecord.ATTR_AUTO_RENEW, Modification.MOD_REPLACE,
                     value);
             s.modify(name, mods);
+
+        } finally {
+            if (certRecordCache != null) {
+                // the DN contains the decimal serial number
+                certRecordCache.invalidate(new BigInteger(serialno));
+            }
         }
     }
 
@@ -2165,6 +2370,19 @@ public class CertificateRepository extends Repository {
         return session.persistentSearch(mBaseDN, filter, null);
     }
 
+    /**
+     * Starts a persistent search that returns the certificate records
+     * modified, deleted, or renamed by any server.
+     */
+    LDAPSearchResults searchForChangedCertificateRecords(DBSSession session) throws EBaseException {
+        logger.debug("CertificateRepository: Starting persistent search for changed cert records");
+        String filter = "(" + CertRecord.ATTR_CERT_STATUS + "=*)";
+        int changeTypes = LDAPPersistSearchControl.MODIFY
+                | LDAPPersistSearchControl.DELETE
+                | LDAPPersistSearchControl.MODDN;
+        return session.persistentSearch(mBaseDN, filter, new String[] { CertRecord.ATTR_ID }, changeTypes);
+    }
+
     /**
      * Checks if the presented certificate belongs to the repository
      * and is revoked.
@@ -2235,5 +2453,8 @@ public class CertificateRepository extends Repository {
     }
 
     public void shutdown() {
+        if (certRecordCache != null) {
+            certRecordCache.shutdown();
+        }
     }
 }
@@ -21,7 +21,11 @@ import java.math.BigInteger;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.dogtagpki.server.ca.CAEngine;
 import org.mozilla.jss.netscape.security.x509.X500Name;
@@ -91,6 +95,8 @@ public class CAPublisherProcessor extends PublisherProcessor {
                 engine.registerRequestListener(requestListener);
             }
 
+            initPublisherExecutors(engine.getMetricsRegistry());
+
             PublishingQueueConfig queueConfig = mConfig.getQueueConfig();
 
             if (queueConfig != null) {
@@ -112,7 +118,11 @@ public class CAPublisherProcessor extends PublisherProcessor {
                 int savePublishingStatus = queueConfig.getSaveStatus();
                 logger.info("CAPublisherProcessor: - save status: " + savePublishingStatus);
 
+                boolean threadPoolEnabled = queueConfig.isThreadPoolEnabled();
+                logger.info("CAPublisherProcessor: - thread pool: " + threadPoolEnabled);
+
                 RequestNotifier requestNotifier = engine.getRequestNotifier();
+                requestNotifier.setThreadPoolEnabled(threadPoolEnabled);
                 requestNotifier.setPublishingQueue(
                         isPublishingQueueEnabled,
                         publishingQueuePriorityLevel,
@@ -376,6 +386,10 @@ public class CAPublisherProcessor extends PublisherProcessor {
      * Publishs regular user certificate based on the criteria
      * set in the request.
      *
+     * Rules whose publisher has an executor are not waited for. The
+     * published flag is set once all of them have completed, so a cert
+     * that failed to publish is picked up again by PublishCertsJob.
+     *
      * @param cert X509 certificate to be published.
      * @param req request which provides the criteria
      * @exception DBException publish failed due to Ldap error.
@@ -394,6 +408,11 @@ public class CAPublisherProcessor extends PublisherProcessor {
         boolean error = false;
         StringBuffer errorRule = new StringBuffer();
 
+        long startTime = System.nanoTime();
+
+        // publishing tasks running in publisher executors
+        Map<String, CompletableFuture<Void>> tasks = new LinkedHashMap<>();
+
         // get mapper and publisher for cert type.
         Enumeration<LdapRule> rules = getRules("certs", req);
 
@@ -422,9 +441,19 @@ public class CAPublisherProcessor extends PublisherProcessor {
                     m = getActiveMapperInstance(mapperName);
                 }
 
-                publishNow(m, p, req, cert);
+                PublisherExecutor executor = getPublisherExecutor(publisherName);
+
+                if (executor == null) {
+                    publishNow(m, p, req, cert);
+                    logger.info("CAPublisherProcessor: Published cert using rule " + rule.getInstanceName());
+                    continue;
+                }
 
-                logger.info("CAPublisherProcessor: Published cert using rule " + rule.getInstanceName());
+                Mapper mapper = m;
+                tasks.put(rule.getInstanceName(), executor.submit("cert " + certID.toHexString(), () -> {
+                    publishNow(mapper, p, req, cert);
+                    return null;
+                }));
 
             } catch (Exception e) {
                 // continue publishing even publisher has errors
@@ -433,6 +462,57 @@ public class CAPublisherProcessor extends PublisherProcessor {
                 errorRule.append(" " + rule.getInstanceName());
             }
         }
+
+        if (tasks.isEmpty()) {
+            publishCertCompleted(cert, error, errorRule, startTime);
+
+        } else {
+            // complete the publishing when the publisher executors are done
+            boolean syncError = error;
+            StringBuffer syncErrorRule = new StringBuffer(errorRule);
+
+            CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture<?>[0])).whenComplete((result, e) -> {
+
+                boolean asyncError = syncError;
+                StringBuffer asyncErrorRule = new StringBuffer(syncErrorRule);
+
+                for (Map.Entry<String, CompletableFuture<Void>> task : tasks.entrySet()) {
+                    String ruleName = task.getKey();
+
+                    try {
+                        task.getValue().join();
+                        logger.info("CAPublisherProcessor: Published cert using rule " + ruleName);
+
+                    } catch (CompletionException ce) {
+                        Throwable cause = ce.getCause();
+                        logger.warn("CAPublisherProcessor: " + cause.getMessage(), cause);
+                        asyncError = true;
+                        asyncErrorRule.append(" " + ruleName);
+                    }
+                }
+
+                try {
+                    publishCertCompleted(cert, asyncError, asyncErrorRule, startTime);
+                } catch (DBException ex) {
+                    // already logged
+                }
+            });
+        }
+
+        if (error) {
+            throw new DBException(CMS.getUserMessage("CMS_LDAP_PUBLISH_FAILED", errorRule.toString()));
+        }
+    }
+
+    void publishCertCompleted(
+            X509Certificate cert,
+            boolean error,
+            StringBuffer errorRule,
+            long startTime) throws DBException {
+
+        CAEngine engine = CAEngine.getInstance();
+        engine.getMetricsRegistry().record("publishing", System.nanoTime() - startTime);
+
         // set the ldap published flag.
         if (!error) {
             setPublishedFlag(cert.getSerialNumber(), true);
@@ -0,0 +1,251 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.ldap;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netscape.certsrv.ldap.ELdapServerDownException;
+import com.netscape.cmscore.util.MetricsRegistry;
+
+import netscape.ldap.LDAPException;
+
+/**
+ * This class runs the publishing tasks of a single publisher
+ * in a bounded thread pool, so a slow publishing target does not
+ * delay the other publishers.
+ *
+ * A task that fails because the target is unreachable is retried
+ * with an exponential backoff. When the queue is full the task runs
+ * in the calling thread, which slows down the caller instead of
+ * dropping the task.
+ */
+public class PublisherExecutor {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PublisherExecutor.class);
+
+    private String name;
+    private ThreadPoolExecutor executor;
+
+    private int maxRetries;
+    private long retryDelay;
+    private long maxRetryDelay;
+
+    private MetricsRegistry metricsRegistry;
+    private AtomicInteger threadCounter = new AtomicInteger();
+
+    /**
+     * @param name publisher instance name
+     * @param threads maximum number of concurrent tasks
+     * @param queueSize maximum number of pending tasks
+     * @param maxRetries maximum number of retries for a failed task
+     * @param retryDelay delay before the first retry in milliseconds
+     * @param maxRetryDelay maximum delay between retries in milliseconds
+     */
+    public PublisherExecutor(
+            String name,
+            int threads,
+            int queueSize,
+            int maxRetries,
+            long retryDelay,
+            long maxRetryDelay) {
+
+        this.name = name;
+        this.maxRetries = maxRetries;
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+
+        executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueSize, 1)),
+                r -> {
+                    Thread thread = new Thread(r, "Publisher-" + name + "-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+
+        this.metricsRegistry = metricsRegistry;
+
+        if (metricsRegistry != null) {
+            metricsRegistry.registerGauge(getMetricName("queue"), this::getQueueSize);
+            metricsRegistry.registerGauge(getMetricName("active"), this::getActiveCount);
+        }
+    }
+
+    String getMetricName(String metric) {
+        return "publisher_" + name + "_" + metric;
+    }
+
+    /**
+     * Returns the number of pending tasks.
+     */
+    public long getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Returns the number of running tasks.
+     */
+    public long getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Submits a publishing task.
+     *
+     * @param description task description for logging
+     * @param task publishing task
+     * @return future completed when the task is completed
+     */
+    public CompletableFuture<Void> submit(String description, Callable<Void> task) {
+
+        long submitTime = System.nanoTime();
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        executor.execute(() -> {
+
+            if (metricsRegistry != null) {
+                metricsRegistry.record(getMetricName("lag"), System.nanoTime() - submitTime);
+            }
+
+            long startTime = System.nanoTime();
+
+            try {
+                run(description, task);
+
+                if (metricsRegistry != null) {
+                    metricsRegistry.increment(getMetricName("published"));
+                }
+
+                future.complete(null);
+
+            } catch (Exception e) {
+                if (metricsRegistry != null) {
+                    metricsRegistry.increment(getMetricName("failures"));
+                }
+                future.completeExceptionally(e);
+
+            } finally {
+                if (metricsRegistry != null) {
+                    metricsRegistry.record(getMetricName("time"), System.nanoTime() - startTime);
+                }
+            }
+        });
+
+        return future;
+    }
+
+    void run(String description, Callable<Void> task) throws Exception {
+
+        long delay = retryDelay;
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                task.call();
+                return;
+
+            } catch (Exception e) {
+
+                if (attempt >= maxRetries || !isRetryable(e)) {
+                    throw e;
+                }
+
+                logger.warn("PublisherExecutor: Unable to publish " + description + " with " + name
+                        + ": " + e.getMessage() + ", retrying in " + delay + " ms");
+
+                if (metricsRegistry != null) {
+                    metricsRegistry.increment(getMetricName("retries"));
+                }
+
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, maxRetryDelay);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the failure is caused by an unreachable
+     * publishing target, so the task might succeed later.
+     */
+    static boolean isRetryable(Throwable e) {
+
+        while (e != null) {
+
+            if (e instanceof ELdapServerDownException || e instanceof IOException) {
+                return true;
+            }
+
+            if (e instanceof LDAPException) {
+                int resultCode = ((LDAPException) e).getLDAPResultCode();
+                return resultCode == LDAPException.UNAVAILABLE
+                        || resultCode == LDAPException.BUSY
+                        || resultCode == LDAPException.SERVER_DOWN
+                        || resultCode == LDAPException.CONNECT_ERROR;
+            }
+
+            e = e.getCause();
+        }
+
+        return false;
+    }
+
+    /**
+     * Stops accepting new tasks and waits for the pending tasks
+     * to complete.
+     */
+    public void shutdown() {
+
+        logger.info("PublisherExecutor: Shutting down " + name + " executor");
+
+        if (metricsRegistry != null) {
+            metricsRegistry.removeGauge(getMetricName("queue"));
+            metricsRegistry.removeGauge(getMetricName("active"));
+        }
+
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("PublisherExecutor: Unable to complete pending tasks for " + name);
+                executor.shutdownNow();
+            }
+
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
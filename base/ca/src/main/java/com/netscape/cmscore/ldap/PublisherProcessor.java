@@ -19,7 +19,9 @@ package com.netscape.cmscore.ldap;
 
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.SessionContext;
@@ -35,6 +37,7 @@ import com.netscape.certsrv.request.RequestListener;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.request.Request;
+import com.netscape.cmscore.util.MetricsRegistry;
 
 /**
  * Controls the publishing process from the top level. Maintains
@@ -51,6 +54,7 @@ public abstract class PublisherProcessor {
 
     public final static String PROP_ENABLE = "enable";
     public final static String PROP_LDAP = "ldap";
+    public final static String PROP_MAX_THREADS = "maxThreads";
 
     public Hashtable<String, PublisherPlugin> mPublisherPlugins = new Hashtable<>();
     public Hashtable<String, PublisherProxy> mPublisherInsts = new Hashtable<>();
@@ -63,6 +67,8 @@ public abstract class PublisherProcessor {
 
     protected LdapConnModule mLdapConnModule;
 
+    protected Map<String, PublisherExecutor> publisherExecutors = new ConcurrentHashMap<>();
+
     protected PublishingConfig mConfig;
     protected LDAPPublishingConfig mLdapConfig;
     protected String mId;
@@ -358,8 +364,81 @@ public abstract class PublisherProcessor {
         }
     }
 
+    /**
+     * Creates an executor for each publisher instance that has
+     * a non-zero number of threads. The number of threads is
+     * specified in the maxThreads parameter of the publisher
+     * instance, or in ca.publish.queue.publisherThreads.
+     */
+    public void initPublisherExecutors(MetricsRegistry metricsRegistry) throws EBaseException {
+
+        PublishingQueueConfig queueConfig = mConfig.getQueueConfig();
+
+        int defaultThreads = queueConfig.getPublisherThreads();
+        int queueSize = queueConfig.getPublisherQueueSize();
+        int maxRetries = queueConfig.getMaxRetries();
+        int retryDelay = queueConfig.getRetryDelay();
+        int maxRetryDelay = queueConfig.getMaxRetryDelay();
+
+        for (Map.Entry<String, PublisherProxy> entry : mPublisherInsts.entrySet()) {
+
+            String name = entry.getKey();
+            PublisherProxy proxy = entry.getValue();
+
+            if (!proxy.isEnable()) {
+                continue;
+            }
+
+            ConfigStore publisherConfig = proxy.getPublisher().getConfigStore();
+            int threads = publisherConfig == null
+                    ? defaultThreads
+                    : publisherConfig.getInteger(PROP_MAX_THREADS, defaultThreads);
+
+            if (threads <= 0) {
+                continue;
+            }
+
+            logger.info("PublisherProcessor: Creating executor for " + name + " with " + threads + " thread(s)");
+
+            PublisherExecutor executor = new PublisherExecutor(
+                    name,
+                    threads,
+                    queueSize,
+                    maxRetries,
+                    retryDelay,
+                    maxRetryDelay);
+            executor.setMetricsRegistry(metricsRegistry);
+
+            publisherExecutors.put(name, executor);
+        }
+    }
+
+    /**
+     * Returns the executor of a publisher instance, or null if
+     * the publisher runs in the notifying thread.
+     */
+    public PublisherExecutor getPublisherExecutor(String insName) {
+        return publisherExecutors.get(insName);
+    }
+
+    public void shutdownPublisherExecutors() {
+
+        for (PublisherExecutor executor : publisherExecutors.values()) {
+            executor.shutdown();
+        }
+
+        publisherExecutors.clear();
+    }
+
     public void shutdown() {
         logger.debug("Shuting down publishing.");
+
+        shutdownPublisherExecutors();
+
+        for (PublisherProxy proxy : mPublisherInsts.values()) {
+            proxy.getPublisher().shutdown();
+        }
+
         try {
             if (mLdapConnModule != null) {
                 mLdapConnModule.getLdapConnFactory().reset();
@@ -60,4 +60,53 @@ public class PublishingQueueConfig extends ConfigStore {
     public int getSaveStatus() throws EBaseException {
         return getInteger("saveStatus", 0);
     }
+
+    /**
+     * Returns ca.publish.queue.threadPool parameter.
+     *
+     * If true, the request notifier runs the listeners in a thread pool
+     * of maxNumberOfThreads threads instead of a new thread for each
+     * request.
+     */
+    public boolean isThreadPoolEnabled() throws EBaseException {
+        return getBoolean("threadPool", false);
+    }
+
+    /**
+     * Returns ca.publish.queue.publisherThreads parameter.
+     *
+     * This is the default number of threads of each publisher.
+     * If it is 0, the publishers run in the notifying thread.
+     */
+    public int getPublisherThreads() throws EBaseException {
+        return getInteger("publisherThreads", 0);
+    }
+
+    /**
+     * Returns ca.publish.queue.publisherQueueSize parameter.
+     */
+    public int getPublisherQueueSize() throws EBaseException {
+        return getInteger("publisherQueueSize", 100);
+    }
+
+    /**
+     * Returns ca.publish.queue.maxRetries parameter.
+     */
+    public int getMaxRetries() throws EBaseException {
+        return getInteger("maxRetries", 3);
+    }
+
+    /**
+     * Returns ca.publish.queue.retryDelay parameter in milliseconds.
+     */
+    public int getRetryDelay() throws EBaseException {
+        return getInteger("retryDelay", 1000);
+    }
+
+    /**
+     * Returns ca.publish.queue.maxRetryDelay parameter in milliseconds.
+     */
+    public int getMaxRetryDelay() throws EBaseException {
+        return getInteger("maxRetryDelay", 30000);
+    }
 }
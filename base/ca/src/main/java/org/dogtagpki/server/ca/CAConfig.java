@@ -118,4 +118,11 @@ public class CAConfig extends ConfigStore {
     public SCEPConfig getSCEPConfig() {
         return getSubStore("scep", SCEPConfig.class);
     }
+
+    /**
+     * Returns ca.certRecordCache.* parameters.
+     */
+    public CertRecordCacheConfig getCertRecordCacheConfig() {
+        return getSubStore("certRecordCache", CertRecordCacheConfig.class);
+    }
 }
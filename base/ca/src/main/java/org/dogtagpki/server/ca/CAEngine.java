@@ -84,6 +84,8 @@ import com.netscape.ca.CRLIssuingPointConfig;
 import com.netscape.ca.CertificateAuthority;
 import com.netscape.ca.KeyRetriever;
 import com.netscape.ca.KeyRetrieverRunner;
+import com.netscape.ca.SignaturePool;
+import com.netscape.ca.StreamingCRLBuilder;
 import com.netscape.certsrv.authentication.ISharedToken;
 import com.netscape.certsrv.base.BadRequestDataException;
 import com.netscape.certsrv.base.EBaseException;
@@ -135,6 +137,8 @@ import com.netscape.cmscore.cert.CertUtils;
 import com.netscape.cmscore.cert.CrossCertPairSubsystem;
 import com.netscape.cmscore.dbs.CRLRepository;
 import com.netscape.cmscore.dbs.CertRecord;
+import com.netscape.cmscore.dbs.CertRecordCache;
+import com.netscape.cmscore.dbs.CertRecordCacheInvalidationTask;
 import com.netscape.cmscore.dbs.CertStatusUpdateTask;
 import com.netscape.cmscore.dbs.CertificateRepository;
 import com.netscape.cmscore.dbs.ReplicaIDRepository;
@@ -207,6 +211,7 @@ public class CAEngine extends CMSEngine {
     public RequestListener requestInQueueListener;
 
     public RetrieveModificationsTask retrieveModificationsTask;
+    public CertRecordCacheInvalidationTask certRecordCacheInvalidationTask;
     public CertStatusUpdateTask certStatusUpdateTask;
     public SerialNumberUpdateTask serialNumberUpdateTask;
 
@@ -1680,6 +1685,10 @@ public class CAEngine extends CMSEngine {
         CASigningUnit certSigningUnit = new CASigningUnit();
         certSigningUnit.init(caSigningCfg, nickname);
 
+        if (hostCA) {
+            initSignaturePoolMetrics(certSigningUnit, "cert");
+        }
+
         ca.setCertSigningUnit(certSigningUnit);
 
         org.mozilla.jss.crypto.X509Certificate caCert = certSigningUnit.getCert();
@@ -1701,6 +1710,21 @@ public class CAEngine extends CMSEngine {
         }
     }
 
+    /**
+     * Exports the signature pool statistics of a host CA signing unit.
+     * The signing units of lightweight CAs are not exported to keep
+     * the number of metrics bounded.
+     */
+    public void initSignaturePoolMetrics(CASigningUnit signingUnit, String name) {
+
+        SignaturePool signaturePool = signingUnit.getSignaturePool();
+        if (signaturePool == null) {
+            return;
+        }
+
+        signaturePool.setMetricsRegistry(getMetricsRegistry(), name);
+    }
+
     public void initCRLSigningUnit(CertificateAuthority ca) throws Exception {
 
         logger.info("CAEngine: Initializing CRL signing unit");
@@ -1714,6 +1738,7 @@ public class CAEngine extends CMSEngine {
         if (hostCA && crlSigningConfig != null && crlSigningConfig.size() > 0) {
             crlSigningUnit = new CASigningUnit();
             crlSigningUnit.init(crlSigningConfig, null);
+            initSignaturePoolMetrics(crlSigningUnit, "crl");
 
         } else {
             crlSigningUnit = ca.getSigningUnit();
@@ -1750,6 +1775,7 @@ public class CAEngine extends CMSEngine {
         if (hostCA && ocspSigningConfig != null && ocspSigningConfig.size() > 0) {
             ocspSigningUnit = new CASigningUnit();
             ocspSigningUnit.init(ocspSigningConfig, null);
+            initSignaturePoolMetrics(ocspSigningUnit, "ocsp");
 
         } else {
             ocspSigningUnit = ca.getSigningUnit();
@@ -2053,6 +2079,37 @@ public class CAEngine extends CMSEngine {
         certificateRepository = new CertificateRepository(secureRandom, dbSubsystem);
         certificateRepository.setCMSEngine(this);
         certificateRepository.init();
+
+        initCertRecordCache();
+    }
+
+    public void initCertRecordCache() throws Exception {
+
+        CAEngineConfig engineConfig = getConfig();
+        CAConfig caConfig = engineConfig.getCAConfig();
+        CertRecordCacheConfig cacheConfig = caConfig.getCertRecordCacheConfig();
+
+        if (!cacheConfig.getEnable()) {
+            logger.info("CAEngine: Cert record cache is disabled");
+            return;
+        }
+
+        logger.info("CAEngine: Initializing cert record cache");
+
+        int maxEntries = cacheConfig.getMaxEntries();
+        logger.info("CAEngine: - max entries: " + maxEntries);
+
+        int maxAge = cacheConfig.getMaxAge();
+        logger.info("CAEngine: - max age: " + maxAge + " seconds");
+
+        CertRecordCache certRecordCache = new CertRecordCache(maxEntries, maxAge * 1000L);
+        certRecordCache.setMetricsRegistry(getMetricsRegistry());
+        certificateRepository.setCertRecordCache(certRecordCache);
+
+        certRecordCacheInvalidationTask = new CertRecordCacheInvalidationTask(
+                certificateRepository,
+                certRecordCache);
+        certRecordCacheInvalidationTask.start();
     }
 
     public void initCrlDatabase() throws Exception {
@@ -2405,6 +2462,57 @@ public class CAEngine extends CMSEngine {
         }
     }
 
+    /**
+     * Signs CRL generated by StreamingCRLBuilder using the specified
+     * signature algorithm. If no algorithm is specified the CA's default
+     * signing algorithm is used.
+     *
+     * @param ca CA to sign the CRL.
+     * @param crl the CRL to be signed.
+     * @param algname the algorithm name to use.
+     * @return the DER-encoded signed CRL
+     * @exception EBaseException failed to sign CRL
+     */
+    public byte[] sign(
+            CertificateAuthority ca,
+            StreamingCRLBuilder crl,
+            String algname)
+            throws EBaseException {
+
+        ca.ensureReady();
+
+        StatsSubsystem statsSub = (StatsSubsystem) subsystems.get(StatsSubsystem.ID);
+        if (statsSub != null) {
+            statsSub.startTiming("signing");
+        }
+
+        try {
+            return ca.sign(crl, algname);
+
+        } catch (NoSuchAlgorithmException e) {
+            logger.error(CMS.getLogMessage("CMSCORE_CA_CA_SIGN_CRL", e.toString(), e.getMessage()), e);
+            throw new ECAException(CMS.getUserMessage("CMS_CA_SIGNING_CRL_FAILED", e.getMessage()), e);
+
+        } catch (IOException e) {
+            logger.error(CMS.getLogMessage("CMSCORE_CA_CA_SIGN_CRL", e.toString(), e.getMessage()), e);
+            throw new ECAException(CMS.getUserMessage("CMS_CA_SIGNING_CRL_FAILED", e.getMessage()), e);
+
+        } catch (SignatureException e) {
+            logger.error(CMS.getUserMessage("CMS_CA_SIGNING_OPERATION_FAILED", e.toString()), e);
+            checkForAndAutoShutdown();
+            throw new EBaseException(e);
+
+        } catch (Exception e) {
+            logger.error("Unable to sign data: " + e.getMessage(), e);
+            throw new EBaseException(e);
+
+        } finally {
+            if (statsSub != null) {
+                statsSub.endTiming("signing");
+            }
+        }
+    }
+
     /**
      * Sign a byte array using the specified algorithm.
      * If algorithm is null the CA's default algorithm is used.
@@ -2738,6 +2846,10 @@ public class CAEngine extends CMSEngine {
             retrieveModificationsTask.stop();
         }
 
+        if (certRecordCacheInvalidationTask != null) {
+            certRecordCacheInvalidationTask.stop();
+        }
+
         if (certificateRepository != null) {
             certificateRepository.shutdown();
         }
@@ -0,0 +1,58 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.ca;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.ConfigStorage;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.base.SimpleProperties;
+
+/**
+ * Provides ca.certRecordCache.* parameters.
+ */
+public class CertRecordCacheConfig extends ConfigStore {
+
+    public CertRecordCacheConfig(ConfigStorage storage) {
+        super(storage);
+    }
+
+    public CertRecordCacheConfig(String name, SimpleProperties source) {
+        super(name, source);
+    }
+
+    /**
+     * Returns ca.certRecordCache.enable parameter.
+     */
+    public boolean getEnable() throws EBaseException {
+        return getBoolean("enable", false);
+    }
+
+    public void setEnable(boolean enable) {
+        putBoolean("enable", enable);
+    }
+
+    /**
+     * Returns ca.certRecordCache.maxEntries parameter.
+     */
+    public int getMaxEntries() throws EBaseException {
+        return getInteger("maxEntries", 10000);
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        putInteger("maxEntries", maxEntries);
+    }
+
+    /**
+     * Returns ca.certRecordCache.maxAge parameter (in seconds).
+     */
+    public int getMaxAge() throws EBaseException {
+        return getInteger("maxAge", 300);
+    }
+
+    public void setMaxAge(int maxAge) {
+        putInteger("maxAge", maxAge);
+    }
+}
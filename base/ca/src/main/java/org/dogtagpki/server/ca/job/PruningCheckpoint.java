@@ -0,0 +1,148 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.ca.job;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Properties;
+import java.util.StringJoiner;
+
+/**
+ * This class keeps track of the completed partitions of a pruning
+ * run, so an interrupted run can be resumed with the same pruning
+ * time and partitions.
+ */
+public class PruningCheckpoint {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PruningCheckpoint.class);
+
+    private Path path;
+    private long pruningTime;
+    private BigInteger lowest;
+    private BigInteger highest;
+    private int partitions;
+    private BitSet completed = new BitSet();
+
+    public PruningCheckpoint(
+            Path path,
+            long pruningTime,
+            BigInteger lowest,
+            BigInteger highest,
+            int partitions) {
+
+        this.path = path;
+        this.pruningTime = pruningTime;
+        this.lowest = lowest;
+        this.highest = highest;
+        this.partitions = partitions;
+    }
+
+    public long getPruningTime() {
+        return pruningTime;
+    }
+
+    public BigInteger getLowest() {
+        return lowest;
+    }
+
+    public BigInteger getHighest() {
+        return highest;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public synchronized boolean isCompleted(int partition) {
+        return completed.get(partition);
+    }
+
+    public synchronized int getCompletedPartitions() {
+        return completed.cardinality();
+    }
+
+    public synchronized boolean isDone() {
+        return completed.cardinality() >= partitions;
+    }
+
+    /**
+     * Marks a partition as completed and stores the checkpoint.
+     */
+    public synchronized void complete(int partition) throws IOException {
+        completed.set(partition);
+        store();
+    }
+
+    /**
+     * Loads the checkpoint from a file.
+     *
+     * @return checkpoint, or null if the file does not exist
+     */
+    public static PruningCheckpoint load(Path path) throws IOException {
+
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+
+        PruningCheckpoint checkpoint = new PruningCheckpoint(
+                path,
+                Long.parseLong(properties.getProperty("pruningTime")),
+                new BigInteger(properties.getProperty("lowest"), 16),
+                new BigInteger(properties.getProperty("highest"), 16),
+                Integer.parseInt(properties.getProperty("partitions")));
+
+        String completed = properties.getProperty("completed", "");
+        for (String partition : completed.split(",")) {
+            if (partition.isBlank()) continue;
+            checkpoint.completed.set(Integer.parseInt(partition.trim()));
+        }
+
+        return checkpoint;
+    }
+
+    /**
+     * Stores the checkpoint into a temporary file, then renames it
+     * so the checkpoint file is always complete.
+     */
+    public synchronized void store() throws IOException {
+
+        StringJoiner completedList = new StringJoiner(",");
+        for (int i = completed.nextSetBit(0); i >= 0; i = completed.nextSetBit(i + 1)) {
+            completedList.add(Integer.toString(i));
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("pruningTime", Long.toString(pruningTime));
+        properties.setProperty("lowest", lowest.toString(16));
+        properties.setProperty("highest", highest.toString(16));
+        properties.setProperty("partitions", Integer.toString(partitions));
+        properties.setProperty("completed", completedList.toString());
+
+        Path tempPath = path.resolveSibling(path.getFileName() + ".temp");
+
+        try (Writer writer = Files.newBufferedWriter(tempPath)) {
+            properties.store(writer, null);
+        }
+
+        Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void remove() throws IOException {
+        logger.info("PruningCheckpoint: Removing " + path);
+        Files.deleteIfExists(path);
+    }
+}
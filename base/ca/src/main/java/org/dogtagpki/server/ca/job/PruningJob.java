@@ -5,13 +5,24 @@
 //
 package org.dogtagpki.server.ca.job;
 
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.dogtagpki.server.ca.CAEngine;
-import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.IExtendedPluginInfo;
@@ -20,8 +31,10 @@ import com.netscape.certsrv.dbs.certdb.CertId;
 import com.netscape.certsrv.request.RequestId;
 import com.netscape.certsrv.request.RequestStatus;
 import com.netscape.cms.jobs.Job;
+import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.dbs.CertRecord;
 import com.netscape.cmscore.dbs.CertificateRepository;
+import com.netscape.cmscore.dbs.ElementProcessor;
 import com.netscape.cmscore.dbs.Repository.IDGenerator;
 import com.netscape.cmscore.jobs.JobConfig;
 import com.netscape.cmscore.jobs.JobsScheduler;
@@ -44,6 +57,11 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
     int requestSearchSizeLimit;
     int requestSearchTimeLimit;
 
+    int threads;
+    int partitions;
+    boolean dryRun;
+    Path checkpointPath;
+
     CertificateRepository certRepository;
     RequestRepository requestRepository;
 
@@ -59,7 +77,11 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
                 "requestRetentionTime",
                 "requestRetentionUnit",
                 "requestSearchSizeLimit",
-                "requestSearchTimeLimit"
+                "requestSearchTimeLimit",
+                "threads",
+                "partitions",
+                "dryRun",
+                "checkpointFile"
         };
     }
 
@@ -80,6 +102,13 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
                 "requestRetentionUnit;integer;Request retention unit: year, month, day (default), hour, minute",
                 "requestSearchSizeLimit;integer;Request search size limit (default: 1000)",
                 "requestSearchTimeLimit;integer;Request search time limit in seconds (default: 0)",
+                "threads;integer;Number of threads pruning in parallel. If 0, certificates are pruned" +
+                        " sequentially up to the search size limit. Limited to (internaldb.maxConns - 1) / 2" +
+                        " since each thread uses two database connections (default: 0)",
+                "partitions;integer;Number of serial number ranges pruned in parallel (default: 16)",
+                "dryRun;boolean;Only count the records to prune (default: false)",
+                "checkpointFile;string;File to store the completed serial number ranges, so an interrupted" +
+                        " run can be resumed (default: <instance>/conf/ca/<job>.checkpoint)",
                 IExtendedPluginInfo.HELP_TOKEN + ";configuration-jobrules-pruningjobs",
         };
     }
@@ -144,15 +173,29 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
         // default LDAPSearchConstraints.serverTimeLimit is 0
         requestSearchTimeLimit = config.getInteger("requestSearchTimeLimit", 0);
         logger.info("PruningJob: - request search time limit: " + requestSearchTimeLimit);
+
+        threads = config.getInteger("threads", 0);
+        logger.info("PruningJob: - threads: " + threads);
+
+        partitions = Math.max(config.getInteger("partitions", 16), 1);
+        logger.info("PruningJob: - partitions: " + partitions);
+
+        dryRun = config.getBoolean("dryRun", false);
+        logger.info("PruningJob: - dry run: " + dryRun);
+
+        String defaultCheckpointFile = CMS.getInstanceDir() + File.separator + "conf"
+                + File.separator + engine.getID() + File.separator + id + ".checkpoint";
+        checkpointPath = Paths.get(config.getString("checkpointFile", defaultCheckpointFile));
+        logger.info("PruningJob: - checkpoint file: " + checkpointPath);
     }
 
     public void pruneCertRecord(CertRecord certRecord) throws Exception {
 
-        X509CertImpl cert = certRecord.getCertificate();
-        CertId certID = new CertId(cert.getSerialNumber());
+        BigInteger serialNumber = certRecord.getSerialNumber();
+        CertId certID = new CertId(serialNumber);
 
         logger.info("PruningJob: Removing cert " + certID.toHexString());
-        certRepository.deleteCertificateRecord(cert.getSerialNumber());
+        certRepository.deleteCertificateRecord(serialNumber);
 
         MetaInfo metaInfo = (MetaInfo) certRecord.get(CertRecord.ATTR_META_INFO);
         if (metaInfo == null) {
@@ -182,7 +225,7 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
 
         long time = pruningTime.getTime();
 
-        String filter = "(&(x509Cert.notAfter<=" + time + ")(!(x509Cert.notAfter=" + time + ")))";
+        String filter = createCertFilter(time);
         logger.info("PruningJob: - filter: " + filter);
 
         Enumeration<CertRecord> certRecords = certRepository.searchCertificates(
@@ -195,6 +238,10 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
             logger.info("PruningJob: Pruning cert " + certID.toHexString());
             logger.info("PruningJob: - expired: " + certRecord.getNotAfter());
 
+            if (dryRun) {
+                continue;
+            }
+
             try {
                 pruneCertRecord(certRecord);
             } catch (Exception e) {
@@ -203,7 +250,260 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
         }
     }
 
+    String createCertFilter(long time) {
+        return "(&(x509Cert.notAfter<=" + time + ")(!(x509Cert.notAfter=" + time + ")))";
+    }
+
+    /**
+     * Prunes expired certificates in serial number ranges concurrently.
+     * The range between the lowest and the highest expired serial number
+     * is split into partitions. Each partition is searched with a separate
+     * database connection, and at most the configured number of partitions
+     * are pruned at the same time.
+     *
+     * Completed partitions are stored in the checkpoint file. If the run
+     * is interrupted, the next run resumes the remaining partitions with
+     * the same pruning time before starting a new run.
+     */
+    public void pruneCertRecords(Calendar calendar, ExecutorService executor) throws Exception {
+
+        PruningCheckpoint checkpoint = dryRun ? null : PruningCheckpoint.load(checkpointPath);
+        long time;
+        BigInteger lowest;
+        BigInteger highest;
+        int partitions;
+
+        if (checkpoint != null) {
+            time = checkpoint.getPruningTime();
+            lowest = checkpoint.getLowest();
+            highest = checkpoint.getHighest();
+            partitions = checkpoint.getPartitions();
+
+            logger.info("PruningJob: Resuming pruning certs expired before " + new Date(time));
+            logger.info("PruningJob: - completed partitions: " + checkpoint.getCompletedPartitions()
+                    + "/" + partitions);
+
+        } else {
+            Calendar pruningCalendar = (Calendar) calendar.clone();
+            pruningCalendar.add(certRetentionUnit, -certRetentionTime);
+
+            Date pruningTime = pruningCalendar.getTime();
+            logger.info("PruningJob: Pruning certs expired before " + pruningTime);
+
+            time = pruningTime.getTime();
+            String filter = createCertFilter(time);
+
+            lowest = certRepository.findSerialNumberBound(filter, false);
+            if (lowest == null) {
+                logger.info("PruningJob: No expired certs");
+                return;
+            }
+
+            highest = certRepository.findSerialNumberBound(filter, true);
+
+            // there might be fewer ranges than configured partitions
+            partitions = createPartitions(lowest, highest, this.partitions).size();
+
+            if (!dryRun) {
+                checkpoint = new PruningCheckpoint(checkpointPath, time, lowest, highest, partitions);
+                checkpoint.store();
+            }
+        }
+
+        logger.info("PruningJob: - serial numbers: 0x" + lowest.toString(16) + " - 0x" + highest.toString(16));
+
+        String filter = createCertFilter(time);
+        logger.info("PruningJob: - filter: " + filter);
+
+        List<BigInteger[]> ranges = createPartitions(lowest, highest, partitions);
+
+        String[] attrs = new String[] {
+                CertRecord.ATTR_ID, CertRecord.ATTR_META_INFO, "objectclass"
+        };
+
+        LongAdder count = new LongAdder();
+        long startTime = System.currentTimeMillis();
+
+        List<Future<?>> futures = new ArrayList<>();
+        PruningCheckpoint finalCheckpoint = checkpoint;
+
+        for (int i = 0; i < ranges.size(); i++) {
+
+            if (checkpoint != null && checkpoint.isCompleted(i)) {
+                continue;
+            }
+
+            BigInteger begin = ranges.get(i)[0];
+            BigInteger end = ranges.get(i)[1];
+
+            String partitionFilter = "(&" + filter
+                    + "(" + CertRecord.ATTR_ID + ">=" + begin + ")"
+                    + "(" + CertRecord.ATTR_ID + "<=" + end + "))";
+
+            int partition = i;
+
+            futures.add(executor.submit(() -> {
+
+                long partitionCount = certRepository.processPagedCertRecords(
+                        partitionFilter,
+                        attrs,
+                        new CertRecordPruner(count),
+                        certSearchSizeLimit);
+
+                if (finalCheckpoint != null) {
+                    finalCheckpoint.complete(partition);
+                }
+
+                logger.info("PruningJob: " + (dryRun ? "Found " : "Pruned ") + partitionCount
+                        + " certs in partition " + partition);
+
+                return null;
+            }));
+        }
+
+        Exception exception = waitFor(futures);
+
+        long duration = System.currentTimeMillis() - startTime;
+        report("certs", count.sum(), duration);
+
+        if (exception != null) {
+            throw exception;
+        }
+
+        if (checkpoint != null && checkpoint.isDone()) {
+            checkpoint.remove();
+        }
+    }
+
+    /**
+     * Splits the range between the lowest and the highest serial number
+     * (inclusive) into at most the specified number of consecutive
+     * ranges of the same size, except the last one.
+     *
+     * @return the first and the last serial number of each range
+     */
+    static List<BigInteger[]> createPartitions(BigInteger lowest, BigInteger highest, int partitions) {
+
+        BigInteger partitionSize = highest.subtract(lowest)
+                .divide(BigInteger.valueOf(partitions))
+                .add(BigInteger.ONE);
+
+        List<BigInteger[]> ranges = new ArrayList<>();
+
+        for (int i = 0; i < partitions; i++) {
+
+            BigInteger begin = lowest.add(partitionSize.multiply(BigInteger.valueOf(i)));
+            if (begin.compareTo(highest) > 0) {
+                break;
+            }
+
+            BigInteger end = begin.add(partitionSize).subtract(BigInteger.ONE).min(highest);
+            ranges.add(new BigInteger[] { begin, end });
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Returns the number of threads that can prune concurrently without
+     * exhausting the database connection pool. Each thread holds a
+     * connection for the partition search and needs another one to
+     * remove the records, and one connection is left for the rest of
+     * the server.
+     *
+     * @return the number of threads, or 0 if the records have to be
+     * pruned sequentially
+     */
+    static int getMaxThreads(int threads, int maxConns) {
+        return Math.max(Math.min(threads, (maxConns - 1) / 2), 0);
+    }
+
+    /**
+     * Prunes the certificate records returned by a partition search.
+     */
+    class CertRecordPruner extends ElementProcessor {
+
+        LongAdder count;
+
+        CertRecordPruner(LongAdder count) {
+            this.count = count;
+        }
+
+        @Override
+        public void process(Object o) throws EBaseException {
+
+            if (isStopped()) {
+                // leave the partition incomplete so it will be resumed
+                throw new EBaseException("Pruning job stopped");
+            }
+
+            CertRecord certRecord = (CertRecord) o;
+            count.increment();
+
+            if (dryRun) {
+                return;
+            }
+
+            try {
+                pruneCertRecord(certRecord);
+            } catch (Exception e) {
+                CertId certID = new CertId(certRecord.getSerialNumber());
+                logger.warn("Unable to prune cert " + certID.toHexString() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Waits for all tasks to complete.
+     *
+     * @return the first failure, or null if all tasks succeeded
+     */
+    Exception waitFor(List<Future<?>> futures) throws InterruptedException {
+
+        Exception exception = null;
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+
+            } catch (ExecutionException e) {
+                if (exception == null) {
+                    Throwable cause = e.getCause();
+                    exception = cause instanceof Exception ex ? ex : new Exception(cause.getMessage(), cause);
+                }
+            }
+        }
+
+        return exception;
+    }
+
+    void report(String type, long count, long duration) {
+
+        long rate = duration > 0 ? count * 1000 / duration : count;
+
+        logger.info("PruningJob: " + (dryRun ? "Found " : "Pruned ") + count + " " + type
+                + " in " + duration + " ms (" + rate + " " + type + "/s)");
+
+        if (!dryRun && engine.getMetricsRegistry() != null) {
+            engine.getMetricsRegistry().add("job_" + mId + "_pruned_" + type, count);
+        }
+    }
+
     public void pruneRequestRecords(Calendar calendar) throws EBaseException {
+        try {
+            pruneRequestRecords(calendar, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EBaseException("Pruning requests interrupted", e);
+        }
+    }
+
+    /**
+     * Prunes incomplete requests. If an executor is provided the
+     * requests are removed concurrently.
+     */
+    public void pruneRequestRecords(Calendar calendar, ExecutorService executor)
+            throws EBaseException, InterruptedException {
 
         Calendar pruningCalendar = (Calendar) calendar.clone();
         pruningCalendar.add(requestRetentionUnit, -requestRetentionTime);
@@ -222,6 +522,9 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
         Collection<RequestRecord> records = requestRepository.listRequestsByFilter(
                 filter, requestSearchSizeLimit, requestSearchTimeLimit);
 
+        long startTime = System.currentTimeMillis();
+        List<Future<?>> futures = new ArrayList<>();
+
         for (RequestRecord record : records) {
             Request request = record.toRequest();
             RequestId requestID = request.getRequestId();
@@ -229,12 +532,44 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
             logger.info("PruningJob: - status: " + request.getRequestStatus());
             logger.info("PruningJob: - last modified: " + request.getModificationTime());
 
-            try {
-                requestRepository.removeRequest(requestID);
-            } catch (EBaseException e) {
-                logger.warn("Unable to prune cert " + requestID.toHexString() + ": " + e.getMessage(), e);
+            if (dryRun) {
+                continue;
+            }
+
+            if (isStopped()) {
+                break;
+            }
+
+            Runnable task = () -> {
+                try {
+                    requestRepository.removeRequest(requestID);
+                } catch (EBaseException e) {
+                    logger.warn("Unable to prune cert " + requestID.toHexString() + ": " + e.getMessage(), e);
+                }
+            };
+
+            if (executor == null) {
+                task.run();
+            } else {
+                futures.add(executor.submit(task));
             }
         }
+
+        waitFor(futures);
+
+        long duration = System.currentTimeMillis() - startTime;
+        report("requests", records.size(), duration);
+    }
+
+    ExecutorService createExecutor(int threads) {
+
+        AtomicInteger counter = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "PruningJob-" + mId + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     @Override
@@ -257,16 +592,57 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
             throw new RuntimeException(message);
         }
 
-        try {
-            pruneCertRecords(calendar);
-        } catch (EBaseException e) {
-            logger.warn("PruningJob: Unable to prune certificates: " + e.getMessage(), e);
+        int threads = this.threads;
+
+        if (threads > 0) {
+            int maxConns = engine.getDBSubsystem().getMaxConns();
+            threads = getMaxThreads(threads, maxConns);
+
+            if (threads < this.threads) {
+                logger.warn("PruningJob: Reducing threads from " + this.threads + " to " + threads
+                        + " for " + maxConns + " database connections");
+            }
         }
 
+        if (threads <= 0) {
+
+            try {
+                pruneCertRecords(calendar);
+            } catch (EBaseException e) {
+                logger.warn("PruningJob: Unable to prune certificates: " + e.getMessage(), e);
+            }
+
+            try {
+                pruneRequestRecords(calendar);
+            } catch (EBaseException e) {
+                logger.warn("PruningJob: Unable to prune requests: " + e.getMessage(), e);
+            }
+
+            return;
+        }
+
+        ExecutorService executor = createExecutor(threads);
+
         try {
-            pruneRequestRecords(calendar);
-        } catch (EBaseException e) {
-            logger.warn("PruningJob: Unable to prune requests: " + e.getMessage(), e);
+            try {
+                pruneCertRecords(calendar, executor);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.warn("PruningJob: Unable to prune certificates: " + e.getMessage(), e);
+            }
+
+            try {
+                pruneRequestRecords(calendar, executor);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (EBaseException e) {
+                logger.warn("PruningJob: Unable to prune requests: " + e.getMessage(), e);
+            }
+
+        } finally {
+            executor.shutdownNow();
         }
     }
 }
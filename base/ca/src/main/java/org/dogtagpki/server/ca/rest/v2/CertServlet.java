@@ -8,6 +8,7 @@ package org.dogtagpki.server.ca.rest.v2;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
+import java.math.BigInteger;
 import java.security.InvalidKeyException;
 import java.security.Principal;
 import java.security.PublicKey;
@@ -17,6 +18,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.servlet.annotation.WebServlet;
@@ -40,6 +42,12 @@ import org.mozilla.jss.netscape.security.x509.X509Key;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.netscape.ca.CertificateAuthority;
 import com.netscape.certsrv.base.BadRequestException;
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.PKIException;
@@ -56,6 +64,9 @@ import com.netscape.cms.servlet.cert.FilterBuilder;
 import com.netscape.cmscore.dbs.CertRecord;
 import com.netscape.cmscore.dbs.CertificateRepository;
 import com.netscape.cmscore.dbs.RevocationInfo;
+import com.netscape.cmsutil.ocsp.CertStatus;
+import com.netscape.cmsutil.ocsp.GoodInfo;
+import com.netscape.cmsutil.ocsp.RevokedInfo;
 
 /**
  * @author Marco Fargetta {@literal <mfargett@redhat.com>}
@@ -67,6 +78,9 @@ public class CertServlet extends CAServlet {
     private static final long serialVersionUID = 1L;
     private static Logger logger = LoggerFactory.getLogger(CertServlet.class);
 
+    // max number of serial numbers in a status request
+    public static final int MAX_STATUS_SERIAL_NUMBERS = 1000;
+
     @WebAction(method = HttpMethod.GET, paths = {""})
     public void listCerts(HttpServletRequest request, HttpServletResponse response) throws Exception {
         HttpSession session = request.getSession();
@@ -126,6 +140,78 @@ public class CertServlet extends CAServlet {
         out.println(infos.toJSON());
     }
 
+    /**
+     * Returns the status of multiple certificates issued by this CA.
+     * The request contains a JSON array of serial numbers, e.g.
+     * ["0x1", "0x2"]. The status is retrieved the same way as for
+     * OCSP, i.e. from the CRL cache if it is used for OCSP, otherwise
+     * from the cert records which are read in batches.
+     */
+    @WebAction(method = HttpMethod.POST, paths = {"status"})
+    public void getCertStatus(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        HttpSession session = request.getSession();
+        logger.debug("CertServlet.getCertStatus(): session: {}", session.getId());
+
+        BufferedReader reader = request.getReader();
+        String postMessage = reader.lines().collect(Collectors.joining());
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode ids;
+        try {
+            ids = mapper.readTree(postMessage);
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Invalid serial numbers: " + e.getMessage(), e);
+        }
+
+        if (ids == null || !ids.isArray()) {
+            throw new BadRequestException("Missing serial numbers");
+        }
+
+        if (ids.size() > MAX_STATUS_SERIAL_NUMBERS) {
+            throw new BadRequestException("Too many serial numbers: " + ids.size()
+                    + " (max: " + MAX_STATUS_SERIAL_NUMBERS + ")");
+        }
+
+        List<CertId> certIds = new ArrayList<>();
+        List<BigInteger> serialNumbers = new ArrayList<>();
+        for (JsonNode node : ids) {
+            CertId id;
+            try {
+                id = new CertId(node.asText());
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Id not valid: " + node.asText());
+            }
+            certIds.add(id);
+            serialNumbers.add(id.toBigInteger());
+        }
+
+        CAEngine engine = getCAEngine();
+        CertificateAuthority ca = engine.getCA();
+        Map<BigInteger, CertStatus> statuses = ca.getCertStatus(serialNumbers);
+
+        ArrayNode results = mapper.createArrayNode();
+        for (CertId id : certIds) {
+            CertStatus certStatus = statuses.get(id.toBigInteger());
+
+            ObjectNode result = results.addObject();
+            result.put("id", id.toHexString());
+
+            if (certStatus instanceof GoodInfo) {
+                result.put("status", "GOOD");
+
+            } else if (certStatus instanceof RevokedInfo revokedInfo) {
+                result.put("status", "REVOKED");
+                result.put("revokedOn", revokedInfo.getRevocationTime().toDate().getTime());
+
+            } else {
+                result.put("status", "UNKNOWN");
+            }
+        }
+
+        PrintWriter out = response.getWriter();
+        out.println(mapper.writeValueAsString(results));
+    }
+
     private CertData getCertData(CertId id) throws Exception {
         CAEngine engine = getCAEngine();
         CertificateRepository repo = engine.getCertificateRepository();
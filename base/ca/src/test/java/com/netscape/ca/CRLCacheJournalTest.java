@@ -0,0 +1,95 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Hashtable;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+import com.netscape.cmscore.dbs.CRLCacheDelta;
+
+public class CRLCacheJournalTest {
+
+    @Test
+    public void testReplay() throws Exception {
+
+        Path file = Files.createTempFile("crl", ".journal");
+        try {
+            try (CRLCacheJournal journal = new CRLCacheJournal(file, false)) {
+                for (long i = 1; i <= 100; i++) {
+                    CRLCacheDelta delta = new CRLCacheDelta();
+                    delta.addCert(BigInteger.valueOf(i),
+                            CompactRevocationIndexTest.createEntry(i, RevocationReason.KEY_COMPROMISE));
+                    journal.append(CRLCacheJournal.REVOKED_CERTS, delta);
+                }
+
+                CRLCacheDelta delta = new CRLCacheDelta();
+                delta.removeCert(BigInteger.valueOf(50));
+                journal.append(CRLCacheJournal.REVOKED_CERTS, delta);
+
+                delta = new CRLCacheDelta();
+                delta.addCert(BigInteger.valueOf(50), CompactRevocationIndexTest.createEntry(50, null));
+                journal.append(CRLCacheJournal.UNREVOKED_CERTS, delta);
+
+                assertEquals(102, journal.getEntries());
+            }
+
+            // simulate a partially written record
+            long size = Files.size(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(size - 3);
+            }
+
+            Hashtable<BigInteger, RevokedCertificate> revokedCerts = new Hashtable<>();
+            Hashtable<BigInteger, RevokedCertificate> unrevokedCerts = new Hashtable<>();
+            Hashtable<BigInteger, RevokedCertificate> expiredCerts = new Hashtable<>();
+
+            try (CRLCacheJournal journal = new CRLCacheJournal(file, false)) {
+                assertEquals(101, journal.replay(revokedCerts, unrevokedCerts, expiredCerts));
+
+                assertEquals(99, revokedCerts.size());
+                assertFalse(revokedCerts.containsKey(BigInteger.valueOf(50)));
+                assertTrue(unrevokedCerts.isEmpty());
+                assertTrue(expiredCerts.isEmpty());
+
+                journal.truncate();
+                assertEquals(0, journal.getEntries());
+            }
+
+            revokedCerts.clear();
+            try (CRLCacheJournal journal = new CRLCacheJournal(file, false)) {
+                assertEquals(0, journal.replay(revokedCerts, unrevokedCerts, expiredCerts));
+                assertTrue(revokedCerts.isEmpty());
+            }
+
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
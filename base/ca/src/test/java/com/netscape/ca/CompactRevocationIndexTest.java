@@ -0,0 +1,219 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+public class CompactRevocationIndexTest {
+
+    static RevokedCertificate createEntry(long serialNumber, RevocationReason reason) throws Exception {
+        CRLExtensions exts = null;
+        if (reason != null) {
+            exts = new CRLExtensions();
+            exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(reason));
+        }
+        return new RevokedCertImpl(BigInteger.valueOf(serialNumber), new Date(serialNumber * 1000), exts);
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+
+        CompactRevocationIndex index = new CompactRevocationIndex();
+        index.setCompactionThreshold(4);
+
+        for (long i = 1; i <= 100; i++) {
+            index.put(BigInteger.valueOf(i * 3), createEntry(i * 3, i % 2 == 0 ? RevocationReason.KEY_COMPROMISE : null));
+        }
+
+        assertEquals(100, index.size());
+        assertTrue(index.containsKey(BigInteger.valueOf(30)));
+        assertFalse(index.containsKey(BigInteger.valueOf(31)));
+        assertNull(index.get(BigInteger.valueOf(301)));
+
+        assertEquals(new Date(30000), index.getRevocationDate(BigInteger.valueOf(30)));
+
+        RevokedCertificate entry = index.get(BigInteger.valueOf(6));
+        assertEquals(BigInteger.valueOf(6), entry.getSerialNumber());
+        CRLReasonExtension ext = (CRLReasonExtension) entry.getExtensions().get(CRLReasonExtension.NAME);
+        assertEquals(RevocationReason.KEY_COMPROMISE, ext.getReason());
+
+        assertNull(index.get(BigInteger.valueOf(3)).getExtensions());
+    }
+
+    @Test
+    public void testUpdates() throws Exception {
+
+        CompactRevocationIndex index = new CompactRevocationIndex();
+        index.setCompactionThreshold(2);
+
+        for (long i = 10; i > 0; i--) {
+            index.put(BigInteger.valueOf(i), createEntry(i, RevocationReason.SUPERSEDED));
+        }
+
+        index.remove(BigInteger.valueOf(5));
+        index.put(BigInteger.valueOf(7), createEntry(70, RevocationReason.CERTIFICATE_HOLD));
+        index.put(new BigInteger("123456789012345678901234567890"), createEntry(11, null));
+
+        assertEquals(10, index.size());
+        assertFalse(index.containsKey(BigInteger.valueOf(5)));
+        assertEquals(new Date(70000), index.getRevocationDate(BigInteger.valueOf(7)));
+
+        BigInteger previous = BigInteger.valueOf(-1);
+        int count = 0;
+        for (Map.Entry<BigInteger, RevokedCertificate> entry : index.entrySet()) {
+            assertTrue(entry.getKey().compareTo(previous) > 0);
+            previous = entry.getKey();
+            count++;
+        }
+        assertEquals(10, count);
+
+        index.clear();
+        assertTrue(index.isEmpty());
+    }
+
+    @Test
+    public void testMappedFile() throws Exception {
+
+        Path file = Files.createTempFile("revocation", ".idx");
+        try {
+            Hashtable<BigInteger, RevokedCertificate> table = new Hashtable<>();
+            for (long i = 1; i <= 1000; i++) {
+                table.put(BigInteger.valueOf(i), createEntry(i, RevocationReason.UNSPECIFIED));
+            }
+
+            CompactRevocationIndex index = new CompactRevocationIndex(file);
+            index.putAll(table);
+            index.compact();
+
+            assertEquals(table.size(), index.size());
+            assertEquals(index.getPackedSize(), Files.size(file));
+            assertEquals(table.keySet(), index.keySet());
+
+            for (BigInteger serialNumber : table.keySet()) {
+                assertEquals(
+                        table.get(serialNumber).getRevocationDate(),
+                        index.get(serialNumber).getRevocationDate());
+            }
+
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testSnapshotIteration() throws Exception {
+
+        CompactRevocationIndex index = new CompactRevocationIndex();
+        index.setCompactionThreshold(2);
+
+        for (long i = 1; i <= 10; i++) {
+            index.put(BigInteger.valueOf(i), createEntry(i, RevocationReason.KEY_COMPROMISE));
+        }
+
+        // entry that cannot be packed
+        index.put(BigInteger.valueOf(-1), createEntry(1, null));
+
+        Iterator<Map.Entry<BigInteger, RevokedCertificate>> iterator = index.entrySet().iterator();
+        assertEquals(BigInteger.valueOf(-1), iterator.next().getKey());
+        assertEquals(BigInteger.valueOf(1), iterator.next().getKey());
+
+        // changes and compactions do not affect the iterator
+        index.remove(BigInteger.valueOf(2));
+        index.remove(BigInteger.valueOf(-1));
+        for (long i = 11; i <= 20; i++) {
+            index.put(BigInteger.valueOf(i), createEntry(i, null));
+        }
+        index.compact();
+
+        long expected = 2;
+        while (iterator.hasNext()) {
+            Map.Entry<BigInteger, RevokedCertificate> entry = iterator.next();
+            assertEquals(BigInteger.valueOf(expected), entry.getKey());
+            assertEquals(new Date(expected * 1000), entry.getValue().getRevocationDate());
+            expected++;
+        }
+        assertEquals(11, expected);
+
+        // new iterators see the changes
+        assertEquals(19, index.size());
+        assertEquals(19, index.keySet().size());
+        assertFalse(index.keySet().contains(BigInteger.valueOf(2)));
+        assertTrue(index.keySet().contains(BigInteger.valueOf(20)));
+    }
+
+    @Test
+    public void testMappedCompaction() throws Exception {
+
+        Path file = Files.createTempFile("revocation", ".idx");
+        try {
+            CompactRevocationIndex index = new CompactRevocationIndex(file);
+
+            for (long i = 1; i <= 100; i++) {
+                index.put(BigInteger.valueOf(i), createEntry(i, RevocationReason.UNSPECIFIED));
+            }
+            index.compact();
+
+            Iterator<Map.Entry<BigInteger, RevokedCertificate>> iterator = index.entrySet().iterator();
+            assertEquals(BigInteger.ONE, iterator.next().getKey());
+
+            // the replaced mapping is kept while the iterator reads it
+            index.put(BigInteger.valueOf(101), createEntry(101, null));
+            index.compact();
+            assertEquals(1, index.getReplacedBuffers());
+            assertEquals(index.getPackedSize(), Files.size(file));
+
+            int count = 1;
+            while (iterator.hasNext()) {
+                assertEquals(BigInteger.valueOf(++count), iterator.next().getKey());
+            }
+            assertEquals(100, count);
+
+            // and released once the iterator is done
+            assertEquals(0, index.getReplacedBuffers());
+
+            // a replaced mapping without readers is released immediately
+            index.put(BigInteger.valueOf(102), createEntry(102, null));
+            index.compact();
+            assertEquals(0, index.getReplacedBuffers());
+
+            assertEquals(102, index.size());
+            assertEquals(new Date(50000), index.getRevocationDate(BigInteger.valueOf(50)));
+
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ca;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.crypto.SignatureAlgorithm;
+
+import com.netscape.cmscore.util.MetricsRegistry;
+
+public class SignaturePoolTest {
+
+    static final SignatureAlgorithm RSA = SignatureAlgorithm.RSASignatureWithSHA256Digest;
+    static final SignatureAlgorithm EC = SignatureAlgorithm.ECSignatureWithSHA256Digest;
+
+    /**
+     * Signature pool that creates test contexts instead of contexts
+     * on a token. A test context fails if it is used concurrently.
+     */
+    class TestSignaturePool extends SignaturePool {
+
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        volatile boolean fail;
+
+        TestSignaturePool(int size) {
+            super(null, null, size);
+        }
+
+        @Override
+        protected Context createContext(SignatureAlgorithm signAlg) {
+
+            AtomicInteger users = new AtomicInteger();
+
+            return data -> {
+
+                if (users.incrementAndGet() != 1) {
+                    throw new IllegalStateException("Context used concurrently");
+                }
+
+                int count = active.incrementAndGet();
+                maxActive.accumulateAndGet(count, Math::max);
+
+                try {
+                    Thread.sleep(1);
+
+                    if (fail) {
+                        throw new SignatureException("Signing failed");
+                    }
+
+                    byte[] signature = data.clone();
+                    for (int i = 0; i < signature.length; i++) {
+                        signature[i] ^= 0xFF;
+                    }
+                    return signature;
+
+                } finally {
+                    active.decrementAndGet();
+                    users.decrementAndGet();
+                }
+            };
+        }
+    }
+
+    @Test
+    public void testContextReuse() throws Exception {
+
+        TestSignaturePool pool = new TestSignaturePool(4);
+
+        for (int i = 0; i < 10; i++) {
+            assertArrayEquals(new byte[] { (byte) ~i }, pool.sign(new byte[] { (byte) i }, RSA));
+        }
+
+        assertEquals(10, pool.getSignatures());
+        assertEquals(0, pool.getFailures());
+
+        // sequential signatures reuse a single context
+        assertEquals(1, pool.getContextsCreated());
+
+        // each algorithm has its own contexts
+        pool.sign(new byte[] { 0 }, EC);
+        assertEquals(2, pool.getContextsCreated());
+    }
+
+    @Test
+    public void testConcurrentSigning() throws Exception {
+
+        int size = 4;
+        int threads = 16;
+        int signaturesPerThread = 50;
+
+        TestSignaturePool pool = new TestSignaturePool(size);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int t = 0; t < threads; t++) {
+                SignatureAlgorithm signAlg = t % 2 == 0 ? RSA : EC;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < signaturesPerThread; i++) {
+                        byte[] data = { (byte) i };
+                        assertArrayEquals(new byte[] { (byte) ~i }, pool.sign(data, signAlg));
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * signaturesPerThread, pool.getSignatures());
+        assertEquals(0, pool.getFailures());
+
+        // the contexts are reused and limited by the pool size
+        assertTrue(pool.getContextsCreated() <= 2 * size);
+        assertTrue(pool.maxActive.get() <= 2 * size);
+
+        assertTrue(pool.getWaitTime() > 0);
+        assertTrue(pool.getSignTime() > 0);
+    }
+
+    @Test
+    public void testFailedContextDiscarded() throws Exception {
+
+        TestSignaturePool pool = new TestSignaturePool(2);
+
+        pool.sign(new byte[] { 0 }, RSA);
+        assertEquals(1, pool.getContextsCreated());
+
+        pool.fail = true;
+        assertThrows(SignatureException.class, () -> pool.sign(new byte[] { 0 }, RSA));
+        assertEquals(1, pool.getFailures());
+
+        // the failed context is replaced with a new one
+        pool.fail = false;
+        pool.sign(new byte[] { 0 }, RSA);
+        assertEquals(2, pool.getContextsCreated());
+        assertEquals(2, pool.getSignatures());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+        TestSignaturePool pool = new TestSignaturePool(2);
+        pool.setMetricsRegistry(metricsRegistry, "cert");
+
+        pool.sign(new byte[] { 0 }, RSA);
+        pool.sign(new byte[] { 1 }, RSA);
+
+        assertEquals(2L, metricsRegistry.getGauges().get("signature_pool_cert_signatures"));
+        assertEquals(0L, metricsRegistry.getGauges().get("signature_pool_cert_failures"));
+        assertEquals(1L, metricsRegistry.getGauges().get("signature_pool_cert_contexts"));
+
+        assertNotNull(metricsRegistry.getTimers().get("signature_pool_cert_wait"));
+        assertNotNull(metricsRegistry.getTimers().get("signature_pool_cert_sign"));
+    }
+}
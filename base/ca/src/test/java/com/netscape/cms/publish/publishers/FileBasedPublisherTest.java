@@ -0,0 +1,197 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.publish.publishers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.netscape.cmscore.base.ConfigStore;
+
+public class FileBasedPublisherTest {
+
+    static final long THIS_UPDATE = 1700000000000L;
+
+    static final String[] NAME_PREFIX = { "crl-20231114-221320", "crl" };
+
+    Path dir;
+
+    FileBasedPublisher createPublisher(boolean b64, boolean zip, boolean gzip, boolean links) throws Exception {
+
+        dir = Files.createTempDirectory("publisher");
+
+        ConfigStore config = new ConfigStore();
+        config.putString("directory", dir.toString());
+        config.putBoolean("Filename.der", true);
+        config.putBoolean("Filename.b64", b64);
+        config.putBoolean("zipCRLs", zip);
+        config.putBoolean("gzipCRLs", gzip);
+        config.putBoolean("latestCrlLink", links);
+        config.putBoolean("singlePass", true);
+        config.putBoolean("httpMetadata", true);
+
+        FileBasedPublisher publisher = new FileBasedPublisher();
+        publisher.init(config);
+
+        return publisher;
+    }
+
+    byte[] createCRL(int size) {
+        byte[] crl = new byte[size];
+        for (int i = 0; i < size; i++) {
+            crl[i] = (byte) (i * 31);
+        }
+        return crl;
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+
+        if (dir == null) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    public void testDERAndBase64() throws Exception {
+
+        FileBasedPublisher publisher = createPublisher(true, false, false, false);
+        byte[] crl = createCRL(1000);
+
+        publisher.publishCRL(crl, THIS_UPDATE, NAME_PREFIX);
+
+        Path der = dir.resolve(NAME_PREFIX[0] + ".der");
+        assertArrayEquals(crl, Files.readAllBytes(der));
+        assertEquals(THIS_UPDATE, Files.getLastModifiedTime(der).toMillis());
+
+        Path b64 = dir.resolve(NAME_PREFIX[0] + ".b64");
+        assertArrayEquals(crl, Base64.getMimeDecoder().decode(Files.readAllBytes(b64)));
+
+        // each file has an ETag file with the hash of its content
+        assertEquals(
+                "\"" + publisher.getETag(Files.readAllBytes(der)) + "\"\n",
+                Files.readString(dir.resolve(NAME_PREFIX[0] + ".der.etag")));
+        assertEquals(
+                "\"" + publisher.getETag(Files.readAllBytes(b64)) + "\"\n",
+                Files.readString(dir.resolve(NAME_PREFIX[0] + ".b64.etag")));
+
+        // no temporary files are left behind
+        try (Stream<Path> paths = Files.list(dir)) {
+            assertFalse(paths.anyMatch(path -> path.toString().endsWith(".temp")));
+        }
+    }
+
+    @Test
+    public void testZipAndGzip() throws Exception {
+
+        FileBasedPublisher publisher = createPublisher(false, true, true, false);
+        byte[] crl = createCRL(10000);
+
+        publisher.publishCRL(crl, THIS_UPDATE, NAME_PREFIX);
+
+        assertFalse(Files.exists(dir.resolve(NAME_PREFIX[0] + ".b64")));
+
+        byte[] zip = Files.readAllBytes(dir.resolve(NAME_PREFIX[0] + ".zip"));
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry = zis.getNextEntry();
+            assertTrue(entry.getName().endsWith(NAME_PREFIX[0] + ".der"));
+            assertArrayEquals(crl, zis.readAllBytes());
+        }
+
+        byte[] gzip = Files.readAllBytes(dir.resolve(NAME_PREFIX[0] + ".der.gz"));
+        try (GZIPInputStream gzis = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            assertArrayEquals(crl, gzis.readAllBytes());
+        }
+
+        assertTrue(Files.exists(dir.resolve(NAME_PREFIX[0] + ".zip.etag")));
+        assertTrue(Files.exists(dir.resolve(NAME_PREFIX[0] + ".der.gz.etag")));
+    }
+
+    @Test
+    public void testLatestLinks() throws Exception {
+
+        FileBasedPublisher publisher = createPublisher(false, true, true, true);
+
+        byte[] crl1 = createCRL(100);
+        publisher.publishCRL(crl1, THIS_UPDATE, NAME_PREFIX);
+
+        assertArrayEquals(crl1, Files.readAllBytes(dir.resolve("crl.der")));
+
+        // the links point to the latest CRL files
+        byte[] crl2 = createCRL(200);
+        String[] namePrefix2 = { "crl-20231114-231320", "crl" };
+        publisher.publishCRL(crl2, THIS_UPDATE + 3600 * 1000, namePrefix2);
+
+        assertTrue(Files.isSymbolicLink(dir.resolve("crl.der")));
+        assertEquals(dir.resolve(namePrefix2[0] + ".der"), Files.readSymbolicLink(dir.resolve("crl.der")));
+        assertEquals(dir.resolve(namePrefix2[0] + ".zip"), Files.readSymbolicLink(dir.resolve("crl.zip")));
+        assertEquals(dir.resolve(namePrefix2[0] + ".der.gz"), Files.readSymbolicLink(dir.resolve("crl.der.gz")));
+        assertArrayEquals(crl2, Files.readAllBytes(dir.resolve("crl.der")));
+
+        // the previous CRL files are kept
+        assertArrayEquals(crl1, Files.readAllBytes(dir.resolve(NAME_PREFIX[0] + ".der")));
+        assertFalse(Files.exists(dir.resolve("crl.der.new")));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+
+        FileBasedPublisher publisher = createPublisher(true, false, false, true);
+
+        byte[] crl1 = createCRL(100);
+        publisher.publishCRL(crl1, THIS_UPDATE, NAME_PREFIX);
+
+        // a non-empty directory cannot be replaced by the base64 file
+        String[] namePrefix2 = { "crl-20231114-231320", "crl" };
+        Path b64 = dir.resolve(namePrefix2[0] + ".b64");
+        Files.createDirectory(b64);
+        Files.createFile(b64.resolve("file"));
+
+        byte[] crl2 = createCRL(200);
+        assertThrows(IOException.class, () -> publisher.publishCRL(crl2, THIS_UPDATE + 3600 * 1000, namePrefix2));
+
+        // the other files are still written
+        assertArrayEquals(crl2, Files.readAllBytes(dir.resolve(namePrefix2[0] + ".der")));
+        assertFalse(Files.exists(dir.resolve(namePrefix2[0] + ".b64.temp")));
+
+        // but the link still points to the previous CRL
+        assertArrayEquals(crl1, Files.readAllBytes(dir.resolve("crl.der")));
+    }
+}
@@ -0,0 +1,213 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.publish.publishers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class OCSPPublisherConnectionTest {
+
+    static final String CONTENT_TYPE = OCSPPublisher.CONTENT_TYPE_PKIX_CRL;
+
+    @Test
+    public void testKeepAlive() throws Exception {
+
+        SocketStub socket = new SocketStub(
+                "HTTP/1.1 200 OK\r\n"
+                + "Content-Length: 9\r\n"
+                + "\r\n"
+                + "status=0\n"
+                + "HTTP/1.1 200 OK\r\n"
+                + "Content-Length: 9\r\n"
+                + "\r\n"
+                + "status=2\n");
+
+        OCSPPublisherConnection connection = new OCSPPublisherConnection("ocsp.example.com", 8443, socket);
+
+        assertEquals("status=0\n", connection.post("/ocsp/ee/ocsp/addCRL?noui=true", CONTENT_TYPE, new byte[] { 1, 2, 3 }));
+        assertTrue(connection.isOpen());
+
+        // the second request is sent over the same connection
+        assertEquals("status=2\n", connection.post("/ocsp/ee/ocsp/addCRL?noui=true", CONTENT_TYPE, new byte[] { 4, 5 }));
+        assertTrue(connection.isOpen());
+
+        String request = socket.getRequest();
+        assertTrue(request.startsWith("POST /ocsp/ee/ocsp/addCRL?noui=true HTTP/1.1\r\n"));
+        assertTrue(request.contains("Host: ocsp.example.com:8443\r\n"));
+        assertTrue(request.contains("Connection: keep-alive\r\n"));
+        assertTrue(request.contains("Content-Type: " + CONTENT_TYPE + "\r\n"));
+        assertTrue(request.contains("Content-Length: 3\r\n"));
+        assertTrue(request.contains("Content-Length: 2\r\n"));
+    }
+
+    @Test
+    public void testChunkedResponse() throws Exception {
+
+        SocketStub socket = new SocketStub(
+                "HTTP/1.1 200 OK\r\n"
+                + "Transfer-Encoding: chunked\r\n"
+                + "\r\n"
+                + "7;name=value\r\n"
+                + "status=\r\n"
+                + "2\r\n"
+                + "0\n\r\n"
+                + "0\r\n"
+                + "Trailer: value\r\n"
+                + "\r\n");
+
+        OCSPPublisherConnection connection = new OCSPPublisherConnection("localhost", 8443, socket);
+
+        assertEquals("status=0\n", connection.post("/addCRL", CONTENT_TYPE, new byte[0]));
+        assertTrue(connection.isOpen());
+    }
+
+    @Test
+    public void testConnectionClose() throws Exception {
+
+        SocketStub socket = new SocketStub(
+                "HTTP/1.1 200 OK\r\n"
+                + "Connection: close\r\n"
+                + "Content-Length: 9\r\n"
+                + "\r\n"
+                + "status=0\n");
+
+        OCSPPublisherConnection connection = new OCSPPublisherConnection("localhost", 8443, socket);
+
+        assertEquals("status=0\n", connection.post("/addCRL", CONTENT_TYPE, new byte[0]));
+        assertFalse(connection.isOpen());
+        assertTrue(socket.isClosed());
+    }
+
+    @Test
+    public void testResponseWithoutLength() throws Exception {
+
+        SocketStub socket = new SocketStub(
+                "HTTP/1.0 200 OK\r\n"
+                + "\r\n"
+                + "status=0\n");
+
+        OCSPPublisherConnection connection = new OCSPPublisherConnection("localhost", 8443, socket);
+
+        // the body ends when the server closes the connection
+        assertEquals("status=0\n", connection.post("/addCRL", CONTENT_TYPE, new byte[0]));
+        assertFalse(connection.isOpen());
+    }
+
+    @Test
+    public void testHTTPError() throws Exception {
+
+        SocketStub socket = new SocketStub(
+                "HTTP/1.1 500 Internal Server Error\r\n"
+                + "Content-Length: 0\r\n"
+                + "\r\n");
+
+        OCSPPublisherConnection connection = new OCSPPublisherConnection("localhost", 8443, socket);
+
+        assertThrows(IOException.class, () -> connection.post("/addCRL", CONTENT_TYPE, new byte[0]));
+        assertFalse(connection.isOpen());
+    }
+
+    @Test
+    public void testInvalidResponse() throws Exception {
+
+        SocketStub socket = new SocketStub("status=0\n");
+
+        OCSPPublisherConnection connection = new OCSPPublisherConnection("localhost", 8443, socket);
+
+        assertThrows(IOException.class, () -> connection.post("/addCRL", CONTENT_TYPE, new byte[0]));
+        assertFalse(connection.isOpen());
+    }
+
+    @Test
+    public void testTruncatedResponse() throws Exception {
+
+        SocketStub socket = new SocketStub(
+                "HTTP/1.1 200 OK\r\n"
+                + "Content-Length: 100\r\n"
+                + "\r\n"
+                + "status=0\n");
+
+        OCSPPublisherConnection connection = new OCSPPublisherConnection("localhost", 8443, socket);
+
+        assertThrows(EOFException.class, () -> connection.post("/addCRL", CONTENT_TYPE, new byte[0]));
+        assertFalse(connection.isOpen());
+    }
+
+    @Test
+    public void testClosedByServer() throws Exception {
+
+        // the server closed the idle connection
+        SocketStub socket = new SocketStub("");
+
+        OCSPPublisherConnection connection = new OCSPPublisherConnection("localhost", 8443, socket);
+
+        assertThrows(EOFException.class, () -> connection.post("/addCRL", CONTENT_TYPE, new byte[0]));
+        assertFalse(connection.isOpen());
+    }
+
+    /**
+     * Socket that returns a scripted response and records the request.
+     */
+    static class SocketStub extends Socket {
+
+        InputStream in;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean closed;
+
+        SocketStub(String response) {
+            in = new ByteArrayInputStream(response.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        String getRequest() {
+            return out.toString(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return in;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+        }
+    }
+}
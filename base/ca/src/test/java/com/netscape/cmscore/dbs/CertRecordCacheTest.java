@@ -0,0 +1,157 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.base.MetaInfo;
+
+public class CertRecordCacheTest {
+
+    static final long MAX_AGE = 60 * 1000; // milliseconds
+
+    CertRecord createRecord(long serialNumber) throws Exception {
+        MetaInfo metaInfo = new MetaInfo();
+        metaInfo.set(MetaInfo.REQUEST_ID, "1");
+        CertRecord record = new CertRecord(BigInteger.valueOf(serialNumber), null, metaInfo);
+        record.set(CertRecord.ATTR_REVO_INFO, new RevocationInfo(new Date(1000), null));
+        return record;
+    }
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+
+        CertRecordCache cache = new CertRecordCache(10, MAX_AGE);
+
+        assertNull(cache.get(BigInteger.ONE));
+
+        cache.put(createRecord(1), cache.getGeneration());
+        assertEquals(1, cache.getSize());
+
+        CertRecord record = cache.get(BigInteger.ONE);
+        assertNotNull(record);
+        assertEquals(BigInteger.ONE, record.getSerialNumber());
+        assertEquals("1", record.getMetaInfo().get(MetaInfo.REQUEST_ID));
+        assertEquals(CertRecord.STATUS_VALID, record.getStatus());
+        assertEquals(new Date(1000), record.getRevocationInfo().getRevocationDate());
+
+        assertNull(cache.get(BigInteger.valueOf(2)));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+
+        CertRecordCache cache = new CertRecordCache(10, 0);
+
+        cache.put(createRecord(1), cache.getGeneration());
+        assertNull(cache.get(BigInteger.ONE));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+
+        CertRecordCache cache = new CertRecordCache(10, MAX_AGE);
+
+        cache.put(createRecord(1), cache.getGeneration());
+        cache.put(createRecord(2), cache.getGeneration());
+
+        cache.invalidate(BigInteger.ONE);
+        assertNull(cache.get(BigInteger.ONE));
+        assertNotNull(cache.get(BigInteger.valueOf(2)));
+
+        // a record read before the invalidation is not stored
+        long generation = cache.getGeneration();
+        cache.invalidate(BigInteger.ONE);
+        cache.put(createRecord(1), generation);
+        assertNull(cache.get(BigInteger.ONE));
+
+        cache.invalidateAll();
+        assertNull(cache.get(BigInteger.valueOf(2)));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testSuspend() throws Exception {
+
+        CertRecordCache cache = new CertRecordCache(10, MAX_AGE);
+
+        cache.put(createRecord(1), cache.getGeneration());
+
+        cache.suspend();
+        assertTrue(cache.isSuspended());
+        assertNull(cache.get(BigInteger.ONE));
+
+        cache.put(createRecord(1), cache.getGeneration());
+        assertEquals(0, cache.getSize());
+
+        cache.resume();
+        cache.put(createRecord(1), cache.getGeneration());
+        assertNotNull(cache.get(BigInteger.ONE));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+
+        CertRecordCache cache = new CertRecordCache(2, MAX_AGE);
+
+        cache.put(createRecord(1), cache.getGeneration());
+        cache.put(createRecord(2), cache.getGeneration());
+        cache.put(createRecord(3), cache.getGeneration());
+
+        assertEquals(2, cache.getSize());
+        assertNotNull(cache.get(BigInteger.valueOf(3)));
+    }
+
+    @Test
+    public void testMutationIsolation() throws Exception {
+
+        CertRecordCache cache = new CertRecordCache(10, MAX_AGE);
+
+        CertRecord original = createRecord(1);
+        cache.put(original, cache.getGeneration());
+
+        // changes to the stored record do not affect the cache
+        original.getMetaInfo().set(MetaInfo.IN_LDAP_PUBLISH_DIR, "true");
+        original.getRevocationInfo().getRevocationDate().setTime(2000);
+
+        CertRecord record1 = cache.get(BigInteger.ONE);
+        assertNotSame(original, record1);
+        assertNull(record1.getMetaInfo().get(MetaInfo.IN_LDAP_PUBLISH_DIR));
+        assertEquals(new Date(1000), record1.getRevocationInfo().getRevocationDate());
+
+        // changes to a returned record (e.g. before a failed modify)
+        // do not affect the cache or other readers
+        record1.getMetaInfo().set(MetaInfo.IN_LDAP_PUBLISH_DIR, "true");
+        record1.getCreateTime().setTime(0);
+
+        CertRecord record2 = cache.get(BigInteger.ONE);
+        assertNotSame(record1, record2);
+        assertNull(record2.getMetaInfo().get(MetaInfo.IN_LDAP_PUBLISH_DIR));
+        assertTrue(record2.getCreateTime().getTime() > 0);
+    }
+}
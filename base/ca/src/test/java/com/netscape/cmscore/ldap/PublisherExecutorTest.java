@@ -0,0 +1,137 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.ldap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.ldap.ELdapServerDownException;
+import com.netscape.cmscore.util.MetricsRegistry;
+
+import netscape.ldap.LDAPException;
+
+public class PublisherExecutorTest {
+
+    PublisherExecutor executor;
+
+    @AfterEach
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSubmitDoesNotBlock() throws Exception {
+
+        executor = new PublisherExecutor("test", 1, 10, 0, 1, 1);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        CompletableFuture<Void> future = executor.submit("cert 0x1", () -> {
+            latch.await();
+            return null;
+        });
+
+        // the task is still waiting in the publisher thread
+        assertFalse(future.isDone());
+
+        latch.countDown();
+        future.get(10, TimeUnit.SECONDS);
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    public void testRetryUnreachableTarget() throws Exception {
+
+        executor = new PublisherExecutor("test", 1, 10, 3, 1, 1);
+
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        executor.setMetricsRegistry(metricsRegistry);
+
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<Void> future = executor.submit("cert 0x1", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ELdapServerDownException("server down");
+            }
+            return null;
+        });
+
+        future.get(10, TimeUnit.SECONDS);
+
+        assertEquals(3, attempts.get());
+        assertEquals(2, metricsRegistry.getCounter("publisher_test_retries").sum());
+        assertEquals(1, metricsRegistry.getCounter("publisher_test_published").sum());
+    }
+
+    @Test
+    public void testFailureIsNotRetried() throws Exception {
+
+        executor = new PublisherExecutor("test", 1, 10, 3, 1, 1);
+
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<Void> future = executor.submit("cert 0x1", () -> {
+            attempts.incrementAndGet();
+            throw new LDAPException("no such object", LDAPException.NO_SUCH_OBJECT);
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(LDAPException.class, e.getCause());
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testMaxRetries() throws Exception {
+
+        executor = new PublisherExecutor("test", 1, 10, 2, 1, 1);
+
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<Void> future = executor.submit("cert 0x1", () -> {
+            attempts.incrementAndGet();
+            throw new IOException("connection refused");
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testIsRetryable() throws Exception {
+
+        assertTrue(PublisherExecutor.isRetryable(new IOException()));
+        assertTrue(PublisherExecutor.isRetryable(new ELdapServerDownException("down")));
+        assertTrue(PublisherExecutor.isRetryable(new LDAPException("down", LDAPException.SERVER_DOWN)));
+        assertTrue(PublisherExecutor.isRetryable(new Exception(new LDAPException("busy", LDAPException.BUSY))));
+
+        assertFalse(PublisherExecutor.isRetryable(new LDAPException("exists", LDAPException.ENTRY_ALREADY_EXISTS)));
+        assertFalse(PublisherExecutor.isRetryable(new Exception("error")));
+    }
+}
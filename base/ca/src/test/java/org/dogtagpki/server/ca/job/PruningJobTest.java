@@ -0,0 +1,173 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.ca.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class PruningJobTest {
+
+    /**
+     * Verifies that the ranges cover all serial numbers exactly once.
+     */
+    void assertPartitions(BigInteger lowest, BigInteger highest, int partitions) {
+
+        List<BigInteger[]> ranges = PruningJob.createPartitions(lowest, highest, partitions);
+
+        assertTrue(ranges.size() >= 1);
+        assertTrue(ranges.size() <= partitions);
+
+        BigInteger next = lowest;
+        for (BigInteger[] range : ranges) {
+            assertEquals(next, range[0]);
+            assertTrue(range[0].compareTo(range[1]) <= 0);
+            next = range[1].add(BigInteger.ONE);
+        }
+        assertEquals(highest.add(BigInteger.ONE), next);
+
+        // a resumed run creates the same ranges from the stored number of partitions
+        List<BigInteger[]> resumedRanges = PruningJob.createPartitions(lowest, highest, ranges.size());
+        assertEquals(ranges.size(), resumedRanges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            assertEquals(ranges.get(i)[0], resumedRanges.get(i)[0]);
+            assertEquals(ranges.get(i)[1], resumedRanges.get(i)[1]);
+        }
+    }
+
+    @Test
+    public void testPartitions() throws Exception {
+
+        List<BigInteger[]> ranges = PruningJob.createPartitions(BigInteger.valueOf(1), BigInteger.valueOf(100), 4);
+
+        assertEquals(4, ranges.size());
+        assertEquals(BigInteger.valueOf(1), ranges.get(0)[0]);
+        assertEquals(BigInteger.valueOf(25), ranges.get(0)[1]);
+        assertEquals(BigInteger.valueOf(76), ranges.get(3)[0]);
+        assertEquals(BigInteger.valueOf(100), ranges.get(3)[1]);
+
+        for (int lowest = 0; lowest < 5; lowest++) {
+            for (int highest = lowest; highest < lowest + 50; highest++) {
+                for (int partitions = 1; partitions <= 20; partitions++) {
+                    assertPartitions(BigInteger.valueOf(lowest), BigInteger.valueOf(highest), partitions);
+                }
+            }
+        }
+
+        // random serial numbers
+        BigInteger lowest = new BigInteger("1234567890abcdef1234567890abcdef", 16);
+        BigInteger highest = new BigInteger("fedcba0987654321fedcba0987654321", 16);
+        assertPartitions(lowest, highest, 16);
+        assertPartitions(lowest, highest, 7);
+    }
+
+    @Test
+    public void testFewerSerialNumbersThanPartitions() throws Exception {
+
+        List<BigInteger[]> ranges = PruningJob.createPartitions(BigInteger.valueOf(10), BigInteger.valueOf(12), 16);
+
+        assertEquals(3, ranges.size());
+        assertEquals(BigInteger.valueOf(10), ranges.get(0)[0]);
+        assertEquals(BigInteger.valueOf(10), ranges.get(0)[1]);
+        assertEquals(BigInteger.valueOf(12), ranges.get(2)[0]);
+        assertEquals(BigInteger.valueOf(12), ranges.get(2)[1]);
+
+        ranges = PruningJob.createPartitions(BigInteger.valueOf(10), BigInteger.valueOf(10), 16);
+
+        assertEquals(1, ranges.size());
+        assertEquals(BigInteger.valueOf(10), ranges.get(0)[0]);
+        assertEquals(BigInteger.valueOf(10), ranges.get(0)[1]);
+    }
+
+    @Test
+    public void testMaxThreads() throws Exception {
+
+        // each thread needs two connections and one is left for the server
+        assertEquals(4, PruningJob.getMaxThreads(4, 9));
+        assertEquals(4, PruningJob.getMaxThreads(4, 100));
+        assertEquals(3, PruningJob.getMaxThreads(4, 8));
+        assertEquals(1, PruningJob.getMaxThreads(4, 3));
+
+        // the pool is too small for a single thread
+        assertEquals(0, PruningJob.getMaxThreads(4, 2));
+        assertEquals(0, PruningJob.getMaxThreads(4, 1));
+        assertEquals(0, PruningJob.getMaxThreads(4, 0));
+    }
+
+    @Test
+    public void testCheckpoint() throws Exception {
+
+        Path path = Files.createTempFile("pruning", ".checkpoint");
+        try {
+            BigInteger lowest = new BigInteger("1234567890abcdef", 16);
+            BigInteger highest = new BigInteger("fedcba0987654321", 16);
+
+            PruningCheckpoint checkpoint = new PruningCheckpoint(path, 1700000000000L, lowest, highest, 4);
+            checkpoint.store();
+
+            checkpoint.complete(0);
+            checkpoint.complete(2);
+            assertFalse(checkpoint.isDone());
+
+            PruningCheckpoint resumed = PruningCheckpoint.load(path);
+
+            assertEquals(1700000000000L, resumed.getPruningTime());
+            assertEquals(lowest, resumed.getLowest());
+            assertEquals(highest, resumed.getHighest());
+            assertEquals(4, resumed.getPartitions());
+            assertEquals(2, resumed.getCompletedPartitions());
+            assertTrue(resumed.isCompleted(0));
+            assertFalse(resumed.isCompleted(1));
+            assertTrue(resumed.isCompleted(2));
+            assertFalse(resumed.isCompleted(3));
+            assertFalse(resumed.isDone());
+
+            // complete the remaining partitions in the resumed run
+            resumed.complete(1);
+            resumed.complete(3);
+            assertTrue(resumed.isDone());
+
+            assertTrue(PruningCheckpoint.load(path).isDone());
+
+            resumed.remove();
+            assertFalse(Files.exists(path));
+            assertNull(PruningCheckpoint.load(path));
+
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testEmptyCheckpoint() throws Exception {
+
+        Path path = Files.createTempFile("pruning", ".checkpoint");
+        try {
+            PruningCheckpoint checkpoint = new PruningCheckpoint(
+                    path, 0, BigInteger.ONE, BigInteger.TEN, 2);
+            checkpoint.store();
+
+            PruningCheckpoint loaded = PruningCheckpoint.load(path);
+            assertEquals(0, loaded.getCompletedPartitions());
+            assertFalse(loaded.isCompleted(0));
+            assertFalse(loaded.isCompleted(1));
+
+            // the temporary file is renamed into the checkpoint file
+            assertFalse(Files.exists(path.resolveSibling(path.getFileName() + ".temp")));
+
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -55,6 +56,11 @@ public class ClientConfig implements JSONSerializer {
 
     boolean certRevocationVerify;
 
+    // connection pool settings, null means the HTTP client default
+    Integer maxConnections;
+    Integer maxConnectionsPerRoute;
+    Integer connectionRequestTimeout; // seconds
+
     public ClientConfig() {
     }
 
@@ -77,6 +83,10 @@ public class ClientConfig implements JSONSerializer {
 
         certRevocationVerify = config.isCertRevocationVerify();
 
+        maxConnections = config.maxConnections;
+        maxConnectionsPerRoute = config.maxConnectionsPerRoute;
+        connectionRequestTimeout = config.connectionRequestTimeout;
+
     }
 
     public void setServerURI(URI serverUri) {
@@ -225,6 +235,39 @@ public class ClientConfig implements JSONSerializer {
         this.certRevocationVerify = certRevocationVerify;
     }
 
+    /**
+     * Returns the max number of pooled connections.
+     */
+    public Integer getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(Integer maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Returns the max number of pooled connections to the same server.
+     */
+    public Integer getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(Integer maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * Returns the max time in seconds to wait for a pooled connection.
+     */
+    public Integer getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(Integer connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -239,6 +282,9 @@ public class ClientConfig implements JSONSerializer {
         result = prime * result + ((tokenName == null) ? 0 : tokenName.hashCode());
         result = prime * result + ((username == null) ? 0 : username.hashCode());
         result = result + (certRevocationVerify ? 0 : 1);
+        result = prime * result + Objects.hashCode(maxConnections);
+        result = prime * result + Objects.hashCode(maxConnectionsPerRoute);
+        result = prime * result + Objects.hashCode(connectionRequestTimeout);
         return result;
     }
 
@@ -298,6 +344,12 @@ public class ClientConfig implements JSONSerializer {
             return false;
         if (certRevocationVerify != other.certRevocationVerify)
             return false;
+        if (!Objects.equals(maxConnections, other.maxConnections))
+            return false;
+        if (!Objects.equals(maxConnectionsPerRoute, other.maxConnectionsPerRoute))
+            return false;
+        if (!Objects.equals(connectionRequestTimeout, other.connectionRequestTimeout))
+            return false;
         return true;
     }
 
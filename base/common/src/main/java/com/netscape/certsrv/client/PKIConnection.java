@@ -98,6 +98,20 @@ public class PKIConnection implements AutoCloseable {
         // Don't retry operations.
         httpClientBuilder.setRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
 
+        if (config.getMaxConnections() != null) {
+            httpClientBuilder.setMaxConnTotal(config.getMaxConnections());
+        }
+
+        if (config.getMaxConnectionsPerRoute() != null) {
+            httpClientBuilder.setMaxConnPerRoute(config.getMaxConnectionsPerRoute());
+        }
+
+        if (config.getConnectionRequestTimeout() != null) {
+            // don't wait indefinitely for a pooled connection
+            httpClientBuilder.setDefaultRequestConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(config.getConnectionRequestTimeout() * 1000)
+                    .build());
+        }
 
         httpClientBuilder.addInterceptorLast(new HttpRequestInterceptor() {
             @Override
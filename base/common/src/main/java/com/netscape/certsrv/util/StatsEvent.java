@@ -18,9 +18,9 @@
 package com.netscape.certsrv.util;
 
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A statistics transaction.
@@ -36,7 +36,7 @@ public class StatsEvent {
     private long mTimeTaken = 0;
     private long mTimeTakenSqSum = 0;
     private long mNoOfOperations = 0;
-    private Map<String,StatsEvent> mSubEvents = new HashMap<>();
+    private Map<String,StatsEvent> mSubEvents = new ConcurrentHashMap<>();
     private StatsEvent mParent = null;
 
     public StatsEvent(StatsEvent parent) {
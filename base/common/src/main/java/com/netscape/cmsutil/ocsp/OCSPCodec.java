@@ -0,0 +1,569 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmsutil.ocsp;
+
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.NULL;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.pkix.cert.Extension;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+/**
+ * This class provides a specialized DER codec for the OCSP messages
+ * processed by the responders.
+ *
+ * The request decoder only handles the common request shape, i.e.
+ * an unsigned request without requestor name and without per-request
+ * extensions, using well-known hash algorithms and request extensions.
+ * It works directly on the encoded bytes and only allocates the objects
+ * returned to the caller. For any other request it returns null so the
+ * caller can fall back to the generic OCSPRequest.Template.
+ *
+ * The response encoder assembles the BasicOCSPResponse from encodings
+ * that have already been computed, so the ResponseData is only encoded
+ * once (for signing) and the certificate chain is only encoded once
+ * for as long as it does not change.
+ */
+public class OCSPCodec {
+
+    public static final OBJECT_IDENTIFIER OCSP_NONCE = new OBJECT_IDENTIFIER("1.3.6.1.5.5.7.48.1.2");
+
+    static final int TAG_BOOLEAN = 0x01;
+    static final int TAG_INTEGER = 0x02;
+    static final int TAG_BIT_STRING = 0x03;
+    static final int TAG_OCTET_STRING = 0x04;
+    static final int TAG_OID = 0x06;
+    static final int TAG_SEQUENCE = 0x30;
+    static final int TAG_CONTEXT_0 = 0xa0;
+    static final int TAG_CONTEXT_1 = 0xa1;
+    static final int TAG_CONTEXT_2 = 0xa2;
+
+    // explicitly encoded default version (v1)
+    static final byte[] VERSION_V1 = new byte[] { 0x02, 0x01, 0x00 };
+
+    static final String[] HASH_ALGORITHMS = {
+            "1.3.14.3.2.26",           // SHA-1
+            "2.16.840.1.101.3.4.2.1",  // SHA-256
+            "2.16.840.1.101.3.4.2.2",  // SHA-384
+            "2.16.840.1.101.3.4.2.3"   // SHA-512
+    };
+
+    // hash algorithm identifiers with and without NULL parameters
+    static final AlgorithmIdentifier[] hashAlgorithms = new AlgorithmIdentifier[HASH_ALGORITHMS.length * 2];
+    static final byte[][] hashAlgorithmEncodings = new byte[hashAlgorithms.length][];
+
+    static final OBJECT_IDENTIFIER[] extensionIDs = { OCSP_NONCE };
+    static final byte[][] extensionIDEncodings = new byte[extensionIDs.length][];
+
+    static {
+        for (int i = 0; i < HASH_ALGORITHMS.length; i++) {
+            OBJECT_IDENTIFIER oid = new OBJECT_IDENTIFIER(HASH_ALGORITHMS[i]);
+            hashAlgorithms[2 * i] = new AlgorithmIdentifier(oid, NULL.getInstance());
+            hashAlgorithms[2 * i + 1] = new AlgorithmIdentifier(oid);
+        }
+
+        for (int i = 0; i < hashAlgorithms.length; i++) {
+            hashAlgorithmEncodings[i] = ASN1Util.encode(hashAlgorithms[i]);
+        }
+
+        for (int i = 0; i < extensionIDs.length; i++) {
+            extensionIDEncodings[i] = ASN1Util.encode(extensionIDs[i]);
+        }
+    }
+
+    /**
+     * Cached encoding of the certificate chain. The chain is identified
+     * by the certificate instances it contains.
+     */
+    static class EncodedCertChain {
+
+        X509Certificate[] chain;
+        byte[] encoded;
+
+        EncodedCertChain(X509Certificate[] chain, byte[] encoded) {
+            this.chain = chain;
+            this.encoded = encoded;
+        }
+
+        boolean matches(X509Certificate[] chain) {
+
+            if (chain.length != this.chain.length) {
+                return false;
+            }
+
+            for (int i = 0; i < chain.length; i++) {
+                if (chain[i] != this.chain[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private volatile EncodedCertChain encodedCertChain;
+
+    /**
+     * Returns the encoding of the certs field of BasicOCSPResponse for
+     * the given certificate chain. The encoding is reused until the
+     * chain changes.
+     */
+    public byte[] getEncodedCertChain(X509Certificate[] chain) throws CertificateEncodingException {
+
+        EncodedCertChain encodedCertChain = this.encodedCertChain;
+
+        if (encodedCertChain == null || !encodedCertChain.matches(chain)) {
+            encodedCertChain = new EncodedCertChain(chain.clone(), encodeCertChain(chain));
+            this.encodedCertChain = encodedCertChain;
+        }
+
+        return encodedCertChain.encoded;
+    }
+
+    /**
+     * Encodes the certs field of BasicOCSPResponse:
+     *
+     * <pre>
+     * certs    [0] EXPLICIT SEQUENCE OF Certificate
+     * </pre>
+     */
+    public static byte[] encodeCertChain(X509Certificate[] chain) throws CertificateEncodingException {
+
+        byte[][] certs = new byte[chain.length][];
+        int certsLength = 0;
+
+        for (int i = 0; i < chain.length; i++) {
+            certs[i] = chain[i].getEncoded();
+            certsLength += certs[i].length;
+        }
+
+        int sequenceLength = getEncodedLength(certsLength);
+
+        byte[] output = new byte[getEncodedLength(sequenceLength)];
+        int pos = writeHeader(output, 0, TAG_CONTEXT_0, sequenceLength);
+        pos = writeHeader(output, pos, TAG_SEQUENCE, certsLength);
+
+        for (byte[] cert : certs) {
+            System.arraycopy(cert, 0, output, pos, cert.length);
+            pos += cert.length;
+        }
+
+        return output;
+    }
+
+    /**
+     * Encodes a BasicOCSPResponse from its encoded fields:
+     *
+     * <pre>
+     * BasicOCSPResponse       ::= SEQUENCE {
+     *    tbsResponseData      ResponseData,
+     *    signatureAlgorithm   AlgorithmIdentifier,
+     *    signature            BIT STRING,
+     *    certs                [0] EXPLICIT SEQUENCE OF Certificate OPTIONAL }
+     * </pre>
+     *
+     * @param responseData encoded ResponseData
+     * @param signatureAlgorithm encoded AlgorithmIdentifier
+     * @param signature signature value
+     * @param certs encoded certs field, or null
+     * @return encoded BasicOCSPResponse
+     */
+    public static byte[] encodeBasicOCSPResponse(
+            byte[] responseData,
+            byte[] signatureAlgorithm,
+            byte[] signature,
+            byte[] certs) {
+
+        // the signature is a whole number of bytes, so there are no unused bits
+        int signatureLength = getEncodedLength(signature.length + 1);
+
+        int contentLength = responseData.length + signatureAlgorithm.length + signatureLength;
+        if (certs != null) {
+            contentLength += certs.length;
+        }
+
+        byte[] output = new byte[getEncodedLength(contentLength)];
+        int pos = writeHeader(output, 0, TAG_SEQUENCE, contentLength);
+
+        System.arraycopy(responseData, 0, output, pos, responseData.length);
+        pos += responseData.length;
+
+        System.arraycopy(signatureAlgorithm, 0, output, pos, signatureAlgorithm.length);
+        pos += signatureAlgorithm.length;
+
+        pos = writeHeader(output, pos, TAG_BIT_STRING, signature.length + 1);
+        output[pos++] = 0;
+        System.arraycopy(signature, 0, output, pos, signature.length);
+        pos += signature.length;
+
+        if (certs != null) {
+            System.arraycopy(certs, 0, output, pos, certs.length);
+        }
+
+        return output;
+    }
+
+    /**
+     * Returns the length of a DER element with the given content length.
+     */
+    static int getEncodedLength(int contentLength) {
+
+        if (contentLength < 0x80) {
+            return 2 + contentLength;
+        }
+
+        int lengthBytes = 1;
+        for (int n = contentLength >>> 8; n > 0; n >>>= 8) {
+            lengthBytes++;
+        }
+
+        return 2 + lengthBytes + contentLength;
+    }
+
+    /**
+     * Writes a DER tag and length into the output buffer.
+     *
+     * @return position of the content
+     */
+    static int writeHeader(byte[] output, int pos, int tag, int length) {
+
+        output[pos++] = (byte) tag;
+
+        if (length < 0x80) {
+            output[pos++] = (byte) length;
+            return pos;
+        }
+
+        int lengthBytes = 1;
+        for (int n = length >>> 8; n > 0; n >>>= 8) {
+            lengthBytes++;
+        }
+
+        output[pos++] = (byte) (0x80 | lengthBytes);
+
+        for (int i = lengthBytes - 1; i >= 0; i--) {
+            output[pos++] = (byte) (length >>> (8 * i));
+        }
+
+        return pos;
+    }
+
+    /**
+     * Decodes an OCSP request with the common shape:
+     *
+     * <pre>
+     * OCSPRequest ::= SEQUENCE {
+     *   tbsRequest TBSRequest }
+     *
+     * TBSRequest ::= SEQUENCE {
+     *   version            [0] EXPLICIT Version DEFAULT v1,
+     *   requestList            SEQUENCE OF Request,
+     *   requestExtensions  [2] EXPLICIT Extensions OPTIONAL }
+     *
+     * Request ::= SEQUENCE {
+     *   reqCert                CertID }
+     * </pre>
+     *
+     * @param data encoded OCSP request
+     * @return OCSP request, or null if the request does not have
+     *         the common shape or is not valid DER
+     */
+    public static OCSPRequest decodeRequest(byte[] data) {
+        try {
+            return new DERReader(data).readOCSPRequest();
+        } catch (IndexOutOfBoundsException e) {
+            // truncated request
+            return null;
+        }
+    }
+
+    /**
+     * Reads DER elements from a byte array without copying. Each read
+     * method returns null if the input does not match the expected
+     * structure.
+     */
+    static class DERReader {
+
+        byte[] data;
+        int pos;
+
+        DERReader(byte[] data) {
+            this.data = data;
+        }
+
+        /**
+         * Reads the tag and length of the next element.
+         *
+         * @return end of the element content, or -1 if the element
+         *         does not have the expected tag or the length is
+         *         not valid DER
+         */
+        int readHeader(int tag, int end) {
+
+            if (pos >= end || (data[pos] & 0xff) != tag) {
+                return -1;
+            }
+
+            pos++;
+
+            int length = data[pos++] & 0xff;
+
+            if (length >= 0x80) {
+
+                int lengthBytes = length & 0x7f;
+
+                // indefinite length or too long
+                if (lengthBytes == 0 || lengthBytes > 3) {
+                    return -1;
+                }
+
+                length = 0;
+                for (int i = 0; i < lengthBytes; i++) {
+                    length = (length << 8) | (data[pos++] & 0xff);
+                }
+            }
+
+            if (length > end - pos) {
+                return -1;
+            }
+
+            return pos + length;
+        }
+
+        byte[] readContent(int tag, int end) {
+
+            int contentEnd = readHeader(tag, end);
+            if (contentEnd < 0) {
+                return null;
+            }
+
+            byte[] content = Arrays.copyOfRange(data, pos, contentEnd);
+            pos = contentEnd;
+
+            return content;
+        }
+
+        /**
+         * Returns the index of the encoded element that matches
+         * the next element, or -1 if none matches.
+         */
+        int match(byte[][] encodings, int tag, int end) {
+
+            int start = pos;
+            int elementEnd = readHeader(tag, end);
+            if (elementEnd < 0) {
+                return -1;
+            }
+
+            for (int i = 0; i < encodings.length; i++) {
+                if (Arrays.equals(data, start, elementEnd, encodings[i], 0, encodings[i].length)) {
+                    pos = elementEnd;
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        OCSPRequest readOCSPRequest() {
+
+            int requestEnd = readHeader(TAG_SEQUENCE, data.length);
+
+            // trailing data is handled by the generic decoder
+            if (requestEnd != data.length) {
+                return null;
+            }
+
+            TBSRequest tbsRequest = readTBSRequest(requestEnd);
+
+            // optionalSignature is handled by the generic decoder
+            if (tbsRequest == null || pos != requestEnd) {
+                return null;
+            }
+
+            return new OCSPRequest(tbsRequest, null);
+        }
+
+        TBSRequest readTBSRequest(int end) {
+
+            int tbsRequestEnd = readHeader(TAG_SEQUENCE, end);
+            if (tbsRequestEnd < 0) {
+                return null;
+            }
+
+            if (pos < tbsRequestEnd && (data[pos] & 0xff) == TAG_CONTEXT_0) {
+
+                int versionEnd = readHeader(TAG_CONTEXT_0, tbsRequestEnd);
+
+                if (versionEnd < 0 || !Arrays.equals(data, pos, versionEnd, VERSION_V1, 0, VERSION_V1.length)) {
+                    return null;
+                }
+
+                pos = versionEnd;
+            }
+
+            // requestorName is handled by the generic decoder
+            if (pos < tbsRequestEnd && (data[pos] & 0xff) == TAG_CONTEXT_1) {
+                return null;
+            }
+
+            SEQUENCE requestList = readRequestList(tbsRequestEnd);
+            if (requestList == null) {
+                return null;
+            }
+
+            SEQUENCE requestExtensions = null;
+
+            if (pos < tbsRequestEnd) {
+
+                int extensionsEnd = readHeader(TAG_CONTEXT_2, tbsRequestEnd);
+                if (extensionsEnd < 0) {
+                    return null;
+                }
+
+                requestExtensions = readExtensions(extensionsEnd);
+                if (requestExtensions == null || pos != extensionsEnd) {
+                    return null;
+                }
+            }
+
+            if (pos != tbsRequestEnd) {
+                return null;
+            }
+
+            return new TBSRequest(null, null, requestList, requestExtensions);
+        }
+
+        SEQUENCE readRequestList(int end) {
+
+            int requestListEnd = readHeader(TAG_SEQUENCE, end);
+            if (requestListEnd < 0) {
+                return null;
+            }
+
+            SEQUENCE requestList = new SEQUENCE();
+
+            while (pos < requestListEnd) {
+
+                int requestEnd = readHeader(TAG_SEQUENCE, requestListEnd);
+                if (requestEnd < 0) {
+                    return null;
+                }
+
+                CertID certID = readCertID(requestEnd);
+
+                // singleRequestExtensions is handled by the generic decoder
+                if (certID == null || pos != requestEnd) {
+                    return null;
+                }
+
+                requestList.addElement(new Request(certID, null));
+            }
+
+            return requestList;
+        }
+
+        CertID readCertID(int end) {
+
+            int certIDEnd = readHeader(TAG_SEQUENCE, end);
+            if (certIDEnd < 0) {
+                return null;
+            }
+
+            int hashAlgorithm = match(hashAlgorithmEncodings, TAG_SEQUENCE, certIDEnd);
+            if (hashAlgorithm < 0) {
+                return null;
+            }
+
+            byte[] issuerNameHash = readContent(TAG_OCTET_STRING, certIDEnd);
+            if (issuerNameHash == null) {
+                return null;
+            }
+
+            byte[] issuerKeyHash = readContent(TAG_OCTET_STRING, certIDEnd);
+            if (issuerKeyHash == null) {
+                return null;
+            }
+
+            byte[] serialNumber = readContent(TAG_INTEGER, certIDEnd);
+            if (serialNumber == null || serialNumber.length == 0 || pos != certIDEnd) {
+                return null;
+            }
+
+            return new CertID(
+                    hashAlgorithms[hashAlgorithm],
+                    new OCTET_STRING(issuerNameHash),
+                    new OCTET_STRING(issuerKeyHash),
+                    new INTEGER(serialNumber));
+        }
+
+        SEQUENCE readExtensions(int end) {
+
+            int extensionsEnd = readHeader(TAG_SEQUENCE, end);
+            if (extensionsEnd < 0) {
+                return null;
+            }
+
+            SEQUENCE extensions = new SEQUENCE();
+
+            while (pos < extensionsEnd) {
+
+                int extensionEnd = readHeader(TAG_SEQUENCE, extensionsEnd);
+                if (extensionEnd < 0) {
+                    return null;
+                }
+
+                int extensionID = match(extensionIDEncodings, TAG_OID, extensionEnd);
+                if (extensionID < 0) {
+                    return null;
+                }
+
+                boolean critical = false;
+
+                if (pos < extensionEnd && (data[pos] & 0xff) == TAG_BOOLEAN) {
+
+                    int criticalEnd = readHeader(TAG_BOOLEAN, extensionEnd);
+                    if (criticalEnd != pos + 1) {
+                        return null;
+                    }
+
+                    critical = data[pos++] != 0;
+                }
+
+                byte[] value = readContent(TAG_OCTET_STRING, extensionEnd);
+                if (value == null || pos != extensionEnd) {
+                    return null;
+                }
+
+                extensions.addElement(new Extension(
+                        extensionIDs[extensionID],
+                        critical,
+                        new OCTET_STRING(value)));
+            }
+
+            return extensions;
+        }
+    }
+}
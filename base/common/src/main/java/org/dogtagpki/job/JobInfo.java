@@ -27,6 +27,10 @@ public class JobInfo implements JSONSerializer {
     String pluginName;
     String owner;
 
+    Boolean running;
+    Long lastStartTime;
+    Long lastDuration;
+
     Map<String, String> parameters = new LinkedHashMap<>();
 
     public String getID() {
@@ -69,6 +73,36 @@ public class JobInfo implements JSONSerializer {
         this.owner = owner;
     }
 
+    public Boolean getRunning() {
+        return running;
+    }
+
+    public void setRunning(Boolean running) {
+        this.running = running;
+    }
+
+    /**
+     * Returns the start time of the last run in milliseconds since the epoch.
+     */
+    public Long getLastStartTime() {
+        return lastStartTime;
+    }
+
+    public void setLastStartTime(Long lastStartTime) {
+        this.lastStartTime = lastStartTime;
+    }
+
+    /**
+     * Returns the duration of the last completed run in milliseconds.
+     */
+    public Long getLastDuration() {
+        return lastDuration;
+    }
+
+    public void setLastDuration(Long lastDuration) {
+        this.lastDuration = lastDuration;
+    }
+
     public Map<String, String> getParameters() {
         return parameters;
     }
@@ -83,7 +117,7 @@ public class JobInfo implements JSONSerializer {
 
     @Override
     public int hashCode() {
-        return Objects.hash(cron, enabled, id, owner, parameters, pluginName);
+        return Objects.hash(cron, enabled, id, lastDuration, lastStartTime, owner, parameters, pluginName, running);
     }
 
     @Override
@@ -97,7 +131,9 @@ public class JobInfo implements JSONSerializer {
         JobInfo other = (JobInfo) obj;
         return Objects.equals(cron, other.cron) && enabled == other.enabled && Objects.equals(id, other.id)
                 && Objects.equals(owner, other.owner) && Objects.equals(parameters, other.parameters)
-                && Objects.equals(pluginName, other.pluginName);
+                && Objects.equals(pluginName, other.pluginName) && Objects.equals(running, other.running)
+                && Objects.equals(lastStartTime, other.lastStartTime)
+                && Objects.equals(lastDuration, other.lastDuration);
     }
 
     @Override
@@ -24,6 +24,9 @@ public class ClientConfigTest {
         before.setCertNickname("caadmin");
         before.setUsername("caadmin");
         before.setPassword("12345");
+        before.setMaxConnections(20);
+        before.setMaxConnectionsPerRoute(10);
+        before.setConnectionRequestTimeout(30);
     }
 
     @Test
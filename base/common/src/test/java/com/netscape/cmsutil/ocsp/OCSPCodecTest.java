@@ -0,0 +1,148 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmsutil.ocsp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.NULL;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.pkix.cert.Extension;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+/**
+ * OCSP codec validation.
+ *
+ * This test verifies that requests with the common shape decoded
+ * with OCSPCodec.decodeRequest() are identical to the original
+ * requests, and that other requests are left to the generic decoder.
+ */
+public class OCSPCodecTest {
+
+    static final OBJECT_IDENTIFIER SHA1 = new OBJECT_IDENTIFIER("1.3.14.3.2.26");
+
+    CertID createCertID(long serialNumber) {
+
+        byte[] nameHash = new byte[20];
+        Arrays.fill(nameHash, (byte) 0x11);
+
+        byte[] keyHash = new byte[20];
+        Arrays.fill(keyHash, (byte) 0x22);
+
+        return new CertID(
+                new AlgorithmIdentifier(SHA1, NULL.getInstance()),
+                new OCTET_STRING(nameHash),
+                new OCTET_STRING(keyHash),
+                new INTEGER(serialNumber));
+    }
+
+    byte[] createRequest(INTEGER version, SEQUENCE extensions, long... serialNumbers) {
+
+        SEQUENCE requestList = new SEQUENCE();
+        for (long serialNumber : serialNumbers) {
+            requestList.addElement(new Request(createCertID(serialNumber), null));
+        }
+
+        TBSRequest tbsRequest = new TBSRequest(version, null, requestList, extensions);
+        return ASN1Util.encode(new OCSPRequest(tbsRequest, null));
+    }
+
+    @Test
+    public void testSingleRequest() throws Exception {
+
+        byte[] data = createRequest(null, null, 0x1234L);
+
+        OCSPRequest request = OCSPCodec.decodeRequest(data);
+        assertNotNull(request);
+
+        TBSRequest tbsRequest = request.getTBSRequest();
+        assertEquals(1, tbsRequest.getRequestCount());
+        assertEquals(0, tbsRequest.getExtensionsCount());
+
+        CertID certID = tbsRequest.getRequestAt(0).getCertID();
+        assertEquals("SHA-1", certID.getDigestName());
+        assertEquals(0x1234L, certID.getSerialNumber().longValue());
+
+        assertArrayEquals(data, ASN1Util.encode(request));
+    }
+
+    @Test
+    public void testRequestWithNonce() throws Exception {
+
+        byte[] nonce = new byte[] { 0x04, 0x08, 1, 2, 3, 4, 5, 6, 7, 8 };
+
+        SEQUENCE extensions = new SEQUENCE();
+        extensions.addElement(new Extension(OCSPCodec.OCSP_NONCE, false, new OCTET_STRING(nonce)));
+
+        byte[] data = createRequest(null, extensions, 1L, 2L, 3L);
+
+        OCSPRequest request = OCSPCodec.decodeRequest(data);
+        assertNotNull(request);
+
+        TBSRequest tbsRequest = request.getTBSRequest();
+        assertEquals(3, tbsRequest.getRequestCount());
+        assertEquals(1, tbsRequest.getExtensionsCount());
+
+        Extension extension = tbsRequest.getRequestExtensionAt(0);
+        assertEquals(OCSPCodec.OCSP_NONCE, extension.getExtnId());
+        assertArrayEquals(nonce, extension.getExtnValue().toByteArray());
+
+        assertArrayEquals(data, ASN1Util.encode(request));
+    }
+
+    @Test
+    public void testUncommonRequest() throws Exception {
+
+        // non-default version is left to the generic decoder
+        byte[] data = createRequest(new INTEGER(1), null, 1L);
+        assertNull(OCSPCodec.decodeRequest(data));
+
+        // truncated request
+        data = createRequest(null, null, 1L);
+        assertNull(OCSPCodec.decodeRequest(Arrays.copyOf(data, data.length - 1)));
+
+        // trailing data
+        assertNull(OCSPCodec.decodeRequest(Arrays.copyOf(data, data.length + 1)));
+    }
+
+    @Test
+    public void testHeader() throws Exception {
+
+        int[] lengths = new int[] { 0, 0x7f, 0x80, 0xff, 0x100, 0xffff, 0x10000 };
+
+        for (int length : lengths) {
+
+            byte[] output = new byte[OCSPCodec.getEncodedLength(length)];
+            int pos = OCSPCodec.writeHeader(output, 0, OCSPCodec.TAG_OCTET_STRING, length);
+            assertEquals(output.length - length, pos);
+
+            OCSPCodec.DERReader reader = new OCSPCodec.DERReader(output);
+            assertEquals(output.length, reader.readHeader(OCSPCodec.TAG_OCTET_STRING, output.length));
+            assertEquals(pos, reader.pos);
+        }
+    }
+}
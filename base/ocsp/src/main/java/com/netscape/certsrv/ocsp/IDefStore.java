@@ -91,6 +91,28 @@ public interface IDefStore extends IOCSPStore {
      */
     public void updateCRL(X509CRL crl) throws EBaseException;
 
+    /**
+     * This method specifies whether or not delta CRLs can be
+     * applied to this store.
+     * <P>
+     *
+     * @return boolean true or false
+     */
+    public default boolean isDeltaCRLSupported() {
+        return false;
+    }
+
+    /**
+     * This method applies the specified delta CRL to the current CRL.
+     * <P>
+     *
+     * @param crl the delta CRL
+     * @exception EBaseException occurs when the delta CRL cannot be applied
+     */
+    public default void updateDeltaCRL(X509CRL crl) throws EBaseException {
+        throw new EBaseException("Delta CRLs are not supported");
+    }
+
     /**
      * This method attempts to read the CRL issuing point.
      * <P>
@@ -69,4 +69,13 @@ public interface IOCSPStore {
      */
     public void setConfigParameters(NameValuePairs pairs)
             throws EBaseException;
+
+    /**
+     * Sets a listener that is called after the revocation information
+     * in this store has been replaced (e.g. by a new CRL).
+     *
+     * @param listener the listener, or null
+     */
+    public default void setCRLUpdateListener(Runnable listener) {
+    }
 }
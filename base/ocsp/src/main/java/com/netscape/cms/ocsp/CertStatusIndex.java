@@ -0,0 +1,242 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.ocsp;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.Extension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+/**
+ * This class provides a read-only index of revoked certificates
+ * of a CRL issuing point for DefStore.
+ *
+ * The serial numbers are distributed into shards by hash code. Each
+ * shard keeps the serial numbers sorted in an array with the revocation
+ * dates in a parallel array, and lookups are done with binary search.
+ * The shards are built in parallel when a new CRL is received.
+ *
+ * The index is never modified after it has been built, so it can be
+ * read by multiple threads without locking. A new CRL results in a new
+ * index that replaces the old one. A delta CRL results in a new index
+ * that shares the shards not affected by the delta CRL with the old one.
+ */
+public class CertStatusIndex {
+
+    public static final int DEFAULT_SHARDS = 16;
+
+    static class Shard {
+
+        BigInteger[] serialNumbers;
+        long[] revocationDates;
+
+        Shard(BigInteger[] serialNumbers, long[] revocationDates) {
+            this.serialNumbers = serialNumbers;
+            this.revocationDates = revocationDates;
+        }
+
+        Shard(List<RevokedCertificate> entries) {
+
+            entries.sort(Comparator.comparing(RevokedCertificate::getSerialNumber));
+
+            serialNumbers = new BigInteger[entries.size()];
+            revocationDates = new long[entries.size()];
+
+            for (int i = 0; i < serialNumbers.length; i++) {
+                RevokedCertificate entry = entries.get(i);
+                serialNumbers[i] = entry.getSerialNumber();
+                Date revocationDate = entry.getRevocationDate();
+                revocationDates[i] = revocationDate == null ? 0 : revocationDate.getTime();
+            }
+        }
+
+        Date getRevocationDate(BigInteger serialNumber) {
+            int i = Arrays.binarySearch(serialNumbers, serialNumber);
+            return i < 0 ? null : new Date(revocationDates[i]);
+        }
+
+        Shard apply(Map<BigInteger, Long> revokedCerts, List<BigInteger> removedCerts) {
+
+            TreeMap<BigInteger, Long> entries = new TreeMap<>();
+            for (int i = 0; i < serialNumbers.length; i++) {
+                entries.put(serialNumbers[i], revocationDates[i]);
+            }
+
+            for (BigInteger serialNumber : removedCerts) {
+                entries.remove(serialNumber);
+            }
+            entries.putAll(revokedCerts);
+
+            BigInteger[] newSerialNumbers = new BigInteger[entries.size()];
+            long[] newRevocationDates = new long[entries.size()];
+
+            int i = 0;
+            for (Map.Entry<BigInteger, Long> entry : entries.entrySet()) {
+                newSerialNumbers[i] = entry.getKey();
+                newRevocationDates[i] = entry.getValue();
+                i++;
+            }
+
+            return new Shard(newSerialNumbers, newRevocationDates);
+        }
+    }
+
+    private final Shard[] shards;
+    private final int size;
+
+    CertStatusIndex(Shard[] shards) {
+        this.shards = shards;
+
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.serialNumbers.length;
+        }
+        this.size = size;
+    }
+
+    /**
+     * Builds an index from CRL entries.
+     *
+     * @param entries revoked certificates (may be null)
+     * @param numberOfShards number of shards
+     */
+    public static CertStatusIndex build(Collection<RevokedCertificate> entries, int numberOfShards) {
+
+        // use a power of two so the shard can be selected with a mask
+        int count = Integer.highestOneBit(Math.max(1, numberOfShards));
+
+        List<List<RevokedCertificate>> lists = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lists.add(new ArrayList<>());
+        }
+
+        if (entries != null) {
+            for (RevokedCertificate entry : entries) {
+                lists.get(getShard(entry.getSerialNumber(), count)).add(entry);
+            }
+        }
+
+        Shard[] shards = new Shard[count];
+        IntStream.range(0, count).parallel().forEach(i -> shards[i] = new Shard(lists.get(i)));
+
+        return new CertStatusIndex(shards);
+    }
+
+    /**
+     * Returns a new index with the entries of a delta CRL applied.
+     * Entries with removeFromCRL reason are removed from the index,
+     * other entries are added or replaced. Only the shards containing
+     * the changed serial numbers are rebuilt.
+     *
+     * @param entries delta CRL entries (may be null)
+     */
+    public CertStatusIndex apply(Collection<RevokedCertificate> entries) {
+
+        if (entries == null || entries.isEmpty()) {
+            return this;
+        }
+
+        List<Map<BigInteger, Long>> revokedCerts = new ArrayList<>(shards.length);
+        List<List<BigInteger>> removedCerts = new ArrayList<>(shards.length);
+
+        for (int i = 0; i < shards.length; i++) {
+            revokedCerts.add(new TreeMap<>());
+            removedCerts.add(new ArrayList<>());
+        }
+
+        for (RevokedCertificate entry : entries) {
+            BigInteger serialNumber = entry.getSerialNumber();
+            int shard = getShard(serialNumber, shards.length);
+
+            if (isRemoveFromCRL(entry)) {
+                revokedCerts.get(shard).remove(serialNumber);
+                removedCerts.get(shard).add(serialNumber);
+                continue;
+            }
+
+            Date revocationDate = entry.getRevocationDate();
+            revokedCerts.get(shard).put(serialNumber, revocationDate == null ? 0 : revocationDate.getTime());
+        }
+
+        Shard[] newShards = shards.clone();
+
+        IntStream.range(0, shards.length).parallel().forEach(i -> {
+            if (revokedCerts.get(i).isEmpty() && removedCerts.get(i).isEmpty()) {
+                return;
+            }
+            newShards[i] = shards[i].apply(revokedCerts.get(i), removedCerts.get(i));
+        });
+
+        return new CertStatusIndex(newShards);
+    }
+
+    static boolean isRemoveFromCRL(RevokedCertificate entry) {
+
+        CRLExtensions exts = entry.getExtensions();
+        if (exts == null) {
+            return false;
+        }
+
+        for (int i = 0; i < exts.size(); i++) {
+            Extension ext = exts.elementAt(i);
+            if (ext instanceof CRLReasonExtension reasonExt
+                    && reasonExt.getReason() == RevocationReason.REMOVE_FROM_CRL) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    static int getShard(BigInteger serialNumber, int count) {
+        int h = serialNumber.hashCode();
+        return (h ^ (h >>> 16)) & (count - 1);
+    }
+
+    /**
+     * Returns the revocation date of a certificate,
+     * or null if the certificate is not revoked.
+     */
+    public Date getRevocationDate(BigInteger serialNumber) {
+        return shards[getShard(serialNumber, shards.length)].getRevocationDate(serialNumber);
+    }
+
+    public boolean isRevoked(BigInteger serialNumber) {
+        return getRevocationDate(serialNumber) != null;
+    }
+
+    public int getShards() {
+        return shards.length;
+    }
+
+    public int size() {
+        return size;
+    }
+}
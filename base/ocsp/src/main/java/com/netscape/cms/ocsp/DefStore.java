@@ -21,17 +21,25 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.cert.CRLException;
 import java.security.cert.X509CRL;
-import java.security.cert.X509CRLEntry;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.codec.binary.Hex;
 import org.mozilla.jss.asn1.GeneralizedTime;
 import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.DeltaCRLIndicatorExtension;
+import org.mozilla.jss.netscape.security.x509.Extension;
 import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
 import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
@@ -88,18 +96,31 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
     private static final String PROP_NOT_FOUND_GOOD = "notFoundAsGood";
     private static final String PROP_INCLUDE_NEXT_UPDATE =
             "includeNextUpdate";
+    private static final String PROP_INDEX_SHARDS = "indexShards";
 
     protected Hashtable<String, Long> mReqCounts = new Hashtable<>();
     protected boolean mNotFoundGood = true;
     protected boolean mUseCache = true;
     protected boolean mByName = false;
     protected boolean mIncludeNextUpdate = false;
-    protected Hashtable<String, CRLIPContainer> mCacheCRLIssuingPoints = new Hashtable<>();
+    protected int mIndexShards = CertStatusIndex.DEFAULT_SHARDS;
+
+    // CRL issuing points by issuer key hash
+    protected Map<String, CRLIPContainer> mCacheCRLIssuingPoints = new ConcurrentHashMap<>();
+
+    // CRL issuing points by record ID, replaced as a whole on update
+    private volatile Map<String, CRLIPContainer> mCRLIssuingPoints = Collections.emptyMap();
+
+    // whether all CRL issuing points have been loaded into memory
+    private volatile boolean mCRLIssuingPointsLoaded;
+
     private ConfigStore mConfig;
     private String mId = null;
     private DBSubsystem dbSubsystem;
     private int mStateCount = 0;
 
+    private volatile Runnable mCRLUpdateListener;
+
     /**
      * Constructs the default store.
      */
@@ -157,6 +178,8 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
         mIncludeNextUpdate = mConfig.getBoolean(PROP_INCLUDE_NEXT_UPDATE,
                     false);
 
+        mIndexShards = mConfig.getInteger(PROP_INDEX_SHARDS, CertStatusIndex.DEFAULT_SHARDS);
+
         // init web gateway.
         initWebGateway();
 
@@ -274,17 +297,245 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
         }
     }
 
+    @Override
+    public void setCRLUpdateListener(Runnable listener) {
+        mCRLUpdateListener = listener;
+    }
+
+    /**
+     * Notifies the listener that the revocation information has changed.
+     */
+    void notifyCRLUpdated() {
+
+        Runnable listener = mCRLUpdateListener;
+        if (listener == null) {
+            return;
+        }
+
+        try {
+            listener.run();
+        } catch (Exception e) {
+            logger.warn("DefStore: Unable to notify CRL update: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns true if the CRL issuing points contain different
+     * revocation information, i.e. a different set of issuing points
+     * or a different CRL or delta CRL.
+     */
+    static boolean isUpdated(
+            Map<String, CRLIPContainer> oldContainers,
+            Map<String, CRLIPContainer> newContainers) {
+
+        if (!oldContainers.keySet().equals(newContainers.keySet())) {
+            return true;
+        }
+
+        for (Map.Entry<String, CRLIPContainer> e : newContainers.entrySet()) {
+
+            CRLIssuingPointRecord oldRec = oldContainers.get(e.getKey()).getCRLIssuingPointRecord();
+            CRLIssuingPointRecord newRec = e.getValue().getCRLIssuingPointRecord();
+
+            if (!Objects.equals(oldRec.getCRLNumber(), newRec.getCRLNumber())
+                    || !Objects.equals(oldRec.getDeltaCRLNumber(), newRec.getDeltaCRLNumber())
+                    || !Objects.equals(oldRec.getThisUpdate(), newRec.getThisUpdate())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     @Override
     public void startup() throws EBaseException {
+
+        try {
+            loadCRLIssuingPoints();
+        } catch (Exception e) {
+            logger.warn("DefStore: Unable to load CRL issuing points: " + e.getMessage(), e);
+        }
+
         int refresh = mConfig.getInteger(PROP_REFRESH_IN_SEC,
                 DEF_REFRESH_IN_SEC);
         if (refresh > 0) {
             DefStoreCRLUpdater updater =
-                    new DefStoreCRLUpdater(mCacheCRLIssuingPoints, refresh);
+                    new DefStoreCRLUpdater(this, refresh);
             updater.start();
         }
     }
 
+    /**
+     * Loads all CRL issuing points and builds their status indexes,
+     * then replaces the CRL issuing points in memory.
+     */
+    public void loadCRLIssuingPoints() throws Exception {
+
+        logger.info("DefStore: Loading CRL issuing points");
+
+        Map<String, CRLIPContainer> containers = new HashMap<>();
+
+        Enumeration<CRLIssuingPointRecord> recs = searchCRLIssuingPointRecord(
+                "objectclass=" + CRLIssuingPointRecord.class.getName(),
+                100);
+
+        while (recs.hasMoreElements()) {
+            CRLIssuingPointRecord rec = recs.nextElement();
+
+            if (rec.getCRL() == null) {
+                logger.info("DefStore: - " + rec.getId() + ": no CRL");
+                continue;
+            }
+
+            CRLIPContainer container = createCRLIPContainer(rec, null);
+            logger.info("DefStore: - " + rec.getId() + ": " + container.getStatusIndex().size() + " revoked certs");
+
+            containers.put(rec.getId(), container);
+        }
+
+        boolean updated;
+
+        synchronized (this) {
+            updated = !mCRLIssuingPointsLoaded || isUpdated(mCRLIssuingPoints, containers);
+            mCRLIssuingPoints = Collections.unmodifiableMap(containers);
+            mCacheCRLIssuingPoints.clear();
+            mCRLIssuingPointsLoaded = true;
+        }
+
+        // the periodic reload only invalidates the responses if a CRL has changed
+        if (updated) {
+            notifyCRLUpdated();
+        }
+    }
+
+    /**
+     * Replaces a single CRL issuing point in memory.
+     */
+    synchronized void setCRLIssuingPoint(CRLIPContainer container) {
+
+        Map<String, CRLIPContainer> containers = new HashMap<>(mCRLIssuingPoints);
+        containers.put(container.getCRLIssuingPointRecord().getId(), container);
+        mCRLIssuingPoints = Collections.unmodifiableMap(containers);
+
+        // the key hashes will be recomputed from the CRL issuing points in memory
+        mCacheCRLIssuingPoints.clear();
+    }
+
+    /**
+     * Creates a CRL issuing point container with a status index built
+     * from the given CRL, the CRL cache in the record, or the CRL in
+     * the record, in that order.
+     */
+    CRLIPContainer createCRLIPContainer(CRLIssuingPointRecord rec, X509CRLImpl crl) throws Exception {
+
+        X509CertImpl cert;
+        try {
+            cert = new X509CertImpl(rec.getCACert());
+        } catch (Exception e) {
+            logger.error(CMS.getLogMessage("OCSP_DECODE_CERT", e.toString()), e);
+            throw e;
+        }
+
+        Collection<RevokedCertificate> entries;
+
+        if (crl != null) {
+            Hashtable<BigInteger, RevokedCertificate> list = crl.getListOfRevokedCertificates();
+            entries = list == null ? null : list.values();
+
+        } else if (rec.getCRLCacheNoClone() != null) {
+            logger.debug("DefStore: using crl cache");
+            entries = rec.getCRLCacheNoClone().values();
+
+        } else {
+            byte[] crldata = rec.getCRL();
+
+            if (crldata == null) {
+                throw new Exception("Missing CRL data");
+            }
+
+            logger.debug("DefStore: start building x509 crl impl");
+            try {
+                crl = new X509CRLImpl(crldata);
+            } catch (Exception e) {
+                logger.error(CMS.getLogMessage("OCSP_DECODE_CRL", e.toString()), e);
+                throw e;
+            }
+            logger.debug("DefStore: done building x509 crl impl");
+
+            Hashtable<BigInteger, RevokedCertificate> list = crl.getListOfRevokedCertificates();
+            entries = list == null ? null : list.values();
+        }
+
+        CertStatusIndex index = CertStatusIndex.build(entries, mIndexShards);
+        CRLIPContainer container = new CRLIPContainer(rec, cert, index, rec.getThisUpdate(), rec.getNextUpdate());
+
+        // apply the last delta CRL if it is newer than the CRL
+        byte[] deltaCRLData = rec.getDeltaCRL();
+        BigInteger crlNumber = rec.getCRLNumber();
+        BigInteger deltaCRLNumber = rec.getDeltaCRLNumber();
+
+        if (deltaCRLData == null || crlNumber == null || deltaCRLNumber == null
+                || deltaCRLNumber.compareTo(crlNumber) <= 0) {
+            return container;
+        }
+
+        X509CRLImpl deltaCRL = new X509CRLImpl(deltaCRLData);
+        BigInteger baseCRLNumber = getDeltaBaseNumber(deltaCRL);
+
+        if (baseCRLNumber == null || baseCRLNumber.compareTo(crlNumber) > 0) {
+            logger.warn("DefStore: Delta CRL " + deltaCRLNumber + " does not apply to CRL " + crlNumber);
+            return container;
+        }
+
+        logger.info("DefStore: Applying delta CRL " + deltaCRLNumber + " to CRL " + crlNumber);
+        return container.applyDeltaCRL(deltaCRL);
+    }
+
+    /**
+     * Returns the base CRL number of a delta CRL, or null if the CRL
+     * does not have a delta CRL indicator.
+     */
+    public static BigInteger getDeltaBaseNumber(X509CRLImpl crl) throws Exception {
+
+        CRLExtensions exts = crl.getExtensions();
+        if (exts == null) {
+            return null;
+        }
+
+        for (int i = 0; i < exts.size(); i++) {
+            Extension ext = exts.elementAt(i);
+            if (ext instanceof DeltaCRLIndicatorExtension deltaExt) {
+                return (BigInteger) deltaExt.get(DeltaCRLIndicatorExtension.NUMBER);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the CRL issuing point in memory that matches the issuer
+     * key hash and issuer name hash in the CertID.
+     */
+    CRLIPContainer findCRLIssuingPoint(CertID cid, byte[] keyhsh, byte[] namehash) throws Exception {
+
+        MessageDigest md = MessageDigest.getInstance(cid.getDigestName());
+
+        for (CRLIPContainer container : mCRLIssuingPoints.values()) {
+            X509CertImpl cert = container.getX509CertImpl();
+            X509Key key = (X509Key) cert.getPublicKey();
+
+            byte[] digest = md.digest(key.getKey());
+            byte[] name = md.digest(cert.getSubjectObj().getX500Name().getEncoded());
+
+            if (Arrays.equals(digest, keyhsh) && Arrays.equals(name, namehash)) {
+                mCacheCRLIssuingPoints.put(new String(keyhsh), container);
+                return container;
+            }
+        }
+
+        return null;
+    }
+
     @Override
     public void shutdown() {
     }
@@ -314,16 +565,22 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
 
         // cache result to speed up the performance
         X509CertImpl theCert = null;
-        X509CRLImpl theCRL = null;
+        CRLIPContainer theContainer = null;
+        CertStatusIndex theIndex = null;
         CRLIssuingPointRecord theRec = null;
         byte[] keyhsh = cid.getIssuerKeyHash().toByteArray();
         byte[] namehash = cid.getIssuerNameHash().toByteArray();
         logger.info("DefStore: Issuer key hash: " + new String(Hex.encodeHex(keyhsh)));
 
         CRLIPContainer matched = mCacheCRLIssuingPoints.get(new String(keyhsh));
+
+        if (matched == null && mCRLIssuingPointsLoaded) {
+            matched = findCRLIssuingPoint(cid, keyhsh, namehash);
+        }
+
         logger.info("DefStore: CRL issuing point container: " + matched);
 
-        if (matched == null) {
+        if (matched == null && !mCRLIssuingPointsLoaded) {
             logger.info("DefStore: Searching for objectclass=" + CRLIssuingPointRecord.class.getName());
             Enumeration<CRLIssuingPointRecord> recs = searchCRLIssuingPointRecord(
                     "objectclass=" + CRLIssuingPointRecord.class.getName(),
@@ -356,39 +613,24 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
                 }
                 logger.info("DefStore: Found issuer");
 
-                theCert = cert;
+                CRLIPContainer container = createCRLIPContainer(rec, null);
+
+                theCert = container.getX509CertImpl();
+                theContainer = container;
                 theRec = rec;
+                theIndex = container.getStatusIndex();
                 incReqCount(theRec.getId());
 
-                byte[] crldata = rec.getCRL();
-                logger.info("DefStore: CRL: " + crldata);
-
-                if (crldata == null) {
-                    throw new Exception("Missing CRL data");
-                }
-
-                if (rec.getCRLCache() == null) {
-                    logger.debug("DefStore: start building x509 crl impl");
-                    try {
-                        theCRL = new X509CRLImpl(crldata);
-                    } catch (Exception e) {
-                        logger.error(CMS.getLogMessage("OCSP_DECODE_CRL", e.toString()), e);
-                        throw e;
-                    }
-                    logger.debug("DefStore: done building x509 crl impl");
-                } else {
-                    logger.debug("DefStore: using crl cache");
-                }
-
                 logger.info("DefStore: Adding CRL issuing point container for {}", new String(Hex.encodeHex(digest)));
-                mCacheCRLIssuingPoints.put(new String(digest), new CRLIPContainer(theRec, theCert, theCRL));
+                mCacheCRLIssuingPoints.put(new String(digest), container);
                 break;
             }
 
-        } else {
+        } else if (matched != null) {
             theCert = matched.getX509CertImpl();
+            theContainer = matched;
             theRec = matched.getCRLIssuingPointRecord();
-            theCRL = matched.getX509CRLImpl();
+            theIndex = matched.getStatusIndex();
             incReqCount(theRec.getId());
         }
 
@@ -407,10 +649,10 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
 
         GeneralizedTime thisUpdate;
 
-        if (theRec == null) {
+        if (theContainer == null) {
             thisUpdate = new GeneralizedTime(new Date());
         } else {
-            Date d = theRec.getThisUpdate();
+            Date d = theContainer.getThisUpdate();
             logger.debug("DefStore: CRL record this update: " + d);
             thisUpdate = new GeneralizedTime(d);
         }
@@ -423,11 +665,11 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
         if (!includeNextUpdate()) {
             nextUpdate = null;
 
-        } else if (theRec == null) {
+        } else if (theContainer == null) {
             nextUpdate = new GeneralizedTime(new Date());
 
         } else {
-            Date d = theRec.getNextUpdate();
+            Date d = theContainer.getNextUpdate();
             logger.debug("DefStore: CRL record next update: " + d);
             nextUpdate = new GeneralizedTime(d);
         }
@@ -436,41 +678,15 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
 
         CertStatus certStatus;
 
-        if (theCRL == null) {
-
+        if (theIndex == null) {
             certStatus = new UnknownInfo();
-
-            if (theRec == null) {
-                return new SingleResponse(cid, certStatus, thisUpdate, nextUpdate);
-            }
-
-            // if crl is not available, we can try crl cache
-            logger.debug("DefStore: evaluating crl cache");
-            Hashtable<BigInteger, RevokedCertificate> cache = theRec.getCRLCacheNoClone();
-            if (cache != null) {
-                RevokedCertificate rc = cache.get(new BigInteger(serialNo.toString()));
-                if (rc == null) {
-                    if (isNotFoundGood()) {
-                        certStatus = new GoodInfo();
-                    } else {
-                        certStatus = new UnknownInfo();
-                    }
-                } else {
-
-                    certStatus = new RevokedInfo(
-                            new GeneralizedTime(
-                                    rc.getRevocationDate()));
-                }
-            }
-
-            return new SingleResponse(cid, certStatus, thisUpdate,
-                    nextUpdate);
+            return new SingleResponse(cid, certStatus, thisUpdate, nextUpdate);
         }
 
-        logger.debug("DefStore: evaluating x509 crl impl");
-        X509CRLEntry crlentry = theCRL.getRevokedCertificate(new BigInteger(serialNo.toString()));
+        logger.debug("DefStore: evaluating status index");
+        Date revocationDate = theIndex.getRevocationDate(new BigInteger(serialNo.toString()));
 
-        if (crlentry == null) {
+        if (revocationDate == null) {
             // good or unknown
             if (isNotFoundGood()) {
                 certStatus = new GoodInfo();
@@ -479,8 +695,7 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
             }
 
         } else {
-            certStatus = new RevokedInfo(new GeneralizedTime(
-                            crlentry.getRevocationDate()));
+            certStatus = new RevokedInfo(new GeneralizedTime(revocationDate));
         }
 
         return new SingleResponse(cid, certStatus, thisUpdate,
@@ -762,13 +977,97 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
             logger.debug("DefStore: done CRL update " +
                     crl.getIssuerDN().getName());
 
-            // update cache
-            mCacheCRLIssuingPoints.clear();
+            // replace the CRL issuing point in memory with a new status index
+            try {
+                CRLIssuingPointRecord rec = readCRLIssuingPoint(crl.getIssuerDN().getName());
+                setCRLIssuingPoint(createCRLIPContainer(rec, (X509CRLImpl) crl));
+            } catch (Exception e) {
+                logger.warn("DefStore: Unable to update status index: " + e.getMessage(), e);
+                mCacheCRLIssuingPoints.clear();
+                mCRLIssuingPointsLoaded = false;
+            }
 
             logger.info("DefStore: Finish Committing CRL." +
                     " thisUpdate=" + crl.getThisUpdate() +
                     " nextUpdate=" + crl.getNextUpdate());
 
+            notifyCRLUpdated();
+
+        } finally {
+            mStateCount--;
+        }
+    }
+
+    @Override
+    public boolean isDeltaCRLSupported() {
+        return true;
+    }
+
+    /**
+     * Stores the delta CRL in the CRL issuing point record without
+     * replacing the CRL and the CRL cache, then applies the delta
+     * CRL entries to the status index.
+     */
+    @Override
+    public synchronized void updateDeltaCRL(X509CRL crl) throws EBaseException {
+        try {
+            mStateCount++;
+
+            X509CRLImpl deltaCRL = (X509CRLImpl) crl;
+
+            try {
+                if (!deltaCRL.areEntriesIncluded())
+                    deltaCRL = new X509CRLImpl(deltaCRL.getEncoded());
+            } catch (Exception e) {
+                throw new EBaseException("Unable to decode delta CRL: " + e.getMessage(), e);
+            }
+
+            String name = crl.getIssuerDN().getName();
+
+            logger.info("DefStore: Updating delta CRL " + deltaCRL.getCRLNumber() + " for " + name);
+
+            ModificationSet mods = new ModificationSet();
+
+            mods.add(CRLIssuingPointRecord.ATTR_DELTA_NUMBER,
+                    Modification.MOD_REPLACE, deltaCRL.getCRLNumber());
+            mods.add(CRLIssuingPointRecord.ATTR_DELTA_SIZE,
+                    Modification.MOD_REPLACE, Long.valueOf(Math.max(0, deltaCRL.getNumberOfRevokedCertificates())));
+
+            try {
+                mods.add(CRLIssuingPointRecord.ATTR_DELTA_CRL,
+                        Modification.MOD_REPLACE, crl.getEncoded());
+            } catch (CRLException e) {
+                logger.error("Unable to store delta CRL: " + e.getMessage(), e);
+                throw new EBaseException("Unable to store delta CRL: " + e.getMessage(), e);
+            }
+
+            modifyCRLIssuingPointRecord(name, mods);
+
+            try {
+                CRLIPContainer container = mCRLIssuingPointsLoaded ? mCRLIssuingPoints.get(name) : null;
+
+                if (container == null) {
+                    // the record already contains the delta CRL
+                    CRLIssuingPointRecord rec = readCRLIssuingPoint(name);
+                    container = createCRLIPContainer(rec, null);
+                } else {
+                    container = container.applyDeltaCRL(deltaCRL);
+                }
+
+                setCRLIssuingPoint(container);
+
+            } catch (Exception e) {
+                logger.warn("DefStore: Unable to update status index: " + e.getMessage(), e);
+                mCacheCRLIssuingPoints.clear();
+                mCRLIssuingPointsLoaded = false;
+            }
+
+            logger.info("DefStore: Finish Committing delta CRL." +
+                    " thisUpdate=" + crl.getThisUpdate() +
+                    " nextUpdate=" + crl.getNextUpdate());
+
+            notifyCRLUpdated();
+
         } finally {
             mStateCount--;
         }
@@ -800,12 +1099,27 @@ class DeleteOldCRLsThread extends Thread {
 class CRLIPContainer {
     private CRLIssuingPointRecord mRec = null;
     private X509CertImpl mCert = null;
-    private X509CRLImpl mCRL = null;
+    private CertStatusIndex mIndex = null;
+    private Date mThisUpdate = null;
+    private Date mNextUpdate = null;
 
-    public CRLIPContainer(CRLIssuingPointRecord rec, X509CertImpl cert, X509CRLImpl crl) {
+    public CRLIPContainer(CRLIssuingPointRecord rec, X509CertImpl cert, CertStatusIndex index,
+            Date thisUpdate, Date nextUpdate) {
         mRec = rec;
         mCert = cert;
-        mCRL = crl;
+        mIndex = index;
+        mThisUpdate = thisUpdate;
+        mNextUpdate = nextUpdate;
+    }
+
+    /**
+     * Returns a new container with the delta CRL entries applied
+     * to the status index.
+     */
+    public CRLIPContainer applyDeltaCRL(X509CRLImpl deltaCRL) {
+        Hashtable<BigInteger, RevokedCertificate> entries = deltaCRL.getListOfRevokedCertificates();
+        CertStatusIndex index = mIndex.apply(entries == null ? null : entries.values());
+        return new CRLIPContainer(mRec, mCert, index, deltaCRL.getThisUpdate(), deltaCRL.getNextUpdate());
     }
 
     public CRLIssuingPointRecord getCRLIssuingPointRecord() {
@@ -816,8 +1130,16 @@ class CRLIPContainer {
         return mCert;
     }
 
-    public X509CRLImpl getX509CRLImpl() {
-        return mCRL;
+    public CertStatusIndex getStatusIndex() {
+        return mIndex;
+    }
+
+    public Date getThisUpdate() {
+        return mThisUpdate;
+    }
+
+    public Date getNextUpdate() {
+        return mNextUpdate;
     }
 }
 
@@ -825,11 +1147,11 @@ class DefStoreCRLUpdater extends Thread {
 
     public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(DefStoreCRLUpdater.class);
 
-    private Hashtable<String, CRLIPContainer> mCache = null;
+    private DefStore mDefStore = null;
     private int mSec = 0;
 
-    public DefStoreCRLUpdater(Hashtable<String, CRLIPContainer> cache, int sec) {
-        mCache = cache;
+    public DefStoreCRLUpdater(DefStore defStore, int sec) {
+        mDefStore = defStore;
         mSec = sec;
     }
 
@@ -838,10 +1160,12 @@ class DefStoreCRLUpdater extends Thread {
         while (true) {
             try {
                 logger.debug("DefStore: CRLUpdater invoked");
-                mCache.clear();
                 sleep(mSec * 1000); // turn sec into millis-sec
+                mDefStore.loadCRLIssuingPoints();
+            } catch (InterruptedException e) {
+                return;
             } catch (Exception e) {
-                // ignore
+                logger.warn("DefStore: CRLUpdater: " + e.getMessage(), e);
             }
         }
     }
@@ -101,6 +101,8 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
     private Hashtable<X509CertImpl, X509CRLImpl> mCRLs = new Hashtable<>();
     private boolean mValidateConnection = true;
 
+    private volatile Runnable mCRLUpdateListener;
+
 
     /**
      * Constructs the default store.
@@ -262,6 +264,20 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
         logger.debug("LDAPStore: updateCRLHash: Added '" + caCert.getSubjectName() + "' into CRL hash");
         mCRLs.put(caCert, crl);
         logger.debug("LDAPStore: updateCRLHash: mCRLs size= "+ mCRLs.size());
+
+        Runnable listener = mCRLUpdateListener;
+        if (listener != null) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                logger.warn("LDAPStore: Unable to notify CRL update: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void setCRLUpdateListener(Runnable listener) {
+        mCRLUpdateListener = listener;
     }
 
     @Override
@@ -52,6 +52,7 @@ import com.netscape.certsrv.dbs.certdb.CertId;
 import com.netscape.certsrv.logging.AuditEvent;
 import com.netscape.certsrv.logging.ILogger;
 import com.netscape.certsrv.ocsp.IDefStore;
+import com.netscape.cms.ocsp.DefStore;
 import com.netscape.cms.servlet.base.CMSServlet;
 import com.netscape.cms.servlet.common.CMSRequest;
 import com.netscape.cms.servlet.common.CMSTemplate;
@@ -90,6 +91,12 @@ public class AddCRLServlet extends CMSServlet {
     private static final long serialVersionUID = 1476080474638590902L;
 
     private final static String TPL_FILE = "addCRL.template";
+    private final static String CONTENT_TYPE_PKIX_CRL = "application/pkix-crl";
+
+    // response status codes in noui mode
+    private final static int STATUS_SUCCESS = 0;
+    private final static int STATUS_FAILURE = 1;
+    private final static int STATUS_DELTA_BASE_NOT_FOUND = 2;
     private String mFormPath = null;
     private OCSPAuthority mOCSPAuthority;
 
@@ -126,6 +133,8 @@ public class AddCRLServlet extends CMSServlet {
      * <li>http.param crl certificate revocation list, base-64, DER encoded wrapped in -----BEGIN CERTIFICATE REVOCATION
      * LIST-----, -----END CERTIFICATE REVOCATION LIST----- strings
      * <li>http.param noui if true, use minimal hardcoded text response
+     * <li>alternatively, the request body can contain a DER encoded CRL with
+     * application/pkix-crl content type, in which case noui is implied
      * <li>signed.audit LOGGING_SIGNED_AUDIT_CRL_RETRIEVAL used when CRLs are retrieved by the OCSP Responder ("agent"
      * or "EE")
      * <li>signed.audit LOGGING_SIGNED_AUDIT_CRL_VALIDATION used when CRL is retrieved and validation process occurs
@@ -198,10 +207,27 @@ public class AddCRLServlet extends CMSServlet {
                 }
             }
 
-            String b64 = cmsReq.getHttpReq().getParameter("crl");
-            logger.debug("AddCRLServlet: CRL:\n" + b64);
+            String contentType = req.getContentType();
+            boolean binary = contentType != null
+                    && contentType.toLowerCase().startsWith(CONTENT_TYPE_PKIX_CRL);
+
+            String b64 = null;
+            byte[] der = null;
+
+            if (binary) {
+                try {
+                    der = req.getInputStream().readAllBytes();
+                    logger.debug("AddCRLServlet: DER CRL: " + der.length + " bytes");
+                } catch (IOException e) {
+                    logger.error("AddCRLServlet: Unable to read CRL: " + e.getMessage(), e);
+                }
+
+            } else {
+                b64 = cmsReq.getHttpReq().getParameter("crl");
+                logger.debug("AddCRLServlet: CRL:\n" + b64);
+            }
 
-            if (b64 == null) {
+            if (binary ? der == null || der.length == 0 : b64 == null) {
                 // store a message in the signed audit log file
                 auditMessage = CMS.getLogMessage(
                         AuditEvent.CRL_RETRIEVAL,
@@ -218,7 +244,7 @@ public class AddCRLServlet extends CMSServlet {
             String nouiParm = cmsReq.getHttpReq().getParameter("noui");
             boolean noUI = false;
 
-            if (nouiParm != null && nouiParm.equals("true")) {
+            if (binary || nouiParm != null && nouiParm.equals("true")) {
                 noUI = true;
                 logger.debug("AddCRLServlet: noUI=true");
             } else {
@@ -252,7 +278,7 @@ public class AddCRLServlet extends CMSServlet {
             ArgBlock fixed = new ArgBlock();
             CMSTemplateParams argSet = new CMSTemplateParams(header, fixed);
 
-            if (b64.indexOf(CertUtil.CRL_HEADER) == -1) {
+            if (!binary && b64.indexOf(CertUtil.CRL_HEADER) == -1) {
                 logger.error(CMS.getLogMessage("CMSGW_MISSING_CRL_HEADER"));
 
                 // store a message in the signed audit log file
@@ -267,7 +293,7 @@ public class AddCRLServlet extends CMSServlet {
                 throw new ECMSGWException(CMS.getUserMessage(getLocale(req),
                                           "CMS_GW_MISSING_CRL_HEADER"));
             }
-            if (b64.indexOf(CertUtil.CRL_FOOTER) == -1) {
+            if (!binary && b64.indexOf(CertUtil.CRL_FOOTER) == -1) {
                 logger.error(CMS.getLogMessage("CMSGW_MISSING_CRL_FOOTER"));
 
                 // store a message in the signed audit log file
@@ -293,7 +319,7 @@ public class AddCRLServlet extends CMSServlet {
                 if (statsSub != null) {
                     statsSub.startTiming("decode_crl");
                 }
-                crl = mapCRL1(b64);
+                crl = binary ? mapCRL(der) : mapCRL1(b64);
                 if (statsSub != null) {
                     statsSub.endTiming("decode_crl");
                 }
@@ -436,19 +462,25 @@ public class AddCRLServlet extends CMSServlet {
                 }
             }
 
-            if ((pt.getThisUpdate() != null) &&
-                    (pt.getThisUpdate().getTime() >=
-                    crl.getThisUpdate().getTime())) {
+            boolean isDeltaCRL = crl.isDeltaCRL();
+            boolean isNewer;
+
+            if (isDeltaCRL) {
+                // a delta CRL may have the same thisUpdate as its full CRL
+                isNewer = isNewerDeltaCRL(pt, crl);
+            } else {
+                isNewer = (pt.getThisUpdate() == null) ||
+                        (pt.getThisUpdate().getTime() <
+                        crl.getThisUpdate().getTime());
+            }
+
+            if (!isNewer) {
 
                 logger.warn("AddCRLServlet: no update, received CRL is not newer than current CRL");
 
                 if (noUI) {
                     try {
-                        resp.setContentType("application/text");
-                        resp.getOutputStream().write("status=1\n".getBytes());
-                        resp.getOutputStream().write(
-                                "error=Sent CRL is not newer than the current CRL\n".getBytes());
-                        resp.getOutputStream().flush();
+                        writeStatus(resp, STATUS_FAILURE, "Sent CRL is not newer than the current CRL");
                         cmsReq.setStatus(CMSRequest.SUCCESS);
 
                         // NOTE:  The signed audit events
@@ -475,17 +507,25 @@ public class AddCRLServlet extends CMSServlet {
                 }
             }
 
-            if (crl.isDeltaCRL()) {
+            String deltaCRLError = null;
+            int deltaCRLStatus = STATUS_FAILURE;
+
+            if (isDeltaCRL && !defStore.isDeltaCRLSupported()) {
+                deltaCRLError = CMS.getUserMessage("CMS_GW_DELTA_CRL_NOT_SUPPORTED");
+
+            } else if (isDeltaCRL && !isApplicableDeltaCRL(pt, crl)) {
+                deltaCRLError = CMS.getUserMessage("CMS_GW_DELTA_CRL_BASE_NOT_FOUND");
+                // tell the publisher to send the base CRL
+                deltaCRLStatus = STATUS_DELTA_BASE_NOT_FOUND;
+            }
 
-                logger.warn("AddCRLServlet: no update, " + CMS.getUserMessage("CMS_GW_DELTA_CRL_NOT_SUPPORTED"));
+            if (deltaCRLError != null) {
+
+                logger.warn("AddCRLServlet: no update, " + deltaCRLError);
 
                 if (noUI) {
                     try {
-                        resp.setContentType("application/text");
-                        resp.getOutputStream().write("status=1\n".getBytes());
-                        resp.getOutputStream().write(
-                                "error=Delta CRLs are not supported.\n".getBytes());
-                        resp.getOutputStream().flush();
+                        writeStatus(resp, deltaCRLStatus, deltaCRLError);
                         cmsReq.setStatus(CMSRequest.SUCCESS);
 
                         return;
@@ -494,41 +534,49 @@ public class AddCRLServlet extends CMSServlet {
                     }
 
                 } else {
-                    throw new ECMSGWException(CMS.getUserMessage("CMS_GW_DELTA_CRL_NOT_SUPPORTED"));
+                    throw new ECMSGWException(deltaCRLError);
                 }
             }
 
-            logger.info("AddCRLServlet: Start Committing CRL");
+            if (isDeltaCRL) {
+                logger.info("AddCRLServlet: Start Committing delta CRL");
 
-            // *****************************************************
-            // The commit transaction may take long time and
-            // there may have a system crash during the transaction
-            // *****************************************************
+                // a delta CRL only updates the CRL issuing point
+                defStore.updateDeltaCRL(crl);
 
-            RepositoryRecord repRec = defStore.createRepositoryRecord();
+            } else {
+                logger.info("AddCRLServlet: Start Committing CRL");
 
-            repRec.set(RepositoryRecord.ATTR_SERIALNO,
-                    new BigInteger(Long.toString(crl.getThisUpdate().getTime())));
-            try {
-                defStore.addRepository(
-                        crl.getIssuerDN().getName(),
-                        Long.toString(crl.getThisUpdate().getTime()),
-                        repRec);
-                logger.info("AddCRLServlet: Added CRL Updated " + Long.toString(crl.getThisUpdate().getTime()));
-            } catch (Exception e) {
-                logger.error("AddCRLServlet: " + e.getMessage(), e);
-            }
+                // *****************************************************
+                // The commit transaction may take long time and
+                // there may have a system crash during the transaction
+                // *****************************************************
 
-            logger.info("AddCRLServlet: Created CRL Repository " + Long.toString(crl.getThisUpdate().getTime()));
+                RepositoryRecord repRec = defStore.createRepositoryRecord();
 
-            if (defStore.waitOnCRLUpdate()) {
-                defStore.updateCRL(crl);
-            } else {
-                // when the CRL large, the thread is terminiated by the
-                // servlet framework before it can finish its work
-                UpdateCRLThread uct = new UpdateCRLThread(defStore, crl);
+                repRec.set(RepositoryRecord.ATTR_SERIALNO,
+                        new BigInteger(Long.toString(crl.getThisUpdate().getTime())));
+                try {
+                    defStore.addRepository(
+                            crl.getIssuerDN().getName(),
+                            Long.toString(crl.getThisUpdate().getTime()),
+                            repRec);
+                    logger.info("AddCRLServlet: Added CRL Updated " + Long.toString(crl.getThisUpdate().getTime()));
+                } catch (Exception e) {
+                    logger.error("AddCRLServlet: " + e.getMessage(), e);
+                }
 
-                uct.start();
+                logger.info("AddCRLServlet: Created CRL Repository " + Long.toString(crl.getThisUpdate().getTime()));
+
+                if (defStore.waitOnCRLUpdate()) {
+                    defStore.updateCRL(crl);
+                } else {
+                    // when the CRL large, the thread is terminiated by the
+                    // servlet framework before it can finish its work
+                    UpdateCRLThread uct = new UpdateCRLThread(defStore, crl);
+
+                    uct.start();
+                }
             }
 
             try {
@@ -536,9 +584,7 @@ public class AddCRLServlet extends CMSServlet {
 
                 if (noUI) {
                     logger.debug("AddCRLServlet: return result noUI=true");
-                    resp.setContentType("application/text");
-                    resp.getOutputStream().write("status=0".getBytes());
-                    resp.getOutputStream().flush();
+                    writeStatus(resp, STATUS_SUCCESS, null);
                     cmsReq.setStatus(CMSRequest.SUCCESS);
                 } else {
                     logger.debug("AddCRLServlet: return result noUI=false");
@@ -591,19 +637,81 @@ public class AddCRLServlet extends CMSServlet {
         }
     }
 
+    /**
+     * Returns true if the delta CRL number is higher than the numbers
+     * of the CRL and the delta CRL in the CRL issuing point.
+     */
+    boolean isNewerDeltaCRL(CRLIssuingPointRecord pt, X509CRLImpl deltaCRL) {
+
+        BigInteger deltaCRLNumber = deltaCRL.getCRLNumber();
+        if (deltaCRLNumber == null) {
+            return false;
+        }
+
+        BigInteger crlNumber = pt.getCRLNumber();
+        if (crlNumber != null && deltaCRLNumber.compareTo(crlNumber) <= 0) {
+            return false;
+        }
+
+        BigInteger lastDeltaCRLNumber = pt.getDeltaCRLNumber();
+        return lastDeltaCRLNumber == null || deltaCRLNumber.compareTo(lastDeltaCRLNumber) > 0;
+    }
+
+    /**
+     * Returns true if the base CRL of the delta CRL is not newer
+     * than the CRL in the CRL issuing point.
+     */
+    boolean isApplicableDeltaCRL(CRLIssuingPointRecord pt, X509CRLImpl deltaCRL) {
+
+        BigInteger crlNumber = pt.getCRLNumber();
+        if (crlNumber == null || pt.getCRL() == null) {
+            return false;
+        }
+
+        try {
+            BigInteger baseCRLNumber = DefStore.getDeltaBaseNumber(deltaCRL);
+            return baseCRLNumber != null && baseCRLNumber.compareTo(crlNumber) <= 0;
+
+        } catch (Exception e) {
+            logger.warn("AddCRLServlet: Unable to get delta CRL base number: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes the result in noui mode. The content length is set
+     * so the client can keep the connection open.
+     */
+    void writeStatus(HttpServletResponse resp, int status, String error) throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("status=").append(status);
+        if (error != null) {
+            sb.append("\nerror=").append(error).append("\n");
+        }
+
+        byte[] bytes = sb.toString().getBytes();
+
+        resp.setContentType("application/text");
+        resp.setContentLength(bytes.length);
+        resp.getOutputStream().write(bytes);
+        resp.getOutputStream().flush();
+    }
+
     public X509CRLImpl mapCRL1(String mime64)
             throws IOException {
         mime64 = Cert.stripCRLBrackets(mime64.trim());
 
         byte rawPub[] = Utils.base64decode(mime64);
-        X509CRLImpl crl = null;
+        return mapCRL(rawPub);
+    }
 
+    public X509CRLImpl mapCRL(byte[] der) throws IOException {
         try {
-            crl = new X509CRLImpl(rawPub, false);
+            return new X509CRLImpl(der, false);
         } catch (Exception e) {
             throw new IOException(e.toString());
         }
-        return crl;
     }
 }
 
@@ -56,4 +56,9 @@ public class OCSPOCSPServlet extends OCSPServlet {
     public OCSPResponse validate(OCSPRequest ocspRequest) throws EBaseException {
         return ocsp.validate(ocspRequest);
     }
+
+    @Override
+    public byte[] getCachedResponse(OCSPRequest ocspRequest) {
+        return ocsp.getCachedResponse(ocspRequest);
+    }
 }
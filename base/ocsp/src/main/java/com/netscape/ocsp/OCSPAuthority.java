@@ -28,18 +28,20 @@ import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.dogtagpki.server.ocsp.OCSPConfig;
 import org.dogtagpki.server.ocsp.OCSPEngine;
 import org.dogtagpki.server.ocsp.OCSPEngineConfig;
+import org.dogtagpki.server.ocsp.OCSPResponseCacheConfig;
 import org.mozilla.jss.asn1.ASN1Util;
 import org.mozilla.jss.asn1.GeneralizedTime;
 import org.mozilla.jss.asn1.InvalidBERException;
 import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
 import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
 import org.mozilla.jss.crypto.TokenException;
 import org.mozilla.jss.netscape.security.util.DerOutputStream;
-import org.mozilla.jss.netscape.security.util.DerValue;
 import org.mozilla.jss.netscape.security.x509.AlgorithmId;
 import org.mozilla.jss.netscape.security.x509.X500Name;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
@@ -66,6 +68,7 @@ import com.netscape.cmsutil.crypto.CryptoUtil;
 import com.netscape.cmsutil.ocsp.BasicOCSPResponse;
 import com.netscape.cmsutil.ocsp.KeyHashID;
 import com.netscape.cmsutil.ocsp.NameID;
+import com.netscape.cmsutil.ocsp.OCSPCodec;
 import com.netscape.cmsutil.ocsp.OCSPRequest;
 import com.netscape.cmsutil.ocsp.OCSPResponse;
 import com.netscape.cmsutil.ocsp.OCSPResponseStatus;
@@ -104,12 +107,16 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
 
     private String[] mOCSPSigningAlgorithms = null;
     private IOCSPStore mDefStore = null;
+    private OCSPResponseCache mResponseCache;
 
-    public long mNumOCSPRequest = 0;
-    public long mTotalTime = 0;
-    public long mTotalData = 0;
-    public long mSignTime = 0;
-    public long mLookupTime = 0;
+    public LongAdder mNumOCSPRequest = new LongAdder();
+    public LongAdder mTotalTime = new LongAdder();
+    public LongAdder mTotalData = new LongAdder();
+    public LongAdder mSignTime = new LongAdder();
+    public LongAdder mLookupTime = new LongAdder();
+
+    // reuses the encoding of the OCSP signing cert chain
+    protected OCSPCodec mOCSPCodec = new OCSPCodec();
 
     /**
      * Retrieves the name of this subsystem.
@@ -146,6 +153,7 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
             mConfig = engineConfig.getOCSPConfig();
 
             initSigUnit();
+            initResponseCache();
 
             // create default OCSP Store
             try {
@@ -169,6 +177,9 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
                     mStores.put(id, store);
                     if (id.equals(defStoreId)) {
                         mDefStore = store;
+
+                        // refresh the cached responses whenever the store loads a CRL
+                        store.setCRLUpdateListener(this::refreshResponseCache);
                     }
                 }
 
@@ -328,6 +339,27 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
         getOCSPSigningAlgorithms();
     }
 
+    private void initResponseCache() throws EBaseException {
+
+        OCSPResponseCacheConfig cacheConfig = mConfig.getResponseCacheConfig();
+
+        if (!cacheConfig.getEnable()) {
+            return;
+        }
+
+        int validity = cacheConfig.getValidity();
+        int maxEntries = cacheConfig.getMaxEntries();
+
+        logger.info("OCSPAuthority: Initializing OCSP response cache");
+        logger.info("OCSPAuthority: - validity: " + validity + " seconds");
+        logger.info("OCSPAuthority: - max entries: " + maxEntries);
+
+        mResponseCache = new OCSPResponseCache(
+                this::createCachedResponse,
+                validity * 1000L,
+                maxEntries);
+    }
+
     /**
      * Notifies this subsystem if owner is in running mode.
      */
@@ -338,6 +370,10 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
             if (mDefStore != null)
                 mDefStore.startup();
 
+            if (mResponseCache != null) {
+                mResponseCache.start();
+            }
+
         } catch (EBaseException e) {
             logger.warn("OCSPAuthority: " + e.getMessage(), e);
             if (engine.isPreOpMode()) {
@@ -373,109 +409,196 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
             throw new EBaseException("OCSP request is empty");
         }
 
-        OCSPEngine engine = OCSPEngine.getInstance();
-        StatsSubsystem statsSub = (StatsSubsystem) engine.getSubsystem(StatsSubsystem.ID);
-
         incNumOCSPRequest(1);
         long startTime = new Date().getTime();
 
+        Request cacheableRequest = getCacheableRequest(request);
+        long generation = mResponseCache == null ? 0 : mResponseCache.getGeneration();
+
         OCSPResponse response;
 
         try {
-            // (3) look into database to check the certificate's status
-            Vector<SingleResponse> singleResponses = new Vector<>();
+            response = createResponse(tbsReq);
 
-            if (statsSub != null) {
-                statsSub.startTiming("lookup");
+            if (cacheableRequest != null) {
+                mResponseCache.put(cacheableRequest, ASN1Util.encode(response), generation);
             }
 
-            long lookupStartTime = new Date().getTime();
+        } catch (EBaseException e) {
+            logger.error(CMS.getLogMessage("OCSP_REQUEST_FAILURE", e.toString()), e);
+            throw e;
 
-            for (int i = 0; i < tbsReq.getRequestCount(); i++) {
-                logger.info("OCSPAuthority: Processing request #" + i);
+        } catch (Exception e) {
+            logger.error(CMS.getLogMessage("OCSP_REQUEST_FAILURE", e.toString()), e);
+            throw new EBaseException(e);
+        }
 
-                Request req = tbsReq.getRequestAt(i);
-                SingleResponse sr = mDefStore.processRequest(req);
-                singleResponses.addElement(sr);
-            }
+        logger.info("OCSPAuthority: Done validating OCSP request");
 
-            long lookupEndTime = new Date().getTime();
-            incLookupTime(lookupEndTime - lookupStartTime);
+        long endTime = new Date().getTime();
+        incTotalTime(endTime - startTime);
 
-            if (statsSub != null) {
-                statsSub.endTiming("lookup");
-            }
+        mServedTime = mServedTime + (endTime - startTime);
 
-            if (statsSub != null) {
-                statsSub.startTiming("build_response");
-            }
+        return response;
+    }
 
-            SingleResponse res[] = new SingleResponse[singleResponses.size()];
-            singleResponses.copyInto(res);
+    /**
+     * Returns the request if the response can be cached, i.e. the
+     * response cache is enabled and the OCSP request contains a single
+     * request without a nonce. Otherwise, returns null.
+     */
+    Request getCacheableRequest(OCSPRequest request) {
 
-            ResponderID rid = null;
+        if (mResponseCache == null) {
+            return null;
+        }
 
-            if (mDefStore.isByName()) {
-                rid = getResponderIDByName();
-            } else {
-                rid = getResponderIDByHash();
+        TBSRequest tbsReq = request.getTBSRequest();
+        if (tbsReq.getRequestCount() != 1) {
+            return null;
+        }
+
+        for (int i = 0; i < tbsReq.getExtensionsCount(); i++) {
+            Extension ext = tbsReq.getRequestExtensionAt(i);
+            if (ext.getExtnId().equals(OCSP_NONCE)) {
+                return null;
             }
+        }
 
-            Extension nonce[] = null;
+        return tbsReq.getRequestAt(0);
+    }
 
-            for (int j = 0; j < tbsReq.getExtensionsCount(); j++) {
-                Extension thisExt = tbsReq.getRequestExtensionAt(j);
+    /**
+     * Returns a previously signed OCSP response (DER) for the specified
+     * OCSP request, or null if the response is not available in the
+     * response cache.
+     *
+     * @param request an OCSP request
+     * @return the OCSP response or null
+     */
+    public byte[] getCachedResponse(OCSPRequest request) {
 
-                if (thisExt.getExtnId().equals(OCSPAuthority.OCSP_NONCE)) {
-                    nonce = new Extension[1];
-                    nonce[0] = thisExt;
-                }
-            }
+        Request cacheableRequest = getCacheableRequest(request);
+        if (cacheableRequest == null) {
+            return null;
+        }
 
-            ResponseData rd = new ResponseData(rid,
-                    new GeneralizedTime(new Date()), res, nonce);
+        byte[] response = mResponseCache.get(cacheableRequest);
+        if (response == null) {
+            return null;
+        }
 
-            if (statsSub != null) {
-                statsSub.endTiming("build_response");
-            }
+        logger.info("OCSPAuthority: Returning cached OCSP response");
+        incNumOCSPRequest(1);
 
-            if (statsSub != null) {
-                statsSub.startTiming("signing");
-            }
+        return response;
+    }
+
+    /**
+     * Invalidates the cached OCSP responses and signs them again
+     * in the background. This is called by the default OCSP store
+     * when its revocation information is updated.
+     */
+    public void refreshResponseCache() {
+
+        if (mResponseCache == null) {
+            return;
+        }
+
+        mResponseCache.refresh();
+    }
+
+    byte[] createCachedResponse(Request request) throws Exception {
 
-            long signStartTime = new Date().getTime();
+        SEQUENCE requestList = new SEQUENCE();
+        requestList.addElement(request);
 
-            BasicOCSPResponse basicRes = sign(rd);
+        TBSRequest tbsReq = new TBSRequest(null, null, requestList, null);
+        return ASN1Util.encode(createResponse(tbsReq));
+    }
 
-            long signEndTime = new Date().getTime();
-            incSignTime(signEndTime - signStartTime);
+    OCSPResponse createResponse(TBSRequest tbsReq) throws Exception {
 
-            if (statsSub != null) {
-                statsSub.endTiming("signing");
+        OCSPEngine engine = OCSPEngine.getInstance();
+        StatsSubsystem statsSub = (StatsSubsystem) engine.getSubsystem(StatsSubsystem.ID);
+
+        // (3) look into database to check the certificate's status
+        Vector<SingleResponse> singleResponses = new Vector<>();
+
+        if (statsSub != null) {
+            statsSub.startTiming("lookup");
+        }
+
+        long lookupStartTime = new Date().getTime();
+
+        for (int i = 0; i < tbsReq.getRequestCount(); i++) {
+            logger.info("OCSPAuthority: Processing request #" + i);
+
+            Request req = tbsReq.getRequestAt(i);
+            SingleResponse sr = mDefStore.processRequest(req);
+            singleResponses.addElement(sr);
+        }
+
+        long lookupEndTime = new Date().getTime();
+        incLookupTime(lookupEndTime - lookupStartTime);
+
+        if (statsSub != null) {
+            statsSub.endTiming("lookup");
+        }
+
+        if (statsSub != null) {
+            statsSub.startTiming("build_response");
+        }
+
+        SingleResponse res[] = new SingleResponse[singleResponses.size()];
+        singleResponses.copyInto(res);
+
+        ResponderID rid = null;
+
+        if (mDefStore.isByName()) {
+            rid = getResponderIDByName();
+        } else {
+            rid = getResponderIDByHash();
+        }
+
+        Extension nonce[] = null;
+
+        for (int j = 0; j < tbsReq.getExtensionsCount(); j++) {
+            Extension thisExt = tbsReq.getRequestExtensionAt(j);
+
+            if (thisExt.getExtnId().equals(OCSPAuthority.OCSP_NONCE)) {
+                nonce = new Extension[1];
+                nonce[0] = thisExt;
             }
+        }
 
-            response = new OCSPResponse(
-                    OCSPResponseStatus.SUCCESSFUL,
-                    new ResponseBytes(ResponseBytes.OCSP_BASIC,
-                            new OCTET_STRING(ASN1Util.encode(basicRes))));
+        ResponseData rd = new ResponseData(rid,
+                new GeneralizedTime(new Date()), res, nonce);
 
-        } catch (EBaseException e) {
-            logger.error(CMS.getLogMessage("OCSP_REQUEST_FAILURE", e.toString()), e);
-            throw e;
+        if (statsSub != null) {
+            statsSub.endTiming("build_response");
+        }
 
-        } catch (Exception e) {
-            logger.error(CMS.getLogMessage("OCSP_REQUEST_FAILURE", e.toString()), e);
-            throw new EBaseException(e);
+        if (statsSub != null) {
+            statsSub.startTiming("signing");
         }
 
-        logger.info("OCSPAuthority: Done validating OCSP request");
+        long signStartTime = new Date().getTime();
 
-        long endTime = new Date().getTime();
-        incTotalTime(endTime - startTime);
+        byte[] basicRes = signEncoded(rd);
 
-        mServedTime = mServedTime + (endTime - startTime);
+        long signEndTime = new Date().getTime();
+        incSignTime(signEndTime - signStartTime);
 
-        return response;
+        if (statsSub != null) {
+            statsSub.endTiming("signing");
+        }
+
+        return new OCSPResponse(
+                OCSPResponseStatus.SUCCESSFUL,
+                new ResponseBytes(ResponseBytes.OCSP_BASIC,
+                        new OCTET_STRING(basicRes)));
     }
 
     /**
@@ -485,6 +608,10 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
      */
     @Override
     public void shutdown() {
+
+        if (mResponseCache != null) {
+            mResponseCache.shutdown();
+        }
     }
 
     /**
@@ -532,44 +659,51 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
     public BasicOCSPResponse sign(ResponseData rd)
             throws EBaseException {
 
+        byte[] data = signEncoded(rd);
+
+        try {
+            return new BasicOCSPResponse(data);
+
+        } catch (InvalidBERException | IOException e) {
+            logger.error(CMS.getLogMessage("CMSCORE_OCSP_SIGN_RESPONSE", e.toString()), e);
+            throw new EBaseException(e);
+        }
+    }
+
+    /**
+     * This method signs the basic OCSP response data provided as a parameter
+     * and returns the encoded BasicOCSPResponse without decoding it again.
+     *
+     * @param rd response data
+     * @return encoded BasicOCSPResponse
+     * @exception EBaseException error associated with an inability to sign
+     *                the specified response data
+     */
+    public byte[] signEncoded(ResponseData rd)
+            throws EBaseException {
+
         OCSPEngine engine = OCSPEngine.getInstance();
 
-        try (DerOutputStream out = new DerOutputStream()) {
-            DerOutputStream tmp = new DerOutputStream();
+        try (DerOutputStream alg = new DerOutputStream()) {
 
             String algname = mSigningUnit.getDefaultAlgorithm();
 
+            // encode the response data once for both signing and output
             byte rd_data[] = ASN1Util.encode(rd);
             if (rd_data != null) {
-                mTotalData += rd_data.length;
+                mTotalData.add(rd_data.length);
             }
 
-            rd.encode(tmp);
-            AlgorithmId.get(algname).encode(tmp);
+            AlgorithmId.get(algname).encode(alg);
 
             logger.debug("OCSPAuthority: adding signature");
             byte[] signature = mSigningUnit.sign(rd_data, algname);
 
-            tmp.putBitString(signature);
             // XXX - optional, put the certificate chains in also
-
-            DerOutputStream tmpChain = new DerOutputStream();
-            DerOutputStream tmp1 = new DerOutputStream();
             java.security.cert.X509Certificate chains[] = mSigningUnit.getCertChain().getChain();
+            byte[] certs = mOCSPCodec.getEncodedCertChain(chains);
 
-            for (int i = 0; i < chains.length; i++) {
-                tmpChain.putDerValue(new DerValue(chains[i].getEncoded()));
-            }
-
-            tmp1.write(DerValue.tag_Sequence, tmpChain);
-            tmp.write(DerValue.createTag(DerValue.TAG_CONTEXT, true, (byte) 0),
-                    tmp1);
-
-            out.write(DerValue.tag_Sequence, tmp);
-
-            BasicOCSPResponse response = new BasicOCSPResponse(out.toByteArray());
-
-            return response;
+            return OCSPCodec.encodeBasicOCSPResponse(rd_data, alg.toByteArray(), signature, certs);
 
         } catch (NoSuchAlgorithmException e) {
             logger.error(CMS.getLogMessage("OPERATION_ERROR", e.toString()), e);
@@ -688,7 +822,7 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
      */
     @Override
     public long getNumOCSPRequest() {
-        return mNumOCSPRequest;
+        return mNumOCSPRequest.sum();
     }
 
     /**
@@ -699,7 +833,7 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
      */
     @Override
     public long getOCSPRequestTotalTime() {
-        return mTotalTime;
+        return mTotalTime.sum();
     }
 
     /**
@@ -710,12 +844,12 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
      */
     @Override
     public long getOCSPTotalSignTime() {
-        return mSignTime;
+        return mSignTime.sum();
     }
 
     @Override
     public long getOCSPTotalLookupTime() {
-        return mLookupTime;
+        return mLookupTime.sum();
     }
 
     /**
@@ -726,22 +860,33 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
      */
     @Override
     public long getOCSPTotalData() {
-        return mTotalData;
+        return mTotalData.sum();
+    }
+
+    @Override
+    public long getOCSPCacheHits() {
+        return mResponseCache == null ? 0 : mResponseCache.getHits();
+    }
+
+    @Override
+    public long getOCSPCacheMisses() {
+        return mResponseCache == null ? 0 : mResponseCache.getMisses();
     }
 
     public void incTotalTime(long inc) {
-        mTotalTime += inc;
+        mTotalTime.add(inc);
     }
 
     public void incSignTime(long inc) {
-        mSignTime += inc;
+        mSignTime.add(inc);
     }
 
     public void incLookupTime(long inc) {
-        mLookupTime += inc;
+        mLookupTime.add(inc);
     }
 
     public void incNumOCSPRequest(long inc) {
-        mNumOCSPRequest += inc;
+        mNumOCSPRequest.add(inc);
+        engine.getMetricsRegistry().add("ocsp_requests", inc);
     }
 }
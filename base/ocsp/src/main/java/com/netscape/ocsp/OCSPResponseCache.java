@@ -0,0 +1,350 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.ocsp;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.jss.asn1.ASN1Util;
+
+import com.netscape.cmsutil.ocsp.Request;
+
+/**
+ * This class keeps signed OCSP responses for requests that do not
+ * contain a nonce so that they can be returned without looking up
+ * the certificate status and signing the response again.
+ *
+ * Responses are keyed by the DER encoding of the CertID. A response is
+ * valid for a configurable period. Responses that are about to expire
+ * and responses invalidated by a CRL update are signed again in the
+ * background if they have been returned since they were signed.
+ * Otherwise they are removed.
+ *
+ * When the cache is full, expired responses are removed first. If the
+ * cache is still full, the least recently used responses are evicted.
+ */
+public class OCSPResponseCache {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OCSPResponseCache.class);
+
+    /**
+     * Creates a signed OCSP response (DER) for a single request.
+     */
+    public interface Generator {
+        byte[] generate(Request request) throws Exception;
+    }
+
+    static class Entry {
+
+        Request request;
+        byte[] response;
+        long creationTime;
+        long expiration;
+        volatile long lastAccess;
+
+        Entry(Request request, byte[] response, long creationTime, long expiration, long lastAccess) {
+            this.request = request;
+            this.response = response;
+            this.creationTime = creationTime;
+            this.expiration = expiration;
+            this.lastAccess = lastAccess;
+        }
+
+        /**
+         * Returns true if the response has not been returned since
+         * it was signed.
+         */
+        boolean isIdle() {
+            return lastAccess < creationTime;
+        }
+    }
+
+    private Generator generator;
+    private long validity;
+    private int maxEntries;
+
+    private Map<ByteBuffer, Entry> entries = new ConcurrentHashMap<>();
+
+    // incremented when the cached responses are invalidated so that
+    // responses created from the old data are not stored
+    private AtomicLong generation = new AtomicLong();
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong refreshes = new AtomicLong();
+    private AtomicLong evictions = new AtomicLong();
+
+    private Object evictionLock = new Object();
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param generator response generator
+     * @param validity validity of a cached response (in milliseconds)
+     * @param maxEntries maximum number of cached responses
+     */
+    public OCSPResponseCache(Generator generator, long validity, int maxEntries) {
+        this.generator = generator;
+        this.validity = validity;
+        this.maxEntries = maxEntries;
+    }
+
+    public void start() {
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "OCSPResponseCache");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // re-sign responses in the second half of their validity
+        long interval = Math.max(validity / 4, 1000);
+        executor.scheduleWithFixedDelay(this::refreshExpiring, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    static ByteBuffer createKey(Request request) {
+        return ByteBuffer.wrap(ASN1Util.encode(request.getCertID()));
+    }
+
+    /**
+     * Returns the cached response for the given request, or null
+     * if the response is not cached or has expired.
+     */
+    public byte[] get(Request request) {
+
+        ByteBuffer key = createKey(request);
+        Entry entry = entries.get(key);
+        long now = System.currentTimeMillis();
+
+        if (entry == null || entry.expiration <= now) {
+            if (entry != null) {
+                entries.remove(key, entry);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+
+        entry.lastAccess = now;
+        hits.incrementAndGet();
+        return entry.response;
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Stores a response created while the cache was at the given
+     * generation. The response is ignored if the cache has been
+     * invalidated in the meantime.
+     */
+    public void put(Request request, byte[] response, long generation) {
+
+        ByteBuffer key = createKey(request);
+        long now = System.currentTimeMillis();
+
+        if (generation != this.generation.get()) {
+            return;
+        }
+
+        // a refreshed response keeps the access time of the old one
+        // so that unused responses can still be evicted
+        Entry oldEntry = entries.get(key);
+        Entry entry = new Entry(request, response, now, now + validity,
+                oldEntry == null ? now : oldEntry.lastAccess);
+
+        if (oldEntry == null && entries.size() >= maxEntries) {
+            evict(now);
+        }
+
+        entries.put(key, entry);
+
+        // invalidated while the entry was being stored
+        if (generation != this.generation.get()) {
+            entries.remove(key, entry);
+        }
+    }
+
+    /**
+     * Removes expired responses. If the cache is still full, removes
+     * the least recently used responses so that subsequent responses
+     * can be stored without scanning the cache again.
+     */
+    void evict(long now) {
+
+        synchronized (evictionLock) {
+
+            // another thread has made room in the meantime
+            if (entries.size() < maxEntries) {
+                return;
+            }
+
+            int size = entries.size();
+            entries.values().removeIf(entry -> entry.expiration <= now);
+
+            int expired = size - entries.size();
+            if (expired > 0) {
+                logger.debug("OCSPResponseCache: Removed " + expired + " expired response(s)");
+            }
+
+            // leave room for 10% of the max entries
+            int count = entries.size() - maxEntries + Math.max(maxEntries / 10, 1);
+            if (count <= 0) {
+                return;
+            }
+
+            List<Map.Entry<ByteBuffer, Entry>> list = new ArrayList<>(entries.entrySet());
+            list.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+
+            int evicted = 0;
+            for (Map.Entry<ByteBuffer, Entry> e : list) {
+                if (evicted >= count) {
+                    break;
+                }
+                if (entries.remove(e.getKey(), e.getValue())) {
+                    evicted++;
+                }
+            }
+
+            evictions.addAndGet(evicted);
+            logger.debug("OCSPResponseCache: Evicted " + evicted + " least recently used response(s)");
+        }
+    }
+
+    /**
+     * Invalidates all cached responses (e.g. after a CRL update) and
+     * signs the responses that are still in use again in the background.
+     */
+    public void refresh() {
+
+        generation.incrementAndGet();
+
+        List<Request> requests = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (!entry.isIdle()) {
+                requests.add(entry.request);
+            }
+        }
+        entries.clear();
+
+        logger.info("OCSPResponseCache: Refreshing " + requests.size() + " response(s)");
+
+        ScheduledExecutorService executor = this.executor;
+        if (executor == null) {
+            return;
+        }
+
+        executor.execute(() -> {
+            for (Request request : requests) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                generate(request);
+            }
+        });
+    }
+
+    /**
+     * Signs the responses in the second half of their validity again
+     * if they have been returned since they were signed. The idle
+     * responses are removed instead.
+     */
+    void refreshExpiring() {
+
+        long threshold = System.currentTimeMillis() + validity / 2;
+        int removed = 0;
+
+        for (Map.Entry<ByteBuffer, Entry> e : entries.entrySet()) {
+
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+
+            Entry entry = e.getValue();
+            if (entry.expiration > threshold) {
+                continue;
+            }
+
+            if (entry.isIdle()) {
+                if (entries.remove(e.getKey(), entry)) {
+                    removed++;
+                }
+                continue;
+            }
+
+            generate(entry.request);
+        }
+
+        if (removed > 0) {
+            logger.debug("OCSPResponseCache: Removed " + removed + " idle response(s)");
+        }
+    }
+
+    void generate(Request request) {
+
+        long generation = getGeneration();
+
+        try {
+            byte[] response = generator.generate(request);
+            put(request, response, generation);
+            refreshes.incrementAndGet();
+
+        } catch (Exception e) {
+            logger.warn("OCSPResponseCache: Unable to refresh OCSP response: " + e.getMessage(), e);
+            entries.remove(createKey(request));
+        }
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
@@ -29,4 +29,11 @@ public class OCSPConfig extends ConfigStore {
     public SigningUnitConfig getSigningUnitConfig() {
         return getSubStore("signing", SigningUnitConfig.class);
     }
+
+    /**
+     * Returns ocsp.responseCache.* parameters.
+     */
+    public OCSPResponseCacheConfig getResponseCacheConfig() {
+        return getSubStore("responseCache", OCSPResponseCacheConfig.class);
+    }
 }
@@ -0,0 +1,58 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.ocsp;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.base.ConfigStorage;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.base.SimpleProperties;
+
+/**
+ * Provides ocsp.responseCache.* parameters.
+ */
+public class OCSPResponseCacheConfig extends ConfigStore {
+
+    public OCSPResponseCacheConfig(ConfigStorage storage) {
+        super(storage);
+    }
+
+    public OCSPResponseCacheConfig(String name, SimpleProperties source) {
+        super(name, source);
+    }
+
+    /**
+     * Returns ocsp.responseCache.enable parameter.
+     */
+    public boolean getEnable() throws EBaseException {
+        return getBoolean("enable", false);
+    }
+
+    public void setEnable(boolean enable) {
+        putBoolean("enable", enable);
+    }
+
+    /**
+     * Returns ocsp.responseCache.validity parameter (in seconds).
+     */
+    public int getValidity() throws EBaseException {
+        return getInteger("validity", 300);
+    }
+
+    public void setValidity(int validity) {
+        putInteger("validity", validity);
+    }
+
+    /**
+     * Returns ocsp.responseCache.maxEntries parameter.
+     */
+    public int getMaxEntries() throws EBaseException {
+        return getInteger("maxEntries", 100000);
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        putInteger("maxEntries", maxEntries);
+    }
+}
@@ -0,0 +1,17 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.ocsp.rest.v2;
+
+import javax.servlet.annotation.WebServlet;
+
+import org.dogtagpki.server.rest.v2.MetricsServlet;
+
+@WebServlet(
+        name = "ocspMetrics",
+        urlPatterns = "/v2/metrics/*")
+public class OCSPMetricsServlet extends MetricsServlet {
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,15 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.ocsp.rest.v2.filters;
+
+import javax.servlet.annotation.WebFilter;
+
+import org.dogtagpki.server.rest.v2.filters.MetricsACL;
+
+@WebFilter(servletNames = "ocspMetrics")
+public class OCSPMetricsACL extends MetricsACL {
+    private static final long serialVersionUID = 1L;
+}
@@ -57,4 +57,24 @@ public interface IOCSPService {
      * @return processed times for OCSP requests
      */
     public long getOCSPTotalData();
+
+    /**
+     * Returns the number of OCSP requests served
+     * from the OCSP response cache.
+     *
+     * @return number of cache hits
+     */
+    public default long getOCSPCacheHits() {
+        return 0;
+    }
+
+    /**
+     * Returns the number of cacheable OCSP requests
+     * not found in the OCSP response cache.
+     *
+     * @return number of cache misses
+     */
+    public default long getOCSPCacheMisses() {
+        return 0;
+    }
 }
@@ -96,4 +96,10 @@ public abstract class Publisher {
      */
     public abstract void unpublish(LDAPConnection conn, String dn, Object object)
             throws DBException;
+
+    /**
+     * Releases the resources used by the publisher.
+     */
+    public void shutdown() {
+    }
 }
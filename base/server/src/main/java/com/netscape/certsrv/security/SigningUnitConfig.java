@@ -89,6 +89,15 @@ public class SigningUnitConfig extends ConfigStore {
         return fullName;
     }
 
+    /**
+     * Returns the maximum number of signature contexts per signature
+     * algorithm that can be used concurrently. The default is 0 which
+     * creates a new signature context for each signature.
+     */
+    public int getSignaturePoolSize() throws EBaseException {
+        return getInteger("signaturePoolSize", 0);
+    }
+
     public boolean getTestSignatureFailure() throws EBaseException {
         return getBoolean("testSignatureFailure", false);
     }
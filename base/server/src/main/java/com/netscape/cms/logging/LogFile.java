@@ -33,6 +33,7 @@ import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -43,14 +44,22 @@ import java.security.Signature;
 import java.security.SignatureException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.servlet.ServletException;
 
@@ -146,7 +155,19 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
     /**
      * The number of bytes written to the current log file
      */
-    protected int mBytesWritten = 0;
+    protected volatile int mBytesWritten = 0;
+
+    /**
+     * The number of bytes queued in async mode but not written yet
+     */
+    private AtomicInteger mBytesQueued = new AtomicInteger();
+
+    /**
+     * The lock for the log writer and the signature. The writer thread
+     * only needs this lock in async mode, so it can write the queued
+     * entries while callers hold the LogFile monitor.
+     */
+    protected final Object mWriteLock = new Object();
 
     /**
      * The output buffer size in bytes
@@ -168,6 +189,39 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      */
     private Thread mFlushThread = null;
 
+    /**
+     * Write entries asynchronously
+     */
+    protected boolean mAsync = false;
+
+    /**
+     * The max number of entries waiting to be written in async mode
+     */
+    protected int mQueueSize = LoggerConfig.DEFAULT_QUEUE_SIZE;
+
+    /**
+     * The max time in milliseconds to wait for space in the queue
+     */
+    protected int mQueueTimeout = LoggerConfig.DEFAULT_QUEUE_TIMEOUT;
+
+    /**
+     * The entries waiting to be written in async mode
+     */
+    private BlockingQueue<AsyncEntry> mQueue;
+
+    /**
+     * The thread writing the queued entries in async mode
+     */
+    private volatile AsyncWriterThread mWriterThread;
+
+    /**
+     * The lock for queueing entries in async mode. Callers hold the
+     * read lock while adding an entry into the queue, and stopWriter()
+     * holds the write lock while switching to synchronous mode, so
+     * no entry is queued after the writer thread has stopped.
+     */
+    private final ReadWriteLock mQueueLock = new ReentrantReadWriteLock();
+
     /**
      * The mandatory log event types
      */
@@ -303,7 +357,9 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
             Auditor auditor = engine.getAuditor();
             try {
                 logger.debug("LogFile: setting up log signing");
-                setupSigning();
+                synchronized (mWriteLock) {
+                    setupSigning();
+                }
 
                 auditor.log(CMS.getLogMessage(
                         AuditEvent.AUDIT_LOG_STARTUP,
@@ -372,18 +428,23 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
 
     private static boolean mInSignedAuditLogFailureMode = false;
 
-    private synchronized void shutdownCMS() {
-        if (mInSignedAuditLogFailureMode == false) {
+    private void shutdownCMS() {
+
+        // Not synchronized on this LogFile since the writer thread
+        // might call this method while a caller holds the monitor.
+        synchronized (LogFile.class) {
+            if (mInSignedAuditLogFailureMode) {
+                // We just want to avoid an infinite loop.
+                return;
+            }
 
             // Set signed audit log failure mode true
-            // No, this isn't a race condition, because the method is
-            // synchronized. We just want to avoid an infinite loop.
             mInSignedAuditLogFailureMode = true;
+        }
 
-            logger.error("LogFile: Disabling subsystem due to signed logging failure");
+        logger.error("LogFile: Disabling subsystem due to signed logging failure");
 
-            engine.disableSubsystem();
-        }
+        engine.disableSubsystem();
     }
 
     /**
@@ -419,6 +480,10 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
 
         mLevel = config.getLevel();
 
+        mAsync = config.getAsync();
+        mQueueSize = config.getQueueSize();
+        mQueueTimeout = config.getQueueTimeout();
+
         try {
             String subsystem = engine.getID();
             String instID = CMS.getInstanceID();
@@ -486,6 +551,75 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
         mBufferSize = bufferSize;
         setFlushInterval(flushInterval);
         open();
+
+        if (mAsync) {
+            startWriter();
+        }
+    }
+
+    /**
+     * Start writing the log entries asynchronously. The entries are
+     * formatted by the calling thread and added into a bounded queue.
+     * The writer thread writes the queued entries in batches and
+     * updates the signature once per batch.
+     */
+    protected synchronized void startWriter() {
+
+        if (mWriterThread != null) {
+            return;
+        }
+
+        logger.debug("LogFile: Writing " + mFileName + " asynchronously");
+        logger.debug("LogFile: - queue size: " + mQueueSize);
+        logger.debug("LogFile: - queue timeout: " + mQueueTimeout);
+
+        mQueue = new ArrayBlockingQueue<>(mQueueSize);
+
+        mWriterThread = new AsyncWriterThread();
+        mWriterThread.setDaemon(true);
+        mWriterThread.start();
+    }
+
+    /**
+     * Stop writing the log entries asynchronously. The queued entries
+     * are written before this method returns.
+     */
+    protected synchronized void stopWriter() {
+
+        AsyncWriterThread writerThread = mWriterThread;
+        if (writerThread == null) {
+            return;
+        }
+
+        // new entries will be written synchronously, wait for
+        // the callers that are still adding entries into the queue
+        mQueueLock.writeLock().lock();
+        try {
+            mWriterThread = null;
+        } finally {
+            mQueueLock.writeLock().unlock();
+        }
+
+        writerThread.stopping = true;
+        writerThread.interrupt();
+
+        // wait() releases the monitor in case the writer thread
+        // needs it to shut down the subsystem after a failure
+        while (writerThread.isAlive()) {
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+
+        // write entries queued after the writer thread stopped
+        List<AsyncEntry> batch = new ArrayList<>();
+        mQueue.drainTo(batch);
+
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
     }
 
     private PrivateKey mSigningKey = null;
@@ -690,6 +824,12 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      *
      */
     protected synchronized void open() throws IOException {
+        synchronized (mWriteLock) {
+            doOpen();
+        }
+    }
+
+    private void doOpen() throws IOException {
         RandomAccessFile out;
 
         try {
@@ -743,27 +883,29 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      *
      */
     @Override
-    public synchronized void flush() {
-        try {
-            if (mLogSigning) {
-                pushSignature();
-            }
+    public void flush() {
+        synchronized (mWriteLock) {
+            try {
+                if (mLogSigning) {
+                    pushSignature();
+                }
 
-            if (mLogWriter != null) {
-                mLogWriter.flush();
-            }
+                if (mLogWriter != null) {
+                    mLogWriter.flush();
+                }
 
-        } catch (Exception e) {
-            String message = CMS.getUserMessage("CMS_LOG_FLUSH_LOG_FAILED", mFileName, e.getMessage());
-            logger.error("LogFile: " + message, e);
-            System.err.println(message);
-            if (mLogSigning) {
-                e.printStackTrace();
-                shutdownCMS();
+            } catch (Exception e) {
+                String message = CMS.getUserMessage("CMS_LOG_FLUSH_LOG_FAILED", mFileName, e.getMessage());
+                logger.error("LogFile: " + message, e);
+                System.err.println(message);
+                if (mLogSigning) {
+                    e.printStackTrace();
+                    shutdownCMS();
+                }
             }
-        }
 
-        mBytesUnflushed = 0;
+            mBytesUnflushed = 0;
+        }
     }
 
     /**
@@ -771,15 +913,33 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      *
      */
     protected synchronized void close() {
-        try {
-            flush();
-            if (mLogWriter != null) {
-                mLogWriter.close();
+        synchronized (mWriteLock) {
+            try {
+                flush();
+                if (mLogWriter != null) {
+                    mLogWriter.close();
+                }
+            } catch (IOException e) {
+                System.err.println(CMS.getUserMessage("CMS_LOG_CLOSE_FAILED", mFileName, e.toString()));
             }
-        } catch (IOException e) {
-            System.err.println(CMS.getUserMessage("CMS_LOG_CLOSE_FAILED", mFileName, e.toString()));
+            mLogWriter = null;
         }
-        mLogWriter = null;
+    }
+
+    /**
+     * Returns the number of bytes written to the current log file
+     * including the entries queued in async mode.
+     */
+    protected int getBytesWritten() {
+        return mBytesWritten + mBytesQueued.get();
+    }
+
+    /**
+     * Returns the number of entries waiting to be written in async mode.
+     */
+    int getQueueSize() {
+        BlockingQueue<AsyncEntry> queue = mQueue;
+        return queue == null ? 0 : queue.size();
     }
 
     /**
@@ -808,6 +968,7 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
 
         auditor.log(auditMessage);
 
+        stopWriter();
         close();
     }
 
@@ -873,12 +1034,268 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
     }
 
     /**
-     * Synchronized method to write an event to the log file.
+     * Log entry formatted by the calling thread in async mode.
+     */
+    static class AsyncEntry {
+
+        String entry;
+        String trace;
+
+        AsyncEntry(String entry, String trace) {
+            this.entry = entry;
+            this.trace = trace;
+        }
+    }
+
+    /**
+     * Log writer thread. Take the queued entries in batches and write
+     * them into the log file. The log is flushed (and signed) when the
+     * queue is empty or the buffer is full.
+     */
+    final class AsyncWriterThread extends Thread {
+
+        volatile boolean stopping;
+
+        public AsyncWriterThread() {
+            super();
+            super.setName(mFileName + ".writer-" + (Thread.activeCount() + 1));
+        }
+
+        @Override
+        public void run() {
+
+            List<AsyncEntry> batch = new ArrayList<>();
+
+            while (true) {
+                AsyncEntry entry;
+                try {
+                    entry = stopping ? mQueue.poll() : mQueue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // shutdown
+                    continue;
+                }
+
+                if (entry == null) {
+                    if (stopping) {
+                        break;
+                    }
+                    continue;
+                }
+
+                batch.add(entry);
+                mQueue.drainTo(batch, mQueueSize);
+
+                writeBatch(batch);
+                batch.clear();
+
+                if (mQueue.isEmpty() || mBufferSize > 0 && mBytesUnflushed > mBufferSize) {
+                    flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Write an event to the log file. In async mode the event is
+     * added into the queue, otherwise it is written immediately.
      *
      * @param event The log event
      */
-    protected synchronized void doLog(LogEvent event) throws ELogException {
-        doLog(event, false);
+    protected void doLog(LogEvent event) throws ELogException {
+
+        boolean async;
+        boolean queued = false;
+
+        // see stopWriter()
+        mQueueLock.readLock().lock();
+        try {
+            async = mWriterThread != null;
+            if (async) {
+                queued = queue(event);
+            }
+        } finally {
+            mQueueLock.readLock().unlock();
+        }
+
+        if (!async) {
+            doLog(event, false);
+            return;
+        }
+
+        if (queued) {
+            return;
+        }
+
+        // handle the failure without the queue lock
+        // since shutting down the subsystem stops the writer
+        String message = CMS.getUserMessage("CMS_LOG_WRITE_FAILED", mFileName, logEvt2String(event), "Log queue is full");
+        logger.error("LogFile: " + message);
+        System.err.println(message);
+        if (mLogSigning) {
+            // Failed to write to audit log, shut down CMS
+            shutdownCMS();
+        }
+        throw new ELogException(message);
+    }
+
+    /**
+     * Add an event into the queue in async mode.
+     *
+     * @return false if the queue is still full after the queue timeout
+     */
+    private boolean queue(LogEvent event) {
+
+        // format the entry in the calling thread since it
+        // includes the thread name and the stack trace
+        String entry = logEvt2String(event);
+
+        String trace = null;
+        if (mTrace) {
+            try {
+                trace = getTraceInfo();
+            } catch (IOException e) {
+                logger.warn("LogFile: Unable to get trace info: " + e.getMessage(), e);
+            }
+        }
+
+        // count the entry before it is queued so that the log can be
+        // rotated before the writer thread catches up (see writeBatch())
+        int nBytes = entry.length() + 1;
+        mBytesQueued.addAndGet(nBytes);
+
+        boolean queued;
+        try {
+            queued = mQueue.offer(new AsyncEntry(entry, trace), mQueueTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+
+        if (!queued) {
+            mBytesQueued.addAndGet(-nBytes);
+        }
+
+        return queued;
+    }
+
+    /**
+     * Returns the source file, line number, and method name of
+     * the caller of the logging framework.
+     */
+    private String getTraceInfo() throws IOException {
+
+        CharArrayWriter cw = new CharArrayWriter(200);
+        PrintWriter pw = new PrintWriter(cw);
+        Exception e = new Exception();
+        e.printStackTrace(pw);
+        char[] c = cw.toCharArray();
+        cw.close();
+        pw.close();
+
+        CharArrayReader cr = new CharArrayReader(c);
+        LineNumberReader lr = new LineNumberReader(cr);
+
+        String text = null;
+        String method = null;
+        String fileAndLine = null;
+        if (!lr.ready()) {
+            return null;
+        }
+
+        text = lr.readLine();
+        do {
+            text = lr.readLine();
+        } while (text.indexOf("logging") != -1);
+        int p = text.indexOf("(");
+        fileAndLine = text.substring(p);
+
+        String classandmethod = text.substring(0, p);
+        int q = classandmethod.lastIndexOf(".");
+        method = classandmethod.substring(q + 1);
+
+        return fileAndLine + " " + method;
+    }
+
+    /**
+     * Write a batch of queued entries with a single write and
+     * a single signature update.
+     */
+    private void writeBatch(List<AsyncEntry> batch) {
+        synchronized (mWriteLock) {
+            doWriteBatch(batch);
+        }
+    }
+
+    private void doWriteBatch(List<AsyncEntry> batch) {
+
+        int nBytes = 0;
+        for (AsyncEntry asyncEntry : batch) {
+            // see doLog(LogEvent)
+            nBytes += asyncEntry.entry.length() + 1;
+        }
+
+        // the queued entries have been counted in mBytesQueued
+        mBytesQueued.addAndGet(-nBytes);
+
+        if (mLogWriter == null) {
+            String message = CMS.getUserMessage("CMS_LOG_LOGFILE_CLOSED", mFileName, batch.get(0).entry);
+            logger.error("LogFile: " + message);
+            System.err.println(message);
+            if (mLogSigning) {
+                // Failed to write to audit log, shut down CMS
+                shutdownCMS();
+            }
+            return;
+        }
+
+        String lineSeparator = System.lineSeparator();
+        StringBuilder text = new StringBuilder();
+        ByteArrayOutputStream signedData = new ByteArrayOutputStream();
+
+        for (AsyncEntry asyncEntry : batch) {
+
+            text.append(asyncEntry.entry);
+            if (asyncEntry.trace != null) {
+                text.append(asyncEntry.trace);
+            }
+            text.append(lineSeparator);
+
+            if (mLogSigning) {
+                // include newline for calculating MAC
+                signedData.writeBytes(asyncEntry.entry.getBytes(StandardCharsets.UTF_8));
+                signedData.write(LINE_SEP_BYTE);
+            }
+        }
+
+        try {
+            mLogWriter.write(text.toString());
+
+            if (mLogSigning) {
+                if (mSignature != null) {
+                    mSignature.update(signedData.toByteArray());
+                } else {
+                    logger.warn("LogFile: missing audit log signature");
+                }
+            }
+
+        } catch (IOException e) {
+            String message = CMS.getUserMessage("CMS_LOG_WRITE_FAILED", mFileName, batch.get(0).entry, e.getMessage());
+            logger.error("LogFile: " + message);
+            System.err.println(message);
+            if (mLogSigning) {
+                // Failed to write to audit log, shut down CMS
+                e.printStackTrace();
+                shutdownCMS();
+            }
+
+        } catch (GeneralSecurityException gse) {
+            String message = CMS.getLogMessage(LOG_SIGNED_AUDIT_EXCEPTION, gse.getMessage());
+            logger.error("LogFile: " + message, gse);
+            System.err.println(Thread.currentThread().getName() + ": " + message);
+        }
+
+        mBytesWritten += nBytes;
+        mBytesUnflushed += nBytes;
     }
 
     // Standard line separator byte. We always sign this line separator,
@@ -891,7 +1308,14 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
      * by subclasses, so you can call it and know that it will do exactly
      * what you see below.
      */
-    private synchronized void doLog(LogEvent event, boolean noFlush)
+    private void doLog(LogEvent event, boolean noFlush)
+            throws ELogException {
+        synchronized (mWriteLock) {
+            doWrite(event, noFlush);
+        }
+    }
+
+    private void doWrite(LogEvent event, boolean noFlush)
             throws ELogException {
 
         String entry = logEvt2String(event);
@@ -921,34 +1345,9 @@ public class LogFile extends LogEventListener implements IExtendedPluginInfo {
                 }
             }
             if (mTrace) {
-                CharArrayWriter cw = new CharArrayWriter(200);
-                PrintWriter pw = new PrintWriter(cw);
-                Exception e = new Exception();
-                e.printStackTrace(pw);
-                char[] c = cw.toCharArray();
-                cw.close();
-                pw.close();
-
-                CharArrayReader cr = new CharArrayReader(c);
-                LineNumberReader lr = new LineNumberReader(cr);
-
-                String text = null;
-                String method = null;
-                String fileAndLine = null;
-                if (lr.ready()) {
-                    text = lr.readLine();
-                    do {
-                        text = lr.readLine();
-                    } while (text.indexOf("logging") != -1);
-                    int p = text.indexOf("(");
-                    fileAndLine = text.substring(p);
-
-                    String classandmethod = text.substring(0, p);
-                    int q = classandmethod.lastIndexOf(".");
-                    method = classandmethod.substring(q + 1);
-                    mLogWriter.write(fileAndLine, 0/*offset*/, fileAndLine.length());
-                    mLogWriter.write(" ", 0/*offset*/, " ".length());
-                    mLogWriter.write(method, 0/*offset*/, method.length());
+                String trace = getTraceInfo();
+                if (trace != null) {
+                    mLogWriter.write(trace, 0/*offset*/, trace.length());
                 }
             }
             mLogWriter.newLine();
@@ -218,6 +218,14 @@ public class RollingLogFile extends LogFile {
     public synchronized void rotate()
             throws IOException {
 
+        // keep the writer thread out until the log file is reopened
+        synchronized (mWriteLock) {
+            doRotate();
+        }
+    }
+
+    private void doRotate() throws IOException {
+
         File backupFile = new File(mFileName + "." + mLogFileDateFormat.format(mDate));
 
         // close, backup, and reopen the log file zeroizing its contents
@@ -414,7 +422,7 @@ public class RollingLogFile extends LogFile {
                     break;
                 }
 
-                if (mBytesWritten > 0) {
+                if (getBytesWritten() > 0) {
                     try {
                         rotate();
                     } catch (IOException e) {
@@ -494,11 +502,24 @@ public class RollingLogFile extends LogFile {
      * @param ev The event to be logged.
      **/
     @Override
-    public synchronized void log(LogEvent ev) throws ELogException {
+    public void log(LogEvent ev) throws ELogException {
         //xxx, Shall we log first without checking if it exceed the maximum?
+
+        // Not synchronized so that the event can be queued in async mode
+        // without holding the monitor.
         super.log(ev); // Will increment mBytesWritten
 
-        if ((0 != mMaxFileSize) && (mBytesWritten > mMaxFileSize)) {
+        if ((0 == mMaxFileSize) || (getBytesWritten() <= mMaxFileSize)) {
+            return;
+        }
+
+        synchronized (this) {
+
+            // another thread might have rotated the log
+            if (getBytesWritten() <= mMaxFileSize) {
+                return;
+            }
+
             flush();
             try {
                 rotate();
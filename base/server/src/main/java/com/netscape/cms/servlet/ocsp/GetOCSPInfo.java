@@ -139,6 +139,8 @@ public class GetOCSPInfo extends CMSServlet {
         header.addLongValue("totalSignSec", ca.getOCSPTotalSignTime());
         header.addLongValue("totalLookupSec", ca.getOCSPTotalLookupTime());
         header.addLongValue("totalData", ca.getOCSPTotalData());
+        header.addLongValue("cacheHits", ca.getOCSPCacheHits());
+        header.addLongValue("cacheMisses", ca.getOCSPCacheMisses());
         long secs = 0;
 
         if (ca.getOCSPRequestTotalTime() != 0) {
@@ -43,6 +43,7 @@ import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmscore.logging.Auditor;
 import com.netscape.cmscore.util.StatsSubsystem;
 import com.netscape.cmsutil.ocsp.BasicOCSPResponse;
+import com.netscape.cmsutil.ocsp.OCSPCodec;
 import com.netscape.cmsutil.ocsp.OCSPRequest;
 import com.netscape.cmsutil.ocsp.OCSPResponse;
 import com.netscape.cmsutil.ocsp.ResponseBytes;
@@ -95,6 +96,14 @@ public class OCSPServlet extends CMSServlet {
         return null;
     }
 
+    /**
+     * Returns a previously signed OCSP response (DER) for the OCSP request,
+     * or null if the response has to be created by validate().
+     */
+    public byte[] getCachedResponse(OCSPRequest ocspRequest) throws Exception {
+        return null;
+    }
+
     /**
      * Process the HTTP request.
      * This method is invoked when the OCSP service receives a OCSP
@@ -199,18 +208,16 @@ public class OCSPServlet extends CMSServlet {
                         (pathInfo.substring(1).equals(""))) {
                     throw new Exception("OCSPServlet: OCSP request not provided in GET method");
                 }
-                is = new ByteArrayInputStream(
-                        Utils.base64decode(pathInfo.substring(1)));
+                reqbuf = Utils.base64decode(pathInfo.substring(1));
+                is = new ByteArrayInputStream(reqbuf);
             }
 
             // (1) retrieve OCSP request
             // (2) decode request
             OCSPResponse response = null;
+            byte[] respbytes = null;
 
             try {
-                OCSPRequest.Template reqTemplate =
-                        new OCSPRequest.Template();
-
                 if ((is == null) ||
                         (is.toString().equals(""))) {
                     throw new Exception("OCSPServlet: OCSP request is "
@@ -218,7 +225,12 @@ public class OCSPServlet extends CMSServlet {
                 }
 
                 logger.debug("OCSPServlet: decoding request");
-                ocspReq = (OCSPRequest) reqTemplate.decode(is);
+                ocspReq = OCSPCodec.decodeRequest(reqbuf);
+
+                if (ocspReq == null) {
+                    logger.debug("OCSPServlet: decoding request with generic decoder");
+                    ocspReq = (OCSPRequest) OCSPRequest.getTemplate().decode(is);
+                }
 
                 if (logger.isDebugEnabled()) {
                     logger.debug("OCSPServlet: OCSP Request:");
@@ -239,10 +251,16 @@ public class OCSPServlet extends CMSServlet {
                     logger.info("OCSPServlet: - " + certID.toHexString());
                 }
 
-                logger.debug("OCSPServlet: validating request");
-                response = validate(ocspReq);
+                respbytes = getCachedResponse(ocspReq);
 
-                if (response == null) {
+                if (respbytes == null) {
+                    logger.debug("OCSPServlet: validating request");
+                    response = validate(ocspReq);
+                } else {
+                    logger.debug("OCSPServlet: using cached response");
+                }
+
+                if (response == null && respbytes == null) {
                     auditor.log(OCSPGenerationEvent.createFailureEvent(auditSubjectID(), "Missing OCSP response"));
 
                 } else {
@@ -260,8 +278,6 @@ public class OCSPServlet extends CMSServlet {
                 response.encode(fos1);
                 fos1.close();
 
-                byte[] respbytes;
-
                 respbytes = fos1.toByteArray();
 
                 // print out OCSP response in debug mode so that
@@ -299,7 +315,9 @@ public class OCSPServlet extends CMSServlet {
                         }
                     }
                 }
+            }
 
+            if (respbytes != null) {
                 httpResp.setContentType("application/ocsp-response");
 
                 httpResp.setContentLength(respbytes.length);
@@ -110,6 +110,7 @@ import com.netscape.cmscore.usrgrp.Group;
 import com.netscape.cmscore.usrgrp.UGSubsystem;
 import com.netscape.cmscore.usrgrp.UGSubsystemConfig;
 import com.netscape.cmscore.util.Debug;
+import com.netscape.cmscore.util.MetricsRegistry;
 import com.netscape.cmsutil.crypto.CryptoUtil;
 import com.netscape.cmsutil.password.PasswordStore;
 import com.netscape.cmsutil.password.PasswordStoreConfig;
@@ -173,6 +174,7 @@ public class CMSEngine {
     protected AuthzSubsystem authzSubsystem;
     protected CMSGateway gateway;
     protected JobsScheduler jobsScheduler;
+    protected MetricsRegistry metricsRegistry = new MetricsRegistry();
 
     public final Map<String, SubsystemInfoConfig> subsystemInfos = new LinkedHashMap<>();
     public final Map<String, Subsystem> subsystems = new LinkedHashMap<>();
@@ -252,6 +254,13 @@ public class CMSEngine {
         return dbSubsystem;
     }
 
+    /**
+     * Returns the counters and latency histograms of this engine.
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
     public RequestRepository getRequestRepository() {
         return requestRepository;
     }
@@ -768,6 +777,7 @@ public class CMSEngine {
         dbSubsystem = new DBSubsystem();
         dbSubsystem.setEngineConfig(config);
         dbSubsystem.setSocketFactory(socketFactory);
+        dbSubsystem.setMetricsRegistry(metricsRegistry);
         dbSubsystem.init(dbConfig, ldapConfig, passwordStore);
     }
 
@@ -1377,7 +1387,7 @@ public class CMSEngine {
         }
         socketFactory.init(socketConfig);
 
-        LdapBoundConnFactory connFactory = new LdapBoundConnFactory(id);
+        LdapBoundConnFactory connFactory = LdapBoundConnFactory.create(id, false, ldapConfig);
         connFactory.setSocketFactory(socketFactory);
         connFactory.setPasswordStore(getPasswordStore());
         connFactory.init(ldapConfig);
@@ -1528,6 +1538,17 @@ public class CMSEngine {
         authSubsystem.shutdown();
     }
 
+    public void shutdownRequestNotifiers() {
+
+        if (requestNotifier != null) {
+            requestNotifier.shutdown();
+        }
+
+        if (pendingNotifier != null) {
+            pendingNotifier.shutdown();
+        }
+    }
+
     public void shutdownRequestSubsystem() {
         if (requestSubsystem == null) return;
         requestSubsystem.shutdown();
@@ -1622,6 +1643,7 @@ public class CMSEngine {
             mSecurityDomainSessionTable.shutdown();
         }
 
+        shutdownRequestNotifiers();
         shutdownRequestSubsystem();
         shutdownX500NameSubsystem();
         shutdownOIDLoaderSubsystem();
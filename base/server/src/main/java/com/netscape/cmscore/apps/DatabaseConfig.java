@@ -86,6 +86,28 @@ public class DatabaseConfig extends ConfigStore {
         putString("newSchemaEntryAdded", newSchemaEntryAdded);
     }
 
+    /**
+     * Returns the format of the CRL cache attributes in CRL issuing
+     * point records: serialized (default) or binary. The binary format
+     * cannot be read by older versions, so it should only be enabled
+     * once all clones have been upgraded.
+     */
+    public String getCRLCacheFormat() throws EBaseException {
+        return getString("crlCacheFormat", "serialized");
+    }
+
+    public void setCRLCacheFormat(String crlCacheFormat) {
+        putString("crlCacheFormat", crlCacheFormat);
+    }
+
+    public boolean getCRLCacheCompression() throws EBaseException {
+        return getBoolean("crlCacheCompression", true);
+    }
+
+    public void setCRLCacheCompression(boolean crlCacheCompression) {
+        putBoolean("crlCacheCompression", crlCacheCompression);
+    }
+
     public boolean getEnableSerialNumberRecovery() throws EBaseException {
         return getBoolean(ENABLE_SERIAL_NUMBER_RECOVERY, true);
     }
@@ -0,0 +1,111 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+/**
+ * This class represents a set of changes to one of the CRL cache
+ * attributes of a CRL issuing point record (e.g. revokedCerts).
+ *
+ * A delta is stored by RevokedCertsMapper as an additional value of
+ * the attribute so the existing values do not have to be rewritten.
+ * When the attribute is read the deltas are applied on top of the
+ * full snapshot in sequence number order.
+ */
+public class CRLCacheDelta {
+
+    private static final AtomicLong lastSequenceNumber = new AtomicLong();
+
+    private long sequenceNumber;
+    private Map<BigInteger, RevokedCertificate> addedCerts = new LinkedHashMap<>();
+    private Set<BigInteger> removedCerts = new LinkedHashSet<>();
+
+    public CRLCacheDelta() {
+        sequenceNumber = nextSequenceNumber();
+    }
+
+    public CRLCacheDelta(long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    /**
+     * Returns a unique, increasing sequence number. The number is based
+     * on the current time so that deltas appended after a restart are
+     * ordered after the deltas appended before it.
+     */
+    static long nextSequenceNumber() {
+        return lastSequenceNumber.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+    }
+
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public void addCert(BigInteger serialNumber, RevokedCertificate revokedCert) {
+        removedCerts.remove(serialNumber);
+        addedCerts.put(serialNumber, revokedCert);
+    }
+
+    public void removeCert(BigInteger serialNumber) {
+        addedCerts.remove(serialNumber);
+        removedCerts.add(serialNumber);
+    }
+
+    /**
+     * Records the current state of a serial number in the given table,
+     * i.e. adds the entry if it exists, otherwise removes it.
+     */
+    public void updateCert(BigInteger serialNumber, Map<BigInteger, RevokedCertificate> certs) {
+        RevokedCertificate revokedCert = certs.get(serialNumber);
+        if (revokedCert == null) {
+            removeCert(serialNumber);
+        } else {
+            addCert(serialNumber, revokedCert);
+        }
+    }
+
+    public Map<BigInteger, RevokedCertificate> getAddedCerts() {
+        return addedCerts;
+    }
+
+    public Set<BigInteger> getRemovedCerts() {
+        return removedCerts;
+    }
+
+    public boolean isEmpty() {
+        return addedCerts.isEmpty() && removedCerts.isEmpty();
+    }
+
+    /**
+     * Applies the changes to the given table.
+     */
+    public void apply(Map<BigInteger, RevokedCertificate> certs) {
+        for (BigInteger serialNumber : removedCerts) {
+            certs.remove(serialNumber);
+        }
+        certs.putAll(addedCerts);
+    }
+}
@@ -316,6 +316,25 @@ public class DBSSession implements AutoCloseable {
         return null;
     }
 
+    /**
+     * Sets persistent search to retrieve changed records.
+     *
+     * @param base starting point of the search
+     * @param filter search filter
+     * @param attrs selected attributes
+     * @param changeTypes LDAPPersistSearchControl change types (e.g. MODIFY | DELETE)
+     * @return LDAP search results
+     * @exception EBaseException failed to search
+     */
+    public LDAPSearchResults persistentSearch(
+            String base,
+            String filter,
+            String[] attrs,
+            int changeTypes
+            ) throws EBaseException {
+        return null;
+    }
+
     /**
      * Retrieves a list of objects.
      *
@@ -33,7 +33,9 @@ import com.netscape.cmscore.apps.EngineConfig;
 import com.netscape.cmscore.ldapconn.LDAPConfig;
 import com.netscape.cmscore.ldapconn.LdapAuthInfo;
 import com.netscape.cmscore.ldapconn.LdapBoundConnFactory;
+import com.netscape.cmscore.ldapconn.LdapConcurrentConnFactory;
 import com.netscape.cmscore.ldapconn.LdapConnInfo;
+import com.netscape.cmscore.util.MetricsRegistry;
 import com.netscape.cmsutil.password.PasswordStore;
 
 import netscape.ldap.LDAPAttribute;
@@ -74,6 +76,7 @@ public class DBSubsystem {
     protected EngineConfig engineConfig;
     private DatabaseConfig mDBConfig;
     private LDAPSocketFactory socketFactory;
+    private MetricsRegistry metricsRegistry;
     private LdapBoundConnFactory mLdapConnFactory;
     private DBRegistry mRegistry;
     private String mBaseDN;
@@ -118,6 +121,14 @@ public class DBSubsystem {
         this.socketFactory = socketFactory;
     }
 
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
     public boolean enableSerialNumberRecovery() {
         try {
             return mDBConfig.getEnableSerialNumberRecovery();
@@ -210,11 +221,15 @@ public class DBSubsystem {
 
             // initialize LDAP connection factory
             // by default return error if server is down at startup time.
-            mLdapConnFactory = new LdapBoundConnFactory("DBSubsystem", true);
+            mLdapConnFactory = LdapBoundConnFactory.create("DBSubsystem", true, ldapConfig);
             mLdapConnFactory.setSocketFactory(socketFactory);
             mLdapConnFactory.setPasswordStore(passwordStore);
             mLdapConnFactory.init(ldapConfig);
 
+            if (mLdapConnFactory instanceof LdapConcurrentConnFactory concurrentConnFactory) {
+                concurrentConnFactory.setMetricsRegistry(metricsRegistry);
+            }
+
         } catch (EPropertyNotDefined e) {
             logger.error("DBSubsystem: initialization failed: " + e.getMessage(), e);
             throw e;
@@ -329,14 +344,24 @@ public class DBSubsystem {
                     ByteArrayMapper(CRLDBSchema.LDAP_ATTR_DELTA_CRL));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_CA_CERT, new
                     ByteArrayMapper(CRLDBSchema.LDAP_ATTR_CA_CERT));
+
+            String crlCacheFormat = mDBConfig.getCRLCacheFormat();
+            boolean crlCacheCompression = mDBConfig.getCRLCacheCompression();
+            logger.info("DBSubsystem: CRL cache format: " + crlCacheFormat);
+
+            if (!RevokedCertsMapper.FORMAT_BINARY.equals(crlCacheFormat)
+                    && !RevokedCertsMapper.FORMAT_SERIALIZED.equals(crlCacheFormat)) {
+                throw new EBaseException("Invalid CRL cache format: " + crlCacheFormat);
+            }
+
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_CRL_CACHE, new
-                    ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_CRL_CACHE));
+                    RevokedCertsMapper(CRLDBSchema.LDAP_ATTR_CRL_CACHE, crlCacheFormat, crlCacheCompression));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_REVOKED_CERTS, new
-                    ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS));
+                    RevokedCertsMapper(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS, crlCacheFormat, crlCacheCompression));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_UNREVOKED_CERTS, new
-                    ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_UNREVOKED_CERTS));
+                    RevokedCertsMapper(CRLDBSchema.LDAP_ATTR_UNREVOKED_CERTS, crlCacheFormat, crlCacheCompression));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_EXPIRED_CERTS, new
-                    ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_EXPIRED_CERTS));
+                    RevokedCertsMapper(CRLDBSchema.LDAP_ATTR_EXPIRED_CERTS, crlCacheFormat, crlCacheCompression));
 
             boolean registered = reg.isObjectClassRegistered(RepositoryRecord.class.getName());
             logger.debug("registered: " + registered);
@@ -369,6 +394,13 @@ public class DBSubsystem {
         configureExcludedLdapAttrs();
     }
 
+    /**
+     * Returns the maximum number of connections in the pool.
+     */
+    public int getMaxConns() {
+        return mLdapConnFactory.maxConn();
+    }
+
     public String getEntryAttribute(String dn, String attrName,
                                     String defaultValue, String errorValue) {
         LDAPConnection conn = null;
@@ -31,6 +31,7 @@ import com.netscape.certsrv.dbs.Modification;
 import com.netscape.certsrv.dbs.ModificationSet;
 import com.netscape.certsrv.ldap.LDAPExceptionConverter;
 import com.netscape.cmscore.apps.CMS;
+import com.netscape.cmscore.util.MetricsRegistry;
 
 import netscape.ldap.LDAPAttribute;
 import netscape.ldap.LDAPAttributeSet;
@@ -67,6 +68,16 @@ public class LDAPSession extends DBSSession {
     private DBSubsystem dbSubsystem;
     private LDAPConnection mConn = null;
 
+    /**
+     * Records the latency of an LDAP operation in the metrics registry.
+     */
+    void recordLatency(String name, long startTime) {
+        MetricsRegistry metricsRegistry = dbSubsystem.getMetricsRegistry();
+        if (metricsRegistry != null) {
+            metricsRegistry.record(name, System.nanoTime() - startTime);
+        }
+    }
+
     /**
      * Constructs a database session.
      *
@@ -130,7 +141,9 @@ public class LDAPSession extends DBSSession {
              * @phase local ldap add
              * @message LDAPSession: begin LDAP add <entry>
              */
+            long startTime = System.nanoTime();
             mConn.add(e);
+            recordLatency("ldap_add", startTime);
 
         } catch (LDAPException e) {
             throw LDAPExceptionConverter.toDBException(e);
@@ -174,9 +187,11 @@ public class LDAPSession extends DBSSession {
              * @phase local ldap read
              * @message LDAPSession: begin LDAP read <entry>
              */
+            long startTime = System.nanoTime();
             LDAPSearchResults res = mConn.search(name,
                     LDAPv3.SCOPE_BASE, "(objectclass=*)",
                     ldapattrs, false);
+            recordLatency("ldap_read", startTime);
             LDAPEntry entry = res.next();
             LDAPAttributeSet attrSet = entry.getAttributeSet();
 
@@ -203,7 +218,9 @@ public class LDAPSession extends DBSSession {
         logger.info("LDAPSession: Deleting " + name);
 
         try {
+            long startTime = System.nanoTime();
             mConn.delete(name);
+            recordLatency("ldap_delete", startTime);
         } catch (LDAPException e) {
             if (e.getLDAPResultCode() == LDAPException.UNAVAILABLE)
                 throw new DBNotAvailableException(
@@ -256,7 +273,9 @@ public class LDAPSession extends DBSSession {
              * @phase local ldap add
              * @message LDAPSession: begin LDAP modify <entry>
              */
+            long startTime = System.nanoTime();
             mConn.modify(name, ldapMods);
+            recordLatency("ldap_modify", startTime);
 
         } catch (LDAPException e) {
 
@@ -311,8 +330,10 @@ public class LDAPSession extends DBSSession {
 
             cons.setMaxResults(maxSize);
 
+            long startTime = System.nanoTime();
             LDAPSearchResults res = mConn.search(base,
                     LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+            recordLatency("ldap_search", startTime);
 
             return new DBSearchResults(dbSubsystem.getRegistry(),
                     res);
@@ -346,8 +367,10 @@ public class LDAPSession extends DBSSession {
                 cons.setServerControls( sortCtrl );
             }
 
+            long startTime = System.nanoTime();
             LDAPSearchResults res = mConn.search(base,
                     LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+            recordLatency("ldap_search", startTime);
 
             return new DBSearchResults(dbSubsystem.getRegistry(),
                     res);
@@ -376,8 +399,10 @@ public class LDAPSession extends DBSSession {
             cons.setMaxResults(maxSize);
             cons.setServerTimeLimit(timeLimit);
 
+            long startTime = System.nanoTime();
             LDAPSearchResults res = mConn.search(base,
                     LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+            recordLatency("ldap_search", startTime);
 
             return new DBSearchResults(dbSubsystem.getRegistry(),
                     res);
@@ -412,8 +437,10 @@ public class LDAPSession extends DBSSession {
                 cons.setServerControls( sortCtrl );
             }
 
+            long startTime = System.nanoTime();
             LDAPSearchResults res = mConn.search(base,
                     LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+            recordLatency("ldap_search", startTime);
 
             return new DBSearchResults(dbSubsystem.getRegistry(),
                     res);
@@ -454,8 +481,10 @@ public class LDAPSession extends DBSSession {
 
             cons.setMaxResults(0);
 
+            long startTime = System.nanoTime();
             LDAPSearchResults res = mConn.search(base,
                     LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+            recordLatency("ldap_search", startTime);
 
             return new DBSearchResults(dbSubsystem.getRegistry(),
                     res);
@@ -495,8 +524,10 @@ public class LDAPSession extends DBSSession {
                 } else {
                     cons.setServerControls(pagecon);
                 }
+                long startTime = System.nanoTime();
                 res = mConn.search(base,
                         LDAPv3.SCOPE_ONE, ldapfilter, null, false, cons);
+                recordLatency("ldap_search", startTime);
                 while(res.hasMoreElements())
                         res.next();
                 skipped += pageSize;
@@ -520,8 +551,10 @@ public class LDAPSession extends DBSSession {
             } else {
                 cons.setServerControls(pagecon);
             }
+            long startTime = System.nanoTime();
             res = mConn.search(base,
                     LDAPv3.SCOPE_ONE, ldapfilter, null, false, cons);
+            recordLatency("ldap_search", startTime);
             return new DBSearchResults(dbSubsystem.getRegistry(),
                     res);
 
@@ -552,6 +585,12 @@ public class LDAPSession extends DBSSession {
     @Override
     public LDAPSearchResults persistentSearch(String base, String filter, String attrs[])
             throws EBaseException {
+        return persistentSearch(base, filter, attrs, LDAPPersistSearchControl.MODIFY);
+    }
+
+    @Override
+    public LDAPSearchResults persistentSearch(String base, String filter, String attrs[], int changeTypes)
+            throws EBaseException {
 
         try {
             String ldapfilter = dbSubsystem.getRegistry().getFilter(filter);
@@ -570,7 +609,7 @@ public class LDAPSession extends DBSSession {
                 mConn.setOption(LDAPv3.PROTOCOL_VERSION, Integer.valueOf(3));
             }
 
-            int op = LDAPPersistSearchControl.MODIFY;
+            int op = changeTypes;
 
             boolean changesOnly = true;
             boolean returnControls = true;
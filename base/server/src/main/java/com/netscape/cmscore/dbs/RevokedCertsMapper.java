@@ -0,0 +1,472 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.mozilla.jss.netscape.security.util.DerOutputStream;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.Extension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.DBAttrMapper;
+import com.netscape.certsrv.dbs.DBException;
+import com.netscape.certsrv.dbs.IDBObj;
+import com.netscape.cmscore.apps.CMS;
+
+import netscape.ldap.LDAPAttribute;
+import netscape.ldap.LDAPAttributeSet;
+
+/**
+ * A class represents an attribute mapper that maps a table of
+ * revoked certificates (e.g. CRL cache) into a binary LDAP attribute,
+ * and vice versa.
+ *
+ * Each attribute value consists of a header (magic, version, flags,
+ * sequence number) followed by an optionally compressed list of
+ * entries (serial number, revocation date, revocation reason).
+ * Entries with other extensions are stored as DER.
+ *
+ * A full table is stored as a single value with sequence number 0.
+ * A CRLCacheDelta is stored as an additional value so that it can
+ * be added with Modification.MOD_ADD without rewriting the table.
+ *
+ * Values in the legacy Java serialization format are still supported.
+ */
+public class RevokedCertsMapper extends DBAttrMapper {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RevokedCertsMapper.class);
+
+    public static final String FORMAT_BINARY = "binary";
+    public static final String FORMAT_SERIALIZED = "serialized";
+
+    static final int MAGIC = 0x43524c43; // CRLC
+    static final byte VERSION = 1;
+
+    static final byte FLAG_COMPRESSED = 0x01;
+    static final byte FLAG_DELTA = 0x02;
+
+    static final int HEADER_SIZE = 14;
+
+    static final byte NO_EXTENSIONS = 0;
+    static final byte EMPTY_EXTENSIONS = 1;
+    static final byte REASON_EXTENSION = 2;
+    static final byte DER_ENCODING = 3;
+
+    // first bytes of Java serialization stream
+    static final int JAVA_SERIALIZATION_MAGIC = 0xaced;
+
+    private String mLdapName;
+    private Vector<String> v = new Vector<>();
+
+    private boolean binary = true;
+    private boolean compressed = true;
+
+    /**
+     * Constructs revoked certificates mapper.
+     */
+    public RevokedCertsMapper(String ldapName) {
+        mLdapName = ldapName;
+        v.addElement(mLdapName);
+    }
+
+    public RevokedCertsMapper(String ldapName, String format, boolean compressed) {
+        this(ldapName);
+        this.binary = !FORMAT_SERIALIZED.equals(format);
+        this.compressed = compressed;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Retrieves a list of supported ldap attributes.
+     */
+    @Override
+    public Enumeration<String> getSupportedLDAPAttributeNames() {
+        return v.elements();
+    }
+
+    /**
+     * Maps object to ldap attribute set.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void mapObjectToLDAPAttributeSet(IDBObj parent, String name,
+            Object obj, LDAPAttributeSet attrs)
+            throws EBaseException {
+
+        try {
+            byte[] data;
+
+            if (obj instanceof CRLCacheDelta delta) {
+                if (!binary) {
+                    throw new IOException("CRL cache delta not supported in " + FORMAT_SERIALIZED + " format");
+                }
+                data = encode(delta, compressed);
+
+            } else if (binary && obj instanceof Map) {
+                data = encode((Map<BigInteger, RevokedCertificate>) obj, compressed);
+
+            } else {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                ObjectOutputStream os = new ObjectOutputStream(bos);
+                os.writeObject(obj);
+                data = bos.toByteArray();
+            }
+
+            logger.debug("RevokedCertsMapper: Mapping " + name + " to " + mLdapName + " (" + data.length + " bytes)");
+            attrs.add(new LDAPAttribute(mLdapName, data));
+
+        } catch (IOException e) {
+            logger.error(CMS.getLogMessage("CMSCORE_DBS_OBJECTSTREAM_MAPPER_ERROR", e.toString()), e);
+            throw new DBException(CMS.getUserMessage("CMS_DBS_SERIALIZE_FAILED", name), e);
+        }
+    }
+
+    /**
+     * Maps LDAP attributes into object, and put the object
+     * into 'parent'.
+     */
+    @Override
+    public void mapLDAPAttributeSetToObject(LDAPAttributeSet attrs,
+            String name, IDBObj parent) throws EBaseException {
+
+        LDAPAttribute attr = attrs.getAttribute(mLdapName);
+        if (attr == null) {
+            return;
+        }
+
+        List<byte[]> values = new ArrayList<>();
+        Enumeration<byte[]> e = attr.getByteValues();
+        while (e.hasMoreElements()) {
+            values.add(e.nextElement());
+        }
+
+        try {
+            parent.set(name, decode(values));
+
+        } catch (IOException | ClassNotFoundException ex) {
+            throw new DBException(CMS.getUserMessage("CMS_DBS_DESERIALIZE_FAILED", name), ex);
+        }
+    }
+
+    /**
+     * Maps search filters into LDAP search filter.
+     */
+    @Override
+    public String mapSearchFilter(String name, String op,
+            String value) throws EBaseException {
+        return mLdapName + op + value;
+    }
+
+    public static byte[] encode(Map<BigInteger, RevokedCertificate> certs, boolean compressed) throws IOException {
+        return encode(0, (byte) 0, certs, null, compressed);
+    }
+
+    public static byte[] encode(CRLCacheDelta delta, boolean compressed) throws IOException {
+        return encode(
+                delta.getSequenceNumber(),
+                FLAG_DELTA,
+                delta.getAddedCerts(),
+                delta.getRemovedCerts(),
+                compressed);
+    }
+
+    static byte[] encode(
+            long sequenceNumber,
+            byte flags,
+            Map<BigInteger, RevokedCertificate> addedCerts,
+            Collection<BigInteger> removedCerts,
+            boolean compressed) throws IOException {
+
+        if (compressed) {
+            flags |= FLAG_COMPRESSED;
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        DataOutputStream header = new DataOutputStream(bos);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(flags);
+        header.writeLong(sequenceNumber);
+        header.flush();
+
+        OutputStream os = compressed ? new DeflaterOutputStream(bos) : bos;
+
+        try (DataOutputStream out = new DataOutputStream(os)) {
+
+            out.writeInt(addedCerts.size());
+            for (Map.Entry<BigInteger, RevokedCertificate> entry : addedCerts.entrySet()) {
+                writeEntry(out, entry.getKey(), entry.getValue());
+            }
+
+            int size = removedCerts == null ? 0 : removedCerts.size();
+            out.writeInt(size);
+            if (size > 0) {
+                for (BigInteger serialNumber : removedCerts) {
+                    writeSerialNumber(out, serialNumber);
+                }
+            }
+        }
+
+        return bos.toByteArray();
+    }
+
+    static void writeSerialNumber(DataOutputStream out, BigInteger serialNumber) throws IOException {
+        byte[] bytes = serialNumber.toByteArray();
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    static BigInteger readSerialNumber(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return new BigInteger(bytes);
+    }
+
+    static boolean hasReasonOnly(CRLExtensions exts) {
+
+        if (exts.size() != 1) {
+            return false;
+        }
+
+        Extension ext = exts.elementAt(0);
+        return ext instanceof CRLReasonExtension reasonExt
+                && !reasonExt.isCritical()
+                && reasonExt.getReason() != null;
+    }
+
+    static void writeEntry(
+            DataOutputStream out,
+            BigInteger serialNumber,
+            RevokedCertificate revokedCert) throws IOException {
+
+        writeSerialNumber(out, serialNumber);
+
+        Date revocationDate = revokedCert.getRevocationDate();
+        out.writeLong(revocationDate == null ? Long.MIN_VALUE : revocationDate.getTime());
+
+        CRLExtensions exts = revokedCert.getExtensions();
+
+        if (exts == null) {
+            out.writeByte(NO_EXTENSIONS);
+
+        } else if (exts.isEmpty()) {
+            out.writeByte(EMPTY_EXTENSIONS);
+
+        } else if (hasReasonOnly(exts)) {
+            CRLReasonExtension ext = (CRLReasonExtension) exts.elementAt(0);
+            out.writeByte(REASON_EXTENSION);
+            out.writeByte(ext.getReason().getCode());
+
+        } else {
+            RevokedCertImpl impl;
+            if (revokedCert instanceof RevokedCertImpl) {
+                impl = (RevokedCertImpl) revokedCert;
+            } else {
+                impl = new RevokedCertImpl(serialNumber, revocationDate, exts);
+            }
+
+            try (DerOutputStream der = new DerOutputStream()) {
+                impl.encode(der);
+                byte[] bytes = der.toByteArray();
+                out.writeByte(DER_ENCODING);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+
+            } catch (IOException e) {
+                throw e;
+
+            } catch (Exception e) {
+                throw new IOException("Unable to encode revoked certificate: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    static RevokedCertificate readEntry(DataInputStream in) throws IOException {
+
+        BigInteger serialNumber = readSerialNumber(in);
+
+        long time = in.readLong();
+        Date revocationDate = time == Long.MIN_VALUE ? null : new Date(time);
+
+        byte type = in.readByte();
+
+        switch (type) {
+        case NO_EXTENSIONS:
+            return new RevokedCertImpl(serialNumber, revocationDate, null);
+
+        case EMPTY_EXTENSIONS:
+            return new RevokedCertImpl(serialNumber, revocationDate, new CRLExtensions());
+
+        case REASON_EXTENSION:
+            CRLExtensions exts = new CRLExtensions();
+            exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(RevocationReason.valueOf(in.readByte())));
+            return new RevokedCertImpl(serialNumber, revocationDate, exts);
+
+        case DER_ENCODING:
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            try {
+                return new RevokedCertImpl(bytes);
+            } catch (Exception e) {
+                throw new IOException("Unable to decode revoked certificate: " + e.getMessage(), e);
+            }
+
+        default:
+            throw new IOException("Unsupported revoked certificate entry type: " + type);
+        }
+    }
+
+    static boolean isSerialized(byte[] value) {
+        return value.length >= 2
+                && ((value[0] & 0xff) << 8 | (value[1] & 0xff)) == JAVA_SERIALIZATION_MAGIC;
+    }
+
+    static long getSequenceNumber(byte[] value) throws IOException {
+
+        if (value.length < HEADER_SIZE) {
+            throw new IOException("Invalid CRL cache attribute size: " + value.length);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(value));
+
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Invalid CRL cache attribute magic: 0x" + Integer.toHexString(magic));
+        }
+
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported CRL cache attribute version: " + version);
+        }
+
+        in.readByte();
+        return in.readLong();
+    }
+
+    /**
+     * Decodes a single attribute value and applies it to the table.
+     */
+    public static void decode(byte[] value, Map<BigInteger, RevokedCertificate> certs) throws IOException {
+
+        getSequenceNumber(value); // validate header
+        byte flags = value[5];
+
+        InputStream is = new ByteArrayInputStream(value, HEADER_SIZE, value.length - HEADER_SIZE);
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            is = new InflaterInputStream(is);
+        }
+
+        try (DataInputStream in = new DataInputStream(is)) {
+
+            int added = in.readInt();
+            for (int i = 0; i < added; i++) {
+                RevokedCertificate revokedCert = readEntry(in);
+                certs.put(revokedCert.getSerialNumber(), revokedCert);
+            }
+
+            int removed = in.readInt();
+            for (int i = 0; i < removed; i++) {
+                certs.remove(readSerialNumber(in));
+            }
+        }
+    }
+
+    /**
+     * Decodes the attribute values into a table of revoked certificates.
+     * The full table is decoded first, then the deltas are applied in
+     * sequence number order.
+     */
+    @SuppressWarnings("unchecked")
+    public static Hashtable<BigInteger, RevokedCertificate> decode(List<byte[]> values)
+            throws IOException, ClassNotFoundException {
+
+        Hashtable<BigInteger, RevokedCertificate> certs = null;
+        List<long[]> segments = new ArrayList<>(); // [sequence number, index]
+
+        for (int i = 0; i < values.size(); i++) {
+
+            byte[] value = values.get(i);
+
+            if (!isSerialized(value)) {
+                segments.add(new long[] { getSequenceNumber(value), i });
+                continue;
+            }
+
+            // legacy format
+            try (ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(value))) {
+                Object obj = is.readObject();
+                if (obj == null) {
+                    continue;
+                }
+                if (certs == null) {
+                    certs = new Hashtable<>();
+                }
+                certs.putAll((Map<BigInteger, RevokedCertificate>) obj);
+            }
+        }
+
+        if (segments.isEmpty()) {
+            return certs;
+        }
+
+        if (certs == null) {
+            certs = new Hashtable<>();
+        }
+
+        segments.sort(Comparator.comparingLong(segment -> segment[0]));
+
+        for (long[] segment : segments) {
+            decode(values.get((int) segment[1]), certs);
+        }
+
+        return certs;
+    }
+}
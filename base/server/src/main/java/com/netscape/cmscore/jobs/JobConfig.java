@@ -54,6 +54,13 @@ public class JobConfig extends ConfigStore {
         return getString("cron", null);
     }
 
+    /**
+     * Returns jobsScheduler.job.<id>.overlapPolicy parameter.
+     */
+    public String getOverlapPolicy() throws EBaseException {
+        return getString("overlapPolicy", JobExecutor.OVERLAP_SKIP);
+    }
+
     /**
      * Returns jobsScheduler.job.<id>.owner parameter.
      */
@@ -0,0 +1,232 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.jobs;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.netscape.cms.jobs.Job;
+import com.netscape.cmscore.util.MetricsRegistry;
+
+/**
+ * This class runs a single job in its own thread, so a long
+ * running job does not delay the other jobs.
+ *
+ * A job never overlaps with itself. If the job is started while it
+ * is still running, the run is either skipped or queued depending on
+ * the overlap policy. At most one run is queued.
+ */
+public class JobExecutor {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(JobExecutor.class);
+
+    public static final String OVERLAP_SKIP = "skip";
+    public static final String OVERLAP_QUEUE = "queue";
+
+    private String id;
+    private ThreadPoolExecutor executor;
+    private MetricsRegistry metricsRegistry;
+
+    private String overlapPolicy = OVERLAP_SKIP;
+
+    private Job job;
+    private boolean running;
+    private boolean pending;
+
+    private volatile long lastStartTime;
+    private volatile long lastDuration;
+
+    public JobExecutor(String id) {
+
+        this.id = id;
+
+        executor = new ThreadPoolExecutor(
+                1,
+                1,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, id);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public String getID() {
+        return id;
+    }
+
+    public String getOverlapPolicy() {
+        return overlapPolicy;
+    }
+
+    public void setOverlapPolicy(String overlapPolicy) {
+        this.overlapPolicy = overlapPolicy;
+    }
+
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+
+        this.metricsRegistry = metricsRegistry;
+
+        if (metricsRegistry != null) {
+            metricsRegistry.registerGauge(getMetricName("running"), () -> isRunning() ? 1 : 0);
+        }
+    }
+
+    String getMetricName(String metric) {
+        return "job_" + id + "_" + metric;
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the start time of the last run in milliseconds
+     * since the epoch, or 0 if the job has not run.
+     */
+    public long getLastStartTime() {
+        return lastStartTime;
+    }
+
+    /**
+     * Returns the duration of the last completed run in milliseconds.
+     */
+    public long getLastDuration() {
+        return lastDuration;
+    }
+
+    /**
+     * Starts the job unless it is still running.
+     *
+     * @param job the job to run
+     * @return true if the job was started or queued
+     */
+    public synchronized boolean start(Job job) {
+
+        if (executor.isShutdown()) {
+            logger.info("JobExecutor: Job " + id + " has been shut down");
+            return false;
+        }
+
+        if (running) {
+
+            if (OVERLAP_QUEUE.equals(overlapPolicy) && !pending) {
+                logger.info("JobExecutor: Job " + id + " still running, queuing next run");
+                this.job = job;
+                pending = true;
+                return true;
+            }
+
+            logger.info("JobExecutor: Job " + id + " still running");
+
+            if (metricsRegistry != null) {
+                metricsRegistry.increment(getMetricName("skipped"));
+            }
+
+            return false;
+        }
+
+        logger.info("JobExecutor: Starting job " + id);
+
+        this.job = job;
+        running = true;
+        executor.execute(this::run);
+
+        return true;
+    }
+
+    void run() {
+
+        while (true) {
+
+            Job job;
+            synchronized (this) {
+                job = this.job;
+            }
+
+            lastStartTime = System.currentTimeMillis();
+            long startTime = System.nanoTime();
+
+            try {
+                job.run();
+
+                if (metricsRegistry != null) {
+                    metricsRegistry.increment(getMetricName("runs"));
+                }
+
+            } catch (Throwable e) {
+                logger.error("JobExecutor: Job " + id + " failed: " + e.getMessage(), e);
+
+                if (metricsRegistry != null) {
+                    metricsRegistry.increment(getMetricName("failures"));
+                }
+
+            } finally {
+                long duration = System.nanoTime() - startTime;
+                lastDuration = TimeUnit.NANOSECONDS.toMillis(duration);
+
+                if (metricsRegistry != null) {
+                    metricsRegistry.record(getMetricName("time"), duration);
+                }
+            }
+
+            synchronized (this) {
+                if (!pending) {
+                    running = false;
+                    return;
+                }
+                pending = false;
+            }
+        }
+    }
+
+    /**
+     * Stops accepting new runs and waits for the current run
+     * to complete.
+     */
+    public void shutdown() {
+
+        logger.info("JobExecutor: Shutting down " + id + " executor");
+
+        synchronized (this) {
+            pending = false;
+        }
+
+        if (metricsRegistry != null) {
+            metricsRegistry.removeGauge(getMetricName("running"));
+        }
+
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("JobExecutor: Job " + id + " did not stop");
+                executor.shutdownNow();
+            }
+
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -20,7 +20,13 @@ package com.netscape.cmscore.jobs;
 import java.util.Calendar;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.Subsystem;
@@ -33,8 +39,10 @@ import com.netscape.cmscore.apps.CMS;
  * This is a daemon thread that handles scheduled jobs like cron would
  * do with different jobs. This daemon wakes up at a pre-configured
  * interval to see
- * if there is any job to be done, if so, a thread is created to execute
- * the job(s).
+ * if there is any job to be done, if so, the job is executed by its
+ * own JobExecutor. A job that is still running from a previous interval
+ * is skipped, or queued if <b>jobsScheduler.job.[job name].overlapPolicy</b>
+ * is set to <b>queue</b>.
  * <p>
  * The interval <b>jobsScheduler.interval</b> in the configuration is specified as number of minutes. If not set, the
  * default is 1 minute. Note that the cron specification for each job CAN NOT be finer than the granularity of the
@@ -107,11 +115,12 @@ public class JobsScheduler extends Subsystem implements Runnable {
      * Scheduler thread doing job scheduling
      */
     protected String mId = ID;
-    protected Thread mScheduleThread = null;
+    protected ScheduledExecutorService mScheduler;
+    protected ScheduledFuture<?> mScheduledTask;
 
     public Hashtable<String, JobPlugin> mJobPlugins = new Hashtable<>();
     public Hashtable<String, Job> mJobs = new Hashtable<>();
-    private Hashtable<String, Thread> mJobThreads = new Hashtable<>();
+    private Map<String, JobExecutor> mJobExecutors = new ConcurrentHashMap<>();
 
     private JobsSchedulerConfig mConfig;
 
@@ -230,115 +239,104 @@ public class JobsScheduler extends Subsystem implements Runnable {
     /**
      * when wake up:
      * . execute the scheduled job(s)
-     * * if job still running from previous interval, skip it
-     * . figure out when is the next wakeup time (every interval). If
-     * current wakup time runs over the interval, skip the missed interval(s)
-     * . sleep till the next wakeup time
+     * * if job still running from previous interval, skip or queue it
+     * according to the job's overlap policy
+     * . the next wakeup time is scheduled by the daemon every interval.
+     * If the current wakeup runs over the interval, the missed
+     * interval(s) are skipped
      */
     @Override
     public void run() {
-        long wokeupTime = 0;
-
-        while (true) {
-            // get time now
-            Calendar cal = Calendar.getInstance();
-            long rightNow = cal.getTime().getTime();
-            long duration;
-            long second = cal.get(Calendar.SECOND);
-
-            if (second != 1) { // scheduler needs adjustment
-                // adjust to wake up at 1st second
-                long milliSec = cal.get(Calendar.MILLISECOND);
-
-                // possible to be at exactly second 1, millisecond 0,
-                // just let it skip to next second, fine.
-                duration = (60 - second) * 1000 + 1000 - milliSec;
-                logger.info("JobsScheduler: adjustment for cron behavior: sleep for " + duration + " milliseconds");
-            } else {
-
-                // when is the next wakeup time for the JobsScheduler?
-                // reset next wakeup time - wake up every preset interval
-
-                duration = mInterval - rightNow + wokeupTime;
 
+        // woke up...
+        try {
+            if (mConfig.getBoolean(PROP_ENABLED, false) == false) {
+                stopDaemon();
+                return;
             }
+        } catch (Exception e) {
+            stopDaemon();
+            return;
+        }
 
-            while (duration < 0) {
-                duration += mInterval;
-            }
+        // check to see if new jobs are registered
+        // ... later
 
-            if (duration != 0) {
-                try {
-                    Thread.sleep(duration);
-                } catch (InterruptedException e) {
-                    System.out.println(e);
-                }
-            }
+        /**
+         * Get the current time outside the jobs while loop
+         * to make sure that the rightful jobs are run
+         */
+        Calendar cal = Calendar.getInstance();
 
-            // if (duration == 0), it's time
+        for (Enumeration<Job> e = mJobs.elements(); e.hasMoreElements(); ) {
+            Job job = e.nextElement();
 
-            // woke up...
             try {
-                if (mConfig.getBoolean(PROP_ENABLED, false) == false) {
-                    return;
-                }
-            } catch (Exception e) {
-                return;
+                if (!job.isEnabled())
+                    continue;
+            } catch (Exception ex) {
+                continue; // ignore this job
             }
 
-            // check to see if new jobs are registered
-            // ... later
-
-            // get time now
-            cal = Calendar.getInstance();
-
-            /**
-             * Get the current time outside the jobs while loop
-             * to make sure that the rightful jobs are run
-             * -- milliseconds from the epoch
-             */
-            wokeupTime = cal.getTime().getTime();
-
-            for (Enumeration<Job> e = mJobs.elements(); e.hasMoreElements(); ) {
-                Job job = e.nextElement();
-
-                try {
-                    if (!job.isEnabled())
-                        continue;
-                } catch (Exception ex) {
-                    continue; // ignore this job
-                }
-
-                // first, check to see if thread already running
-                // ...
-
-                // start the job thread if necessary
+            try {
+                // start the job if necessary
                 if (isShowTime(job, cal) == true) {
                     //	logger.info("JobsScheduler: show time for: "+job.getId());
 
                     startJob(job.getId());
                 }
-            } // for
 
-        }
+            } catch (Exception ex) {
+                // an exception would cancel the next wakeups
+                logger.error("JobsScheduler: Unable to start job " + job.getId() + ": " + ex.getMessage(), ex);
+            }
+        } // for
     }
 
-    public synchronized void startJob(String id) {
+    /**
+     * Starts a job unless it is still running.
+     *
+     * @param id job ID
+     * @return true if the job was started or queued
+     */
+    public boolean startJob(String id) {
 
-        Thread thread = mJobThreads.get(id);
+        Job job = mJobs.get(id);
 
-        if (thread != null && thread.isAlive()) {
-            logger.info("JobsScheduler: Job " + id + " still running");
-            return;
+        if (job == null) {
+            logger.warn("JobsScheduler: Job " + id + " not found");
+            return false;
         }
 
-        logger.info("JobsScheduler: Starting job " + id);
+        JobExecutor executor = getJobExecutor(id);
 
-        Job job = mJobs.get(id);
-        thread = new Thread(job, id);
-        mJobThreads.put(id, thread);
+        try {
+            executor.setOverlapPolicy(job.getConfigStore().getOverlapPolicy());
+        } catch (EBaseException e) {
+            logger.warn("JobsScheduler: Unable to get overlap policy for job " + id + ": " + e.getMessage(), e);
+        }
+
+        return executor.start(job);
+    }
 
-        thread.start();
+    /**
+     * Returns the executor of a job, or null if the job has not
+     * been started.
+     */
+    public JobExecutor findJobExecutor(String id) {
+        return mJobExecutors.get(id);
+    }
+
+    /**
+     * Returns the executor of a job. The executor is created on
+     * first use since jobs can be added at runtime.
+     */
+    public JobExecutor getJobExecutor(String id) {
+        return mJobExecutors.computeIfAbsent(id, k -> {
+            JobExecutor executor = new JobExecutor(k);
+            executor.setMetricsRegistry(engine == null ? null : engine.getMetricsRegistry());
+            return executor;
+        });
     }
 
     /**
@@ -449,11 +447,50 @@ public class JobsScheduler extends Subsystem implements Runnable {
      * Starts up the JobsScheduler daemon. Usually called from the
      * initialization method when it's successfully initialized.
      */
-    public void startDaemon() {
-        mScheduleThread = new Thread(this, "JobScheduler");
+    public synchronized void startDaemon() {
+
+        if (mScheduler == null) {
+            mScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "JobScheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        if (mScheduledTask != null) {
+            mScheduledTask.cancel(false);
+        }
+
+        // adjust to wake up at 1st second for cron behavior
+        Calendar cal = Calendar.getInstance();
+        long second = cal.get(Calendar.SECOND);
+        long milliSec = cal.get(Calendar.MILLISECOND);
+        long delay = ((61 - second) % 60) * 1000 - milliSec;
+
+        if (delay < 0) {
+            delay += MINUTE_MILLI;
+        }
+
+        long interval = Math.max(mInterval, MINUTE_MILLI);
+
+        logger.info("JobsScheduler: adjustment for cron behavior: sleep for " + delay + " milliseconds");
+        mScheduledTask = mScheduler.scheduleAtFixedRate(this, delay, interval, TimeUnit.MILLISECONDS);
+
         logger.info("JobsScheduler: started Jobs Scheduler daemon thread");
-        mScheduleThread.setDaemon(true);
-        mScheduleThread.start();
+    }
+
+    /**
+     * Stops the JobsScheduler daemon. The running jobs are not stopped.
+     */
+    public synchronized void stopDaemon() {
+
+        if (mScheduledTask == null) {
+            return;
+        }
+
+        logger.info("JobsScheduler: stopping Jobs Scheduler daemon thread");
+        mScheduledTask.cancel(false);
+        mScheduledTask = null;
     }
 
     /**
@@ -473,6 +510,20 @@ public class JobsScheduler extends Subsystem implements Runnable {
         for (Job job : mJobs.values()) {
             job.stop();
         }
+
+        synchronized (this) {
+            stopDaemon();
+
+            if (mScheduler != null) {
+                mScheduler.shutdownNow();
+                mScheduler = null;
+            }
+        }
+
+        for (JobExecutor executor : mJobExecutors.values()) {
+            executor.shutdown();
+        }
+        mJobExecutors.clear();
     }
 
     /**
@@ -538,6 +589,13 @@ public class JobsScheduler extends Subsystem implements Runnable {
      */
     public void setInterval(int minutes) {
         mInterval = minutes * MINUTE_MILLI;
+
+        synchronized (this) {
+            // reschedule the daemon with the new interval
+            if (mScheduledTask != null) {
+                startDaemon();
+            }
+        }
     }
 
     /**
@@ -50,6 +50,10 @@ public class LdapBoundConnFactory extends LdapConnFactory {
 
     public static final String PROP_LDAPCONNINFO = "ldapconn";
     public static final String PROP_LDAPAUTHINFO = "ldapauth";
+    public static final String PROP_POOL = "pool";
+
+    public static final String POOL_DEFAULT = "default";
+    public static final String POOL_CONCURRENT = "concurrent";
 
     LdapAuthInfo mAuthInfo;
     PasswordStore passwordStore;
@@ -67,6 +71,33 @@ public class LdapBoundConnFactory extends LdapConnFactory {
         this.id = id;
     }
 
+    /**
+     * Creates a connection factory with the pool implementation
+     * specified in the pool parameter of the LDAP configuration:
+     * - default: LdapBoundConnFactory
+     * - concurrent: LdapConcurrentConnFactory
+     *
+     * The factory must be initialized with init(LDAPConfig).
+     */
+    public static LdapBoundConnFactory create(
+            String id,
+            boolean defErrorIfDown,
+            LDAPConfig dbConfig) throws EBaseException {
+
+        String pool = dbConfig.getString(PROP_POOL, POOL_DEFAULT);
+        logger.debug("LdapBoundConnFactory: pool: " + pool);
+
+        if (POOL_CONCURRENT.equals(pool)) {
+            return new LdapConcurrentConnFactory(id, defErrorIfDown);
+        }
+
+        if (!POOL_DEFAULT.equals(pool)) {
+            throw new EBaseException("Invalid LDAP connection pool: " + pool);
+        }
+
+        return new LdapBoundConnFactory(id, defErrorIfDown);
+    }
+
     public LdapBoundConnFactory(String id, boolean defErrorIfDown) {
         logger.debug("Creating LdapBoundConnFactor(" + id + ")");
         this.id = id;
@@ -164,6 +195,25 @@ public class LdapBoundConnFactory extends LdapConnFactory {
      */
     public void init() throws ELdapException {
 
+        validateParameters();
+
+        mConns = new ArrayList<>(Arrays.asList(new LdapBoundConnection[mMaxConns]));
+
+        if (mMinConns > 0) {
+            // Create connection handle and make initial connection
+            makeConnection(mErrorIfDown);
+
+            // initalize minimum number of connection handles available.
+            makeMinimum();
+        }
+    }
+
+    /**
+     * validates parameters obtained from either constructor or
+     * config store
+     */
+    protected void validateParameters() throws ELdapException {
+
         if (mMinConns < 0)
             throw new ELdapException("Invalid minimum number of connections: " + mMinConns);
 
@@ -188,16 +238,6 @@ public class LdapBoundConnFactory extends LdapConnFactory {
         logger.debug("LdapBoundConnFactory: port: " + mConnInfo.getPort());
         logger.debug("LdapBoundConnFactory: secure: " + mConnInfo.getSecure());
         logger.debug("LdapBoundConnFactory: authentication: " + mAuthInfo.getAuthType());
-
-        mConns = new ArrayList<>(Arrays.asList(new LdapBoundConnection[mMaxConns]));
-
-        if (mMinConns > 0) {
-            // Create connection handle and make initial connection
-            makeConnection(mErrorIfDown);
-
-            // initalize minimum number of connection handles available.
-            makeMinimum();
-        }
     }
 
     /**
@@ -217,7 +257,7 @@ public class LdapBoundConnFactory extends LdapConnFactory {
      *
      * @exception ELdapException if any error occurs.
      */
-    private LdapBoundConnection makeNewConnection(boolean errorIfDown) throws ELdapException {
+    protected LdapBoundConnection makeNewConnection(boolean errorIfDown) throws ELdapException {
 
         logger.debug("LdapBoundConnFactory: makeNewConnection(" + errorIfDown + ")");
 
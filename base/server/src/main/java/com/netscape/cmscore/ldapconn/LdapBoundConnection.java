@@ -45,6 +45,13 @@ public class LdapBoundConnection extends LDAPConnection {
     @SuppressWarnings("unused")
     private boolean mAuthenticated;
 
+    /**
+     * Instantiates a connection that is not connected to a server yet.
+     */
+    protected LdapBoundConnection(LDAPSocketFactory socketFactory) {
+        super(socketFactory);
+    }
+
     /**
      * Instantiates a connection to a ldap server, secure or non-secure
      * connection with LDAP basic bind DN and password authentication.
@@ -0,0 +1,523 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.ldapconn;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.ldap.ELdapException;
+import com.netscape.cmscore.util.MetricsRegistry;
+
+import netscape.ldap.LDAPConnection;
+import netscape.ldap.LDAPException;
+import netscape.ldap.LDAPv3;
+
+/**
+ * Factory for getting LDAP Connections to a LDAP server with the same
+ * LDAP authentication without a global lock.
+ *
+ * The number of connections in use is limited by a fair semaphore,
+ * so threads get connections in the order they asked for them. Idle
+ * connections are kept in a concurrent stack. A connection that has
+ * been idle for longer than the validation interval is checked
+ * before it is handed out, and a connection that is older than the
+ * maximum lifetime is replaced.
+ *
+ * This factory is used if the pool parameter of the LDAP configuration
+ * (e.g. internaldb.pool) is set to "concurrent". The pool statistics
+ * can be exported as gauges with setMetricsRegistry().
+ */
+public class LdapConcurrentConnFactory extends LdapBoundConnFactory {
+
+    public static final String PROP_ACQUIRE_TIMEOUT = "acquireTimeout";
+    public static final String PROP_MAX_LIFETIME = "maxLifetime";
+    public static final String PROP_VALIDATION_INTERVAL = "validationInterval";
+
+    /**
+     * Upper bounds (in milliseconds) of the wait time histogram buckets.
+     * The last bucket counts the longer waits.
+     */
+    public static final long[] WAIT_TIME_BUCKETS = { 1, 5, 10, 50, 100, 500, 1000, 5000 };
+
+    // max time to wait for a connection in milliseconds, 0 means no limit
+    int acquireTimeout;
+
+    // max age of a connection in seconds, 0 means no limit
+    int maxLifetime;
+
+    // max idle time in seconds before a connection is validated, 0 means always
+    int validationInterval = 60;
+
+    Semaphore permits;
+    ConcurrentLinkedDeque<PooledConnection> idleConns = new ConcurrentLinkedDeque<>();
+    AtomicInteger numIdleConns = new AtomicInteger();
+    AtomicInteger numConns = new AtomicInteger();
+    Map<LDAPConnection, PooledConnection> borrowedConns = new ConcurrentHashMap<>();
+
+    AtomicLong acquired = new AtomicLong();
+    AtomicLong timeouts = new AtomicLong();
+    AtomicLong created = new AtomicLong();
+    AtomicLong closed = new AtomicLong();
+    AtomicLongArray waitTimes = new AtomicLongArray(WAIT_TIME_BUCKETS.length + 1);
+
+    MetricsRegistry metricsRegistry;
+
+    public LdapConcurrentConnFactory(String id) {
+        super(id);
+    }
+
+    public LdapConcurrentConnFactory(String id, boolean defErrorIfDown) {
+        super(id, defErrorIfDown);
+    }
+
+    @Override
+    public void init(LDAPConfig dbConfig) throws EBaseException, ELdapException {
+
+        acquireTimeout = dbConfig.getInteger(PROP_ACQUIRE_TIMEOUT, acquireTimeout);
+        maxLifetime = dbConfig.getInteger(PROP_MAX_LIFETIME, maxLifetime);
+        validationInterval = dbConfig.getInteger(PROP_VALIDATION_INTERVAL, validationInterval);
+
+        super.init(dbConfig);
+    }
+
+    @Override
+    public void init() throws ELdapException {
+
+        validateParameters();
+
+        logger.debug("LdapConcurrentConnFactory: acquire timeout: " + acquireTimeout);
+        logger.debug("LdapConcurrentConnFactory: max lifetime: " + maxLifetime);
+        logger.debug("LdapConcurrentConnFactory: validation interval: " + validationInterval);
+
+        permits = new Semaphore(mMaxConns, true);
+
+        if (mMinConns > 0) {
+            // Create connection handle and make initial connection
+            makeConnection(mErrorIfDown);
+
+            for (int i = 0; i < mMinConns; i++) {
+                releaseIdle(createConnection());
+            }
+        }
+    }
+
+    /**
+     * Creates a new connection by cloning the master connection
+     * if possible, otherwise by connecting to the LDAP server.
+     */
+    PooledConnection createConnection() throws ELdapException {
+
+        LdapBoundConnection masterConn = mMasterConn;
+        LdapBoundConnection conn;
+
+        if (mMinConns > 0 && doCloning && masterConn != null && masterConn.isConnected()) {
+            conn = (LdapBoundConnection) masterConn.clone();
+        } else {
+            conn = makeNewConnection(true);
+        }
+
+        if (conn == null) {
+            throw new ELdapException("Unable to connect to LDAP server: " + mConnInfo.getHost() + ":" + mConnInfo.getPort());
+        }
+
+        numConns.incrementAndGet();
+        created.incrementAndGet();
+
+        return new PooledConnection(conn);
+    }
+
+    void closeConnection(PooledConnection pooledConn) {
+
+        numConns.decrementAndGet();
+        closed.incrementAndGet();
+
+        try {
+            pooledConn.conn.disconnect();
+        } catch (LDAPException e) {
+            logger.warn("LdapConcurrentConnFactory: Unable to disconnect: " + e.getMessage(), e);
+        }
+    }
+
+    void releaseIdle(PooledConnection pooledConn) {
+        pooledConn.lastUsed = System.currentTimeMillis();
+        numIdleConns.incrementAndGet();
+        idleConns.push(pooledConn);
+    }
+
+    PooledConnection pollIdle() {
+        PooledConnection pooledConn = idleConns.poll();
+        if (pooledConn != null) {
+            numIdleConns.decrementAndGet();
+        }
+        return pooledConn;
+    }
+
+    boolean isUsable(PooledConnection pooledConn, long now) {
+
+        if (!pooledConn.conn.isConnected()) {
+            return false;
+        }
+
+        if (maxLifetime > 0 && now - pooledConn.created > maxLifetime * 1000L) {
+            logger.debug("LdapConcurrentConnFactory: Connection reached max lifetime");
+            return false;
+        }
+
+        if (now - pooledConn.lastUsed < validationInterval * 1000L) {
+            return true;
+        }
+
+        try {
+            // read root DSE to check the connection
+            pooledConn.conn.read("", new String[] { LDAPv3.NO_ATTRS });
+            return true;
+
+        } catch (LDAPException e) {
+            logger.debug("LdapConcurrentConnFactory: Invalid connection: " + e.getMessage());
+            return false;
+        }
+    }
+
+    void recordWaitTime(long waitTime) {
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(waitTime);
+
+        int bucket = 0;
+        while (bucket < WAIT_TIME_BUCKETS.length && millis > WAIT_TIME_BUCKETS[bucket]) {
+            bucket++;
+        }
+
+        waitTimes.incrementAndGet(bucket);
+    }
+
+    @Override
+    public LdapBoundConnection getConn(boolean waitForConn) throws ELdapException {
+
+        String method = "LdapConcurrentConnFactory (" + id + ").getConn: ";
+
+        LdapBoundConnection masterConn = mMasterConn;
+        if ((masterConn == null || !masterConn.isConnected()) && mMinConns > 0) {
+            synchronized (this) {
+                if (mMasterConn == null || !mMasterConn.isConnected()) {
+                    try {
+                        makeConnection(true);
+                    } catch (ELdapException e) {
+                        mMasterConn = null;
+                        throw new ELdapException("LdapConcurrentConnFactory: Unable to create master connection. " + e.getMessage(), e);
+                    }
+                }
+            }
+        }
+
+        long startTime = System.nanoTime();
+
+        try {
+            boolean permitted;
+            if (!waitForConn) {
+                permitted = permits.tryAcquire();
+
+            } else if (acquireTimeout > 0) {
+                permitted = permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS);
+
+            } else {
+                permits.acquire();
+                permitted = true;
+            }
+
+            if (!permitted) {
+                timeouts.incrementAndGet();
+                logger.warn("LdapConcurrentConnFactory: out of LDAP connections for " + mConnInfo.getHost() + ":" + mConnInfo.getPort());
+                if (!waitForConn) {
+                    return null;
+                }
+                throw new ELdapException("Timed out waiting for LDAP connection after " + acquireTimeout + " ms");
+            }
+
+        } catch (InterruptedException e) {
+            logger.warn("LdapConcurrentConnFactory: connection wait interrupted");
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        recordWaitTime(System.nanoTime() - startTime);
+        acquired.incrementAndGet();
+
+        PooledConnection pooledConn;
+
+        try {
+            long now = System.currentTimeMillis();
+
+            while (true) {
+                pooledConn = pollIdle();
+
+                if (pooledConn == null) {
+                    logger.debug(method + "creating connection");
+                    pooledConn = createConnection();
+                    break;
+                }
+
+                if (isUsable(pooledConn, now)) {
+                    break;
+                }
+
+                closeConnection(pooledConn);
+            }
+
+            // Before returning the connection, set the SIZELIMIT option; this
+            // ensures that if the connection is recycled and the previous owner
+            // changed the SIZELIMIT option to a different value, the next owner
+            // always starts with the default.
+            pooledConn.conn.setOption(LDAPv3.SIZELIMIT, mMaxResults);
+
+        } catch (LDAPException e) {
+            permits.release();
+            throw new ELdapException("Unable to set LDAP size limit: " + e.getMessage(), e);
+
+        } catch (ELdapException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        borrowedConns.put(pooledConn.conn, pooledConn);
+
+        return pooledConn.conn;
+    }
+
+    @Override
+    public void returnConn(LDAPConnection conn) {
+
+        if (conn == null) {
+            return;
+        }
+
+        PooledConnection pooledConn = borrowedConns.remove(conn);
+
+        if (pooledConn == null) {
+            logger.warn("LdapConcurrentConnFactory: Connection already returned or not from this pool");
+            return;
+        }
+
+        try {
+            if (conn.isConnected() && numIdleConns.get() < mMinConns) {
+                releaseIdle(pooledConn);
+            } else {
+                closeConnection(pooledConn);
+            }
+
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public int freeConn() {
+        return numIdleConns.get();
+    }
+
+    @Override
+    public int totalConn() {
+        return numConns.get();
+    }
+
+    /**
+     * Returns the number of connections handed out by this pool.
+     */
+    public long getAcquiredConnections() {
+        return acquired.get();
+    }
+
+    /**
+     * Returns the number of requests that did not get a connection
+     * within the timeout.
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * Returns the number of connections created by this pool.
+     */
+    public long getCreatedConnections() {
+        return created.get();
+    }
+
+    /**
+     * Returns the number of connections closed by this pool.
+     */
+    public long getClosedConnections() {
+        return closed.get();
+    }
+
+    /**
+     * Returns the number of requests in each wait time bucket
+     * (see WAIT_TIME_BUCKETS).
+     */
+    public long[] getWaitTimes() {
+        long[] result = new long[waitTimes.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = waitTimes.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the name of a pool metric, e.g. ldap_DBSubsystem_acquired.
+     */
+    String getMetricName(String metric) {
+        return "ldap_" + id + "_" + metric;
+    }
+
+    /**
+     * Returns the names of the wait time histogram metrics, e.g.
+     * ldap_DBSubsystem_wait_1ms for the waits up to 1 ms, and
+     * ldap_DBSubsystem_wait_over_5000ms for the longer waits.
+     */
+    String[] getWaitTimeMetricNames() {
+        String[] names = new String[WAIT_TIME_BUCKETS.length + 1];
+        for (int i = 0; i < WAIT_TIME_BUCKETS.length; i++) {
+            names[i] = getMetricName("wait_" + WAIT_TIME_BUCKETS[i] + "ms");
+        }
+        names[WAIT_TIME_BUCKETS.length] = getMetricName(
+                "wait_over_" + WAIT_TIME_BUCKETS[WAIT_TIME_BUCKETS.length - 1] + "ms");
+        return names;
+    }
+
+    /**
+     * Registers the pool statistics as gauges which are removed
+     * when the pool is shut down.
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+
+        this.metricsRegistry = metricsRegistry;
+
+        if (metricsRegistry == null) {
+            return;
+        }
+
+        metricsRegistry.registerGauge(getMetricName("connections"), this::totalConn);
+        metricsRegistry.registerGauge(getMetricName("idle_connections"), this::freeConn);
+        metricsRegistry.registerGauge(getMetricName("borrowed_connections"), borrowedConns::size);
+        metricsRegistry.registerGauge(getMetricName("waiting_threads"),
+                () -> permits == null ? 0 : permits.getQueueLength());
+        metricsRegistry.registerGauge(getMetricName("acquired"), this::getAcquiredConnections);
+        metricsRegistry.registerGauge(getMetricName("timeouts"), this::getTimeouts);
+        metricsRegistry.registerGauge(getMetricName("created"), this::getCreatedConnections);
+        metricsRegistry.registerGauge(getMetricName("closed"), this::getClosedConnections);
+
+        String[] names = getWaitTimeMetricNames();
+        for (int i = 0; i < names.length; i++) {
+            int bucket = i;
+            metricsRegistry.registerGauge(names[i], () -> waitTimes.get(bucket));
+        }
+    }
+
+    void removeMetrics() {
+
+        if (metricsRegistry == null) {
+            return;
+        }
+
+        for (String metric : new String[] {
+                "connections", "idle_connections", "borrowed_connections", "waiting_threads",
+                "acquired", "timeouts", "created", "closed" }) {
+            metricsRegistry.removeGauge(getMetricName(metric));
+        }
+
+        for (String name : getWaitTimeMetricNames()) {
+            metricsRegistry.removeGauge(name);
+        }
+
+        metricsRegistry = null;
+    }
+
+    void closeIdleConnections() {
+        PooledConnection pooledConn;
+        while ((pooledConn = pollIdle()) != null) {
+            closeConnection(pooledConn);
+        }
+    }
+
+    void disconnectMaster() {
+
+        if (mMasterConn == null) {
+            return;
+        }
+
+        try {
+            logger.debug("LdapConcurrentConnFactory: disconnecting master connection");
+            mMasterConn.disconnect();
+        } catch (LDAPException e) {
+            logger.warn("LdapConcurrentConnFactory: Unable to disconnect master connection: " + e.getMessage(), e);
+        }
+
+        mMasterConn = null;
+    }
+
+    @Override
+    public synchronized void reset() throws ELdapException {
+
+        logger.debug("Destroying LdapConcurrentConnFactory(" + id + ")");
+
+        if (!borrowedConns.isEmpty()) {
+            String message = "Unable to reset LDAP connection factory due to outstanding connections";
+            logger.error("LdapConcurrentConnFactory: " + message);
+            throw new ELdapException(message);
+        }
+
+        closeIdleConnections();
+        disconnectMaster();
+
+        if (mAuthInfo != null) {
+            mAuthInfo.reset();
+        }
+    }
+
+    @Override
+    public synchronized void shutdown() throws ELdapException {
+
+        logger.debug("Destroying LdapConcurrentConnFactory(" + id + ")");
+        logger.debug("LdapConcurrentConnFactory: acquired: " + acquired + ", timeouts: " + timeouts
+                + ", created: " + created + ", closed: " + closed);
+
+        removeMetrics();
+        closeIdleConnections();
+        disconnectMaster();
+
+        if (mAuthInfo != null) {
+            mAuthInfo.reset();
+        }
+    }
+
+    static class PooledConnection {
+
+        LdapBoundConnection conn;
+        long created = System.currentTimeMillis();
+        volatile long lastUsed = created;
+
+        PooledConnection(LdapBoundConnection conn) {
+            this.conn = conn;
+        }
+    }
+}
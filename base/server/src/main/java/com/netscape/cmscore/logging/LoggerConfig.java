@@ -29,6 +29,9 @@ public class LoggerConfig extends ConfigStore {
     public static final String LAST_HASH_FILE_NAME = "lastHashFileName";
     public static final String BUFFER_SIZE = "bufferSize";
     public static final String FLUSH_INTERVAL = "flushInterval";
+    public static final String ASYNC = "async";
+    public static final String QUEUE_SIZE = "queueSize";
+    public static final String QUEUE_TIMEOUT = "queueTimeout";
 
     /**
      * The default output stream buffer size in bytes
@@ -40,6 +43,16 @@ public class LoggerConfig extends ConfigStore {
      */
     public static final int DEFAULT_FLUSH_INTERVAL = 5;
 
+    /**
+     * The default number of entries waiting to be written in async mode
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 8192;
+
+    /**
+     * The default time in milliseconds to wait for space in the queue
+     */
+    public static final int DEFAULT_QUEUE_TIMEOUT = 1000;
+
     public LoggerConfig() {
     }
 
@@ -102,4 +115,16 @@ public class LoggerConfig extends ConfigStore {
     public int getFlushInterval() throws EBaseException {
         return getInteger(FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL);
     }
+
+    public boolean getAsync() throws EBaseException {
+        return getBoolean(ASYNC, false);
+    }
+
+    public int getQueueSize() throws EBaseException {
+        return getInteger(QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+    }
+
+    public int getQueueTimeout() throws EBaseException {
+        return getInteger(QUEUE_TIMEOUT, DEFAULT_QUEUE_TIMEOUT);
+    }
 }
@@ -22,18 +22,28 @@ import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Vector;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.request.RequestId;
 import com.netscape.certsrv.request.RequestListener;
 import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmscore.dbs.RecordPagedList;
+import com.netscape.cmscore.util.MetricsRegistry;
 
 /**
  * The RequestNotifier can be registered with a RequestQueue,
  * so it will be invoked when a request is completely serviced
  * by the IService object, then it will notify all registered
  * request listeners.
+ *
+ * By default the listeners run in a new thread for each request or
+ * publishing queue worker. If the thread pool is enabled, they run in
+ * a bounded thread pool instead. If the pool and its queue are full,
+ * the listeners run in the notifying thread.
  */
 public class RequestNotifier {
 
@@ -42,7 +52,13 @@ public class RequestNotifier {
     protected CMSEngine engine;
 
     private Hashtable<String, RequestListener> mListeners = new Hashtable<>();
-    private Vector<Thread> mNotifierThreads = new Vector<>();
+    private boolean mThreadPoolEnabled = false;
+    private ThreadPoolExecutor mExecutor;
+    private AtomicInteger mThreadCounter = new AtomicInteger();
+
+    // number of running publishing queue workers
+    private int mNotifierThreads;
+
     private Vector<String> mRequests = new Vector<>();
     private int mMaxRequests = 100;
     private boolean mSearchForRequests = false;
@@ -102,6 +118,11 @@ public class RequestNotifier {
             mPublishingQueuePriority = Thread.currentThread().getPriority();
         }
 
+        MetricsRegistry metricsRegistry = engine.getMetricsRegistry();
+        if (mIsPublishingQueueEnabled && metricsRegistry != null) {
+            metricsRegistry.registerGauge("publishing_queue", this::getNumberOfRequests);
+        }
+
         RequestRepository requestRepository = engine.getRequestRepository();
 
         if (mIsPublishingQueueEnabled && mSavePublishingStatus > 0 && requestRepository != null) {
@@ -187,6 +208,117 @@ public class RequestNotifier {
         return mListeners.elements();
     }
 
+    public boolean isThreadPoolEnabled() {
+        return mThreadPoolEnabled;
+    }
+
+    /**
+     * Enables the thread pool that runs the listeners.
+     *
+     * @param threadPoolEnabled thread pool switch
+     */
+    public void setThreadPoolEnabled(boolean threadPoolEnabled) {
+        logger.debug("RequestNotifier: Thread pool enabled: " + threadPoolEnabled);
+        mThreadPoolEnabled = threadPoolEnabled;
+    }
+
+    /**
+     * Runs the listeners in the thread pool if it is enabled,
+     * otherwise in a new thread.
+     */
+    void execute(RunListeners task, String threadName) {
+
+        if (mThreadPoolEnabled) {
+            getExecutor().execute(task);
+            return;
+        }
+
+        Thread thread = new Thread(task, threadName);
+        if (mPublishingQueuePriority > 0) {
+            thread.setPriority(mPublishingQueuePriority);
+        }
+        thread.start();
+    }
+
+    /**
+     * Returns the thread pool that runs the listeners. The pool
+     * is created on first use with the maximum number of publishing
+     * threads, and its queue is limited to the publishing queue
+     * page size.
+     */
+    synchronized ThreadPoolExecutor getExecutor() {
+
+        if (mExecutor == null) {
+            int threads = Math.max(mMaxThreads, 1);
+            logger.info("RequestNotifier: Creating thread pool with " + threads + " thread(s)");
+
+            mExecutor = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    60,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(Math.max(mMaxRequests, 1)),
+                    r -> {
+                        Thread thread = new Thread(r, "RequestNotifier-" + mThreadCounter.incrementAndGet());
+                        if (mPublishingQueuePriority > 0) {
+                            thread.setPriority(mPublishingQueuePriority);
+                        }
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+
+            mExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        return mExecutor;
+    }
+
+    /**
+     * Shuts down the thread pool after the pending notifications
+     * are completed.
+     */
+    public void shutdown() {
+
+        ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = mExecutor;
+            mExecutor = null;
+        }
+
+        if (executor == null) {
+            return;
+        }
+
+        logger.info("RequestNotifier: Shutting down thread pool");
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("RequestNotifier: Unable to complete pending notifications");
+                executor.shutdownNow();
+            }
+
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records the time between the request completion and
+     * the end of its publishing.
+     */
+    public void recordPublishingLag(Request r) {
+
+        MetricsRegistry metricsRegistry = engine.getMetricsRegistry();
+        if (metricsRegistry == null || r.getModificationTime() == null) {
+            return;
+        }
+
+        long lag = System.currentTimeMillis() - r.getModificationTime().getTime();
+        metricsRegistry.record("publishing_lag", TimeUnit.MILLISECONDS.toNanos(Math.max(lag, 0)));
+    }
+
     private Object publishingCounterMonitor = new Object();
 
     public void updatePublishingStatus(String id) {
@@ -315,21 +447,49 @@ public class RequestNotifier {
     }
 
     /**
-     * Removes a notifier thread from the pool of publishing queue threads.
+     * Removes a worker from the publishing queue workers unless
+     * there are still requests in the publishing queue. This is
+     * synchronized with addToNotify() so a request added to the queue
+     * is always processed by a running worker.
      *
-     * @param notifierThread Thread
+     * @return true if the worker was removed, false if it should
+     * continue processing the queue
      */
-    public void removeNotifierThread(Thread notifierThread) {
-        if (mNotifierThreads.size() > 0) {
-            mNotifierThreads.remove(notifierThread);
-            if (mNotifierThreads.size() == 0) {
+    public synchronized boolean removeNotifierThread() {
+
+        if (mRequests.size() > 0) {
+            return false;
+        }
+
+        if (mNotifierThreads > 0) {
+            mNotifierThreads--;
+            if (mNotifierThreads == 0) {
                 RequestRepository requestRepository = engine.getRequestRepository();
                 if (requestRepository != null) {
                     requestRepository.setPublishingStatus("-1");
                 }
             }
         }
-        logger.debug("Number of publishing threads: " + mNotifierThreads.size());
+        logger.debug("Number of publishing threads: " + mNotifierThreads);
+
+        return true;
+    }
+
+    /**
+     * Starts a publishing queue worker.
+     */
+    private synchronized void startNotifierThread() {
+
+        mNotifierThreads++;
+        logger.info("RequestNotifier: - publishing threads: " + mNotifierThreads);
+
+        try {
+            execute(new RunListeners(this), "RequestNotifier-addToNotify");
+
+        } catch (Throwable e) {
+            mNotifierThreads--;
+            logger.warn("Unable to notify listeners: " + e.getMessage(), e);
+        }
     }
 
     /**
@@ -363,7 +523,7 @@ public class RequestNotifier {
         } else {
             logger.info("RequestNotifier: Notifying " + mListeners.size() + " listener(s) asynchronously");
             try {
-                new Thread(new RunListeners(r, mListeners.elements()), "RequestNotifier-notify").start();
+                execute(new RunListeners(r, mListeners.elements()), "RequestNotifier-notify");
             } catch (Throwable e) {
                 logger.warn("Could not run listeners for request " + r.getRequestId().toHexString() + ": " + e.getMessage(), e);
             }
@@ -384,17 +544,17 @@ public class RequestNotifier {
      *
      * @return true if more publishing threads can be added, false otherwise
      */
-    private boolean morePublishingThreads() {
+    private synchronized boolean morePublishingThreads() {
         boolean moreThreads = false;
 
-        if (mNotifierThreads.size() == 0) {
+        if (mNotifierThreads == 0) {
             moreThreads = true;
-        } else if (mNotifierThreads.size() < mMaxThreads) {
+        } else if (mNotifierThreads < mMaxThreads) {
             logger.debug("morePublishingThreads  (" + mRequests.size() + ">" +
-                      ((mMaxRequests * mNotifierThreads.size()) / mMaxThreads) +
-                      " " + "(" + mMaxRequests + "*" + mNotifierThreads.size() + "):" + mMaxThreads);
+                      ((mMaxRequests * mNotifierThreads) / mMaxThreads) +
+                      " " + "(" + mMaxRequests + "*" + mNotifierThreads + "):" + mMaxThreads);
             // gradually add new publishing threads
-            if (mRequests.size() > ((mMaxRequests * mNotifierThreads.size()) / mMaxThreads)) {
+            if (mRequests.size() > ((mMaxRequests * mNotifierThreads) / mMaxThreads)) {
                 // check for available publishing connections
                 if (checkAvailablePublishingConnections()) {
                     moreThreads = true;
@@ -425,20 +585,7 @@ public class RequestNotifier {
                 mRequests.addElement(r.getRequestId().toString());
 
                 if (morePublishingThreads()) {
-                    try {
-                        Thread notifierThread = new Thread(new RunListeners(this), "RequestNotifier-addToNotify");
-                        if (notifierThread != null) {
-                            mNotifierThreads.addElement(notifierThread);
-                            logger.info("RequestNotifier: - publishing threads: " + mNotifierThreads.size());
-                            if (mPublishingQueuePriority > 0) {
-                                notifierThread.setPriority(mPublishingQueuePriority);
-                            }
-                            notifierThread.start();
-                        }
-
-                    } catch (Throwable e) {
-                        logger.warn("Unable to notify listeners: " + e.getMessage(), e);
-                    }
+                    startNotifierThread();
                 }
 
             } else {
@@ -467,20 +614,7 @@ public class RequestNotifier {
                     mSearchForRequests = true;
                 }
 
-                try {
-                    Thread notifierThread = new Thread(new RunListeners(this), "RequestNotifier-recoverPublishingQueue");
-                    if (notifierThread != null) {
-                        mNotifierThreads.addElement(notifierThread);
-                        logger.info("RequestNotifier: - publishing threads: " + mNotifierThreads.size());
-                        if (mPublishingQueuePriority > 0) {
-                            notifierThread.setPriority(mPublishingQueuePriority);
-                        }
-                        notifierThread.start();
-                    }
-
-                } catch (Throwable e) {
-                    logger.warn("Unable to recover publishing queue: " + e.getMessage(), e);
-                }
+                startNotifierThread();
             }
         }
     }
@@ -55,7 +55,7 @@ public class RunListeners implements Runnable {
     }
 
     /**
-     * RunListeners thread implementation.
+     * RunListeners task implementation.
      */
     @Override
     public void run() {
@@ -81,6 +81,7 @@ public class RunListeners implements Runnable {
                 if (mRequestNotifier != null) {
                     logger.info("RunListeners: Updating publishing status for request " + mRequest.getRequestId().toHexString());
                     mRequestNotifier.updatePublishingStatus(mRequest.getRequestId().toString());
+                    mRequestNotifier.recordPublishingLag(mRequest);
                 }
             }
 
@@ -92,10 +93,6 @@ public class RunListeners implements Runnable {
                 mListeners = mRequestNotifier.getListeners();
             }
 
-        } while (mRequestNotifier != null && mRequestNotifier.getNumberOfRequests() > 0);
-
-        if (mRequestNotifier != null) {
-            mRequestNotifier.removeNotifierThread(Thread.currentThread());
-        }
+        } while (mRequestNotifier != null && !mRequestNotifier.removeNotifierThread());
     }
 }
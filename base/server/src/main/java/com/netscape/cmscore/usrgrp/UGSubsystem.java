@@ -123,7 +123,7 @@ public class UGSubsystem {
         }
         socketFactory.init(socketConfig);
 
-        mLdapConnFactory = new LdapBoundConnFactory("UGSubsystem");
+        mLdapConnFactory = LdapBoundConnFactory.create("UGSubsystem", false, ldapConfig);
         mLdapConnFactory.setSocketFactory(socketFactory);
         mLdapConnFactory.setPasswordStore(passwordStore);
         mLdapConnFactory.init(ldapConfig);
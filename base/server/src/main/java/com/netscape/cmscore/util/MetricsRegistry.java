@@ -0,0 +1,157 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * This class maintains the counters, the gauges, and the latency
+ * histograms of a subsystem engine.
+ *
+ * Metrics are created on first use and are updated without locking,
+ * so they can be used on the request path of every operation.
+ */
+public class MetricsRegistry {
+
+    public static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    public LongAdder getCounter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    public LatencyHistogram getTimer(String name) {
+        return timers.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a gauge whose value is read when the metrics
+     * are retrieved (e.g. a queue size).
+     */
+    public void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    public void increment(String name) {
+        getCounter(name).increment();
+    }
+
+    public void add(String name, long value) {
+        getCounter(name).add(value);
+    }
+
+    /**
+     * Records the latency of an operation in nanoseconds.
+     */
+    public void record(String name, long nanos) {
+        getTimer(name).recordNanos(nanos);
+    }
+
+    /**
+     * Returns the current counter values sorted by name.
+     */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().sum());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the current gauge values sorted by name.
+     */
+    public Map<String, Long> getGauges() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the latency histograms sorted by name.
+     */
+    public Map<String, LatencyHistogram> getTimers() {
+        return new TreeMap<>(timers);
+    }
+
+    public void reset() {
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+        for (LatencyHistogram timer : timers.values()) {
+            timer.reset();
+        }
+    }
+
+    static String toMetricName(String prefix, String name) {
+        String metricName = prefix + "_" + name;
+        return metricName.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+
+    /**
+     * Returns the metrics in Prometheus text exposition format.
+     * Counters and gauges are exported as such, and latency
+     * histograms as summaries in seconds.
+     *
+     * @param prefix metric name prefix (e.g. pki_ca)
+     */
+    public String toPrometheus(String prefix) {
+
+        StringBuilder sb = new StringBuilder();
+
+        for (Map.Entry<String, Long> entry : getCounters().entrySet()) {
+            String name = toMetricName(prefix, entry.getKey()) + "_total";
+            sb.append("# TYPE ").append(name).append(" counter\n");
+            sb.append(name).append(' ').append(entry.getValue()).append('\n');
+        }
+
+        for (Map.Entry<String, Long> entry : getGauges().entrySet()) {
+            String name = toMetricName(prefix, entry.getKey());
+            sb.append("# TYPE ").append(name).append(" gauge\n");
+            sb.append(name).append(' ').append(entry.getValue()).append('\n');
+        }
+
+        for (Map.Entry<String, LatencyHistogram> entry : getTimers().entrySet()) {
+            String name = toMetricName(prefix, entry.getKey()) + "_seconds";
+            LatencyHistogram timer = entry.getValue();
+
+            sb.append("# TYPE ").append(name).append(" summary\n");
+            for (double quantile : QUANTILES) {
+                sb.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(timer.getPercentile(quantile) / 1e6).append('\n');
+            }
+            sb.append(name).append("_sum ").append(timer.getSum() / 1e6).append('\n');
+            sb.append(name).append("_count ").append(timer.getCount()).append('\n');
+        }
+
+        return sb.toString();
+    }
+}
@@ -17,9 +17,10 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.util;
 
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.Hashtable;
-import java.util.Vector;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.Subsystem;
@@ -40,7 +41,7 @@ public class StatsSubsystem extends Subsystem {
     private String mId = null;
     private StatsEvent mAllTrans = new StatsEvent(null);
     private Date mStartTime = new Date();
-    private Hashtable<String, Vector<StatsMilestone>> mHashtable = new Hashtable<>();
+    private ThreadLocal<List<StatsMilestone>> mMilestones = ThreadLocal.withInitial(ArrayList::new);
 
     /**
      * Constructs a certificate server.
@@ -96,59 +97,74 @@ public class StatsSubsystem extends Subsystem {
     }
 
     public void startTiming(String id, boolean mainAction) {
-        Thread t = Thread.currentThread();
-        Vector<StatsMilestone> milestones = null;
-        if (mHashtable.containsKey(t.toString())) {
-            milestones = mHashtable.get(t.toString());
-        } else {
-            milestones = new Vector<>();
-            mHashtable.put(t.toString(), milestones);
-        }
-        long startTime = new Date().getTime();
+
+        List<StatsMilestone> milestones = mMilestones.get();
+        long startTime = System.nanoTime();
+
         StatsEvent currentST = null;
-        for (int i = 0; i < milestones.size(); i++) {
-            StatsMilestone se = milestones.elementAt(i);
-            if (currentST == null) {
-                currentST = mAllTrans.getSubEvent(se.getId());
-            } else {
-                currentST = currentST.getSubEvent(se.getId());
-            }
+        if (!milestones.isEmpty()) {
+            currentST = milestones.get(milestones.size() - 1).getStatsEvent();
         }
-        if (currentST == null) {
-            if (!mainAction) {
-                return; /* ignore none main action */
-            }
+
+        if (currentST == null && mainAction) {
             currentST = mAllTrans;
         }
-        StatsEvent newST = currentST.getSubEvent(id);
-        if (newST == null) {
-            newST = new StatsEvent(currentST);
-            newST.setName(id);
-            currentST.addSubEvent(newST);
+
+        StatsEvent newST = null;
+        if (currentST != null) {
+            synchronized (currentST) {
+                newST = currentST.getSubEvent(id);
+                if (newST == null) {
+                    newST = new StatsEvent(currentST);
+                    newST.setName(id);
+                    currentST.addSubEvent(newST);
+                }
+            }
         }
-        milestones.addElement(new StatsMilestone(id, startTime, newST));
+
+        // operations outside of a main action are only recorded
+        // in the metrics registry
+        milestones.add(new StatsMilestone(id, startTime, newST));
     }
 
     /**
      * Stops timing of a operation.
      */
     public void endTiming(String id) {
-        long endTime = new Date().getTime();
-        Thread t = Thread.currentThread();
-        if (!mHashtable.containsKey(t.toString())) {
-            return; /* error */
-        }
-        Vector<StatsMilestone> milestones = mHashtable.get(t.toString());
-        if (milestones.size() == 0) {
+
+        long endTime = System.nanoTime();
+
+        List<StatsMilestone> milestones = mMilestones.get();
+        if (milestones.isEmpty()) {
             return; /* error */
         }
+
         StatsMilestone last = milestones.remove(milestones.size() - 1);
+        long timeTaken = endTime - last.getStartTime();
+
         StatsEvent st = last.getStatsEvent();
-        st.incNoOfOperations(1);
-        st.incTimeTaken(endTime - last.getStartTime());
-        if (milestones.size() == 0) {
-            mHashtable.remove(t.toString());
+        if (st != null) {
+            synchronized (st) {
+                st.incNoOfOperations(1);
+                st.incTimeTaken(TimeUnit.NANOSECONDS.toMillis(timeTaken));
+            }
+        }
+
+        MetricsRegistry metricsRegistry = getMetricsRegistry();
+        if (metricsRegistry != null) {
+            metricsRegistry.record(last.getId(), timeTaken);
         }
+
+        if (milestones.isEmpty()) {
+            mMilestones.remove();
+        }
+    }
+
+    /**
+     * Returns the metrics registry of the engine.
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return engine == null ? null : engine.getMetricsRegistry();
     }
 
     /**
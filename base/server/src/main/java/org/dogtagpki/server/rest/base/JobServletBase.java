@@ -23,6 +23,7 @@ import com.netscape.cms.realm.PKIPrincipal;
 import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmscore.apps.EngineConfig;
 import com.netscape.cmscore.jobs.JobConfig;
+import com.netscape.cmscore.jobs.JobExecutor;
 import com.netscape.cmscore.jobs.JobsConfig;
 import com.netscape.cmscore.jobs.JobsScheduler;
 import com.netscape.cmscore.jobs.JobsSchedulerConfig;
@@ -161,6 +162,20 @@ public class JobServletBase {
         jobInfo.setPluginName(jobConfig.getPluginName());
         jobInfo.setOwner(jobConfig.getOwner());
 
+        // store the runtime status if the job has been started
+        JobsScheduler jobsScheduler = engine.getJobsScheduler();
+        JobExecutor jobExecutor = jobsScheduler == null ? null : jobsScheduler.findJobExecutor(id);
+
+        if (jobExecutor != null) {
+            jobInfo.setRunning(jobExecutor.isRunning());
+
+            long lastStartTime = jobExecutor.getLastStartTime();
+            if (lastStartTime > 0) {
+                jobInfo.setLastStartTime(lastStartTime);
+                jobInfo.setLastDuration(jobExecutor.getLastDuration());
+            }
+        }
+
         if (!includeDetails) {
             return jobInfo;
         }
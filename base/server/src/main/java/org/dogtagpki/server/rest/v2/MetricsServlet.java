@@ -0,0 +1,82 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.rest.v2;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.netscape.certsrv.base.MediaType;
+import com.netscape.certsrv.base.WebAction;
+import com.netscape.cmscore.util.LatencyHistogram;
+import com.netscape.cmscore.util.MetricsRegistry;
+
+/**
+ * This servlet returns the counters, the gauges, and the latency
+ * histograms collected by the subsystem. The metrics are returned
+ * in JSON by default, or in Prometheus text format if
+ * format=prometheus is specified or text/plain is accepted.
+ */
+public class MetricsServlet extends PKIServlet {
+    private static final long serialVersionUID = 1L;
+    public static final Logger logger = LoggerFactory.getLogger(MetricsServlet.class);
+
+    @WebAction(method = HttpMethod.GET, paths = {""})
+    public void getMetrics(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        HttpSession session = request.getSession();
+        logger.debug("MetricsServlet.getMetrics(): session: {}", session.getId());
+
+        MetricsRegistry registry = getEngine().getMetricsRegistry();
+        PrintWriter out = response.getWriter();
+
+        String format = request.getParameter("format");
+        String accept = request.getHeader("Accept");
+
+        if ("prometheus".equals(format)
+                || format == null && accept != null && accept.startsWith(MediaType.TEXT_PLAIN)) {
+            response.setContentType(MediaType.TEXT_PLAIN + "; version=0.0.4");
+            out.print(registry.toPrometheus("pki_" + getEngine().getID()));
+            return;
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode root = mapper.createObjectNode();
+
+        ObjectNode counters = root.putObject("counters");
+        for (Map.Entry<String, Long> entry : registry.getCounters().entrySet()) {
+            counters.put(entry.getKey(), entry.getValue());
+        }
+
+        ObjectNode gauges = root.putObject("gauges");
+        for (Map.Entry<String, Long> entry : registry.getGauges().entrySet()) {
+            gauges.put(entry.getKey(), entry.getValue());
+        }
+
+        // latencies are in microseconds
+        ObjectNode timers = root.putObject("timers");
+        for (Map.Entry<String, LatencyHistogram> entry : registry.getTimers().entrySet()) {
+            LatencyHistogram timer = entry.getValue();
+            ObjectNode node = timers.putObject(entry.getKey());
+            node.put("count", timer.getCount());
+            node.put("sum", timer.getSum());
+            node.put("max", timer.getMax());
+            node.put("p50", timer.getPercentile(0.5));
+            node.put("p90", timer.getPercentile(0.9));
+            node.put("p99", timer.getPercentile(0.99));
+            node.put("p999", timer.getPercentile(0.999));
+        }
+
+        out.println(mapper.writeValueAsString(root));
+    }
+}
@@ -0,0 +1,180 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cms.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.logging.ELogException;
+import com.netscape.certsrv.logging.LogEvent;
+
+public class LogFileTest {
+
+    /**
+     * Log file that writes the event messages without the engine
+     * specific prefix.
+     */
+    static class TestLogFile extends LogFile {
+
+        @Override
+        public String logEvt2String(LogEvent event) {
+            return event.toString();
+        }
+    }
+
+    Path file;
+
+    TestLogFile createLogFile(int queueSize, int queueTimeout) throws Exception {
+
+        file = Files.createTempFile("log", ".txt");
+
+        TestLogFile logFile = new TestLogFile();
+        logFile.mAsync = true;
+        logFile.mQueueSize = queueSize;
+        logFile.mQueueTimeout = queueTimeout;
+        logFile.init(file.toString(), 512, 0);
+
+        return logFile;
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    void waitForEmptyQueue(LogFile logFile) throws Exception {
+        for (int i = 0; i < 500 && logFile.getQueueSize() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, logFile.getQueueSize());
+    }
+
+    @Test
+    public void testOrdering() throws Exception {
+
+        TestLogFile logFile = createLogFile(16, 10000);
+
+        for (int i = 0; i < 1000; i++) {
+            logFile.doLog(new LogEvent("entry " + i));
+        }
+
+        logFile.stopWriter();
+
+        // entries after the writer has stopped are written synchronously
+        logFile.doLog(new LogEvent("entry 1000"));
+        logFile.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(1001, lines.size());
+
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals("entry " + i, lines.get(i));
+        }
+    }
+
+    @Test
+    public void testQueueOverflow() throws Exception {
+
+        TestLogFile logFile = createLogFile(2, 10);
+
+        // block the writer thread
+        synchronized (logFile.mWriteLock) {
+
+            logFile.doLog(new LogEvent("entry 1"));
+
+            // wait until the writer thread has taken the first entry
+            waitForEmptyQueue(logFile);
+
+            logFile.doLog(new LogEvent("entry 2"));
+            logFile.doLog(new LogEvent("entry 3"));
+            assertEquals(2, logFile.getQueueSize());
+
+            // the queue is full
+            assertThrows(ELogException.class, () -> logFile.doLog(new LogEvent("entry 4")));
+            assertEquals(2, logFile.getQueueSize());
+        }
+
+        logFile.doLog(new LogEvent("entry 5"));
+
+        logFile.stopWriter();
+        logFile.close();
+
+        assertEquals(List.of("entry 1", "entry 2", "entry 3", "entry 5"), Files.readAllLines(file));
+    }
+
+    @Test
+    public void testStopWhileLogging() throws Exception {
+
+        int threads = 8;
+        TestLogFile logFile = createLogFile(4, 10000);
+
+        CountDownLatch started = new CountDownLatch(threads);
+        AtomicInteger logged = new AtomicInteger();
+        List<Thread> loggers = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                started.countDown();
+                for (int i = 0; i < 500; i++) {
+                    try {
+                        logFile.doLog(new LogEvent("entry " + id + "-" + i));
+                        logged.incrementAndGet();
+                    } catch (ELogException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            thread.start();
+            loggers.add(thread);
+        }
+
+        started.await();
+        logFile.stopWriter();
+
+        for (Thread thread : loggers) {
+            thread.join();
+        }
+
+        logFile.close();
+
+        // no entry is lost while switching to synchronous mode
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(threads * 500, logged.get());
+        assertEquals(threads * 500, lines.size());
+
+        Set<String> entries = new HashSet<>(lines);
+        assertEquals(lines.size(), entries.size());
+        assertTrue(entries.contains("entry 0-499"));
+    }
+}
@@ -0,0 +1,141 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+public class RevokedCertsMapperTest {
+
+    static RevokedCertificate createEntry(long serialNumber, RevocationReason reason) throws Exception {
+        CRLExtensions exts = null;
+        if (reason != null) {
+            exts = new CRLExtensions();
+            exts.set(CRLReasonExtension.NAME, new CRLReasonExtension(reason));
+        }
+        return new RevokedCertImpl(BigInteger.valueOf(serialNumber), new Date(serialNumber * 1000), exts);
+    }
+
+    static Hashtable<BigInteger, RevokedCertificate> createTable(int size) throws Exception {
+        Hashtable<BigInteger, RevokedCertificate> table = new Hashtable<>();
+        for (long i = 1; i <= size; i++) {
+            table.put(BigInteger.valueOf(i), createEntry(i, i % 3 == 0 ? null : RevocationReason.KEY_COMPROMISE));
+        }
+        return table;
+    }
+
+    static void assertTableEquals(
+            Hashtable<BigInteger, RevokedCertificate> expected,
+            Hashtable<BigInteger, RevokedCertificate> actual) {
+
+        assertEquals(expected.keySet(), actual.keySet());
+
+        for (BigInteger serialNumber : expected.keySet()) {
+            RevokedCertificate e = expected.get(serialNumber);
+            RevokedCertificate a = actual.get(serialNumber);
+            assertEquals(e.getRevocationDate(), a.getRevocationDate());
+            assertEquals(e.getExtensions() == null, a.getExtensions() == null);
+        }
+    }
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> table = createTable(100);
+
+        for (boolean compressed : new boolean[] { false, true }) {
+            byte[] data = RevokedCertsMapper.encode(table, compressed);
+            assertFalse(RevokedCertsMapper.isSerialized(data));
+
+            Hashtable<BigInteger, RevokedCertificate> result = RevokedCertsMapper.decode(List.of(data));
+            assertTableEquals(table, result);
+
+            CRLReasonExtension ext = (CRLReasonExtension) result.get(BigInteger.ONE)
+                    .getExtensions().get(CRLReasonExtension.NAME);
+            assertEquals(RevocationReason.KEY_COMPROMISE, ext.getReason());
+        }
+    }
+
+    @Test
+    public void testDeltas() throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> table = createTable(10);
+        byte[] snapshot = RevokedCertsMapper.encode(table, true);
+
+        CRLCacheDelta delta1 = new CRLCacheDelta();
+        delta1.addCert(BigInteger.valueOf(11), createEntry(11, RevocationReason.CERTIFICATE_HOLD));
+        delta1.removeCert(BigInteger.valueOf(5));
+
+        CRLCacheDelta delta2 = new CRLCacheDelta();
+        delta2.removeCert(BigInteger.valueOf(11));
+        delta2.addCert(BigInteger.valueOf(5), createEntry(50, null));
+
+        assertTrue(delta2.getSequenceNumber() > delta1.getSequenceNumber());
+
+        // LDAP does not preserve the order of attribute values
+        Hashtable<BigInteger, RevokedCertificate> result = RevokedCertsMapper.decode(Arrays.asList(
+                RevokedCertsMapper.encode(delta2, true),
+                snapshot,
+                RevokedCertsMapper.encode(delta1, false)));
+
+        delta1.apply(table);
+        delta2.apply(table);
+
+        assertTableEquals(table, result);
+        assertNull(result.get(BigInteger.valueOf(11)));
+        assertEquals(new Date(50000), result.get(BigInteger.valueOf(5)).getRevocationDate());
+    }
+
+    @Test
+    public void testLegacyFormat() throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> table = createTable(10);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream os = new ObjectOutputStream(bos)) {
+            os.writeObject(table);
+        }
+
+        CRLCacheDelta delta = new CRLCacheDelta();
+        delta.removeCert(BigInteger.ONE);
+
+        Hashtable<BigInteger, RevokedCertificate> result = RevokedCertsMapper.decode(Arrays.asList(
+                bos.toByteArray(),
+                RevokedCertsMapper.encode(delta, true)));
+
+        table.remove(BigInteger.ONE);
+        assertTableEquals(table, result);
+    }
+}
@@ -0,0 +1,219 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.ldapconn;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.ldap.ELdapException;
+import com.netscape.cmscore.util.MetricsRegistry;
+
+public class LdapConcurrentConnFactoryTest {
+
+    /**
+     * Connection that is not connected to a server.
+     */
+    static class TestConnection extends LdapBoundConnection {
+
+        private static final long serialVersionUID = 1L;
+
+        boolean connected = true;
+
+        TestConnection() {
+            super(null);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void disconnect() {
+            connected = false;
+        }
+
+        @Override
+        public void setOption(int option, Object value) {
+        }
+    }
+
+    /**
+     * Pool that creates test connections.
+     */
+    static class TestConnFactory extends LdapConcurrentConnFactory {
+
+        TestConnFactory(int minConns, int maxConns, int acquireTimeout) {
+            super("test");
+
+            mMinConns = minConns;
+            mMaxConns = maxConns;
+            mConnInfo = new LdapConnInfo("localhost", 389);
+            mMasterConn = new TestConnection();
+
+            this.acquireTimeout = acquireTimeout;
+            permits = new Semaphore(maxConns, true);
+        }
+
+        @Override
+        PooledConnection createConnection() {
+            numConns.incrementAndGet();
+            created.incrementAndGet();
+            return new PooledConnection(new TestConnection());
+        }
+    }
+
+    @Test
+    public void testAcquireAndReturn() throws Exception {
+
+        TestConnFactory factory = new TestConnFactory(1, 2, 0);
+
+        LdapBoundConnection conn1 = factory.getConn(true);
+        assertNotNull(conn1);
+        assertEquals(1, factory.getAcquiredConnections());
+        assertEquals(1, factory.getCreatedConnections());
+        assertEquals(1, factory.totalConn());
+        assertEquals(0, factory.freeConn());
+
+        // the connection is kept idle up to the minimum number of connections
+        factory.returnConn(conn1);
+        assertEquals(1, factory.freeConn());
+
+        // the idle connection is reused
+        LdapBoundConnection conn2 = factory.getConn(true);
+        assertSame(conn1, conn2);
+        assertEquals(2, factory.getAcquiredConnections());
+        assertEquals(1, factory.getCreatedConnections());
+
+        // the connection above the minimum number of connections is closed
+        LdapBoundConnection conn3 = factory.getConn(true);
+        factory.returnConn(conn2);
+        factory.returnConn(conn3);
+
+        assertEquals(1, factory.freeConn());
+        assertEquals(1, factory.totalConn());
+        assertEquals(1, factory.getClosedConnections());
+        assertFalse(((TestConnection) conn3).isConnected());
+
+        assertEquals(2, factory.permits.availablePermits());
+    }
+
+    @Test
+    public void testReturnTwice() throws Exception {
+
+        TestConnFactory factory = new TestConnFactory(1, 2, 0);
+
+        LdapBoundConnection conn = factory.getConn(true);
+        factory.returnConn(conn);
+
+        // the second return does not release another permit
+        factory.returnConn(conn);
+        assertEquals(2, factory.permits.availablePermits());
+        assertEquals(1, factory.freeConn());
+
+        // connections from other pools are ignored
+        factory.returnConn(new TestConnection());
+        assertEquals(2, factory.permits.availablePermits());
+    }
+
+    @Test
+    public void testDisconnectedConnection() throws Exception {
+
+        TestConnFactory factory = new TestConnFactory(1, 2, 0);
+
+        LdapBoundConnection conn1 = factory.getConn(true);
+        conn1.disconnect();
+
+        // the broken connection is not kept idle
+        factory.returnConn(conn1);
+        assertEquals(0, factory.freeConn());
+        assertEquals(0, factory.totalConn());
+
+        LdapBoundConnection conn2 = factory.getConn(true);
+        assertTrue(conn2.isConnected());
+        assertEquals(2, factory.getCreatedConnections());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+
+        TestConnFactory factory = new TestConnFactory(1, 1, 50);
+
+        LdapBoundConnection conn = factory.getConn(true);
+
+        // the pool is exhausted
+        assertThrows(ELdapException.class, () -> factory.getConn(true));
+        assertEquals(1, factory.getTimeouts());
+
+        assertNull(factory.getConn(false));
+        assertEquals(2, factory.getTimeouts());
+
+        // the connection is available again once it is returned
+        factory.returnConn(conn);
+        assertSame(conn, factory.getConn(false));
+
+        assertEquals(2, factory.getAcquiredConnections());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+
+        TestConnFactory factory = new TestConnFactory(1, 2, 0);
+        factory.setMetricsRegistry(metricsRegistry);
+
+        LdapBoundConnection conn1 = factory.getConn(true);
+        LdapBoundConnection conn2 = factory.getConn(true);
+        factory.returnConn(conn1);
+
+        Map<String, Long> gauges = metricsRegistry.getGauges();
+        assertEquals(2, gauges.get("ldap_test_acquired"));
+        assertEquals(2, gauges.get("ldap_test_created"));
+        assertEquals(1, gauges.get("ldap_test_borrowed_connections"));
+        assertEquals(1, gauges.get("ldap_test_idle_connections"));
+        assertEquals(2, gauges.get("ldap_test_connections"));
+        assertEquals(0, gauges.get("ldap_test_timeouts"));
+        assertEquals(0, gauges.get("ldap_test_waiting_threads"));
+
+        // both requests got a connection without waiting
+        long waits = 0;
+        for (String name : factory.getWaitTimeMetricNames()) {
+            waits += gauges.get(name);
+        }
+        assertEquals(2, waits);
+        assertTrue(gauges.containsKey("ldap_test_wait_1ms"));
+        assertTrue(gauges.containsKey("ldap_test_wait_over_5000ms"));
+
+        factory.returnConn(conn2);
+
+        // the gauges are removed when the pool is shut down
+        factory.shutdown();
+        assertTrue(metricsRegistry.getGauges().isEmpty());
+    }
+}
@@ -0,0 +1,117 @@
+package com.netscape.cmscore.request;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.base.Subsystem;
+import com.netscape.certsrv.request.RequestId;
+import com.netscape.certsrv.request.RequestListener;
+import com.netscape.cmscore.base.ConfigStore;
+
+public class RequestNotifierTest {
+
+    @Test
+    public void testThreadPerRequest() throws Exception {
+
+        RequestNotifier notifier = new RequestNotifier();
+
+        // all requests must be running at the same time
+        // to release the listener
+        int requests = 3;
+        CountDownLatch started = new CountDownLatch(requests);
+        CountDownLatch completed = new CountDownLatch(requests);
+        List<String> threads = new CopyOnWriteArrayList<>();
+
+        notifier.registerListener("test", new ListenerStub() {
+            @Override
+            public void accept(Request request) {
+                threads.add(Thread.currentThread().getName());
+                started.countDown();
+                try {
+                    started.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                completed.countDown();
+            }
+        });
+
+        for (int i = 1; i <= requests; i++) {
+            notifier.notify(new RequestStub(i));
+        }
+
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals(0, started.getCount());
+
+        for (String thread : threads) {
+            assertEquals("RequestNotifier-notify", thread);
+        }
+    }
+
+    @Test
+    public void testThreadPool() throws Exception {
+
+        RequestNotifier notifier = new RequestNotifier();
+        notifier.setThreadPoolEnabled(true);
+
+        int requests = 5;
+        CountDownLatch completed = new CountDownLatch(requests);
+        List<String> threads = new CopyOnWriteArrayList<>();
+
+        notifier.registerListener("test", new ListenerStub() {
+            @Override
+            public void accept(Request request) {
+                threads.add(Thread.currentThread().getName());
+                completed.countDown();
+            }
+        });
+
+        String caller = Thread.currentThread().getName();
+
+        for (int i = 1; i <= requests; i++) {
+            notifier.notify(new RequestStub(i));
+        }
+
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        notifier.shutdown();
+
+        assertEquals(requests, threads.size());
+        for (String thread : threads) {
+            assertNotEquals(caller, thread);
+            assertTrue(thread.startsWith("RequestNotifier-"));
+        }
+    }
+
+    static class RequestStub extends RequestDefaultStub {
+
+        RequestId requestId;
+
+        RequestStub(int id) {
+            requestId = new RequestId(id);
+        }
+
+        @Override
+        public RequestId getRequestId() {
+            return requestId;
+        }
+    }
+
+    abstract static class ListenerStub extends RequestListener {
+
+        @Override
+        public void init(Subsystem sub, ConfigStore config) {
+        }
+
+        @Override
+        public void set(String name, String val) {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+// --- BEGIN COPYRIGHT BLOCK ---
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; version 2 of the License.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License along
+// with this program; if not, write to the Free Software Foundation, Inc.,
+// 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+//
+// (C) 2024 Red Hat, Inc.
+// All rights reserved.
+// --- END COPYRIGHT BLOCK ---
+package com.netscape.cmscore.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 1000000; value += 7) {
+            int bucket = LatencyHistogram.getBucket(value);
+            assertTrue(bucket < LatencyHistogram.BUCKETS);
+            assertTrue(value <= LatencyHistogram.getUpperBound(bucket));
+            if (bucket > 0) {
+                assertTrue(value > LatencyHistogram.getUpperBound(bucket - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000L * 10001 / 2, histogram.getSum());
+        assertEquals(10000, histogram.getMax());
+
+        long p50 = histogram.getPercentile(0.5);
+        assertTrue(p50 >= 5000 && p50 <= 5000 * 1.125, "p50: " + p50);
+
+        long p99 = histogram.getPercentile(0.99);
+        assertTrue(p99 >= 9900 && p99 <= 10000, "p99: " + p99);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+}
@@ -5,6 +5,7 @@
 //
 package com.netscape.cmstools.job;
 
+import java.util.Date;
 import java.util.Map;
 
 import org.dogtagpki.cli.CLI;
@@ -58,6 +59,17 @@ public class JobCLI extends CLI {
             System.out.println("  Owner: " + owner);
         }
 
+        Boolean running = jobInfo.getRunning();
+        if (running != null) {
+            System.out.println("  Running: " + running);
+        }
+
+        Long lastStartTime = jobInfo.getLastStartTime();
+        if (lastStartTime != null) {
+            System.out.println("  Last Start Time: " + new Date(lastStartTime));
+            System.out.println("  Last Duration: " + jobInfo.getLastDuration() + " ms");
+        }
+
         Map<String, String> params = jobInfo.getParameters();
         if (!params.isEmpty()) {
             System.out.println();